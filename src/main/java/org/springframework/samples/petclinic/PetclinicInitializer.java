@@ -18,6 +18,7 @@ package org.springframework.samples.petclinic;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.XmlWebApplicationContext;
 import org.springframework.web.filter.CharacterEncodingFilter;
+import org.springframework.web.filter.DelegatingFilterProxy;
 import org.springframework.web.servlet.DispatcherServlet;
 import org.springframework.web.servlet.support.AbstractDispatcherServletInitializer;
 
@@ -31,7 +32,8 @@ import javax.servlet.ServletContext;
  * <p/>
  * Create the Spring "<strong>root</strong>" application context.<br/>
  * Register a {@link DispatcherServlet}  in the servlet context.<br/>
- * For both servlets, register a {@link CharacterEncodingFilter}.
+ * For both servlets, register a {@link CharacterEncodingFilter}, the traffic capture filter, the deadline filter, the
+ * bulkhead filter and the resource accounting filter.
  * <p/>
  *
  * @author Antoine Rey
@@ -47,7 +49,9 @@ public class PetclinicInitializer extends AbstractDispatcherServletInitializer {
      * <p/>
      * <p>
      * You also may use the -Dspring.profiles.active=jdbc VM options to change
-     * default jpa Spring profile.
+     * default jpa Spring profile. Nodes sharing a database also need the clustered
+     * profile, e.g. -Dspring.profiles.active=jpa,clustered, to evict the cache
+     * entries made stale by each other.
      */
     private static final String SPRING_PROFILE = "jpa";
 
@@ -75,7 +79,16 @@ public class PetclinicInitializer extends AbstractDispatcherServletInitializer {
     protected Filter[] getServletFilters() {
         // Used to provide the ability to enter Chinese characters inside the Owner Form
         CharacterEncodingFilter characterEncodingFilter = new CharacterEncodingFilter("UTF-8", true);
-        return new Filter[]{characterEncodingFilter};
+        // Records request shapes for later replay when enabled (see tools-config.xml)
+        DelegatingFilterProxy trafficCaptureFilter = new DelegatingFilterProxy("trafficCaptureFilter");
+        // Deadline of the request, applied to its database calls; includes the time queued in the bulkhead
+        DelegatingFilterProxy deadlineFilter = new DelegatingFilterProxy("deadlineFilter");
+        // Per class bounds of the requests processed at once, rejections being captured (see tools-config.xml)
+        DelegatingFilterProxy bulkheadFilter = new DelegatingFilterProxy("bulkheadFilter");
+        // Allocated bytes and CPU time per route (see tools-config.xml)
+        DelegatingFilterProxy resourceAccountingFilter = new DelegatingFilterProxy("resourceAccountingFilter");
+        return new Filter[]{characterEncodingFilter, trafficCaptureFilter, deadlineFilter, bulkheadFilter,
+            resourceAccountingFilter};
     }
 
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Table of cache changes shared by the nodes of a cluster (<code>cache_changes</code>). Writes append the cache keys
+ * they make stale, in their own transaction, and each node's {@link CacheInvalidationPoller} reads the entries
+ * appended by the other nodes in id order to evict the same keys locally.
+ * <p/>
+ * Changes made outside of the application can be announced the same way, e.g. after editing the vets:
+ * <code>INSERT INTO cache_changes (cache_name, cache_key) VALUES ('vets', '*')</code>.
+ * <p/>
+ * The database also holds a random epoch (<code>cache_epoch</code>), created on first use, which tells a database
+ * apart from the one recreated on startup, or restored from a backup, with a change log starting over.
+ */
+public class CacheChangeLog {
+
+    /**
+     * Key standing for every entry of a cache.
+     */
+    public static final String ALL_KEYS = "*";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final RowMapper<CacheChange> CHANGE_MAPPER = (rs, rowNum) ->
+        new CacheChange(rs.getLong("id"), rs.getString("node"), rs.getString("cache_name"), rs.getString("cache_key"));
+
+    private static final String SELECT_EPOCH = "SELECT epoch FROM cache_epoch WHERE id = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private boolean enabled = true;
+
+    public CacheChangeLog(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    /**
+     * @param enabled whether to record changes; useless with a single node
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @return identifier of this node in the change log, random for each application start
+     */
+    public String getNodeId() {
+        return this.nodeId;
+    }
+
+    /**
+     * Record that the entry of the given key is stale, within the current transaction if any.
+     */
+    public void append(String cacheName, Object key) {
+        if (!this.enabled) {
+            return;
+        }
+        String cacheKey = String.valueOf(key);
+        if (cacheKey.length() > MAX_KEY_LENGTH) {
+            // a longer key cannot be matched anymore: invalidate the whole cache
+            cacheKey = ALL_KEYS;
+        }
+        this.jdbcTemplate.update("INSERT INTO cache_changes (node, cache_name, cache_key) VALUES (?, ?, ?)",
+            this.nodeId, cacheName, cacheKey);
+    }
+
+    /**
+     * @return the id of the last change, 0 if none
+     */
+    public long getLastId() {
+        Long lastId = this.jdbcTemplate.queryForObject("SELECT MAX(id) FROM cache_changes", Long.class);
+        return lastId == null ? 0 : lastId;
+    }
+
+    /**
+     * @return the epoch of the database, created if missing
+     */
+    public String getEpoch() {
+        List<String> epochs = this.jdbcTemplate.queryForList(SELECT_EPOCH, String.class);
+        if (!epochs.isEmpty()) {
+            return epochs.get(0);
+        }
+        try {
+            this.jdbcTemplate.update("INSERT INTO cache_epoch (id, epoch) VALUES (1, ?)", UUID.randomUUID().toString());
+        } catch (DuplicateKeyException ex) {
+            // created meanwhile by another node
+        }
+        return this.jdbcTemplate.queryForObject(SELECT_EPOCH, String.class);
+    }
+
+    /**
+     * @return at most <code>limit</code> changes following the given id, in id order
+     */
+    public List<CacheChange> readAfter(long id, int limit) {
+        JdbcTemplate template = new JdbcTemplate(this.jdbcTemplate.getDataSource());
+        template.setMaxRows(limit);
+        return template.query("SELECT id, node, cache_name, cache_key FROM cache_changes WHERE id > ? ORDER BY id",
+            CHANGE_MAPPER, id);
+    }
+
+    /**
+     * @return the changes of the given ids that exist
+     */
+    public List<CacheChange> read(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return this.namedParameterJdbcTemplate.query(
+            "SELECT id, node, cache_name, cache_key FROM cache_changes WHERE id IN (:ids) ORDER BY id",
+            new MapSqlParameterSource("ids", ids), CHANGE_MAPPER);
+    }
+
+    /**
+     * @return the number of deleted changes
+     */
+    public int deleteOlderThan(long timestampMillis) {
+        return this.jdbcTemplate.update("DELETE FROM cache_changes WHERE created < ?", new Timestamp(timestampMillis));
+    }
+
+    /**
+     * An entry of the change log.
+     */
+    public static final class CacheChange {
+
+        private final long id;
+
+        private final String node;
+
+        private final String cacheName;
+
+        private final String cacheKey;
+
+        public CacheChange(long id, String node, String cacheName, String cacheKey) {
+            this.id = id;
+            this.node = node;
+            this.cacheName = cacheName;
+            this.cacheKey = cacheKey;
+        }
+
+        public long getId() {
+            return this.id;
+        }
+
+        public String getNode() {
+            return this.node;
+        }
+
+        public String getCacheName() {
+            return this.cacheName;
+        }
+
+        public String getCacheKey() {
+            return this.cacheKey;
+        }
+    }
+
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.samples.petclinic.cache.CacheChangeLog.CacheChange;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+
+/**
+ * Polls the {@link CacheChangeLog} for the changes recorded by the other nodes and evicts the matching keys from the
+ * local Spring caches and the {@link InvalidatableCache in-process caches} depending on them, e.g. the owner ids
+ * recorded as missing by the {@link NegativeLookupCache} along with the "owners" cache. Each poll is one indexed query
+ * returning at most a batch of changes following the last id read.
+ * <p/>
+ * Ids are allocated when a change is inserted but become visible when its transaction commits, so a change may show
+ * up after changes with higher ids. The ids skipped by a poll are therefore looked up again by the following polls,
+ * until found or older than the gap timeout (a rolled back transaction never fills its gap).
+ * <p/>
+ * A local read that missed a key before its eviction may still be putting the value it read from the database, older
+ * than the change: the {@link TinyLfuCache} drops such puts, and the in-process caches drop the entries read
+ * concurrently with an invalidation.
+ * <p/>
+ * Only runs when the change log is enabled, i.e. with the "clustered" profile.
+ */
+@ManagedResource("petclinic:type=CacheInvalidation")
+public class CacheInvalidationPoller implements MetricsSource, InitializingBean, DisposableBean {
+
+    private static final Log logger = LogFactory.getLog(CacheInvalidationPoller.class);
+
+    /**
+     * Larger jumps of the id sequence (e.g. sequence caches lost on a database restart) are not tracked as gaps.
+     */
+    private static final int MAX_TRACKED_GAP = 1000;
+
+    private final CacheChangeLog changeLog;
+
+    private final CacheManager cacheManager;
+
+    private final Map<String, List<InvalidatableCache>> invalidatableCaches = new HashMap<>();
+
+    private final ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+    private Map<String, Class<?>> keyTypes = Collections.emptyMap();
+
+    private long pollIntervalMillis = 1000;
+
+    private int batchSize = 500;
+
+    private long gapTimeoutMillis = 60_000;
+
+    private long retentionMillis = 3_600_000;
+
+    private ScheduledExecutorService scheduler;
+
+    private long lastId = -1;
+
+    /**
+     * Ids skipped by a poll, with the time they were first missed.
+     */
+    private final Map<Long, Long> gaps = new LinkedHashMap<>();
+
+    private long lastPurgeMillis = System.currentTimeMillis();
+
+    private volatile long lastPollMillis;
+
+    private final LongAdder applied = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    public CacheInvalidationPoller(CacheChangeLog changeLog, CacheManager cacheManager,
+                                   List<InvalidatableCache> invalidatableCaches) {
+        this.changeLog = changeLog;
+        this.cacheManager = cacheManager;
+        for (InvalidatableCache cache : invalidatableCaches) {
+            for (String name : cache.getCacheNames()) {
+                this.invalidatableCaches.computeIfAbsent(name, key -> new ArrayList<>()).add(cache);
+            }
+        }
+    }
+
+    /**
+     * @param keyTypes type of the keys of the Spring caches, by cache name; keys are strings when not specified
+     */
+    public void setKeyTypes(Map<String, Class<?>> keyTypes) {
+        this.keyTypes = keyTypes;
+    }
+
+    /**
+     * @param pollIntervalMillis delay between two polls, or 0 to disable polling (single node)
+     */
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setGapTimeoutMillis(long gapTimeoutMillis) {
+        this.gapTimeoutMillis = gapTimeoutMillis;
+    }
+
+    /**
+     * @param retentionMillis age from which changes are deleted from the log, by any node
+     */
+    public void setRetentionMillis(long retentionMillis) {
+        this.retentionMillis = retentionMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (this.pollIntervalMillis <= 0 || !this.changeLog.isEnabled()) {
+            return;
+        }
+        // reads the id from which to poll, before anything gets cached
+        pollQuietly();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-invalidation-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::pollQuietly, this.pollIntervalMillis, this.pollIntervalMillis,
+            TimeUnit.MILLISECONDS);
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (DataAccessException ex) {
+            this.failures.increment();
+            logger.warn("Cannot read the cache change log, retrying in " + this.pollIntervalMillis + " ms", ex);
+        }
+    }
+
+    /**
+     * Apply the changes recorded by other nodes since the previous poll.
+     *
+     * @return the number of changes applied
+     */
+    @ManagedOperation
+    public synchronized int poll() {
+        long now = System.currentTimeMillis();
+        if (this.lastId < 0) {
+            // caches are empty on startup: the changes already recorded are irrelevant
+            this.lastId = this.changeLog.getLastId();
+            this.lastPollMillis = now;
+            return 0;
+        }
+        int count = 0;
+        List<CacheChange> changes;
+        do {
+            changes = this.changeLog.readAfter(this.lastId, this.batchSize);
+            for (CacheChange change : changes) {
+                long skipped = change.getId() - this.lastId - 1;
+                if (skipped > 0 && skipped <= MAX_TRACKED_GAP) {
+                    for (long id = this.lastId + 1; id < change.getId(); id++) {
+                        this.gaps.put(id, now);
+                    }
+                }
+                this.lastId = change.getId();
+                count += apply(change);
+            }
+        } while (changes.size() == this.batchSize);
+
+        if (!this.gaps.isEmpty()) {
+            for (CacheChange change : this.changeLog.read(new ArrayList<>(this.gaps.keySet()))) {
+                this.gaps.remove(change.getId());
+                count += apply(change);
+            }
+            this.gaps.values().removeIf(firstMissed -> now - firstMissed > this.gapTimeoutMillis);
+        }
+
+        if (now - this.lastPurgeMillis > this.retentionMillis / 10) {
+            this.lastPurgeMillis = now;
+            this.changeLog.deleteOlderThan(now - this.retentionMillis);
+        }
+        this.lastPollMillis = now;
+        return count;
+    }
+
+    /**
+     * Apply again every change recorded after the given id, e.g. to bring up to date entries restored from a
+     * snapshot taken at that id. The changes of a previous run of this node are applied as any other: the node id
+     * differs on each start.
+     *
+     * @return the number of changes applied
+     */
+    public synchronized int replayAfter(long id) {
+        this.lastId = id;
+        this.gaps.clear();
+        return poll();
+    }
+
+    /**
+     * @return the id up to which every change is known to be applied, or -1 before the first poll: the changes after
+     * it, and only them, may still have to be applied
+     */
+    public synchronized long getAppliedId() {
+        if (this.lastId < 0 || this.gaps.isEmpty()) {
+            return this.lastId;
+        }
+        // gaps are tracked in id order
+        return Math.min(this.lastId, this.gaps.keySet().iterator().next() - 1);
+    }
+
+    private int apply(CacheChange change) {
+        if (this.changeLog.getNodeId().equals(change.getNode())) {
+            // evicted locally by the write itself
+            return 0;
+        }
+        String name = change.getCacheName();
+        String key = change.getCacheKey();
+        List<InvalidatableCache> invalidatableCaches = this.invalidatableCaches.getOrDefault(name,
+            Collections.emptyList());
+        for (InvalidatableCache invalidatableCache : invalidatableCaches) {
+            invalidatableCache.invalidate(name, key);
+        }
+        Cache cache = this.cacheManager.getCache(name);
+        if (cache == null && invalidatableCaches.isEmpty()) {
+            return 0;
+        }
+        if (cache != null) {
+            if (CacheChangeLog.ALL_KEYS.equals(key)) {
+                cache.clear();
+            } else {
+                Class<?> keyType = this.keyTypes.getOrDefault(name, String.class);
+                cache.evict(this.conversionService.convert(key, keyType));
+            }
+        }
+        this.applied.increment();
+        return 1;
+    }
+
+    /**
+     * @return whether the change log is polled periodically
+     */
+    public boolean isPolling() {
+        return this.scheduler != null;
+    }
+
+    /**
+     * @return start time of the last successful poll, in milliseconds since the epoch, or 0 if none
+     */
+    @ManagedAttribute
+    public long getLastPollMillis() {
+        return this.lastPollMillis;
+    }
+
+    @ManagedAttribute
+    public synchronized long getLastId() {
+        return this.lastId;
+    }
+
+    @ManagedAttribute
+    public synchronized int getPendingGapCount() {
+        return this.gaps.size();
+    }
+
+    @ManagedAttribute
+    public long getAppliedCount() {
+        return this.applied.sum();
+    }
+
+    @ManagedAttribute
+    public long getFailureCount() {
+        return this.failures.sum();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "cacheInvalidation";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("node", this.changeLog.getNodeId());
+        metrics.put("lastId", getLastId());
+        metrics.put("pendingGaps", getPendingGapCount());
+        metrics.put("applied", getAppliedCount());
+        metrics.put("failures", getFailureCount());
+        return metrics;
+    }
+
+    @Override
+    public void destroy() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+        }
+    }
+
+}
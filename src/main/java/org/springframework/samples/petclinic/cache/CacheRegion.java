@@ -0,0 +1,159 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Policy of one cache of the {@link TinyLfuCacheManager}: its bounds, expiration and refresh.
+ */
+public class CacheRegion {
+
+    private String name;
+
+    private int maximumSize = 1000;
+
+    private long expireAfterWriteSeconds;
+
+    private long refreshAfterSeconds;
+
+    private CacheLoader refreshLoader;
+
+    private ValueCopier copier;
+
+    private long offHeapMaximumBytes;
+
+    private int offHeapSegmentBytes = 4 * 1024 * 1024;
+
+    private ValueCodec codec;
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    /**
+     * @param maximumSize number of entries beyond which the least valuable entries are evicted
+     */
+    public void setMaximumSize(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public long getExpireAfterWriteSeconds() {
+        return this.expireAfterWriteSeconds;
+    }
+
+    /**
+     * @param expireAfterWriteSeconds age from which an entry is discarded, 0 for never
+     */
+    public void setExpireAfterWriteSeconds(long expireAfterWriteSeconds) {
+        this.expireAfterWriteSeconds = expireAfterWriteSeconds;
+    }
+
+    public long getRefreshAfterSeconds() {
+        return this.refreshAfterSeconds;
+    }
+
+    /**
+     * @param refreshAfterSeconds age from which an entry is reloaded in the background on its next lookup, 0 for
+     *                            never; requires a refresh loader
+     */
+    public void setRefreshAfterSeconds(long refreshAfterSeconds) {
+        this.refreshAfterSeconds = refreshAfterSeconds;
+    }
+
+    public CacheLoader getRefreshLoader() {
+        return this.refreshLoader;
+    }
+
+    /**
+     * @param refreshLoader reloads the entries due for a refresh, none by default
+     */
+    public void setRefreshLoader(CacheLoader refreshLoader) {
+        this.refreshLoader = refreshLoader;
+    }
+
+    public ValueCopier getCopier() {
+        return this.copier;
+    }
+
+    /**
+     * @param copier copies the values put into and read from the cache, none by default
+     */
+    public void setCopier(ValueCopier copier) {
+        this.copier = copier;
+    }
+
+    public long getOffHeapMaximumBytes() {
+        return this.offHeapMaximumBytes;
+    }
+
+    /**
+     * @param offHeapMaximumBytes capacity of the off-heap tier behind the cache, 0 for none; requires a codec
+     */
+    public void setOffHeapMaximumBytes(long offHeapMaximumBytes) {
+        this.offHeapMaximumBytes = offHeapMaximumBytes;
+    }
+
+    public int getOffHeapSegmentBytes() {
+        return this.offHeapSegmentBytes;
+    }
+
+    /**
+     * @param offHeapSegmentBytes unit of allocation and eviction of the off-heap tier, 4 MB by default
+     */
+    public void setOffHeapSegmentBytes(int offHeapSegmentBytes) {
+        this.offHeapSegmentBytes = offHeapSegmentBytes;
+    }
+
+    public ValueCodec getCodec() {
+        return this.codec;
+    }
+
+    /**
+     * @param codec binary form of the values in the off-heap tier
+     */
+    public void setCodec(ValueCodec codec) {
+        this.codec = codec;
+    }
+
+    boolean isOffHeap() {
+        return this.offHeapMaximumBytes > 0 && this.codec != null;
+    }
+
+    long getExpireAfterWriteNanos() {
+        return this.expireAfterWriteSeconds > 0 ? TimeUnit.SECONDS.toNanos(this.expireAfterWriteSeconds) : Long.MAX_VALUE;
+    }
+
+    long getRefreshAfterNanos() {
+        return this.refreshAfterSeconds > 0 ? TimeUnit.SECONDS.toNanos(this.refreshAfterSeconds) : Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return this.name + " (maximumSize=" + this.maximumSize + ", expireAfterWriteSeconds="
+            + this.expireAfterWriteSeconds + ", refreshAfterSeconds=" + this.refreshAfterSeconds
+            + ", offHeapMaximumBytes=" + this.offHeapMaximumBytes + ")";
+    }
+
+}
@@ -0,0 +1,520 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.samples.petclinic.codec.BinaryReader;
+import org.springframework.samples.petclinic.codec.BinaryWriter;
+import org.springframework.samples.petclinic.codec.ModelCodec;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+import org.springframework.util.StringUtils;
+
+/**
+ * Saves the hottest entries of some cache regions (reference data, the vet list, owners) to a local file,
+ * periodically and on shutdown, and restores them on startup so that a restarted node serves from warm caches
+ * straight away.
+ * <p/>
+ * The file is memory-mapped and decoded in place: a header (magic number, format and codec versions, change log id,
+ * write time, body length and CRC-32), then each entry as its region name, key, age and {@link ModelCodec} encoded
+ * value. It is written to a temporary file first, then moved over the previous one.
+ * <p/>
+ * A snapshot also records the epoch of the database (see {@link CacheChangeLog#getEpoch()}), and is ignored once the
+ * database has been recreated, e.g. the in-memory one on every start; so is a snapshot whose change log id is past
+ * the last change, the database having been restored from an older backup.
+ * <p/>
+ * A snapshot records the id of the {@link CacheChangeLog} up to which every change had been applied to the caches.
+ * Once the entries are restored, the changes recorded since (by any node, including this one before its restart) are
+ * replayed by the {@link CacheInvalidationPoller}, evicting the stale ones. Snapshots older than the maximum age,
+ * which must stay below the retention of the change log, are ignored; so are the snapshots not written on shutdown
+ * when the change log is disabled. Restored entries keep their age: they expire as they would have, and the entries
+ * due for a refresh are reloaded in the background on their first access.
+ * <p/>
+ * The file holds personal data (names, addresses, telephones): snapshots are disabled by default, and need an explicit
+ * file, created readable by its owner only, on a local disk. Statistics are published on JMX and in the /metrics
+ * endpoint.
+ */
+@ManagedResource("petclinic:type=CacheSnapshot")
+public class CacheSnapshot implements MetricsSource, InitializingBean, DisposableBean {
+
+    private static final Log logger = LogFactory.getLog(CacheSnapshot.class);
+
+    static final int MAGIC = 0x50435331;
+
+    static final int FORMAT_VERSION = 2;
+
+    static final int HEADER_BYTES = 4 + 1 + 1 + 1 + 16 + 8 + 8 + 4 + 4;
+
+    private static final UUID UNKNOWN_EPOCH = new UUID(0, 0);
+
+    private static final int WRITTEN_ON_SHUTDOWN = 1;
+
+    private static final int SIMPLE_KEY_EMPTY = 0;
+
+    private static final int INTEGER_KEY = 1;
+
+    private static final int STRING_KEY = 2;
+
+    private final TinyLfuCacheManager cacheManager;
+
+    private final CacheInvalidationPoller poller;
+
+    private final CacheChangeLog changeLog;
+
+    private boolean enabled;
+
+    private Path file;
+
+    private List<String> cacheNames = Arrays.asList("petTypes", "vets", "owners");
+
+    private int maxEntriesPerCache = 10_000;
+
+    private long intervalSeconds = 300;
+
+    private long maxAgeSeconds = 1800;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile String restoreStatus = "not restored";
+
+    private volatile int restoredCount;
+
+    private volatile int replayedCount;
+
+    private volatile long restoreMillis;
+
+    private volatile long lastSaveMillis;
+
+    private volatile int lastSaveCount;
+
+    private volatile int lastSaveBytes;
+
+    private volatile long lastSaveDurationMillis;
+
+    private final LongAdder saveFailures = new LongAdder();
+
+    public CacheSnapshot(TinyLfuCacheManager cacheManager, CacheInvalidationPoller poller, CacheChangeLog changeLog) {
+        this.cacheManager = cacheManager;
+        this.poller = poller;
+        this.changeLog = changeLog;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param file snapshot file, required when enabled
+     */
+    public void setFile(String file) {
+        this.file = StringUtils.hasText(file) ? Paths.get(file) : null;
+    }
+
+    @ManagedAttribute
+    public String getFile() {
+        return this.file == null ? null : this.file.toAbsolutePath().toString();
+    }
+
+    /**
+     * @param cacheNames comma separated names of the regions to save, in restore order
+     */
+    public void setCacheNames(String cacheNames) {
+        this.cacheNames = Arrays.asList(StringUtils.commaDelimitedListToStringArray(
+            StringUtils.trimAllWhitespace(cacheNames)));
+    }
+
+    public void setMaxEntriesPerCache(int maxEntriesPerCache) {
+        this.maxEntriesPerCache = maxEntriesPerCache;
+    }
+
+    /**
+     * @param intervalSeconds delay between two periodic saves, or 0 to save on shutdown only
+     */
+    public void setIntervalSeconds(long intervalSeconds) {
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    public void setMaxAgeSeconds(long maxAgeSeconds) {
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!this.enabled) {
+            this.restoreStatus = "disabled";
+            return;
+        }
+        if (this.file == null) {
+            throw new IllegalStateException(
+                "The cache snapshot needs a file, in a directory private to the application");
+        }
+        restore();
+        if (this.intervalSeconds > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cache-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.scheduler.scheduleWithFixedDelay(() -> saveQuietly(false), this.intervalSeconds, this.intervalSeconds,
+                TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+        }
+        if (this.enabled) {
+            saveQuietly(true);
+        }
+    }
+
+    private void saveQuietly(boolean onShutdown) {
+        try {
+            save(onShutdown);
+        } catch (IOException | RuntimeException ex) {
+            this.saveFailures.increment();
+            logger.warn("Cannot save the cache snapshot to " + this.file, ex);
+        }
+    }
+
+    /**
+     * Save the hottest entries of the regions now.
+     *
+     * @return the number of entries saved
+     */
+    @ManagedOperation
+    public int save() throws IOException {
+        return save(false);
+    }
+
+    synchronized int save(boolean onShutdown) throws IOException {
+        long start = System.nanoTime();
+        // read before the entries: the changes recorded meanwhile are replayed on restore, at worst for nothing
+        long changeId = appliedChangeId();
+        UUID epoch = databaseEpoch();
+        BinaryWriter body = new BinaryWriter(64 * 1024);
+        int count = 0;
+        for (String name : this.cacheNames) {
+            TinyLfuCache cache = this.cacheManager.getRegionCache(name);
+            if (cache == null) {
+                continue;
+            }
+            long now = cache.currentTime();
+            for (TinyLfuCache.Entry entry : cache.entries(this.maxEntriesPerCache)) {
+                byte[] value = entry.value == null ? null : ModelCodec.encode(entry.value);
+                if (value == null || !writeKey(body, name, entry.key)) {
+                    continue;
+                }
+                body.writeVarLong(TimeUnit.NANOSECONDS.toMillis(Math.max(now - entry.writtenAt, 0)));
+                body.writeVarInt(value.length);
+                body.writeBytes(value, 0, value.length);
+                count++;
+            }
+        }
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+
+        Path directory = this.file.toAbsolutePath().getParent();
+        Files.createDirectories(directory, ownerOnly("rwx------"));
+        Path temporary = Files.createTempFile(directory, this.file.getFileName().toString(), ".tmp",
+            ownerOnly("rw-------"));
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + bytes.length);
+                buffer.putInt(MAGIC);
+                buffer.put((byte) FORMAT_VERSION);
+                buffer.put((byte) ModelCodec.VERSION);
+                buffer.put((byte) (onShutdown ? WRITTEN_ON_SHUTDOWN : 0));
+                buffer.putLong(epoch.getMostSignificantBits());
+                buffer.putLong(epoch.getLeastSignificantBits());
+                buffer.putLong(changeId);
+                buffer.putLong(System.currentTimeMillis());
+                buffer.putInt(bytes.length);
+                buffer.putInt((int) crc.getValue());
+                buffer.put(bytes);
+                buffer.force();
+            }
+            Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        this.lastSaveMillis = System.currentTimeMillis();
+        this.lastSaveCount = count;
+        this.lastSaveBytes = HEADER_BYTES + bytes.length;
+        this.lastSaveDurationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return count;
+    }
+
+    private FileAttribute<?>[] ownerOnly(String permissions) {
+        if (!this.file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return new FileAttribute<?>[0];
+        }
+        return new FileAttribute<?>[] {
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(permissions))};
+    }
+
+    /**
+     * @return the id of the change log up to which the caches are up to date, -1 if unknown
+     */
+    private long appliedChangeId() {
+        if (!this.changeLog.isEnabled()) {
+            return -1;
+        }
+        try {
+            this.poller.poll();
+            return this.poller.getAppliedId();
+        } catch (DataAccessException ex) {
+            logger.warn("Cannot read the cache change log, the snapshot will be trusted on a clean shutdown only", ex);
+            return -1;
+        }
+    }
+
+    /**
+     * @return the epoch of the database, {@link #UNKNOWN_EPOCH} if it cannot be read
+     */
+    private UUID databaseEpoch() {
+        try {
+            return UUID.fromString(this.changeLog.getEpoch());
+        } catch (DataAccessException | IllegalArgumentException ex) {
+            logger.warn("Cannot read the database epoch, the snapshot will not be restored", ex);
+            return UNKNOWN_EPOCH;
+        }
+    }
+
+    private static boolean writeKey(BinaryWriter out, String cacheName, Object key) {
+        if (SimpleKey.EMPTY.equals(key)) {
+            out.writeString(cacheName);
+            out.writeByte(SIMPLE_KEY_EMPTY);
+        } else if (key instanceof Integer) {
+            out.writeString(cacheName);
+            out.writeByte(INTEGER_KEY);
+            out.writeVarInt((Integer) key);
+        } else if (key instanceof String) {
+            out.writeString(cacheName);
+            out.writeByte(STRING_KEY);
+            out.writeString((String) key);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static Object readKey(BinaryReader in) {
+        int type = in.readByte();
+        switch (type) {
+            case SIMPLE_KEY_EMPTY:
+                return SimpleKey.EMPTY;
+            case INTEGER_KEY:
+                return in.readVarInt();
+            case STRING_KEY:
+                return in.readString();
+            default:
+                throw new IllegalArgumentException("Unknown key type " + type);
+        }
+    }
+
+    /**
+     * Restore the entries of the snapshot file into the (empty) caches, unless too old or unsafe, then replay the
+     * changes recorded since it was written.
+     *
+     * @return the number of entries restored
+     */
+    synchronized int restore() {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return discard("truncated");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.get() != FORMAT_VERSION) {
+                return discard("unknown format");
+            }
+            if (buffer.get() != ModelCodec.VERSION) {
+                return discard("encoded with another model codec version");
+            }
+            boolean writtenOnShutdown = (buffer.get() & WRITTEN_ON_SHUTDOWN) != 0;
+            UUID epoch = new UUID(buffer.getLong(), buffer.getLong());
+            long changeId = buffer.getLong();
+            long ageMillis = Math.max(System.currentTimeMillis() - buffer.getLong(), 0);
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (ageMillis > TimeUnit.SECONDS.toMillis(this.maxAgeSeconds)) {
+                return discard("older than " + this.maxAgeSeconds + " s");
+            }
+            boolean replay = changeId >= 0 && this.changeLog.isEnabled();
+            if (!replay && !(writtenOnShutdown && !this.changeLog.isEnabled())) {
+                return discard("not written on shutdown, or without change log id");
+            }
+            UUID databaseEpoch = databaseEpoch();
+            if (databaseEpoch.equals(UNKNOWN_EPOCH) || !databaseEpoch.equals(epoch)) {
+                return discard("written for another database");
+            }
+            if (replay && this.changeLog.getLastId() < changeId) {
+                return discard("ahead of the change log, the database has been restored");
+            }
+            if (buffer.remaining() != length) {
+                return discard("truncated");
+            }
+            ByteBuffer body = buffer.slice();
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                return discard("corrupted");
+            }
+
+            int count = restoreEntries(new BinaryReader(body), body, ageMillis);
+            if (replay) {
+                this.replayedCount = this.poller.replayAfter(changeId);
+            }
+            this.restoredCount = count;
+            this.restoreMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            this.restoreStatus = "restored";
+            logger.info("Restored " + count + " cache entries from " + this.file + " in " + this.restoreMillis
+                + " ms, snapshot age " + ageMillis / 1000 + " s, " + this.replayedCount + " changes replayed");
+            return count;
+        } catch (NoSuchFileException ex) {
+            this.restoreStatus = "no snapshot";
+            return 0;
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Cannot restore the cache snapshot " + this.file + ", starting with empty caches", ex);
+            clearCaches();
+            this.restoreStatus = "failed: " + ex;
+            return 0;
+        }
+    }
+
+    private int restoreEntries(BinaryReader in, ByteBuffer body, long snapshotAgeMillis) {
+        int count = 0;
+        while (in.hasRemaining()) {
+            TinyLfuCache cache = this.cacheManager.getRegionCache(in.readString());
+            Object key = readKey(in);
+            long ageNanos = TimeUnit.MILLISECONDS.toNanos(in.readVarLong() + snapshotAgeMillis);
+            int length = in.readVarInt();
+            ByteBuffer encoded = body.slice();
+            encoded.limit(length);
+            body.position(body.position() + length);
+            if (cache != null) {
+                cache.put(key, ModelCodec.decode(encoded), cache.currentTime() - ageNanos);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int discard(String reason) {
+        this.restoreStatus = "ignored: " + reason;
+        logger.info("Ignoring the cache snapshot " + this.file + ": " + reason);
+        return 0;
+    }
+
+    private void clearCaches() {
+        for (String name : this.cacheNames) {
+            TinyLfuCache cache = this.cacheManager.getRegionCache(name);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    @ManagedAttribute
+    public String getRestoreStatus() {
+        return this.restoreStatus;
+    }
+
+    @ManagedAttribute
+    public int getRestoredCount() {
+        return this.restoredCount;
+    }
+
+    /**
+     * @return number of changes of the change log applied after the restore, i.e. of restored entries found stale
+     * (or evicted for nothing, their change having been recorded while the snapshot was taken)
+     */
+    @ManagedAttribute
+    public int getReplayedCount() {
+        return this.replayedCount;
+    }
+
+    @ManagedAttribute
+    public long getRestoreMillis() {
+        return this.restoreMillis;
+    }
+
+    @ManagedAttribute
+    public int getLastSaveCount() {
+        return this.lastSaveCount;
+    }
+
+    @ManagedAttribute
+    public long getSaveFailureCount() {
+        return this.saveFailures.sum();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "cacheSnapshot";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("file", getFile());
+        metrics.put("restoreStatus", getRestoreStatus());
+        metrics.put("restored", getRestoredCount());
+        metrics.put("replayedChanges", getReplayedCount());
+        metrics.put("restoreMillis", getRestoreMillis());
+        metrics.put("lastSaveMillis", this.lastSaveMillis);
+        metrics.put("lastSaveEntries", getLastSaveCount());
+        metrics.put("lastSaveBytes", this.lastSaveBytes);
+        metrics.put("lastSaveDurationMillis", this.lastSaveDurationMillis);
+        metrics.put("saveFailures", getSaveFailureCount());
+        return metrics;
+    }
+
+}
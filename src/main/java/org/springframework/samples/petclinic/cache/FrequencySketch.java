@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+/**
+ * Approximate access frequency of the keys of a cache: a count-min sketch of 4-bit counters, 4 rows deep. Once the
+ * number of increments reaches ten times the cache capacity, every counter is halved, so that past popularity fades
+ * (TinyLFU aging). Not thread safe.
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = {0x97cb3127L, 0xc3a5c85cL, 0xb492b66fL, 0x9ae16a3bL};
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * 16 counters per long.
+     */
+    private final long[] table;
+
+    private final int counterMask;
+
+    private final int sampleSize;
+
+    private int increments;
+
+    FrequencySketch(int capacity) {
+        // 16 counters per entry: few collisions for the keys worth admitting
+        this.table = new long[Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1)];
+        this.counterMask = this.table.length * 16 - 1;
+        this.sampleSize = Math.max(capacity, 1) * 10;
+    }
+
+    /**
+     * @return estimated number of recent accesses to the key, at most 15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, count(indexOf(hash, row)));
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = frequency(key);
+        if (frequency == MAX_COUNT) {
+            return;
+        }
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = indexOf(hash, row);
+            // conservative update: only the smallest counters, which bound the estimate, are incremented
+            if (count(index) == frequency) {
+                this.table[index >>> 4] += 1L << ((index & 15) << 2);
+            }
+        }
+        if (++this.increments >= this.sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < this.table.length; i++) {
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        this.increments /= 2;
+    }
+
+    private int count(int index) {
+        return (int) ((this.table[index >>> 4] >>> ((index & 15) << 2)) & 0xfL);
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & this.counterMask;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+
+}
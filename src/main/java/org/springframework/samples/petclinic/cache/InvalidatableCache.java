@@ -0,0 +1,37 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.util.Set;
+
+/**
+ * In-process cache outside of the Spring {@link org.springframework.cache.CacheManager}, which the
+ * {@link CacheInvalidationPoller} invalidates when another node records a change for it.
+ */
+public interface InvalidatableCache {
+
+    /**
+     * @return names under which the changes making its entries stale are recorded in the {@link CacheChangeLog}
+     */
+    Set<String> getCacheNames();
+
+    /**
+     * @param cacheName one of the {@link #getCacheNames() names} of this cache
+     * @param key key as recorded in the change log, or {@link CacheChangeLog#ALL_KEYS} for every key of that name
+     */
+    void invalidate(String cacheName, String key);
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.nio.ByteBuffer;
+
+import org.springframework.samples.petclinic.codec.ModelCodec;
+
+/**
+ * Encodes owners, pets, visits and vets in the {@link ModelCodec} format; other values stay on-heap.
+ */
+public class ModelValueCodec implements ValueCodec {
+
+    @Override
+    public byte[] encode(Object value) {
+        return ModelCodec.encode(value);
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        return ModelCodec.decode(buffer);
+    }
+
+}
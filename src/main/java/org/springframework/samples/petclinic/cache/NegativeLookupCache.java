@@ -0,0 +1,341 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.OwnerSearchResults;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Remembers for a short while the owner and pet ids found missing, and the last name prefixes no owner matches, so
+ * that bad links and crawlers, and searches refined from a typo, do not reach the database again. A prefix matching no
+ * owner also covers every longer search starting with it.
+ * <p/>
+ * Missing owners and pets are those for which the repositories throw an {@link ObjectRetrievalFailureException}.
+ * Saving an owner forgets its id and the prefixes of its last name, ignoring case;
+ * saving a pet forgets its id. Entries recorded from a read that ran concurrently with a save are dropped, as they
+ * may predate it. The saves of the other nodes are applied by the {@link CacheInvalidationPoller}, from the "owners",
+ * "pets" and {@link OwnerSearchCache#NAME} changes; the time to live bounds the staleness of the changes made
+ * outside of the application.
+ * <p/>
+ * Published on JMX (petclinic:type=NegativeLookupCache) and in the /metrics endpoint.
+ */
+@Aspect
+@ManagedResource("petclinic:type=NegativeLookupCache")
+public class NegativeLookupCache implements Ordered, MetricsSource, InvalidatableCache {
+
+    private static final String OWNERS_CHANGES = "owners";
+
+    private static final String PETS_CHANGES = "pets";
+
+    private static final String OWNER = "owner:";
+
+    private static final String PET = "pet:";
+
+    private static final String SEARCH = "search:";
+
+    private final LongSupplier clock;
+
+    private int maxEntries = 10000;
+
+    private long timeToLiveNanos = TimeUnit.SECONDS.toNanos(30);
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder recorded = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Incremented by every save, under the lock of the entries.
+     */
+    private long generation;
+
+    private final LinkedHashMap<String, Long> expirations = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > NegativeLookupCache.this.maxEntries;
+        }
+    };
+
+    public NegativeLookupCache() {
+        this(System::nanoTime);
+    }
+
+    NegativeLookupCache(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param timeToLiveSeconds time during which a missing id or prefix is not looked up again
+     */
+    public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+        this.timeToLiveNanos = TimeUnit.SECONDS.toNanos(timeToLiveSeconds);
+    }
+
+    @Override
+    public int getOrder() {
+        // inside the AccessTracker (0), outside of the LastGoodReadsAspect (2), the ReadCoalescingAspect (3) and the
+        // caching and transaction interceptors: a known miss takes no connection
+        return 1;
+    }
+
+    @Around("execution(* org.springframework.samples.petclinic.service.ClinicService.findOwnerById(int)) && args(id)")
+    public Object findOwner(ProceedingJoinPoint joinPoint, int id) throws Throwable {
+        return find(joinPoint, Owner.class, OWNER + id, id);
+    }
+
+    @Around("execution(* org.springframework.samples.petclinic.service.ClinicService.findPetById(int)) && args(id)")
+    public Object findPet(ProceedingJoinPoint joinPoint, int id) throws Throwable {
+        return find(joinPoint, Pet.class, PET + id, id);
+    }
+
+    private Object find(ProceedingJoinPoint joinPoint, Class<?> type, String key, int id) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // may look up what the transaction itself saved
+            return joinPoint.proceed();
+        }
+        long readGeneration = startRead(key);
+        if (readGeneration < 0) {
+            throw new ObjectRetrievalFailureException(type, id);
+        }
+        try {
+            return joinPoint.proceed();
+        } catch (ObjectRetrievalFailureException ex) {
+            record(key, readGeneration);
+            throw ex;
+        }
+    }
+
+    @Around("execution(* org.springframework.samples.petclinic.service.ClinicService.findOwnerByLastName(String, int, int))"
+        + " && args(lastName, page, pageSize)")
+    public Object findOwners(ProceedingJoinPoint joinPoint, String lastName, int page, int pageSize) throws Throwable {
+        String prefix = lastName == null ? "" : lastName;
+        if (prefix.indexOf('\\') >= 0 || TransactionSynchronizationManager.isActualTransactionActive()) {
+            // an escape character changes the meaning of the following characters of the pattern
+            return joinPoint.proceed();
+        }
+        long readGeneration = startSearch(prefix);
+        if (readGeneration < 0) {
+            return new OwnerSearchResults(Collections.emptyList(), 0, 1, pageSize, prefix);
+        }
+        OwnerSearchResults results = (OwnerSearchResults) joinPoint.proceed();
+        if (results != null && results.getTotalCount() == 0) {
+            record(SEARCH + prefix, readGeneration);
+        }
+        return results;
+    }
+
+    @AfterReturning("execution(* org.springframework.samples.petclinic.service.ClinicService.saveOwner(..)) && args(owner)")
+    public void ownerSaved(Owner owner) {
+        synchronized (this.expirations) {
+            this.generation++;
+            remove(OWNER + owner.getId());
+            removeSearches(owner.getLastName() == null ? "" : owner.getLastName());
+        }
+    }
+
+    @AfterReturning("execution(* org.springframework.samples.petclinic.service.ClinicService.savePet(..)) && args(pet)")
+    public void petSaved(Pet pet) {
+        synchronized (this.expirations) {
+            this.generation++;
+            remove(PET + pet.getId());
+        }
+    }
+
+    @Override
+    public Set<String> getCacheNames() {
+        return new HashSet<>(Arrays.asList(OWNERS_CHANGES, PETS_CHANGES, OwnerSearchCache.NAME));
+    }
+
+    @Override
+    public void invalidate(String cacheName, String key) {
+        String prefix = OWNERS_CHANGES.equals(cacheName) ? OWNER : PETS_CHANGES.equals(cacheName) ? PET : SEARCH;
+        boolean allKeys = CacheChangeLog.ALL_KEYS.equals(key);
+        synchronized (this.expirations) {
+            this.generation++;
+            if (allKeys) {
+                removeStartingWith(prefix);
+            } else if (prefix.equals(SEARCH)) {
+                removeSearches(key);
+            } else {
+                remove(prefix + key);
+            }
+        }
+    }
+
+    /**
+     * @return the current generation, or -1 when the key is known to be missing
+     */
+    private long startRead(String key) {
+        long now = this.clock.getAsLong();
+        synchronized (this.expirations) {
+            if (isMissing(key, now)) {
+                this.hits.increment();
+                return -1;
+            }
+            return this.generation;
+        }
+    }
+
+    /**
+     * @return the current generation, or -1 when the prefix, or one of its own prefixes, is known to match no owner
+     */
+    private long startSearch(String prefix) {
+        long now = this.clock.getAsLong();
+        synchronized (this.expirations) {
+            if (!this.expirations.isEmpty()) {
+                for (int length = 0; length <= prefix.length(); length++) {
+                    if (isMissing(SEARCH + prefix.substring(0, length), now)) {
+                        this.hits.increment();
+                        return -1;
+                    }
+                }
+            }
+            return this.generation;
+        }
+    }
+
+    // guarded by expirations
+    private boolean isMissing(String key, long now) {
+        Long expiresAt = this.expirations.get(key);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (now - expiresAt < 0) {
+            return true;
+        }
+        this.expirations.remove(key);
+        return false;
+    }
+
+    private void record(String key, long readGeneration) {
+        long expiresAt = this.clock.getAsLong() + this.timeToLiveNanos;
+        synchronized (this.expirations) {
+            // unless saved while reading: the miss may predate the save
+            if (this.generation == readGeneration) {
+                this.expirations.put(key, expiresAt);
+                this.recorded.increment();
+            }
+        }
+    }
+
+    // guarded by expirations
+    private void remove(String key) {
+        if (this.expirations.remove(key) != null) {
+            this.evictions.increment();
+        }
+    }
+
+    /**
+     * Remove the prefixes of the given last name, ignoring case.
+     */
+    // guarded by expirations
+    private void removeSearches(String lastName) {
+        String name = lastName.toLowerCase(Locale.ROOT);
+        for (Iterator<String> keys = this.expirations.keySet().iterator(); keys.hasNext(); ) {
+            String key = keys.next();
+            if (key.startsWith(SEARCH) && name.startsWith(key.substring(SEARCH.length()).toLowerCase(Locale.ROOT))) {
+                keys.remove();
+                this.evictions.increment();
+            }
+        }
+    }
+
+    // guarded by expirations
+    private void removeStartingWith(String prefix) {
+        for (Iterator<String> keys = this.expirations.keySet().iterator(); keys.hasNext(); ) {
+            if (keys.next().startsWith(prefix)) {
+                keys.remove();
+                this.evictions.increment();
+            }
+        }
+    }
+
+    @ManagedOperation
+    public void clear() {
+        synchronized (this.expirations) {
+            this.generation++;
+            this.evictions.add(this.expirations.size());
+            this.expirations.clear();
+        }
+    }
+
+    @ManagedAttribute
+    public int getSize() {
+        synchronized (this.expirations) {
+            return this.expirations.size();
+        }
+    }
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    @ManagedAttribute
+    public long getRecordedCount() {
+        return this.recorded.sum();
+    }
+
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "negativeLookupCache";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", getSize());
+        metrics.put("hits", getHitCount());
+        metrics.put("recorded", getRecordedCount());
+        metrics.put("evictions", getEvictionCount());
+        return metrics;
+    }
+
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Byte store outside of the Java heap, bounded in bytes: a ring of fixed size segments, each a direct
+ * {@link ByteBuffer} allocated on first use. Values are appended to the current segment; when the ring wraps around,
+ * the oldest segment is recycled and the entries still in it are evicted (FIFO by segment). Overwritten and removed
+ * values leave dead bytes in their segment until it is recycled, which is reported as fragmentation.
+ * <p/>
+ * Only the index (key to segment and offset) lives on the heap. The direct memory in use is bounded by
+ * <code>-XX:MaxDirectMemorySize</code>, which defaults to the maximum heap size.
+ */
+@ManagedResource
+public class OffHeapStore {
+
+    private final int segmentBytes;
+
+    private final long expireAfterWriteNanos;
+
+    private final LongSupplier clock;
+
+    private final Segment[] segments;
+
+    private final Map<Object, Location> index = new HashMap<>();
+
+    private int current;
+
+    private long liveBytes;
+
+    private long deadBytes;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param maximumBytes          capacity, rounded up to a whole number of segments
+     * @param segmentBytes          size of a segment, which bounds the size of a value
+     * @param expireAfterWriteNanos age from which a value is discarded
+     */
+    public OffHeapStore(long maximumBytes, int segmentBytes, long expireAfterWriteNanos) {
+        this(maximumBytes, segmentBytes, expireAfterWriteNanos, System::nanoTime);
+    }
+
+    OffHeapStore(long maximumBytes, int segmentBytes, long expireAfterWriteNanos, LongSupplier clock) {
+        this.segmentBytes = segmentBytes;
+        this.expireAfterWriteNanos = expireAfterWriteNanos;
+        this.clock = clock;
+        int count = (int) Math.max((maximumBytes + segmentBytes - 1) / segmentBytes, 1);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * @return whether the value was stored; values larger than a segment are not
+     */
+    public synchronized boolean put(Object key, byte[] value) {
+        return put(key, value, this.clock.getAsLong());
+    }
+
+    /**
+     * @param writtenAt time of the write of the value, from which it expires
+     */
+    public synchronized boolean put(Object key, byte[] value, long writtenAt) {
+        if (value.length > this.segmentBytes) {
+            remove(key);
+            this.rejections.increment();
+            return false;
+        }
+        Segment segment = this.segments[this.current];
+        if (segment.used + value.length > this.segmentBytes) {
+            this.current = (this.current + 1) % this.segments.length;
+            segment = this.segments[this.current];
+            recycle(segment);
+        }
+        if (segment.buffer == null) {
+            segment.buffer = ByteBuffer.allocateDirect(this.segmentBytes);
+        }
+        int offset = segment.used;
+        ByteBuffer target = segment.buffer.duplicate();
+        target.position(offset);
+        target.put(value);
+        segment.used += value.length;
+        segment.keys.add(key);
+
+        Location previous = this.index.put(key, new Location(segment, offset, value.length, writtenAt));
+        if (previous != null) {
+            release(previous);
+        }
+        this.liveBytes += value.length;
+        return true;
+    }
+
+    /**
+     * @return a heap copy of the value, positioned at its start, or <code>null</code> if absent or expired
+     */
+    public synchronized StoredValue get(Object key) {
+        Location location = this.index.get(key);
+        if (location != null && this.clock.getAsLong() - location.writtenAt >= this.expireAfterWriteNanos) {
+            this.index.remove(key);
+            release(location);
+            this.expirations.increment();
+            location = null;
+        }
+        if (location == null) {
+            this.misses.increment();
+            return null;
+        }
+        this.hits.increment();
+        byte[] value = new byte[location.length];
+        ByteBuffer source = location.segment.buffer.duplicate();
+        source.position(location.offset);
+        source.get(value);
+        return new StoredValue(ByteBuffer.wrap(value), location.writtenAt);
+    }
+
+    public synchronized void remove(Object key) {
+        Location location = this.index.remove(key);
+        if (location != null) {
+            release(location);
+        }
+    }
+
+    @ManagedOperation
+    public synchronized void clear() {
+        this.index.clear();
+        for (Segment segment : this.segments) {
+            segment.used = 0;
+            segment.keys.clear();
+        }
+        this.current = 0;
+        this.liveBytes = 0;
+        this.deadBytes = 0;
+    }
+
+    /**
+     * Evict the entries still stored in the segment, and make it empty.
+     */
+    private void recycle(Segment segment) {
+        for (Object key : segment.keys) {
+            Location location = this.index.get(key);
+            if (location != null && location.segment == segment) {
+                this.index.remove(key);
+                this.liveBytes -= location.length;
+                this.evictions.increment();
+            }
+        }
+        this.deadBytes -= segment.deadBytes;
+        segment.deadBytes = 0;
+        segment.used = 0;
+        segment.keys.clear();
+    }
+
+    private void release(Location location) {
+        this.liveBytes -= location.length;
+        this.deadBytes += location.length;
+        location.segment.deadBytes += location.length;
+    }
+
+    @ManagedAttribute
+    public long getMaximumBytes() {
+        return (long) this.segments.length * this.segmentBytes;
+    }
+
+    /**
+     * @return direct memory allocated so far
+     */
+    @ManagedAttribute
+    public synchronized long getAllocatedBytes() {
+        long allocated = 0;
+        for (Segment segment : this.segments) {
+            if (segment.buffer != null) {
+                allocated += this.segmentBytes;
+            }
+        }
+        return allocated;
+    }
+
+    @ManagedAttribute
+    public synchronized long getLiveBytes() {
+        return this.liveBytes;
+    }
+
+    /**
+     * @return share of the capacity used by live values
+     */
+    @ManagedAttribute
+    public synchronized double getOccupancy() {
+        return (double) this.liveBytes / getMaximumBytes();
+    }
+
+    /**
+     * @return share of the written bytes that belong to overwritten or removed values
+     */
+    @ManagedAttribute
+    public synchronized double getFragmentation() {
+        long written = this.liveBytes + this.deadBytes;
+        return written == 0 ? 0 : (double) this.deadBytes / written;
+    }
+
+    @ManagedAttribute
+    public synchronized int getSize() {
+        return this.index.size();
+    }
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+    @ManagedAttribute
+    public long getExpirationCount() {
+        return this.expirations.sum();
+    }
+
+    /**
+     * @return number of values too large to be stored
+     */
+    @ManagedAttribute
+    public long getRejectionCount() {
+        return this.rejections.sum();
+    }
+
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("entries", getSize());
+        statistics.put("maximumBytes", getMaximumBytes());
+        statistics.put("allocatedBytes", getAllocatedBytes());
+        statistics.put("liveBytes", getLiveBytes());
+        statistics.put("occupancy", getOccupancy());
+        statistics.put("fragmentation", getFragmentation());
+        statistics.put("hits", getHitCount());
+        statistics.put("misses", getMissCount());
+        statistics.put("evictions", getEvictionCount());
+        statistics.put("expirations", getExpirationCount());
+        statistics.put("rejections", getRejectionCount());
+        return statistics;
+    }
+
+    /**
+     * A value read from the store.
+     */
+    public static final class StoredValue {
+
+        private final ByteBuffer buffer;
+
+        private final long writtenAt;
+
+        StoredValue(ByteBuffer buffer, long writtenAt) {
+            this.buffer = buffer;
+            this.writtenAt = writtenAt;
+        }
+
+        public ByteBuffer getBuffer() {
+            return this.buffer;
+        }
+
+        public long getWrittenAt() {
+            return this.writtenAt;
+        }
+    }
+
+    private static final class Segment {
+
+        ByteBuffer buffer;
+
+        int used;
+
+        int deadBytes;
+
+        /**
+         * Keys written to this segment, some of which may have been overwritten elsewhere since.
+         */
+        final List<Object> keys = new ArrayList<>();
+    }
+
+    private static final class Location {
+
+        final Segment segment;
+
+        final int offset;
+
+        final int length;
+
+        final long writtenAt;
+
+        Location(Segment segment, int offset, int length, long writtenAt) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.writtenAt = writtenAt;
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceUtil;
+
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.OwnerSearchResults;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Visit;
+
+/**
+ * Deep copies cached {@link Owner owners} with their pets and visits, on write and on read. Controllers modify the
+ * owner they get (<code>owner.addPet(pet)</code> in the pet forms), so handing out the cached instance would corrupt
+ * the cache for every following request. The copies are plain objects, detached from any persistence context. Owner
+ * search results are copied owner by owner; pets are copied along with their owner; other values are returned as is.
+ * Pets and visits not loaded (as for the owners of a search page, or the owner of a pet) are left out of the copy,
+ * which may be made outside of the persistence context.
+ */
+public class OwnerCopyStrategy implements ValueCopier {
+
+    private static final PersistenceUtil persistenceUtil = Persistence.getPersistenceUtil();
+
+    @Override
+    public Object copy(Object value) {
+        if (value instanceof Owner) {
+            return copy((Owner) value);
+        }
+        if (value instanceof Pet) {
+            return copy((Pet) value);
+        }
+        return value instanceof OwnerSearchResults ? copy((OwnerSearchResults) value) : value;
+    }
+
+    public static OwnerSearchResults copy(OwnerSearchResults results) {
+        List<Owner> owners = new ArrayList<>(results.getOwners().size());
+        for (Owner owner : results.getOwners()) {
+            owners.add(copy(owner));
+        }
+        return new OwnerSearchResults(owners, results.getTotalCount(), results.getPage(), results.getPageSize(),
+            results.getLastName());
+    }
+
+    public static Owner copy(Owner owner) {
+        Owner copy = copyDetails(owner);
+        for (Pet pet : owner.getPets()) {
+            copy.addPet(copyDetails(pet));
+        }
+        return copy;
+    }
+
+    public static Pet copy(Pet pet) {
+        Pet copy = copyDetails(pet);
+        Owner owner = pet.getOwner();
+        if (owner == null) {
+            return copy;
+        }
+        Owner ownerCopy = copyDetails(owner);
+        if (persistenceUtil.isLoaded(owner, "pets")) {
+            for (Pet otherPet : owner.getPets()) {
+                if (otherPet != pet) {
+                    ownerCopy.addPet(copyDetails(otherPet));
+                }
+            }
+        }
+        ownerCopy.addPet(copy);
+        return copy;
+    }
+
+    private static Owner copyDetails(Owner owner) {
+        Owner copy = new Owner();
+        copy.setId(owner.getId());
+        copy.setFirstName(owner.getFirstName());
+        copy.setLastName(owner.getLastName());
+        copy.setAddress(owner.getAddress());
+        copy.setCity(owner.getCity());
+        copy.setTelephone(owner.getTelephone());
+        return copy;
+    }
+
+    /**
+     * Copy the pet with its type and its loaded visits, without its owner.
+     */
+    private static Pet copyDetails(Pet pet) {
+        Pet copy = new Pet();
+        copy.setId(pet.getId());
+        copy.setName(pet.getName());
+        copy.setBirthDate(pet.getBirthDate());
+        if (pet.getType() != null) {
+            PetType type = new PetType();
+            type.setId(pet.getType().getId());
+            type.setName(pet.getType().getName());
+            copy.setType(type);
+        }
+        if (persistenceUtil.isLoaded(pet, "visits")) {
+            for (Visit visit : pet.getVisits()) {
+                Visit visitCopy = new Visit();
+                visitCopy.setId(visit.getId());
+                visitCopy.setDate(visit.getDate());
+                visitCopy.setDescription(visit.getDescription());
+                copy.addVisit(visitCopy);
+            }
+        }
+        return copy;
+    }
+
+}
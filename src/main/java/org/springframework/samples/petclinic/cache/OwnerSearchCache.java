@@ -0,0 +1,282 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+import org.springframework.samples.petclinic.model.OwnerSearchResults;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Bounded LRU cache of owner search result pages, keyed by last name prefix, page and page size. Search traffic is
+ * skewed toward a few prefixes and the empty "list all" query, which otherwise re-run a count and a page query.
+ * <p/>
+ * Invalidation is targeted: saving an owner evicts the pages of the prefixes matching its former and new last names
+ * only, ignoring case so that it holds whatever the database collation. Evictions are repeated when the surrounding
+ * transaction completes, so that pages loaded meanwhile from uncommitted or outdated data are discarded too. Owners
+ * are deep copied in and out of the cache, as for the "owners" cache.
+ */
+@ManagedResource("petclinic:type=OwnerSearchCache")
+public class OwnerSearchCache implements MetricsSource, InvalidatableCache {
+
+    /**
+     * Name of this cache in the {@link CacheChangeLog}, keyed by last name.
+     */
+    public static final String NAME = "ownerSearch";
+
+    private final LongSupplier clock;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Incremented by every invalidation, under the lock of the entries.
+     */
+    private long generation;
+
+    private int maxEntries = 1000;
+
+    private long timeToLiveNanos = TimeUnit.MINUTES.toNanos(10);
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > OwnerSearchCache.this.maxEntries;
+        }
+    };
+
+    public OwnerSearchCache() {
+        this(System::nanoTime);
+    }
+
+    OwnerSearchCache(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param timeToLiveSeconds bounds the staleness of changes made outside of the application
+     */
+    public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+        this.timeToLiveNanos = TimeUnit.SECONDS.toNanos(timeToLiveSeconds);
+    }
+
+    /**
+     * @return the cached page, or the page returned by the loader, which is then cached
+     */
+    public OwnerSearchResults get(String lastName, int page, int pageSize, Supplier<OwnerSearchResults> loader) {
+        Key key = new Key(lastName, page, pageSize);
+        Entry entry;
+        long loadGeneration;
+        synchronized (this.entries) {
+            entry = this.entries.get(key);
+            loadGeneration = this.generation;
+        }
+        if (entry != null && this.clock.getAsLong() - entry.loadedAt < this.timeToLiveNanos) {
+            this.hits.increment();
+            return OwnerCopyStrategy.copy(entry.results);
+        }
+        this.misses.increment();
+        OwnerSearchResults results = loader.get();
+        Entry loaded = new Entry(OwnerCopyStrategy.copy(results), this.clock.getAsLong());
+        synchronized (this.entries) {
+            // unless invalidated while loading: the page may predate the change
+            if (this.generation == loadGeneration) {
+                this.entries.put(key, loaded);
+            }
+        }
+        return results;
+    }
+
+    public boolean isEmpty() {
+        synchronized (this.entries) {
+            return this.entries.isEmpty();
+        }
+    }
+
+    /**
+     * Evict the pages of every prefix of the given last name, now and when the current transaction completes.
+     */
+    public void evictMatching(String lastName) {
+        String name = normalize(lastName);
+        evictMatchingNow(name);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictMatchingNow(name);
+                }
+            });
+        }
+    }
+
+    private void evictMatchingNow(String name) {
+        synchronized (this.entries) {
+            this.generation++;
+            for (Iterator<Key> keys = this.entries.keySet().iterator(); keys.hasNext(); ) {
+                if (name.startsWith(keys.next().normalizedPrefix)) {
+                    keys.remove();
+                    this.evictions.increment();
+                }
+            }
+        }
+    }
+
+    @Override
+    public Set<String> getCacheNames() {
+        return Collections.singleton(NAME);
+    }
+
+    @Override
+    public void invalidate(String cacheName, String key) {
+        invalidate(key);
+    }
+
+    /**
+     * @param key last name, or {@link CacheChangeLog#ALL_KEYS} to empty the whole cache
+     */
+    public void invalidate(String key) {
+        if (CacheChangeLog.ALL_KEYS.equals(key)) {
+            clear();
+        } else {
+            evictMatching(key);
+        }
+    }
+
+    @ManagedOperation
+    public void clear() {
+        synchronized (this.entries) {
+            this.generation++;
+            this.evictions.add(this.entries.size());
+            this.entries.clear();
+        }
+    }
+
+    @ManagedAttribute
+    public int getSize() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    @ManagedAttribute
+    public double getHitRate() {
+        long hitCount = getHitCount();
+        long total = hitCount + getMissCount();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "ownerSearchCache";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", getSize());
+        metrics.put("hits", getHitCount());
+        metrics.put("misses", getMissCount());
+        metrics.put("hitRate", getHitRate());
+        metrics.put("evictions", getEvictionCount());
+        return metrics;
+    }
+
+    private static String normalize(String lastName) {
+        return lastName == null ? "" : lastName.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Key {
+
+        final String prefix;
+
+        final String normalizedPrefix;
+
+        final int page;
+
+        final int pageSize;
+
+        Key(String prefix, int page, int pageSize) {
+            this.prefix = prefix == null ? "" : prefix;
+            this.normalizedPrefix = normalize(prefix);
+            this.page = page;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return this.prefix.equals(key.prefix) && this.page == key.page && this.pageSize == key.pageSize;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.prefix, this.page, this.pageSize);
+        }
+    }
+
+    private static final class Entry {
+
+        final OwnerSearchResults results;
+
+        final long loadedAt;
+
+        Entry(OwnerSearchResults results, long loadedAt) {
+            this.results = results;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+}
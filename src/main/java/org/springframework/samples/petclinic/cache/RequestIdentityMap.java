@@ -0,0 +1,139 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.After;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Loads each owner and pet at most once per HTTP request: the model attribute methods and the handlers of a request
+ * looking up the same owner or pet get copies of the same entity, as loaded. Each lookup gets its own copy, so that
+ * the changes of one caller, such as the new visit the visit form adds to its pet, do not show up in the others. The
+ * map is kept in the attributes of the request, whatever the persistence profile, and emptied by every save. Calls
+ * outside of a request (warm-ups, background tasks), or within a transaction, are not affected.
+ * <p/>
+ * Published in the /metrics endpoint.
+ */
+@Aspect
+public class RequestIdentityMap implements Ordered, MetricsSource {
+
+    private static final String ATTRIBUTE = RequestIdentityMap.class.getName();
+
+    private final ValueCopier copier;
+
+    private final LongAdder lookups = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+
+    public RequestIdentityMap(ValueCopier copier) {
+        this.copier = copier;
+    }
+
+    @Override
+    public int getOrder() {
+        // the outermost of the aspects of the service (see tools-config.xml): a repeated lookup is a single access
+        return -1;
+    }
+
+    @Around("execution(* org.springframework.samples.petclinic.service.ClinicService.findOwnerById(int))"
+        + " || execution(* org.springframework.samples.petclinic.service.ClinicService.findPetById(int))")
+    public Object find(ProceedingJoinPoint joinPoint) throws Throwable {
+        Map<List<Object>, Object> entities = entities(true);
+        if (entities == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        this.lookups.increment();
+        List<Object> key = Arrays.asList(joinPoint.getSignature().getName(), joinPoint.getArgs()[0]);
+        Object entity = entities.get(key);
+        if (entity != null) {
+            this.hits.increment();
+            return this.copier.copy(entity);
+        }
+        entity = joinPoint.proceed();
+        if (entity == null) {
+            return null;
+        }
+        entities.put(key, entity);
+        return this.copier.copy(entity);
+    }
+
+    /**
+     * A save may change any of the owners and pets of the request, or their pets and visits; so may a failed save,
+     * after which the entities of the request hold changes that were not written.
+     */
+    @After("execution(* org.springframework.samples.petclinic.service.ClinicService.save*(..))")
+    public void saved() {
+        Map<List<Object>, Object> entities = entities(false);
+        if (entities != null) {
+            entities.clear();
+        }
+    }
+
+    /**
+     * @return the map of the current request, or <code>null</code> outside of a request
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<List<Object>, Object> entities(boolean create) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Map<List<Object>, Object> entities =
+            (Map<List<Object>, Object>) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (entities == null && create) {
+            // a request is processed by a single thread
+            entities = new HashMap<>();
+            attributes.setAttribute(ATTRIBUTE, entities, RequestAttributes.SCOPE_REQUEST);
+        }
+        return entities;
+    }
+
+    public long getLookupCount() {
+        return this.lookups.sum();
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "requestIdentityMap";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("lookups", getLookupCount());
+        metrics.put("hits", getHitCount());
+        return metrics;
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.util.MethodInvoker;
+
+/**
+ * Reloads an entry by calling the cached method again on its bean, looked up by name: the call goes through the
+ * proxy, and therefore through the transaction and every other interceptor of the method. The cache being refreshed
+ * lets the call through to the method for the key it reloads (see {@link TinyLfuCache}).
+ * <p/>
+ * The key is the single argument of the method, or {@link SimpleKey#EMPTY} for a method without arguments.
+ */
+public class ServiceMethodCacheLoader implements CacheLoader, BeanFactoryAware {
+
+    private BeanFactory beanFactory;
+
+    private String targetBeanName;
+
+    private String methodName;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    public void setTargetBeanName(String targetBeanName) {
+        this.targetBeanName = targetBeanName;
+    }
+
+    public void setMethodName(String methodName) {
+        this.methodName = methodName;
+    }
+
+    @Override
+    public Object load(Object key) throws Exception {
+        MethodInvoker invoker = new MethodInvoker();
+        // looked up on each call: the bean is proxied with the cache manager of this loader
+        invoker.setTargetObject(this.beanFactory.getBean(this.targetBeanName));
+        invoker.setTargetMethod(this.methodName);
+        invoker.setArguments(SimpleKey.EMPTY.equals(key) ? new Object[0] : new Object[] {key});
+        invoker.prepare();
+        try {
+            return invoker.invoke();
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getTargetException();
+            throw cause instanceof Exception ? (Exception) cause : ex;
+        }
+    }
+
+}
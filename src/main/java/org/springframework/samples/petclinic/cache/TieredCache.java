@@ -0,0 +1,144 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.util.concurrent.Callable;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+/**
+ * Two level cache: a bounded on-heap {@link TinyLfuCache} in front of a larger {@link OffHeapStore} of encoded
+ * values. Writes go to both levels; a lookup missing the first level decodes the value from the second one and
+ * promotes it. The working set can then exceed what the heap could hold as object graphs, at the cost of a decoding
+ * on first level misses.
+ */
+public class TieredCache implements Cache {
+
+    private static final Log logger = LogFactory.getLog(TieredCache.class);
+
+    private final TinyLfuCache heap;
+
+    private final OffHeapStore offHeap;
+
+    private final ValueCodec codec;
+
+    public TieredCache(TinyLfuCache heap, OffHeapStore offHeap, ValueCodec codec) {
+        this.heap = heap;
+        this.offHeap = offHeap;
+        this.codec = codec;
+    }
+
+    @Override
+    public String getName() {
+        return this.heap.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this.offHeap;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper cached = this.heap.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        OffHeapStore.StoredValue encoded = this.offHeap.get(key);
+        if (encoded == null) {
+            return null;
+        }
+        Object value;
+        try {
+            value = this.codec.decode(encoded.getBuffer());
+        } catch (RuntimeException ex) {
+            logger.warn("Cannot decode entry " + key + " of cache " + getName() + ", discarding it", ex);
+            this.offHeap.remove(key);
+            return null;
+        }
+        // keeps its age: expires when it would have without the round trip
+        this.heap.put(key, value, encoded.getWrittenAt());
+        // the decoded value is a fresh instance, as good as a copy
+        return new SimpleValueWrapper(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        long generation = this.heap.generation(key);
+        T value = this.heap.get(key, valueLoader);
+        putOffHeap(key, value, generation);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        long generation = this.heap.putIfCurrent(key, value);
+        if (generation >= 0) {
+            putOffHeap(key, value, generation);
+        }
+    }
+
+    /**
+     * Write the value off-heap unless the key has been evicted since the given generation of the heap cache.
+     */
+    private void putOffHeap(Object key, Object value, long generation) {
+        if (this.heap.generation(key) != generation) {
+            return;
+        }
+        byte[] encoded = value == null ? null : this.codec.encode(value);
+        if (encoded != null) {
+            this.offHeap.put(key, encoded);
+        } else {
+            this.offHeap.remove(key);
+        }
+        // an eviction between the check and the write has removed the key off-heap before the write
+        if (this.heap.generation(key) != generation) {
+            this.offHeap.remove(key);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        this.heap.evict(key);
+        this.offHeap.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        this.heap.clear();
+        this.offHeap.clear();
+    }
+
+}
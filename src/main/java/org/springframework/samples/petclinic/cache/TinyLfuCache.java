@@ -0,0 +1,736 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Bounded cache with a W-TinyLFU eviction policy. New entries go through a small LRU window (1% of the capacity); the
+ * entries leaving the window are only admitted into the main space if they have been accessed more often than the
+ * entry they would evict, as estimated by a {@link FrequencySketch} of recent accesses, hits and misses alike. The main
+ * space is a segmented LRU: entries hit again while on probation move to a protected segment (80% of the space). A scan
+ * of one-off keys therefore only churns the window, instead of flushing the popular entries as with a plain LRU.
+ * <p/>
+ * Large caches are split by key hash into up to 16 independent stripes, each with its own share of the capacity, its
+ * own sketch and its own lock, so that lookups of different keys seldom wait for each other; a stripe holds at least
+ * 256 entries.
+ * <p/>
+ * Entries expire after their region's time to live, if any. Past the region's refresh interval, an entry is returned
+ * as is and reloaded in the background, once, by the region's {@link CacheLoader}. The loader typically calls the
+ * cached method again through its proxy (see {@link ServiceMethodCacheLoader}): the cache then misses the key being
+ * reloaded on the refresh thread, so that the call reaches the method. Loads are single flight: concurrent misses on
+ * an absent key wait for the same load. Values are copied in and out with the region's {@link ValueCopier}, if any.
+ * <p/>
+ * A value read from the database after a miss is not stored if its key was evicted meanwhile, e.g. by a save or by the
+ * {@link CacheInvalidationPoller}: it may predate the change. Each stripe counts its evictions; a miss remembers the
+ * count, for the following put of the same key from the same thread, and the put is dropped if the count has changed.
+ */
+@ManagedResource
+public class TinyLfuCache extends AbstractValueAdaptingCache {
+
+    private static final Log logger = LogFactory.getLog(TinyLfuCache.class);
+
+    private final String name;
+
+    private static final int MAX_STRIPES = 16;
+
+    private static final int MIN_STRIPE_SIZE = 256;
+
+    /**
+     * Misses not followed by a put, e.g. as the method threw, are forgotten past this number.
+     */
+    private static final int MAX_PENDING_MISSES = 64;
+
+    private static final long NO_GENERATION = -1;
+
+    private final int maximumSize;
+
+    private final long expireAfterWriteNanos;
+
+    private final long refreshAfterNanos;
+
+    private final ValueCopier copier;
+
+    private final CacheLoader refreshLoader;
+
+    /**
+     * The key reloaded by the current refresh thread, if any.
+     */
+    private final ThreadLocal<Object> refreshingKey = new ThreadLocal<>();
+
+    /**
+     * The generation of the stripe of each key missed by the current thread, until the key is put.
+     */
+    private final ThreadLocal<Map<Object, Long>> pendingMisses = ThreadLocal.withInitial(HashMap::new);
+
+    private final Executor refreshExecutor;
+
+    private final LongSupplier clock;
+
+    private final Stripe[] stripes;
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final LongAdder loadSuccesses = new LongAdder();
+
+    private final LongAdder loadFailures = new LongAdder();
+
+    private final LongAdder loadNanos = new LongAdder();
+
+    private final LongAdder refreshes = new LongAdder();
+
+    private final LongAdder refreshFailures = new LongAdder();
+
+    private final LongAdder stalePuts = new LongAdder();
+
+    public TinyLfuCache(CacheRegion region, Executor refreshExecutor) {
+        this(region, refreshExecutor, System::nanoTime);
+    }
+
+    TinyLfuCache(CacheRegion region, Executor refreshExecutor, LongSupplier clock) {
+        super(true);
+        this.name = region.getName();
+        this.maximumSize = Math.max(region.getMaximumSize(), 1);
+        this.expireAfterWriteNanos = region.getExpireAfterWriteNanos();
+        this.refreshAfterNanos = region.getRefreshAfterNanos();
+        this.copier = region.getCopier();
+        this.refreshLoader = region.getRefreshLoader();
+        this.refreshExecutor = refreshExecutor;
+        this.clock = clock;
+        int count = 1;
+        while (count < MAX_STRIPES && this.maximumSize / (count * 2) >= MIN_STRIPE_SIZE) {
+            count *= 2;
+        }
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe(this.maximumSize / count + (i < this.maximumSize % count ? 1 : 0));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this.stripes;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        if (isRefreshing(key)) {
+            return null;
+        }
+        Node node = find(key);
+        if (node == null) {
+            this.misses.increment();
+            Map<Object, Long> pending = this.pendingMisses.get();
+            if (pending.size() >= MAX_PENDING_MISSES) {
+                pending.clear();
+            }
+            pending.put(key, stripeFor(key).generation);
+            return null;
+        }
+        this.hits.increment();
+        refreshIfStale(key, node);
+        return copy(node.storedValue);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        if (isRefreshing(key)) {
+            try {
+                return valueLoader.call();
+            } catch (Exception ex) {
+                throw new ValueRetrievalException(key, valueLoader, ex);
+            }
+        }
+        Node node = find(key);
+        if (node != null) {
+            this.hits.increment();
+            refreshIfStale(key, node);
+            return (T) fromStoreValue(copy(node.storedValue));
+        }
+        this.misses.increment();
+        this.pendingMisses.get().remove(key);
+        return (T) fromStoreValue(copy(load(key, valueLoader)));
+    }
+
+    private Stripe stripeFor(Object key) {
+        int hash = key.hashCode();
+        return this.stripes[(hash ^ (hash >>> 16)) & (this.stripes.length - 1)];
+    }
+
+    /**
+     * Record an access to the key, and return its live entry if any.
+     */
+    private Node find(Object key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.sketch.increment(key);
+            Node node = stripe.nodes.get(key);
+            if (node == null) {
+                return null;
+            }
+            if (this.clock.getAsLong() - node.writtenAt >= this.expireAfterWriteNanos) {
+                stripe.remove(node);
+                this.expirations.increment();
+                return null;
+            }
+            stripe.onAccess(node);
+            return node;
+        }
+    }
+
+    /**
+     * Load an absent entry from the calling thread, or wait for the load already started by another thread.
+     */
+    private Object load(Object key, Callable<?> valueLoader) {
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> running = this.loads.putIfAbsent(key, load);
+        if (running != null) {
+            return join(key, running);
+        }
+        try {
+            long generation = stripeFor(key).generation;
+            // a concurrent load may have completed between the lookup and the registration of ours
+            Object storedValue = peek(key);
+            if (storedValue == null) {
+                long start = System.nanoTime();
+                try {
+                    storedValue = toStoreValue(copy(valueLoader.call()));
+                } catch (Exception ex) {
+                    this.loadFailures.increment();
+                    throw ex;
+                } finally {
+                    this.loadNanos.add(System.nanoTime() - start);
+                }
+                this.loadSuccesses.increment();
+                store(key, storedValue, this.clock.getAsLong(), generation);
+            }
+            load.complete(storedValue);
+            return storedValue;
+        } catch (Exception ex) {
+            load.completeExceptionally(ex);
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        } finally {
+            this.loads.remove(key, load);
+        }
+    }
+
+    private Object peek(Object key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Node node = stripe.nodes.get(key);
+            return node != null && this.clock.getAsLong() - node.writtenAt < this.expireAfterWriteNanos
+                ? node.storedValue : null;
+        }
+    }
+
+    private Object join(Object key, CompletableFuture<Object> running) {
+        try {
+            return running.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, null, ex);
+        } catch (ExecutionException ex) {
+            throw new ValueRetrievalException(key, null, ex.getCause());
+        }
+    }
+
+    private boolean isRefreshing(Object key) {
+        return this.refreshLoader != null && key.equals(this.refreshingKey.get());
+    }
+
+    private void refreshIfStale(Object key, Node node) {
+        if (this.refreshLoader == null || this.clock.getAsLong() - node.writtenAt < this.refreshAfterNanos
+            || !node.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.refreshExecutor.execute(() -> refresh(key, node));
+        } catch (RejectedExecutionException ex) {
+            node.refreshing.set(false);
+        }
+    }
+
+    private void refresh(Object key, Node node) {
+        long writtenAt = node.writtenAt;
+        long start = System.nanoTime();
+        this.refreshingKey.set(key);
+        try {
+            Object storedValue = toStoreValue(copy(this.refreshLoader.load(key)));
+            this.loadNanos.add(System.nanoTime() - start);
+            Stripe stripe = stripeFor(key);
+            synchronized (stripe) {
+                // unless evicted or replaced meanwhile
+                if (stripe.nodes.get(key) == node && node.writtenAt == writtenAt) {
+                    node.storedValue = storedValue;
+                    node.writtenAt = this.clock.getAsLong();
+                }
+            }
+            this.refreshes.increment();
+        } catch (Exception ex) {
+            this.loadNanos.add(System.nanoTime() - start);
+            this.refreshFailures.increment();
+            logger.warn("Cannot refresh entry " + key + " of cache " + this.name + ", serving the stale value", ex);
+        } finally {
+            this.refreshingKey.remove();
+            node.refreshing.set(false);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        putIfCurrent(key, value);
+    }
+
+    /**
+     * Store a value, unless its key was evicted since the current thread missed it.
+     * @return the generation of the key the value was stored at, or -1 if it was dropped
+     */
+    long putIfCurrent(Object key, Object value) {
+        return store(key, toStoreValue(copy(value)), this.clock.getAsLong(), pendingGeneration(key));
+    }
+
+    /**
+     * Store a value written earlier, e.g. promoted from another tier, unless its key was evicted since the current
+     * thread missed it.
+     */
+    void put(Object key, Object value, long writtenAt) {
+        store(key, toStoreValue(copy(value)), writtenAt, pendingGeneration(key));
+    }
+
+    /**
+     * @return the number of evictions of the keys sharing the stripe of the given key, which changes whenever the key
+     * is evicted
+     */
+    long generation(Object key) {
+        return stripeFor(key).generation;
+    }
+
+    private long pendingGeneration(Object key) {
+        Long generation = this.pendingMisses.get().remove(key);
+        return generation != null ? generation : NO_GENERATION;
+    }
+
+    /**
+     * @return the current time, on the clock of the write times of the entries
+     */
+    long currentTime() {
+        return this.clock.getAsLong();
+    }
+
+    /**
+     * @param generation the generation of the stripe when the value was read, or -1 to store it regardless
+     * @return the generation the value was stored at, or -1 if the stripe has evicted keys since it was read
+     */
+    private long store(Object key, Object storedValue, long now, long generation) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            if (generation != NO_GENERATION && generation != stripe.generation) {
+                this.stalePuts.increment();
+                return NO_GENERATION;
+            }
+            stripe.store(key, storedValue, now);
+            return stripe.generation;
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.generation++;
+            Node node = stripe.nodes.get(key);
+            if (node != null) {
+                stripe.remove(node);
+            }
+        }
+    }
+
+    @Override
+    @ManagedOperation
+    public void clear() {
+        for (Stripe stripe : this.stripes) {
+            synchronized (stripe) {
+                stripe.generation++;
+                stripe.nodes.clear();
+                stripe.window.clear();
+                stripe.probation.clear();
+                stripe.protectedSegment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return at most <code>limit</code> live entries, hottest first: protected, then window, then probation entries,
+     * each most recently accessed first, taken in turn from each stripe. Values are the stored ones, not copies: they
+     * must not be modified.
+     */
+    List<Entry> entries(int limit) {
+        // per queue, then per stripe
+        List<List<List<Entry>>> queues = new ArrayList<>();
+        for (int queue = 0; queue < 3; queue++) {
+            queues.add(new ArrayList<>());
+        }
+        long now = this.clock.getAsLong();
+        for (Stripe stripe : this.stripes) {
+            synchronized (stripe) {
+                AccessQueue[] stripeQueues = {stripe.protectedSegment, stripe.window, stripe.probation};
+                for (int queue = 0; queue < 3; queue++) {
+                    List<Entry> entries = new ArrayList<>();
+                    for (Node node = stripeQueues[queue].last; node != null && entries.size() < limit;
+                         node = node.previous) {
+                        if (now - node.writtenAt < this.expireAfterWriteNanos) {
+                            entries.add(new Entry(node.key, fromStoreValue(node.storedValue), node.writtenAt));
+                        }
+                    }
+                    queues.get(queue).add(entries);
+                }
+            }
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (List<List<Entry>> queue : queues) {
+            for (int rank = 0; entries.size() < limit; rank++) {
+                boolean found = false;
+                for (List<Entry> stripeEntries : queue) {
+                    if (rank < stripeEntries.size() && entries.size() < limit) {
+                        entries.add(stripeEntries.get(rank));
+                        found = true;
+                    }
+                }
+                if (!found) {
+                    break;
+                }
+            }
+        }
+        return entries;
+    }
+
+    private Object copy(Object value) {
+        return this.copier == null || value == null ? value : this.copier.copy(value);
+    }
+
+    @ManagedAttribute
+    public int getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    @ManagedAttribute
+    public int getSize() {
+        int size = 0;
+        for (Stripe stripe : this.stripes) {
+            synchronized (stripe) {
+                size += stripe.nodes.size();
+            }
+        }
+        return size;
+    }
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    @ManagedAttribute
+    public double getHitRate() {
+        long hitCount = getHitCount();
+        long total = hitCount + getMissCount();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+    @ManagedAttribute
+    public long getExpirationCount() {
+        return this.expirations.sum();
+    }
+
+    /**
+     * @return number of values loaded by the cache itself, for <code>@Cacheable(sync = true)</code> methods; the other
+     * values are put after a miss
+     */
+    @ManagedAttribute
+    public long getLoadCount() {
+        return this.loadSuccesses.sum();
+    }
+
+    @ManagedAttribute
+    public long getLoadFailureCount() {
+        return this.loadFailures.sum();
+    }
+
+    @ManagedAttribute
+    public long getRefreshCount() {
+        return this.refreshes.sum();
+    }
+
+    @ManagedAttribute
+    public long getRefreshFailureCount() {
+        return this.refreshFailures.sum();
+    }
+
+    /**
+     * @return number of values read after a miss and dropped, as their key was evicted meanwhile
+     */
+    @ManagedAttribute
+    public long getStalePutCount() {
+        return this.stalePuts.sum();
+    }
+
+    /**
+     * @return average duration of the loads and refreshes, failed ones included
+     */
+    @ManagedAttribute
+    public double getAverageLoadMillis() {
+        long count = getLoadCount() + getLoadFailureCount() + getRefreshCount() + getRefreshFailureCount();
+        return count == 0 ? 0 : this.loadNanos.sum() / 1e6 / count;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("entries", getSize());
+        statistics.put("maximumSize", getMaximumSize());
+        statistics.put("hits", getHitCount());
+        statistics.put("misses", getMissCount());
+        statistics.put("hitRate", getHitRate());
+        statistics.put("evictions", getEvictionCount());
+        statistics.put("expirations", getExpirationCount());
+        statistics.put("loads", getLoadCount());
+        statistics.put("loadFailures", getLoadFailureCount());
+        statistics.put("refreshes", getRefreshCount());
+        statistics.put("refreshFailures", getRefreshFailureCount());
+        statistics.put("stalePuts", getStalePutCount());
+        statistics.put("averageLoadMillis", getAverageLoadMillis());
+        return statistics;
+    }
+
+    /**
+     * A cache entry, with the time it was written as given by the clock of its cache.
+     */
+    static final class Entry {
+
+        final Object key;
+
+        final Object value;
+
+        final long writtenAt;
+
+        Entry(Object key, Object value, long writtenAt) {
+            this.key = key;
+            this.value = value;
+            this.writtenAt = writtenAt;
+        }
+    }
+
+    /**
+     * A share of the cache, with its own W-TinyLFU policy. Guarded by itself.
+     */
+    private final class Stripe {
+
+        final int windowMaximum;
+
+        final int mainMaximum;
+
+        final int protectedMaximum;
+
+        final Map<Object, Node> nodes = new HashMap<>();
+
+        final FrequencySketch sketch;
+
+        final AccessQueue window = new AccessQueue();
+
+        final AccessQueue probation = new AccessQueue();
+
+        final AccessQueue protectedSegment = new AccessQueue();
+
+        /**
+         * Incremented by every eviction of a key, under the lock of the stripe.
+         */
+        volatile long generation;
+
+        Stripe(int maximumSize) {
+            this.windowMaximum = Math.max(maximumSize / 100, 1);
+            this.mainMaximum = maximumSize - this.windowMaximum;
+            this.protectedMaximum = this.mainMaximum * 4 / 5;
+            this.sketch = new FrequencySketch(maximumSize);
+        }
+
+        void store(Object key, Object storedValue, long now) {
+            Node node = this.nodes.get(key);
+            if (node != null) {
+                node.storedValue = storedValue;
+                node.writtenAt = now;
+                onAccess(node);
+                return;
+            }
+            node = new Node(key, storedValue, now);
+            this.nodes.put(key, node);
+            this.window.addLast(node);
+            if (this.window.size > this.windowMaximum) {
+                admit(this.window.first);
+            }
+        }
+
+        /**
+         * Move the candidate evicted from the window to probation, evicting either the candidate or the entry of the
+         * main space that would be evicted next, whichever is the least frequently accessed.
+         */
+        void admit(Node candidate) {
+            this.window.remove(candidate);
+            this.probation.addLast(candidate);
+            if (this.probation.size + this.protectedSegment.size <= this.mainMaximum) {
+                return;
+            }
+            Node victim = this.probation.first != candidate ? this.probation.first : this.protectedSegment.first;
+            Node evicted = victim != null && this.sketch.frequency(candidate.key) > this.sketch.frequency(victim.key)
+                ? victim : candidate;
+            remove(evicted);
+            TinyLfuCache.this.evictions.increment();
+        }
+
+        void onAccess(Node node) {
+            if (node.queue == this.probation) {
+                this.probation.remove(node);
+                this.protectedSegment.addLast(node);
+                if (this.protectedSegment.size > this.protectedMaximum) {
+                    Node demoted = this.protectedSegment.first;
+                    this.protectedSegment.remove(demoted);
+                    this.probation.addLast(demoted);
+                }
+            } else {
+                node.queue.remove(node);
+                node.queue.addLast(node);
+            }
+        }
+
+        void remove(Node node) {
+            node.queue.remove(node);
+            this.nodes.remove(node.key);
+        }
+    }
+
+    private static final class Node {
+
+        final Object key;
+
+        volatile Object storedValue;
+
+        volatile long writtenAt;
+
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        AccessQueue queue;
+
+        Node previous;
+
+        Node next;
+
+        Node(Object key, Object storedValue, long writtenAt) {
+            this.key = key;
+            this.storedValue = storedValue;
+            this.writtenAt = writtenAt;
+        }
+    }
+
+    /**
+     * Doubly linked list of nodes, least recently accessed first.
+     */
+    private static final class AccessQueue {
+
+        Node first;
+
+        Node last;
+
+        int size;
+
+        void addLast(Node node) {
+            node.queue = this;
+            node.previous = this.last;
+            node.next = null;
+            if (this.last == null) {
+                this.first = node;
+            } else {
+                this.last.next = node;
+            }
+            this.last = node;
+            this.size++;
+        }
+
+        void remove(Node node) {
+            if (node.previous == null) {
+                this.first = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                this.last = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+            this.size--;
+        }
+
+        void clear() {
+            this.first = null;
+            this.last = null;
+            this.size = 0;
+        }
+    }
+
+}
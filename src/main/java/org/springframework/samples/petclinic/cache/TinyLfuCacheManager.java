@@ -0,0 +1,159 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.jmx.export.MBeanExportOperations;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+
+/**
+ * Manages a fixed set of {@link TinyLfuCache W-TinyLFU caches}, one per configured {@link CacheRegion}, sharing a
+ * small pool of daemon refresh threads. Regions with an off-heap capacity get an {@link OffHeapStore} behind their
+ * cache ({@link TieredCache}). Returns <code>null</code> for other cache names.
+ * <p/>
+ * The statistics of each cache are exported to JMX as <code>petclinic:type=Cache,name=&lt;region&gt;</code> (and
+ * <code>petclinic:type=OffHeapCache,name=&lt;region&gt;</code>) when an exporter is set, and published in the
+ * /metrics endpoint.
+ */
+public class TinyLfuCacheManager extends AbstractTransactionSupportingCacheManager
+    implements MetricsSource, DisposableBean {
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    private final ThreadPoolExecutor refreshExecutor;
+
+    private final Map<String, TinyLfuCache> caches = new LinkedHashMap<>();
+
+    private final Map<String, OffHeapStore> offHeapStores = new LinkedHashMap<>();
+
+    private List<CacheRegion> regions = new ArrayList<>();
+
+    private MBeanExportOperations mbeanExporter;
+
+    public TinyLfuCacheManager() {
+        // refreshes of a same entry never overlap: a small queue absorbs a burst of stale entries
+        this.refreshExecutor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1000),
+            runnable -> {
+                Thread thread = new Thread(runnable, "cache-refresh-" + this.threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.refreshExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public void setRegions(List<CacheRegion> regions) {
+        this.regions = regions;
+    }
+
+    public void setMbeanExporter(MBeanExportOperations mbeanExporter) {
+        this.mbeanExporter = mbeanExporter;
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        this.caches.clear();
+        this.offHeapStores.clear();
+        List<Cache> loaded = new ArrayList<>();
+        for (CacheRegion region : this.regions) {
+            TinyLfuCache cache = new TinyLfuCache(region, this.refreshExecutor);
+            this.caches.put(region.getName(), cache);
+            if (region.isOffHeap()) {
+                OffHeapStore offHeap = new OffHeapStore(region.getOffHeapMaximumBytes(), region.getOffHeapSegmentBytes(),
+                    region.getExpireAfterWriteNanos());
+                this.offHeapStores.put(region.getName(), offHeap);
+                loaded.add(new TieredCache(cache, offHeap, region.getCodec()));
+            } else {
+                loaded.add(cache);
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        if (this.mbeanExporter != null) {
+            for (TinyLfuCache cache : this.caches.values()) {
+                this.mbeanExporter.registerManagedResource(cache, objectName("Cache", cache.getName()));
+            }
+            for (Map.Entry<String, OffHeapStore> offHeap : this.offHeapStores.entrySet()) {
+                this.mbeanExporter.registerManagedResource(offHeap.getValue(), objectName("OffHeapCache", offHeap.getKey()));
+            }
+        }
+    }
+
+    private static ObjectName objectName(String type, String cacheName) {
+        try {
+            return new ObjectName("petclinic:type=" + type + ",name=" + cacheName);
+        } catch (MalformedObjectNameException ex) {
+            throw new IllegalArgumentException("Invalid cache name: " + cacheName, ex);
+        }
+    }
+
+    /**
+     * @return the on-heap cache of the region, undecorated
+     */
+    public TinyLfuCache getRegionCache(String name) {
+        return this.caches.get(name);
+    }
+
+    /**
+     * @return the off-heap tier of the region, if any
+     */
+    public OffHeapStore getOffHeapStore(String name) {
+        return this.offHeapStores.get(name);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "cacheRegions";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (TinyLfuCache cache : this.caches.values()) {
+            Map<String, Object> statistics = cache.getStatistics();
+            OffHeapStore offHeap = this.offHeapStores.get(cache.getName());
+            if (offHeap != null) {
+                statistics.put("offHeap", offHeap.getStatistics());
+            }
+            metrics.put(cache.getName(), statistics);
+        }
+        return metrics;
+    }
+
+    @Override
+    public void destroy() {
+        this.refreshExecutor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary form of the values of a {@link CacheRegion}, for its off-heap tier.
+ */
+public interface ValueCodec {
+
+    /**
+     * @return the encoded value, or <code>null</code> if the value cannot be encoded and must stay on-heap
+     */
+    byte[] encode(Object value);
+
+    /**
+     * @param buffer the encoded value, from its position to its limit
+     */
+    Object decode(ByteBuffer buffer);
+
+}
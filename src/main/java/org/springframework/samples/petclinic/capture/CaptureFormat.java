@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.capture;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Layout of a capture log file. After a header (magic number, format version), a file is a sequence of tagged
+ * entries:
+ * <ul>
+ * <li>{@link #STRING}: adds a string to the dictionary of the file, under the next free index. Methods, route
+ * templates and parameter names are written once per file and then referred to by index.</li>
+ * <li>{@link #REQUEST}: timestamp delta from the previous request (zigzag varint, as requests are logged in
+ * completion order), method and route template indexes, path, parameter count then index and value of each parameter,
+ * status, duration (varints).</li>
+ * </ul>
+ * Every file is self-contained, so rotated files can be read or deleted independently.
+ */
+final class CaptureFormat {
+
+    static final int MAGIC = 0x50434c47; // "PCLG"
+
+    static final int VERSION = 1;
+
+    static final int STRING = 'S';
+
+    static final int REQUEST = 'R';
+
+    static final String FILE_PREFIX = "capture-";
+
+    static final String FILE_SUFFIX = ".bin";
+
+    private CaptureFormat() {
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static void writeZigZag(DataOutput out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long readZigZag(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
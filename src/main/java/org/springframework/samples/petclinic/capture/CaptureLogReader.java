@@ -0,0 +1,156 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.capture;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads back the files written by {@link CaptureLogWriter}, oldest first. A file truncated by a crash is read up to
+ * its last complete request.
+ */
+public class CaptureLogReader implements Closeable {
+
+    private final List<Path> files;
+
+    private int nextFile;
+
+    private DataInputStream in;
+
+    private List<String> dictionary;
+
+    private long previousTimestamp;
+
+    /**
+     * @param location a capture file, or a directory of capture files
+     */
+    public CaptureLogReader(Path location) throws IOException {
+        this.files = Files.isDirectory(location) ? listFiles(location) : Collections.singletonList(location);
+    }
+
+    /**
+     * @return capture files of the directory, oldest first
+     */
+    public static List<Path> listFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+            CaptureFormat.FILE_PREFIX + "*" + CaptureFormat.FILE_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * @return the next request, or <code>null</code> once every file has been read
+     */
+    public CapturedRequest read() throws IOException {
+        while (true) {
+            if (this.in == null && !openNextFile()) {
+                return null;
+            }
+            try {
+                CapturedRequest request = readEntries();
+                if (request != null) {
+                    return request;
+                }
+            } catch (EOFException ex) {
+                // truncated last entry
+            }
+            closeFile();
+        }
+    }
+
+    /**
+     * @return the next request of the current file, or <code>null</code> at its end
+     */
+    private CapturedRequest readEntries() throws IOException {
+        while (true) {
+            int tag = this.in.read();
+            if (tag < 0) {
+                return null;
+            }
+            if (tag == CaptureFormat.STRING) {
+                this.dictionary.add(this.in.readUTF());
+            } else if (tag == CaptureFormat.REQUEST) {
+                long timestamp = this.previousTimestamp + CaptureFormat.readZigZag(this.in);
+                String method = this.dictionary.get((int) CaptureFormat.readVarLong(this.in));
+                String template = this.dictionary.get((int) CaptureFormat.readVarLong(this.in));
+                String path = this.in.readUTF();
+                int parameterCount = (int) CaptureFormat.readVarLong(this.in);
+                Map<String, String> parameters = new LinkedHashMap<>();
+                for (int i = 0; i < parameterCount; i++) {
+                    String name = this.dictionary.get((int) CaptureFormat.readVarLong(this.in));
+                    parameters.put(name, this.in.readUTF());
+                }
+                int status = (int) CaptureFormat.readVarLong(this.in);
+                long duration = CaptureFormat.readVarLong(this.in);
+                this.previousTimestamp = timestamp;
+                return new CapturedRequest(timestamp, method, template, path, parameters, status, duration);
+            } else {
+                throw new IOException("Corrupted capture file " + this.files.get(this.nextFile - 1) + ": tag " + tag);
+            }
+        }
+    }
+
+    private boolean openNextFile() throws IOException {
+        while (this.nextFile < this.files.size()) {
+            Path file = this.files.get(this.nextFile++);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+            try {
+                if (input.readInt() != CaptureFormat.MAGIC || input.readUnsignedByte() != CaptureFormat.VERSION) {
+                    input.close();
+                    throw new IOException("Not a capture file: " + file);
+                }
+                this.previousTimestamp = CaptureFormat.readVarLong(input);
+            } catch (EOFException ex) {
+                // empty file, e.g. still being created
+                input.close();
+                continue;
+            }
+            this.in = input;
+            this.dictionary = new ArrayList<>();
+            return true;
+        }
+        return false;
+    }
+
+    private void closeFile() throws IOException {
+        if (this.in != null) {
+            this.in.close();
+            this.in = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeFile();
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.capture;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends {@link CapturedRequest captured requests} to rotating binary log files (see {@link CaptureFormat}).
+ * <p/>
+ * Request threads only enqueue; a single background thread encodes and writes. When the queue is full the request is
+ * dropped and counted rather than slowing down the application. A new file is started once the current one exceeds
+ * <code>maxFileBytes</code>, and the oldest files are deleted to keep at most <code>maxFiles</code>.
+ */
+public class CaptureLogWriter implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CaptureLogWriter.class);
+
+    private final Path directory;
+
+    private final long maxFileBytes;
+
+    private final int maxFiles;
+
+    private final BlockingQueue<CapturedRequest> queue;
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    private DataOutputStream out;
+
+    private Map<String, Integer> dictionary;
+
+    private long previousTimestamp;
+
+    private int fileSequence;
+
+    public CaptureLogWriter(Path directory, long maxFileBytes, int maxFiles, int queueCapacity) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::drain, "petclinic-capture-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * @return false if the request was dropped because the writer is behind or closed
+     */
+    public boolean offer(CapturedRequest request) {
+        if (this.running && this.queue.offer(request)) {
+            return true;
+        }
+        this.dropped.incrementAndGet();
+        return false;
+    }
+
+    public long getWrittenCount() {
+        return this.written.get();
+    }
+
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    /**
+     * Write the queued requests, then close the current file.
+     */
+    @Override
+    public void close() throws IOException {
+        this.running = false;
+        this.thread.interrupt();
+        try {
+            this.thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        try {
+            while (this.running || !this.queue.isEmpty()) {
+                CapturedRequest request;
+                try {
+                    request = this.queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    request = this.queue.poll();
+                }
+                if (request != null) {
+                    write(request);
+                    this.written.incrementAndGet();
+                } else if (this.out != null) {
+                    this.out.flush();
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("Traffic capture stopped: cannot write to " + this.directory, ex);
+            this.running = false;
+        } finally {
+            closeFile();
+        }
+    }
+
+    private void write(CapturedRequest request) throws IOException {
+        if (this.out == null || this.out.size() >= this.maxFileBytes) {
+            rotate(request.getTimestampMicros());
+        }
+        int method = stringIndex(request.getMethod());
+        int template = stringIndex(request.getRouteTemplate());
+        int[] names = new int[request.getParameters().size()];
+        int i = 0;
+        for (String name : request.getParameters().keySet()) {
+            names[i++] = stringIndex(name);
+        }
+
+        this.out.writeByte(CaptureFormat.REQUEST);
+        CaptureFormat.writeZigZag(this.out, request.getTimestampMicros() - this.previousTimestamp);
+        this.previousTimestamp = request.getTimestampMicros();
+        CaptureFormat.writeVarLong(this.out, method);
+        CaptureFormat.writeVarLong(this.out, template);
+        this.out.writeUTF(request.getPath());
+        CaptureFormat.writeVarLong(this.out, names.length);
+        i = 0;
+        for (String value : request.getParameters().values()) {
+            CaptureFormat.writeVarLong(this.out, names[i++]);
+            this.out.writeUTF(value);
+        }
+        CaptureFormat.writeVarLong(this.out, request.getStatus());
+        CaptureFormat.writeVarLong(this.out, request.getDurationMicros());
+    }
+
+    private int stringIndex(String value) throws IOException {
+        Integer index = this.dictionary.get(value);
+        if (index == null) {
+            index = this.dictionary.size();
+            this.dictionary.put(value, index);
+            this.out.writeByte(CaptureFormat.STRING);
+            this.out.writeUTF(value);
+        }
+        return index;
+    }
+
+    private void rotate(long timestampMicros) throws IOException {
+        closeFile();
+        Path file = this.directory.resolve(String.format("%s%013d-%04d%s", CaptureFormat.FILE_PREFIX,
+            timestampMicros / 1000, this.fileSequence++ % 10_000, CaptureFormat.FILE_SUFFIX));
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile()), 64 * 1024));
+        this.out.writeInt(CaptureFormat.MAGIC);
+        this.out.writeByte(CaptureFormat.VERSION);
+        this.dictionary = new HashMap<>();
+        this.previousTimestamp = timestampMicros;
+        CaptureFormat.writeVarLong(this.out, timestampMicros);
+
+        List<Path> files = CaptureLogReader.listFiles(this.directory);
+        for (int i = 0; i < files.size() - this.maxFiles; i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+
+    private void closeFile() {
+        if (this.out != null) {
+            try {
+                this.out.close();
+            } catch (IOException ex) {
+                logger.warn("Cannot close traffic capture file", ex);
+            }
+            this.out = null;
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.capture;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sanitized shape of one HTTP request: no headers, no cookies, no form body and only allow-listed query parameters.
+ */
+public class CapturedRequest {
+
+    private final long timestampMicros;
+    private final String method;
+    private final String routeTemplate;
+    private final String path;
+    private final Map<String, String> parameters;
+    private final int status;
+    private final long durationMicros;
+
+    /**
+     * @param timestampMicros start of the request, in microseconds since the epoch
+     * @param routeTemplate   matched handler pattern, e.g. <code>/owners/{ownerId}</code>
+     * @param path            request path within the application, e.g. <code>/owners/7</code>
+     */
+    public CapturedRequest(long timestampMicros, String method, String routeTemplate, String path,
+                           Map<String, String> parameters, int status, long durationMicros) {
+        this.timestampMicros = timestampMicros;
+        this.method = method;
+        this.routeTemplate = routeTemplate;
+        this.path = path;
+        this.parameters = Collections.unmodifiableMap(new LinkedHashMap<>(parameters));
+        this.status = status;
+        this.durationMicros = durationMicros;
+    }
+
+    public long getTimestampMicros() {
+        return timestampMicros;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getRouteTemplate() {
+        return routeTemplate;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + path + " " + parameters + " -> " + status + " in " + durationMicros + "us";
+    }
+
+}
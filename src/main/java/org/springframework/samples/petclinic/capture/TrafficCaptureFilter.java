@@ -0,0 +1,198 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.capture;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.UrlPathHelper;
+
+/**
+ * Records the shape of the requests handled by the application into a {@link CaptureLogWriter}, so that real traffic
+ * (popular search prefixes, repeated owner lookups...) can be replayed against another build.
+ * <p/>
+ * Only the method, matched route template, path, allow-listed query parameters, status and duration are kept: form
+ * bodies (names, addresses, phone numbers) are never recorded. Static resources are skipped. Disabled by default;
+ * enable it with <code>-Dcapture.enabled=true</code> or at runtime through JMX.
+ */
+@ManagedResource("petclinic:type=TrafficCapture")
+public class TrafficCaptureFilter extends OncePerRequestFilter {
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    private volatile boolean enabled;
+
+    private Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "petclinic-capture");
+
+    private long maxFileBytes = 64 * 1024 * 1024;
+
+    private int maxFiles = 16;
+
+    private int queueCapacity = 10_000;
+
+    private Set<String> parameters = new LinkedHashSet<>(Arrays.asList("lastName", "page", "size"));
+
+    private volatile CaptureLogWriter writer;
+
+    @ManagedAttribute
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @ManagedAttribute
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param directory where capture files are written; defaults to <code>petclinic-capture</code> in the temporary
+     *                  directory when empty
+     */
+    public void setDirectory(String directory) {
+        if (StringUtils.hasText(directory)) {
+            this.directory = Paths.get(directory);
+        }
+    }
+
+    @ManagedAttribute
+    public String getDirectory() {
+        return directory.toAbsolutePath().toString();
+    }
+
+    public void setMaxFileBytes(long maxFileBytes) {
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    public void setMaxFiles(int maxFiles) {
+        this.maxFiles = maxFiles;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @param parameters comma separated names of the query parameters to record; others are dropped
+     */
+    public void setParameters(String parameters) {
+        this.parameters = StringUtils.commaDelimitedListToSet(StringUtils.trimAllWhitespace(parameters));
+    }
+
+    @ManagedAttribute
+    public long getCapturedCount() {
+        CaptureLogWriter current = this.writer;
+        return current == null ? 0 : current.getWrittenCount();
+    }
+
+    @ManagedAttribute
+    public long getDroppedCount() {
+        CaptureLogWriter current = this.writer;
+        return current == null ? 0 : current.getDroppedCount();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        if (!this.enabled) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        long timestampMicros = System.currentTimeMillis() * 1000;
+        long start = System.nanoTime();
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        try {
+            filterChain.doFilter(request, response);
+            status = response.getStatus();
+        } finally {
+            Object template = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            // resource handlers and the default servlet are mapped to /** patterns
+            if (template != null && !template.toString().endsWith("/**")) {
+                CapturedRequest captured = new CapturedRequest(timestampMicros, request.getMethod(), template.toString(),
+                    this.urlPathHelper.getPathWithinApplication(request), allowedParameters(request), status,
+                    (System.nanoTime() - start) / 1000);
+                CaptureLogWriter current = writer();
+                if (current != null) {
+                    current.offer(captured);
+                }
+            }
+        }
+    }
+
+    private Map<String, String> allowedParameters(HttpServletRequest request) {
+        Map<String, String> allowed = new LinkedHashMap<>();
+        // only the query string: reading the request parameters of a POST would include the form body
+        String query = request.getQueryString();
+        if (query == null) {
+            return allowed;
+        }
+        for (String pair : StringUtils.delimitedListToStringArray(query, "&")) {
+            int equals = pair.indexOf('=');
+            String name = this.urlPathHelper.decodeRequestString(request, equals < 0 ? pair : pair.substring(0, equals));
+            if (this.parameters.contains(name) && !allowed.containsKey(name)) {
+                allowed.put(name, equals < 0 ? "" : this.urlPathHelper.decodeRequestString(request,
+                    pair.substring(equals + 1).replace('+', ' ')));
+            }
+        }
+        return allowed;
+    }
+
+    private CaptureLogWriter writer() {
+        CaptureLogWriter current = this.writer;
+        return current != null ? current : createWriter();
+    }
+
+    private synchronized CaptureLogWriter createWriter() {
+        if (this.writer == null && this.enabled) {
+            try {
+                this.writer = new CaptureLogWriter(this.directory, this.maxFileBytes, this.maxFiles, this.queueCapacity);
+            } catch (IOException ex) {
+                logger.error("Cannot create traffic capture directory " + this.directory + ", disabling capture", ex);
+                this.enabled = false;
+            }
+        }
+        return this.writer;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        this.enabled = false;
+        if (this.writer != null) {
+            try {
+                this.writer.close();
+            } catch (IOException ex) {
+                logger.warn("Cannot close traffic capture", ex);
+            }
+            this.writer = null;
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with the primitive encodings of the model format, read back by {@link BinaryReader}:
+ * <ul>
+ * <li>unsigned integers as LEB128 variable length integers (7 bits per byte, high bit set on all bytes but the last)</li>
+ * <li>ids shifted by one, 0 standing for <code>null</code></li>
+ * <li>strings as their UTF-8 length shifted by one (0 for <code>null</code>) followed by their bytes</li>
+ * <li>dates as zigzag encoded epoch days shifted by one (0 for <code>null</code>), so that dates around 1970 are
+ * short</li>
+ * </ul>
+ */
+public class BinaryWriter {
+
+    private byte[] buffer;
+
+    private int size;
+
+    public BinaryWriter() {
+        this(256);
+    }
+
+    public BinaryWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        this.buffer[this.size++] = (byte) value;
+    }
+
+    public void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7f) != 0) {
+            this.buffer[this.size++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        this.buffer[this.size++] = (byte) value;
+    }
+
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7fL) != 0) {
+            this.buffer[this.size++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        this.buffer[this.size++] = (byte) value;
+    }
+
+    public void writeId(Integer id) {
+        writeVarInt(id == null ? 0 : id + 1);
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length + 1);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    public void writeDate(LocalDate date) {
+        if (date == null) {
+            writeVarInt(0);
+            return;
+        }
+        long days = date.toEpochDay();
+        writeVarLong(((days << 1) ^ (days >> 63)) + 1);
+    }
+
+    public void writeBytes(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, this.buffer, this.size, length);
+        this.size += length;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void reset() {
+        this.size = 0;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.size);
+    }
+
+    public void writeTo(ByteBuffer target) {
+        target.put(this.buffer, 0, this.size);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(this.buffer, 0, this.size);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (this.size + extra > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.size + extra));
+        }
+    }
+
+}
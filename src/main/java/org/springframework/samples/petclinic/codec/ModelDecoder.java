@@ -0,0 +1,128 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.codec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.samples.petclinic.model.NamedEntity;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Specialty;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.model.Visit;
+
+/**
+ * Reads the model objects written by a {@link ModelEncoder}, straight from a {@link ByteBuffer}. Decoded objects are
+ * plain objects, detached from any persistence context; every reference to a pet type or specialty gets its own
+ * instance, so that decoded objects can be modified independently.
+ */
+public class ModelDecoder {
+
+    private final BinaryReader in;
+
+    private final List<NamedEntity> petTypes = new ArrayList<>();
+
+    private final List<NamedEntity> specialties = new ArrayList<>();
+
+    public ModelDecoder(ByteBuffer buffer) {
+        this(new BinaryReader(buffer));
+    }
+
+    public ModelDecoder(BinaryReader in) {
+        this.in = in;
+    }
+
+    public BinaryReader getReader() {
+        return this.in;
+    }
+
+    public Owner readOwner() {
+        Owner owner = new Owner();
+        owner.setId(this.in.readId());
+        owner.setFirstName(this.in.readString());
+        owner.setLastName(this.in.readString());
+        owner.setAddress(this.in.readString());
+        owner.setCity(this.in.readString());
+        owner.setTelephone(this.in.readString());
+        int petCount = this.in.readVarInt();
+        for (int i = 0; i < petCount; i++) {
+            owner.addPet(readPet());
+        }
+        return owner;
+    }
+
+    public Pet readPet() {
+        Pet pet = new Pet();
+        pet.setId(this.in.readId());
+        pet.setName(this.in.readString());
+        pet.setBirthDate(this.in.readDate());
+        pet.setType(readPetType());
+        int visitCount = this.in.readVarInt();
+        for (int i = 0; i < visitCount; i++) {
+            pet.addVisit(readVisit());
+        }
+        return pet;
+    }
+
+    public Visit readVisit() {
+        Visit visit = new Visit();
+        visit.setId(this.in.readId());
+        visit.setDate(this.in.readDate());
+        visit.setDescription(this.in.readString());
+        return visit;
+    }
+
+    public PetType readPetType() {
+        return readReference(this.petTypes, PetType::new);
+    }
+
+    public Vet readVet() {
+        Vet vet = new Vet();
+        vet.setId(this.in.readId());
+        vet.setFirstName(this.in.readString());
+        vet.setLastName(this.in.readString());
+        int specialtyCount = this.in.readVarInt();
+        for (int i = 0; i < specialtyCount; i++) {
+            vet.addSpecialty(readReference(this.specialties, Specialty::new));
+        }
+        return vet;
+    }
+
+    private <T extends NamedEntity> T readReference(List<NamedEntity> dictionary, Supplier<T> factory) {
+        int reference = this.in.readVarInt();
+        if (reference == 0) {
+            return null;
+        }
+        T entity = factory.get();
+        if (reference == 1) {
+            entity.setId(this.in.readId());
+            entity.setName(this.in.readString());
+            if (entity.getId() != null) {
+                dictionary.add(entity);
+            }
+        } else {
+            NamedEntity known = dictionary.get(reference - 2);
+            entity.setId(known.getId());
+            entity.setName(known.getName());
+        }
+        return entity;
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.codec;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.samples.petclinic.model.NamedEntity;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Specialty;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.model.Visit;
+
+/**
+ * Writes model objects to a {@link BinaryWriter}, to be read back in the same order by a {@link ModelDecoder}.
+ * Pet types and specialties are dictionary coded: the first reference to one writes its id and name, and the
+ * following ones its index in the dictionary. The dictionaries last as long as the encoder, so that a stream of
+ * records (a snapshot, an export) defines each of them once.
+ * <p/>
+ * References are encoded as 0 for <code>null</code>, 1 for a new entry followed by its id and name, and
+ * <code>index + 2</code> for a known entry.
+ */
+public class ModelEncoder {
+
+    private final BinaryWriter out;
+
+    private final Map<Integer, Integer> petTypes = new HashMap<>();
+
+    private final Map<Integer, Integer> specialties = new HashMap<>();
+
+    public ModelEncoder(BinaryWriter out) {
+        this.out = out;
+    }
+
+    public BinaryWriter getWriter() {
+        return this.out;
+    }
+
+    /**
+     * Write an owner with its pets and their visits.
+     */
+    public void writeOwner(Owner owner) {
+        this.out.writeId(owner.getId());
+        this.out.writeString(owner.getFirstName());
+        this.out.writeString(owner.getLastName());
+        this.out.writeString(owner.getAddress());
+        this.out.writeString(owner.getCity());
+        this.out.writeString(owner.getTelephone());
+        // the getters sort a copy on each call
+        List<Pet> pets = owner.getPets();
+        this.out.writeVarInt(pets.size());
+        for (Pet pet : pets) {
+            writePet(pet);
+        }
+    }
+
+    /**
+     * Write a pet with its visits, without its owner.
+     */
+    public void writePet(Pet pet) {
+        this.out.writeId(pet.getId());
+        this.out.writeString(pet.getName());
+        this.out.writeDate(pet.getBirthDate());
+        writeReference(this.petTypes, pet.getType());
+        List<Visit> visits = pet.getVisits();
+        this.out.writeVarInt(visits.size());
+        for (Visit visit : visits) {
+            writeVisit(visit);
+        }
+    }
+
+    /**
+     * Write a visit, without its pet.
+     */
+    public void writeVisit(Visit visit) {
+        this.out.writeId(visit.getId());
+        this.out.writeDate(visit.getDate());
+        this.out.writeString(visit.getDescription());
+    }
+
+    public void writeVet(Vet vet) {
+        this.out.writeId(vet.getId());
+        this.out.writeString(vet.getFirstName());
+        this.out.writeString(vet.getLastName());
+        List<Specialty> specialties = vet.getSpecialties();
+        this.out.writeVarInt(specialties.size());
+        for (Specialty specialty : specialties) {
+            writeReference(this.specialties, specialty);
+        }
+    }
+
+    /**
+     * Write a pet type, as a reference to the same type written earlier if any.
+     */
+    public void writePetType(PetType petType) {
+        writeReference(this.petTypes, petType);
+    }
+
+    private void writeReference(Map<Integer, Integer> dictionary, NamedEntity entity) {
+        if (entity == null) {
+            this.out.writeVarInt(0);
+            return;
+        }
+        Integer index = entity.getId() == null ? null : dictionary.get(entity.getId());
+        if (index != null) {
+            this.out.writeVarInt(index + 2);
+            return;
+        }
+        this.out.writeVarInt(1);
+        this.out.writeId(entity.getId());
+        this.out.writeString(entity.getName());
+        if (entity.getId() != null) {
+            dictionary.put(entity.getId(), dictionary.size());
+        }
+    }
+
+}
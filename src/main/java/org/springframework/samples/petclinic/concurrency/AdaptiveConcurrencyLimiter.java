@@ -0,0 +1,402 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+
+/**
+ * Admission control for the database: bounds the number of connections in use, and adjusts that bound from the
+ * observed round trip times (time from admission to the release of the connection), TCP Vegas style. The shortest
+ * round trip seen is taken as the no-load time; the queue building up in the database is estimated as
+ * <code>limit * (1 - noLoadRtt / rtt)</code>, and the limit is raised while that queue is small and lowered when it
+ * grows, as long as at least half of the limit is in use; it is lowered as well when connections fail. Requests over
+ * the limit wait briefly for a slot, then are rejected with a {@link ConcurrencyLimitExceededException}, so that a
+ * slow database sheds load instead of piling up every servlet thread.
+ * <p/>
+ * A thread holding a connection is admitted again without waiting (e.g. a JDBC call within a JPA transaction):
+ * blocking it would only delay the release of the connection it holds. Connections are expected to be released by
+ * the thread that obtained them, as with Spring's transaction management.
+ * <p/>
+ * The limit, in-flight count and rejections are published on JMX and in the /metrics endpoint.
+ */
+@ManagedResource("petclinic:type=ConcurrencyLimiter")
+public class AdaptiveConcurrencyLimiter implements MetricsSource {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition released = this.lock.newCondition();
+
+    /**
+     * Permits held by the current thread.
+     */
+    private final ThreadLocal<int[]> held = ThreadLocal.withInitial(() -> new int[1]);
+
+    private LongSupplier clock = System::nanoTime;
+
+    private int minLimit = 4;
+
+    private int maxLimit = 100;
+
+    private long maxQueueTimeMillis = 50;
+
+    private int maxQueued = 200;
+
+    private int retryAfterSeconds = 1;
+
+    private long windowMillis = 100;
+
+    private int minWindowSamples = 10;
+
+    private long noLoadResetMillis = 60_000;
+
+    // guarded by lock
+    private volatile double estimatedLimit = 20;
+
+    private int inFlight;
+
+    private int queued;
+
+    private long noLoadRttNanos = Long.MAX_VALUE;
+
+    private long noLoadResetAt;
+
+    private long windowStart;
+
+    private long windowRttSum;
+
+    private long windowMinRtt = Long.MAX_VALUE;
+
+    private int windowSamples;
+
+    private int windowMaxInFlight;
+
+    private boolean windowDropped;
+
+    private volatile long lastRttNanos;
+
+    private final LongAdder admitted = new LongAdder();
+
+    private final LongAdder delayed = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    public void setInitialLimit(int initialLimit) {
+        this.estimatedLimit = initialLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    /**
+     * @param maxLimit upper bound of the limit; should not exceed the size of the connection pool
+     */
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * @param maxQueueTimeMillis time a request over the limit waits for a slot before being rejected
+     */
+    public void setMaxQueueTimeMillis(long maxQueueTimeMillis) {
+        this.maxQueueTimeMillis = maxQueueTimeMillis;
+    }
+
+    /**
+     * @param maxQueued number of requests waiting for a slot beyond which requests are rejected at once
+     */
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @param windowMillis minimum duration over which round trips are averaged before the limit is adjusted
+     */
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * @param noLoadResetMillis period at which the no-load round trip is measured again, to follow changes of the
+     *                          data or of the database
+     */
+    public void setNoLoadResetMillis(long noLoadResetMillis) {
+        this.noLoadResetMillis = noLoadResetMillis;
+    }
+
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Wait for a slot if the limit is reached, up to the queue time, or to the {@link Deadline} of the request if
+     * sooner.
+     *
+     * @throws ConcurrencyLimitExceededException if no slot was freed in time, or too many requests are waiting
+     */
+    public Permit acquire() throws ConcurrencyLimitExceededException {
+        int[] depth = this.held.get();
+        boolean nested = depth[0] > 0;
+        this.lock.lock();
+        try {
+            if (!nested && this.inFlight >= getLimit()) {
+                awaitSlot();
+            }
+            this.inFlight++;
+            this.windowMaxInFlight = Math.max(this.windowMaxInFlight, this.inFlight);
+        } finally {
+            this.lock.unlock();
+        }
+        depth[0]++;
+        this.admitted.increment();
+        return new Permit(nested, this.clock.getAsLong());
+    }
+
+    private void awaitSlot() throws ConcurrencyLimitExceededException {
+        if (this.queued >= this.maxQueued) {
+            throw reject("Too many requests waiting for a database connection");
+        }
+        this.queued++;
+        this.delayed.increment();
+        try {
+            long queueTimeMillis = this.maxQueueTimeMillis;
+            Deadline deadline = Deadline.current();
+            if (deadline != null) {
+                // no point in waiting past the deadline of the request
+                queueTimeMillis = Math.max(0, Math.min(queueTimeMillis, deadline.remainingMillis()));
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(queueTimeMillis);
+            while (this.inFlight >= getLimit()) {
+                if (remaining <= 0) {
+                    throw reject("No database connection available within " + queueTimeMillis + " ms");
+                }
+                remaining = this.released.awaitNanos(remaining);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw reject("Interrupted while waiting for a database connection");
+        } finally {
+            this.queued--;
+        }
+    }
+
+    private ConcurrencyLimitExceededException reject(String reason) {
+        this.rejected.increment();
+        return new ConcurrencyLimitExceededException(reason + " (limit " + getLimit() + ")", this.retryAfterSeconds);
+    }
+
+    private void release(Permit permit, boolean failed) {
+        int[] depth = this.held.get();
+        if (--depth[0] <= 0) {
+            this.held.remove();
+        }
+        long now = this.clock.getAsLong();
+        this.lock.lock();
+        try {
+            this.inFlight--;
+            if (!permit.nested) {
+                sample(now - permit.start, failed, now);
+            }
+            this.released.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void sample(long rtt, boolean failed, long now) {
+        if (failed) {
+            this.windowDropped = true;
+            this.dropped.increment();
+        } else {
+            this.lastRttNanos = rtt;
+            this.windowRttSum += rtt;
+            this.windowMinRtt = Math.min(this.windowMinRtt, rtt);
+            this.windowSamples++;
+        }
+        if (this.windowStart == 0) {
+            this.windowStart = now;
+            this.noLoadResetAt = now + TimeUnit.MILLISECONDS.toNanos(this.noLoadResetMillis);
+        }
+        if (now - this.windowStart < TimeUnit.MILLISECONDS.toNanos(this.windowMillis)
+            || (this.windowSamples < this.minWindowSamples && !this.windowDropped)) {
+            return;
+        }
+        int before = getLimit();
+        adjust(now);
+        if (getLimit() > before) {
+            this.released.signalAll();
+        }
+        this.windowStart = now;
+        this.windowRttSum = 0;
+        this.windowMinRtt = Long.MAX_VALUE;
+        this.windowSamples = 0;
+        this.windowMaxInFlight = this.inFlight;
+        this.windowDropped = false;
+    }
+
+    private void adjust(long now) {
+        int limit = getLimit();
+        double step = Math.max(1, Math.log10(limit));
+        if (this.windowDropped) {
+            this.estimatedLimit = Math.max(this.minLimit, this.estimatedLimit * 0.9);
+            return;
+        }
+        if (now - this.noLoadResetAt > 0) {
+            this.noLoadRttNanos = this.windowMinRtt;
+            this.noLoadResetAt = now + TimeUnit.MILLISECONDS.toNanos(this.noLoadResetMillis);
+        } else {
+            this.noLoadRttNanos = Math.min(this.noLoadRttNanos, this.windowMinRtt);
+        }
+        if (this.windowMaxInFlight * 2 < limit) {
+            // the limit is not what holds the requests: round trips say nothing about it
+            return;
+        }
+        double rtt = (double) this.windowRttSum / this.windowSamples;
+        double queue = limit * (1 - this.noLoadRttNanos / Math.max(rtt, 1));
+        if (queue <= 3 * step) {
+            this.estimatedLimit = Math.min(this.maxLimit, this.estimatedLimit + step);
+        } else if (queue >= 6 * step) {
+            this.estimatedLimit = Math.max(this.minLimit, this.estimatedLimit - step);
+        }
+    }
+
+    @ManagedAttribute
+    public int getLimit() {
+        return (int) this.estimatedLimit;
+    }
+
+    @ManagedAttribute
+    public int getInFlight() {
+        this.lock.lock();
+        try {
+            return this.inFlight;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @ManagedAttribute
+    public int getQueued() {
+        this.lock.lock();
+        try {
+            return this.queued;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @ManagedAttribute
+    public long getAdmittedCount() {
+        return this.admitted.sum();
+    }
+
+    @ManagedAttribute
+    public long getDelayedCount() {
+        return this.delayed.sum();
+    }
+
+    @ManagedAttribute
+    public long getRejectedCount() {
+        return this.rejected.sum();
+    }
+
+    @ManagedAttribute
+    public long getFailedCount() {
+        return this.dropped.sum();
+    }
+
+    @ManagedAttribute
+    public long getNoLoadRttMicros() {
+        this.lock.lock();
+        try {
+            return this.noLoadRttNanos == Long.MAX_VALUE ? 0 : this.noLoadRttNanos / 1000;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @ManagedAttribute
+    public long getLastRttMicros() {
+        return this.lastRttNanos / 1000;
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "concurrencyLimit";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("limit", getLimit());
+        metrics.put("inFlight", getInFlight());
+        metrics.put("queued", getQueued());
+        metrics.put("admitted", getAdmittedCount());
+        metrics.put("delayed", getDelayedCount());
+        metrics.put("rejected", getRejectedCount());
+        metrics.put("failed", getFailedCount());
+        metrics.put("noLoadRttMicros", getNoLoadRttMicros());
+        metrics.put("lastRttMicros", getLastRttMicros());
+        return metrics;
+    }
+
+    /**
+     * A slot, to be released once, by the thread that acquired it.
+     */
+    public final class Permit {
+
+        private final boolean nested;
+
+        private final long start;
+
+        private boolean released;
+
+        private Permit(boolean nested, long start) {
+            this.nested = nested;
+            this.start = start;
+        }
+
+        /**
+         * @param failed whether the work failed for reasons of the database (e.g. connection refused): the limit
+         *               is then lowered
+         */
+        public void release(boolean failed) {
+            if (this.released) {
+                return;
+            }
+            this.released = true;
+            AdaptiveConcurrencyLimiter.this.release(this, failed);
+        }
+
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.util.StringUtils;
+
+/**
+ * One class of requests of the {@link BulkheadFilter}, recognized by its path patterns and HTTP methods, with its own
+ * bound on the requests processed at once and on those waiting for a slot.
+ */
+public class Bulkhead {
+
+    private static final PathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private String name;
+
+    private List<String> patterns = Collections.singletonList("/**");
+
+    private Set<String> methods = Collections.emptySet();
+
+    private int maxConcurrent;
+
+    private int maxQueued;
+
+    private long maxQueueTimeMillis = 100;
+
+    private int retryAfterSeconds = 1;
+
+    private Semaphore slots;
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder admitted = new LongAdder();
+
+    private final LongAdder delayed = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param patterns comma separated Ant style patterns of the paths of the class (<code>/owners/*&#47;pets/**</code>)
+     */
+    public void setPatterns(String patterns) {
+        this.patterns = Arrays.asList(StringUtils.tokenizeToStringArray(patterns, ","));
+    }
+
+    /**
+     * @param methods comma separated HTTP methods of the class; any method when empty
+     */
+    public void setMethods(String methods) {
+        this.methods = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        this.methods.addAll(Arrays.asList(StringUtils.tokenizeToStringArray(methods, ",")));
+    }
+
+    public int getMaxConcurrent() {
+        return this.maxConcurrent;
+    }
+
+    /**
+     * @param maxConcurrent requests of the class processed at once; 0 for no bound
+     */
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * @param maxQueued requests of the class waiting for a slot, beyond which requests are rejected at once
+     */
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * @param maxQueueTimeMillis time a request waits for a slot before being rejected
+     */
+    public void setMaxQueueTimeMillis(long maxQueueTimeMillis) {
+        this.maxQueueTimeMillis = maxQueueTimeMillis;
+    }
+
+    public int getRetryAfterSeconds() {
+        return this.retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    void initialize() {
+        if (!StringUtils.hasText(this.name)) {
+            throw new IllegalStateException("Bulkhead without a name");
+        }
+        this.slots = this.maxConcurrent > 0 ? new Semaphore(this.maxConcurrent) : null;
+    }
+
+    boolean matches(String method, String path) {
+        if (!this.methods.isEmpty() && !this.methods.contains(method)) {
+            return false;
+        }
+        for (String pattern : this.patterns) {
+            if (PATH_MATCHER.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Take a slot, waiting for one up to the queue time if none is free.
+     *
+     * @return whether a slot was taken; if so, it must be given back with {@link #exit()}
+     */
+    boolean tryEnter() {
+        if (this.slots == null || this.slots.tryAcquire()) {
+            admit();
+            return true;
+        }
+        if (this.queued.incrementAndGet() > this.maxQueued) {
+            this.queued.decrementAndGet();
+            this.rejected.increment();
+            return false;
+        }
+        this.delayed.increment();
+        try {
+            if (this.slots.tryAcquire(this.maxQueueTimeMillis, TimeUnit.MILLISECONDS)) {
+                admit();
+                return true;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.queued.decrementAndGet();
+        }
+        this.rejected.increment();
+        return false;
+    }
+
+    private void admit() {
+        this.active.incrementAndGet();
+        this.admitted.increment();
+    }
+
+    void exit() {
+        this.active.decrementAndGet();
+        if (this.slots != null) {
+            this.slots.release();
+        }
+    }
+
+    public int getActive() {
+        return this.active.get();
+    }
+
+    public long getRejectedCount() {
+        return this.rejected.sum();
+    }
+
+    Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("maxConcurrent", this.maxConcurrent);
+        metrics.put("active", getActive());
+        metrics.put("queued", this.queued.get());
+        metrics.put("admitted", this.admitted.sum());
+        metrics.put("delayed", this.delayed.sum());
+        metrics.put("rejected", getRejectedCount());
+        return metrics;
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+/**
+ * Classifies each request into the first {@link Bulkhead} matching its method and path, and holds it within the
+ * bounds of that class: past them, the request is answered 503 with a Retry-After header at once. A flood of one class
+ * (e.g. owner searches on a slow database) then holds at most its own share of the servlet threads, and the other
+ * classes (health checks, static resources, cached pages) keep being served. Requests matching no class are not
+ * bounded.
+ * <p/>
+ * The bulkheads only isolate as long as the bounds of the classes add up to less than the threads of the servlet
+ * container. Published on JMX (petclinic:type=Bulkheads) and in the <code>/metrics</code> endpoint.
+ */
+@ManagedResource("petclinic:type=Bulkheads")
+public class BulkheadFilter extends OncePerRequestFilter implements MetricsSource {
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    private final List<Bulkhead> bulkheads;
+
+    public BulkheadFilter(List<Bulkhead> bulkheads) {
+        this.bulkheads = new ArrayList<>(bulkheads);
+        this.bulkheads.forEach(Bulkhead::initialize);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        Bulkhead bulkhead = classify(request);
+        if (bulkhead == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!bulkhead.tryEnter()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(bulkhead.getRetryAfterSeconds()));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Service overloaded (" + bulkhead.getName() + "), retry later");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            bulkhead.exit();
+        }
+    }
+
+    Bulkhead classify(HttpServletRequest request) {
+        String path = this.urlPathHelper.getPathWithinApplication(request);
+        for (Bulkhead bulkhead : this.bulkheads) {
+            if (bulkhead.matches(request.getMethod(), path)) {
+                return bulkhead;
+            }
+        }
+        return null;
+    }
+
+    @ManagedAttribute
+    public long getRejectedCount() {
+        return this.bulkheads.stream().mapToLong(Bulkhead::getRejectedCount).sum();
+    }
+
+    @ManagedOperation(description = "Bounds, active and rejected requests per class")
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format("%-16s %10s %10s %10s%n",
+            "class", "bound", "active", "rejected"));
+        for (Bulkhead bulkhead : this.bulkheads) {
+            report.append(String.format("%-16s %10d %10d %10d%n", bulkhead.getName(), bulkhead.getMaxConcurrent(),
+                bulkhead.getActive(), bulkhead.getRejectedCount()));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "bulkheads";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (Bulkhead bulkhead : this.bulkheads) {
+            metrics.put(bulkhead.getName(), bulkhead.getMetrics());
+        }
+        return metrics;
+    }
+
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+
+/**
+ * Stops calling the database once it fails: past a minimum number of calls in the current window, the breaker opens
+ * when the share of failed calls, or of slow ones, reaches its threshold. Calls are then refused at once for the open
+ * duration, after which a few trial calls are let through (half open): the breaker closes if they all succeed in time,
+ * and opens again otherwise.
+ * <p/>
+ * Published on JMX (petclinic:type=CircuitBreaker), where it can also be forced open or closed, and in the /metrics
+ * endpoint.
+ */
+@ManagedResource("petclinic:type=CircuitBreaker")
+public class CircuitBreaker implements MetricsSource {
+
+    private static final Log logger = LogFactory.getLog(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private LongSupplier clock = System::nanoTime;
+
+    private double failureRateThreshold = 0.5;
+
+    private double slowCallRateThreshold = 0.5;
+
+    private long slowCallNanos = TimeUnit.SECONDS.toNanos(2);
+
+    private int minimumCalls = 10;
+
+    private long windowNanos = TimeUnit.SECONDS.toNanos(10);
+
+    private long openNanos = TimeUnit.SECONDS.toNanos(5);
+
+    private int halfOpenCalls = 3;
+
+    // guarded by this
+    private State state = State.CLOSED;
+
+    private long windowStart;
+
+    private int calls;
+
+    private int failures;
+
+    private int slowCalls;
+
+    private long openUntil;
+
+    private long halfOpenSince;
+
+    private int trialsStarted;
+
+    private int trialsSucceeded;
+
+    private final LongAdder refused = new LongAdder();
+
+    private final LongAdder opened = new LongAdder();
+
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * @param failureRateThreshold share of failed calls, from 0 to 1, opening the breaker
+     */
+    public void setFailureRateThreshold(double failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    /**
+     * @param slowCallRateThreshold share of slow calls, from 0 to 1, opening the breaker
+     */
+    public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    /**
+     * @param slowCallMillis duration beyond which a successful call counts as slow
+     */
+    public void setSlowCallMillis(long slowCallMillis) {
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+    }
+
+    /**
+     * @param minimumCalls calls in the window below which the rates are not considered
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /**
+     * @param openMillis time during which calls are refused once the breaker opens
+     */
+    public void setOpenMillis(long openMillis) {
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * @param halfOpenCalls trial calls let through once open for long enough, all of which must succeed to close
+     */
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return the time of the start of the call, to be given back to {@link #onSuccess(long)} or
+     * {@link #onFailure(long)}
+     * @throws CircuitBreakerOpenException if the call is refused
+     */
+    public synchronized long acquire() throws CircuitBreakerOpenException {
+        long now = this.clock.getAsLong();
+        if (this.state == State.OPEN && now - this.openUntil >= 0) {
+            this.state = State.HALF_OPEN;
+            this.halfOpenSince = now;
+            this.trialsStarted = 0;
+            this.trialsSucceeded = 0;
+        }
+        if (this.state == State.OPEN
+            || (this.state == State.HALF_OPEN && this.trialsStarted >= this.halfOpenCalls)) {
+            this.refused.increment();
+            throw new CircuitBreakerOpenException("Database calls suspended after failures (circuit breaker "
+                + this.state + ")", getRetryAfterSeconds(now));
+        }
+        if (this.state == State.HALF_OPEN) {
+            this.trialsStarted++;
+        }
+        return now;
+    }
+
+    public synchronized void onSuccess(long start) {
+        long now = this.clock.getAsLong();
+        boolean slow = now - start > this.slowCallNanos;
+        if (this.state == State.HALF_OPEN && !isTrial(start)) {
+            return;
+        }
+        if (this.state == State.HALF_OPEN) {
+            if (slow) {
+                open(now, "slow trial call");
+            } else if (++this.trialsSucceeded >= this.halfOpenCalls) {
+                close(now);
+            }
+            return;
+        }
+        record(now, false, slow);
+    }
+
+    public synchronized void onFailure(long start) {
+        long now = this.clock.getAsLong();
+        if (this.state == State.HALF_OPEN) {
+            if (isTrial(start)) {
+                open(now, "failed trial call");
+            }
+            return;
+        }
+        record(now, true, false);
+    }
+
+    /**
+     * Forget a call that did not reach the database.
+     */
+    public synchronized void onIgnored(long start) {
+        if (this.state == State.HALF_OPEN && isTrial(start)) {
+            this.trialsStarted--;
+        }
+    }
+
+    private boolean isTrial(long start) {
+        // calls started before the breaker opened may still complete
+        return start - this.halfOpenSince >= 0;
+    }
+
+    private void record(long now, boolean failed, boolean slow) {
+        if (this.state != State.CLOSED) {
+            // outcome of a call started before the breaker opened
+            return;
+        }
+        if (now - this.windowStart > this.windowNanos) {
+            resetWindow(now);
+        }
+        this.calls++;
+        if (failed) {
+            this.failures++;
+        }
+        if (slow) {
+            this.slowCalls++;
+        }
+        if (this.calls < this.minimumCalls) {
+            return;
+        }
+        if (this.failures >= this.failureRateThreshold * this.calls) {
+            open(now, this.failures + " failed calls out of " + this.calls);
+        } else if (this.slowCalls >= this.slowCallRateThreshold * this.calls) {
+            open(now, this.slowCalls + " slow calls out of " + this.calls);
+        }
+    }
+
+    private void open(long now, String reason) {
+        logger.warn("Opening the database circuit breaker for " + TimeUnit.NANOSECONDS.toMillis(this.openNanos)
+            + " ms: " + reason);
+        this.state = State.OPEN;
+        this.openUntil = now + this.openNanos;
+        this.opened.increment();
+    }
+
+    private void close(long now) {
+        logger.info("Closing the database circuit breaker");
+        this.state = State.CLOSED;
+        resetWindow(now);
+    }
+
+    private void resetWindow(long now) {
+        this.windowStart = now;
+        this.calls = 0;
+        this.failures = 0;
+        this.slowCalls = 0;
+    }
+
+    private int getRetryAfterSeconds(long now) {
+        long remaining = this.state == State.OPEN ? this.openUntil - now : 0;
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    @ManagedOperation(description = "Refuse the database calls until the open duration elapses")
+    public synchronized void forceOpen() {
+        open(this.clock.getAsLong(), "forced");
+    }
+
+    @ManagedOperation(description = "Let the database calls through again")
+    public synchronized void forceClose() {
+        close(this.clock.getAsLong());
+    }
+
+    /**
+     * Count a call served with stale data while the breaker refused it.
+     */
+    public void recordFallback() {
+        this.fallbacks.increment();
+    }
+
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    @ManagedAttribute
+    public String getStateName() {
+        return getState().name();
+    }
+
+    @ManagedAttribute
+    public long getRefusedCount() {
+        return this.refused.sum();
+    }
+
+    @ManagedAttribute
+    public long getOpenedCount() {
+        return this.opened.sum();
+    }
+
+    @ManagedAttribute
+    public long getFallbackCount() {
+        return this.fallbacks.sum();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "circuitBreaker";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (this) {
+            metrics.put("state", this.state.name());
+            metrics.put("windowCalls", this.calls);
+            metrics.put("windowFailures", this.failures);
+            metrics.put("windowSlowCalls", this.slowCalls);
+        }
+        metrics.put("opened", getOpenedCount());
+        metrics.put("refused", getRefusedCount());
+        metrics.put("fallbacks", getFallbackCount());
+        return metrics;
+    }
+
+}
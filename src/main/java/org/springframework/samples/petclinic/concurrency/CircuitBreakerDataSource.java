@@ -0,0 +1,118 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Asks the {@link CircuitBreaker} before each connection. A connection that cannot be obtained is a failed call; a
+ * connection closed (i.e. given back to the pool) is a successful one, slow if it was held for long, e.g. by
+ * statements waiting on a database that hangs.
+ */
+public class CircuitBreakerDataSource extends DelegatingDataSource {
+
+    private final CircuitBreaker circuitBreaker;
+
+    public CircuitBreakerDataSource(DataSource targetDataSource, CircuitBreaker circuitBreaker) {
+        super(targetDataSource);
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = this.circuitBreaker.acquire();
+        try {
+            return guarded(super.getConnection(), start);
+        } catch (ConnectionRejectedException ex) {
+            // refused by the concurrency limit: says nothing of the database
+            this.circuitBreaker.onIgnored(start);
+            throw ex;
+        } catch (SQLException | RuntimeException ex) {
+            this.circuitBreaker.onFailure(start);
+            throw ex;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = this.circuitBreaker.acquire();
+        try {
+            return guarded(super.getConnection(username, password), start);
+        } catch (ConnectionRejectedException ex) {
+            this.circuitBreaker.onIgnored(start);
+            throw ex;
+        } catch (SQLException | RuntimeException ex) {
+            this.circuitBreaker.onFailure(start);
+            throw ex;
+        }
+    }
+
+    private Connection guarded(Connection connection, long start) {
+        return (Connection) Proxy.newProxyInstance(CircuitBreakerDataSource.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new OutcomeRecordingHandler(connection, start));
+    }
+
+    private final class OutcomeRecordingHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private final long start;
+
+        private boolean closed;
+
+        OutcomeRecordingHandler(Connection target, long start) {
+            this.target = target;
+            this.start = start;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    try {
+                        this.target.close();
+                    } finally {
+                        if (!this.closed) {
+                            this.closed = true;
+                            CircuitBreakerDataSource.this.circuitBreaker.onSuccess(this.start);
+                        }
+                    }
+                    return null;
+                default:
+                    try {
+                        return method.invoke(this.target, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getTargetException();
+                    }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Wraps every {@link DataSource} bean of the application context into a {@link CircuitBreakerDataSource}, whatever
+ * the persistence profile or the way the data source is obtained (pool, JNDI).
+ */
+public class CircuitBreakerDataSourcePostProcessor implements BeanPostProcessor {
+
+    private final CircuitBreaker circuitBreaker;
+
+    public CircuitBreakerDataSourcePostProcessor(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof CircuitBreakerDataSource)) {
+            return new CircuitBreakerDataSource((DataSource) bean, this.circuitBreaker);
+        }
+        return bean;
+    }
+
+}
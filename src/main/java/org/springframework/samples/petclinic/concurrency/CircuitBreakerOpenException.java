@@ -0,0 +1,28 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+/**
+ * Thrown when a connection is refused by the {@link CircuitBreaker}: the database has been failing, and is not tried
+ * again before the breaker lets a few trial calls through.
+ */
+public class CircuitBreakerOpenException extends ConnectionRejectedException {
+
+    public CircuitBreakerOpenException(String reason, int retryAfterSeconds) {
+        super(reason, retryAfterSeconds);
+    }
+
+}
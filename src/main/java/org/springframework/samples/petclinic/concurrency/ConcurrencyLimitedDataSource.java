@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Obtains a permit of the {@link AdaptiveConcurrencyLimiter} before each connection, and releases it when the
+ * connection is closed (i.e. given back to the pool).
+ */
+public class ConcurrencyLimitedDataSource extends DelegatingDataSource {
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitedDataSource(DataSource targetDataSource, AdaptiveConcurrencyLimiter limiter) {
+        super(targetDataSource);
+        this.limiter = limiter;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        AdaptiveConcurrencyLimiter.Permit permit = this.limiter.acquire();
+        try {
+            return limited(super.getConnection(), permit);
+        } catch (SQLException | RuntimeException ex) {
+            permit.release(true);
+            throw ex;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        AdaptiveConcurrencyLimiter.Permit permit = this.limiter.acquire();
+        try {
+            return limited(super.getConnection(username, password), permit);
+        } catch (SQLException | RuntimeException ex) {
+            permit.release(true);
+            throw ex;
+        }
+    }
+
+    private static Connection limited(Connection connection, AdaptiveConcurrencyLimiter.Permit permit) {
+        return (Connection) Proxy.newProxyInstance(ConcurrencyLimitedDataSource.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new PermitReleasingHandler(connection, permit));
+    }
+
+    private static final class PermitReleasingHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private final AdaptiveConcurrencyLimiter.Permit permit;
+
+        PermitReleasingHandler(Connection target, AdaptiveConcurrencyLimiter.Permit permit) {
+            this.target = target;
+            this.permit = permit;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    try {
+                        this.target.close();
+                    } finally {
+                        this.permit.release(false);
+                    }
+                    return null;
+                default:
+                    try {
+                        return method.invoke(this.target, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getTargetException();
+                    }
+            }
+        }
+
+    }
+
+}
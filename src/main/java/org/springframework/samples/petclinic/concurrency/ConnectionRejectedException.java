@@ -0,0 +1,56 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Thrown when a connection is refused before reaching the pool, the database being saturated or failing: the request
+ * should be retried later, or elsewhere. A {@link SQLTransientConnectionException}, so that it goes through the
+ * persistence frameworks as any failure to connect; see {@link #find(Throwable)}.
+ */
+public abstract class ConnectionRejectedException extends SQLTransientConnectionException {
+
+    private final int retryAfterSeconds;
+
+    protected ConnectionRejectedException(String reason, int retryAfterSeconds) {
+        super(reason);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return suggested delay before retrying
+     */
+    public int getRetryAfterSeconds() {
+        return this.retryAfterSeconds;
+    }
+
+    /**
+     * @return the rejection wrapped, at any depth, in the given exception (e.g. by Hibernate, then Spring), or
+     * <code>null</code>
+     */
+    public static ConnectionRejectedException find(Throwable ex) {
+        Throwable current = ex;
+        for (int depth = 0; current != null && depth < 10; depth++) {
+            if (current instanceof ConnectionRejectedException) {
+                return (ConnectionRejectedException) current;
+            }
+            current = current.getCause();
+        }
+        return null;
+    }
+
+}
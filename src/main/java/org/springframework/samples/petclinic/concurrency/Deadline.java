@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time by which the work of the current request should be done, set by the {@link DeadlineFilter} and read down to
+ * the database calls of the same thread: past it, connections are refused, and statements are given the remaining
+ * time as query timeout. Work done by other threads (e.g. cache refreshes) has no deadline.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+    private final long expiresAt;
+
+    private final DeadlineFilter owner;
+
+    Deadline(long timeoutMillis, DeadlineFilter owner) {
+        this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.owner = owner;
+    }
+
+    /**
+     * @return the deadline of the request processed by the current thread, or <code>null</code>
+     */
+    public static Deadline current() {
+        return current.get();
+    }
+
+    static void set(Deadline deadline) {
+        if (deadline == null) {
+            current.remove();
+        } else {
+            current.set(deadline);
+        }
+    }
+
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.expiresAt - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return this.expiresAt - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @return the remaining time as a statement query timeout, rounded up to the second
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    int queryTimeoutSeconds() throws DeadlineExceededException {
+        long remaining = this.expiresAt - System.nanoTime();
+        if (remaining <= 0) {
+            throw exceeded("Request deadline passed before the statement");
+        }
+        long second = TimeUnit.SECONDS.toNanos(1);
+        return (int) Math.min(Integer.MAX_VALUE, (remaining + second - 1) / second);
+    }
+
+    DeadlineExceededException exceeded(String reason) {
+        if (this.owner != null) {
+            this.owner.recordRefused();
+        }
+        return new DeadlineExceededException(reason);
+    }
+
+    void queryTimedOut() {
+        if (this.owner != null) {
+            this.owner.recordQueryTimeout();
+        }
+    }
+
+}
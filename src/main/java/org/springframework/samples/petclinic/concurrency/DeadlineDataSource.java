@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Applies the {@link Deadline} of the current request to its database calls: no connection is handed out once it has
+ * passed, and each statement gets the remaining time as query timeout, so that the driver cancels a query the client
+ * no longer waits for. Covers the JDBC, JPA and Spring Data JPA repositories alike, as they all create their
+ * statements through the data source.
+ */
+public class DeadlineDataSource extends DelegatingDataSource {
+
+    public DeadlineDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        checkDeadline();
+        return bounded(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        checkDeadline();
+        return bounded(super.getConnection(username, password));
+    }
+
+    private static void checkDeadline() throws DeadlineExceededException {
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            throw deadline.exceeded("Request deadline passed before the connection");
+        }
+    }
+
+    private static Connection bounded(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(DeadlineDataSource.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "createStatement":
+                case "prepareStatement":
+                case "prepareCall":
+                    Statement statement = (Statement) DeadlineDataSource.invoke(this.target, method, args);
+                    Deadline deadline = Deadline.current();
+                    return deadline != null ? bounded(statement, method.getReturnType(), deadline) : statement;
+                default:
+                    return DeadlineDataSource.invoke(this.target, method, args);
+            }
+        }
+
+        private static Object bounded(Statement statement, Class<?> type, Deadline deadline) throws SQLException {
+            try {
+                statement.setQueryTimeout(deadline.queryTimeoutSeconds());
+            } catch (SQLException ex) {
+                statement.close();
+                throw ex;
+            }
+            return Proxy.newProxyInstance(DeadlineDataSource.class.getClassLoader(), new Class<?>[]{type},
+                new StatementHandler(statement, deadline));
+        }
+
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+
+        private final Deadline deadline;
+
+        StatementHandler(Statement target, Deadline deadline) {
+            this.target = target;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    try {
+                        return DeadlineDataSource.invoke(this.target, method, args);
+                    } catch (SQLTimeoutException ex) {
+                        if (method.getName().startsWith("execute")) {
+                            this.deadline.queryTimedOut();
+                        }
+                        throw ex;
+                    }
+            }
+        }
+
+    }
+
+}
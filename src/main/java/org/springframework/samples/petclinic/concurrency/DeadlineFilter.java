@@ -0,0 +1,168 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+/**
+ * Gives each request a {@link Deadline}, from the first route matching its method and path, or the default timeout.
+ * The database calls of the request then get the remaining time as statement query timeout, and are refused once it
+ * has passed, instead of holding a connection for a client that gave up (see {@link DeadlineDataSource}).
+ * <p/>
+ * Requests completed past their deadline, connections and statements refused, and statements cancelled by their
+ * query timeout are counted on JMX (petclinic:type=Deadlines) and in the <code>/metrics</code> endpoint.
+ */
+@ManagedResource("petclinic:type=Deadlines")
+public class DeadlineFilter extends OncePerRequestFilter implements MetricsSource {
+
+    private static final PathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    private final List<Route> routes = new ArrayList<>();
+
+    private long defaultTimeoutMillis = 10_000;
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder expired = new LongAdder();
+
+    private final LongAdder refused = new LongAdder();
+
+    private final LongAdder queryTimeouts = new LongAdder();
+
+    /**
+     * @param timeouts timeout in milliseconds by route, the route being an Ant style path pattern optionally preceded
+     *                 by an HTTP method (<code>GET /owners</code>); 0 for no deadline. The first matching route
+     *                 applies.
+     */
+    public void setTimeouts(Map<String, Long> timeouts) {
+        this.routes.clear();
+        timeouts.forEach((route, timeoutMillis) -> this.routes.add(new Route(route.trim(), timeoutMillis)));
+    }
+
+    /**
+     * @param defaultTimeoutMillis timeout of the requests matching no route; 0 for no deadline
+     */
+    public void setDefaultTimeoutMillis(long defaultTimeoutMillis) {
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        long timeoutMillis = timeoutMillis(request);
+        if (timeoutMillis <= 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        Deadline deadline = new Deadline(timeoutMillis, this);
+        this.requests.increment();
+        Deadline.set(deadline);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Deadline.set(null);
+            if (deadline.isExpired()) {
+                this.expired.increment();
+            }
+        }
+    }
+
+    long timeoutMillis(HttpServletRequest request) {
+        String path = this.urlPathHelper.getPathWithinApplication(request);
+        for (Route route : this.routes) {
+            if ((route.method == null || route.method.equalsIgnoreCase(request.getMethod()))
+                && PATH_MATCHER.match(route.pattern, path)) {
+                return route.timeoutMillis;
+            }
+        }
+        return this.defaultTimeoutMillis;
+    }
+
+    void recordRefused() {
+        this.refused.increment();
+    }
+
+    void recordQueryTimeout() {
+        this.queryTimeouts.increment();
+    }
+
+    @ManagedAttribute
+    public long getExpiredCount() {
+        return this.expired.sum();
+    }
+
+    @ManagedAttribute
+    public long getRefusedCount() {
+        return this.refused.sum();
+    }
+
+    @ManagedAttribute
+    public long getQueryTimeoutCount() {
+        return this.queryTimeouts.sum();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "deadlines";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("requests", this.requests.sum());
+        metrics.put("expired", getExpiredCount());
+        metrics.put("refused", getRefusedCount());
+        metrics.put("queryTimeouts", getQueryTimeoutCount());
+        return metrics;
+    }
+
+    private static final class Route {
+
+        final String method;
+
+        final String pattern;
+
+        final long timeoutMillis;
+
+        Route(String route, long timeoutMillis) {
+            int space = route.indexOf(' ');
+            this.method = space > 0 ? route.substring(0, space) : null;
+            this.pattern = space > 0 ? route.substring(space + 1).trim() : route;
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.samples.petclinic.cache.ValueCopier;
+
+/**
+ * Serves the vets, the pet types and the owners by id from the last values read, when the database connection is
+ * refused by the {@link CircuitBreaker} or the concurrency limit. The caches already serve most of these reads; this
+ * covers the entries evicted or expired while the database is unavailable. The values are copied with the given
+ * {@link ValueCopier}, at most once per refresh interval for each key, as controllers modify the owner they get.
+ */
+@Aspect
+public class LastGoodReadsAspect implements Ordered {
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final ValueCopier copier;
+
+    private int maxEntries = 1000;
+
+    private long refreshNanos = TimeUnit.SECONDS.toNanos(60);
+
+    private final Map<List<Object>, Snapshot> snapshots = new LinkedHashMap<List<Object>, Snapshot>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, Snapshot> eldest) {
+            return size() > LastGoodReadsAspect.this.maxEntries;
+        }
+    };
+
+    public LastGoodReadsAspect(CircuitBreaker circuitBreaker, ValueCopier copier) {
+        this.circuitBreaker = circuitBreaker;
+        this.copier = copier;
+    }
+
+    /**
+     * @param maxEntries values kept, the least recently read being dropped first
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param refreshSeconds age beyond which the value kept for a key is replaced by the one just read
+     */
+    public void setRefreshSeconds(long refreshSeconds) {
+        this.refreshNanos = TimeUnit.SECONDS.toNanos(refreshSeconds);
+    }
+
+    @Override
+    public int getOrder() {
+        // inside the AccessTracker (0) and the NegativeLookupCache (1), outside of the ReadCoalescingAspect (3) and
+        // the caching and transaction interceptors
+        return 2;
+    }
+
+    @Around("execution(* org.springframework.samples.petclinic.service.ClinicService.findVets())"
+        + " || execution(* org.springframework.samples.petclinic.service.ClinicService.findPetTypes())"
+        + " || execution(* org.springframework.samples.petclinic.service.ClinicService.findOwnerById(int))")
+    public Object read(ProceedingJoinPoint joinPoint) throws Throwable {
+        List<Object> key = key(joinPoint);
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable ex) {
+            Snapshot snapshot;
+            synchronized (this.snapshots) {
+                snapshot = ConnectionRejectedException.find(ex) != null ? this.snapshots.get(key) : null;
+            }
+            if (snapshot == null) {
+                throw ex;
+            }
+            this.circuitBreaker.recordFallback();
+            return this.copier.copy(snapshot.value);
+        }
+        if (result != null) {
+            remember(key, result);
+        }
+        return result;
+    }
+
+    private void remember(List<Object> key, Object result) {
+        long now = System.nanoTime();
+        synchronized (this.snapshots) {
+            Snapshot snapshot = this.snapshots.get(key);
+            if (snapshot != null && now - snapshot.takenAt < this.refreshNanos) {
+                return;
+            }
+        }
+        Snapshot snapshot = new Snapshot(this.copier.copy(result), now);
+        synchronized (this.snapshots) {
+            this.snapshots.put(key, snapshot);
+        }
+    }
+
+    private static List<Object> key(ProceedingJoinPoint joinPoint) {
+        Object[] args = joinPoint.getArgs();
+        Object[] key = Arrays.copyOf(args, args.length + 1);
+        key[args.length] = joinPoint.getSignature().getName();
+        return Arrays.asList(key);
+    }
+
+    private static final class Snapshot {
+
+        final Object value;
+
+        final long takenAt;
+
+        Snapshot(Object value, long takenAt) {
+            this.value = value;
+            this.takenAt = takenAt;
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.After;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.samples.petclinic.cache.ValueCopier;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Lets concurrent identical reads of the owners, by id and by last name page, share a single call to the database:
+ * the first caller runs the read, the callers arriving with the same arguments while it runs wait for its outcome and
+ * get their own copy of the result, made with the given {@link ValueCopier}. Nothing is kept once the read completes,
+ * and reads in flight are forgotten as soon as a save completes, so that no caller gets data older than it would have
+ * read itself. Callers within a transaction read on their own, as they may see their own changes.
+ * <p/>
+ * Published on JMX (petclinic:type=ReadCoalescing) and in the /metrics endpoint.
+ */
+@Aspect
+@ManagedResource("petclinic:type=ReadCoalescing")
+public class ReadCoalescingAspect implements Ordered, MetricsSource {
+
+    private final ValueCopier copier;
+
+    private volatile boolean enabled = true;
+
+    private final ConcurrentMap<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder reads = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    public ReadCoalescingAspect(ValueCopier copier) {
+        this.copier = copier;
+    }
+
+    @ManagedAttribute
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @ManagedAttribute
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public int getOrder() {
+        // the innermost of the aspects of the service (see tools-config.xml), just outside of the caching and
+        // transaction interceptors: the aspects counting or answering each call run for every caller
+        return 3;
+    }
+
+    @Around("execution(* org.springframework.samples.petclinic.service.ClinicService.findOwnerById(int))"
+        + " || execution(* org.springframework.samples.petclinic.service.ClinicService.findOwnerByLastName(String, int, int))")
+    public Object read(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!this.enabled || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        this.reads.increment();
+        List<Object> key = key(joinPoint);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = this.inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            this.coalesced.increment();
+            return this.copier.copy(await(running));
+        }
+        try {
+            Object result = joinPoint.proceed();
+            flight.complete(this.copier.copy(result));
+            return result;
+        } catch (Throwable ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            this.inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Callers arriving once a save completed must not get the outcome of a read started before it.
+     */
+    @After("execution(* org.springframework.samples.petclinic.service.ClinicService.save*(..))")
+    public void saved() {
+        this.inFlight.clear();
+    }
+
+    private static Object await(CompletableFuture<Object> running) throws Throwable {
+        Deadline deadline = Deadline.current();
+        try {
+            if (deadline == null) {
+                return running.get();
+            }
+            return running.get(Math.max(deadline.remainingMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            throw ex.getCause();
+        } catch (TimeoutException ex) {
+            throw deadline.exceeded("Request deadline passed while waiting for an identical read");
+        }
+    }
+
+    private static List<Object> key(ProceedingJoinPoint joinPoint) {
+        Object[] args = joinPoint.getArgs();
+        Object[] key = Arrays.copyOf(args, args.length + 1);
+        key[args.length] = joinPoint.getSignature().getName();
+        return Arrays.asList(key);
+    }
+
+    @ManagedAttribute
+    public int getInFlightCount() {
+        return this.inFlight.size();
+    }
+
+    @ManagedAttribute
+    public long getReadCount() {
+        return this.reads.sum();
+    }
+
+    @ManagedAttribute
+    public long getCoalescedCount() {
+        return this.coalesced.sum();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "readCoalescing";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", isEnabled());
+        metrics.put("inFlight", getInFlightCount());
+        metrics.put("reads", getReadCount());
+        metrics.put("coalesced", getCoalescedCount());
+        return metrics;
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event spanning a {@link javax.sql.DataSource#getConnection()} call, i.e. the time spent waiting for
+ * a pooled connection (or opening a new one).
+ */
+@Name("petclinic.ConnectionWait")
+@Label("Connection Wait")
+@Category({"Petclinic", "Persistence"})
+@Description("Wait for a JDBC connection from the pool")
+@StackTrace(false)
+class ConnectionWaitEvent extends Event {
+
+    @Label("Data Source")
+    String dataSource;
+
+    @Label("Failed")
+    boolean failed;
+
+}
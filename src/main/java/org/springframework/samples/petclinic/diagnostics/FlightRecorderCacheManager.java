@@ -0,0 +1,154 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.diagnostics;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+/**
+ * Decorates the caches of a target {@link CacheManager} so that every lookup emits a {@link CacheLookupEvent}.
+ */
+public class FlightRecorderCacheManager implements CacheManager {
+
+    private final CacheManager targetCacheManager;
+
+    private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public FlightRecorderCacheManager(CacheManager targetCacheManager) {
+        this.targetCacheManager = targetCacheManager;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = this.caches.get(name);
+        if (cache == null) {
+            Cache target = this.targetCacheManager.getCache(name);
+            if (target == null) {
+                return null;
+            }
+            cache = this.caches.computeIfAbsent(name, n -> new FlightRecorderCache(target));
+        }
+        return cache;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return this.targetCacheManager.getCacheNames();
+    }
+
+    private static class FlightRecorderCache implements Cache {
+
+        private final Cache target;
+
+        FlightRecorderCache(Cache target) {
+            this.target = target;
+        }
+
+        @Override
+        public String getName() {
+            return this.target.getName();
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return this.target.getNativeCache();
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            CacheLookupEvent event = begin();
+            ValueWrapper value = this.target.get(key);
+            commit(event, key, value != null);
+            return value;
+        }
+
+        @Override
+        public <T> T get(Object key, Class<T> type) {
+            CacheLookupEvent event = begin();
+            T value = this.target.get(key, type);
+            commit(event, key, value != null);
+            return value;
+        }
+
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            CacheLookupEvent event = begin();
+            boolean[] loaded = new boolean[1];
+            T value = this.target.get(key, () -> {
+                loaded[0] = true;
+                return valueLoader.call();
+            });
+            commit(event, key, !loaded[0]);
+            return value;
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            this.target.put(key, value);
+        }
+
+        @Override
+        public ValueWrapper putIfAbsent(Object key, Object value) {
+            return this.target.putIfAbsent(key, value);
+        }
+
+        @Override
+        public void evict(Object key) {
+            this.target.evict(key);
+        }
+
+        @Override
+        public boolean evictIfPresent(Object key) {
+            return this.target.evictIfPresent(key);
+        }
+
+        @Override
+        public void clear() {
+            this.target.clear();
+        }
+
+        @Override
+        public boolean invalidate() {
+            return this.target.invalidate();
+        }
+
+        private static CacheLookupEvent begin() {
+            CacheLookupEvent event = new CacheLookupEvent();
+            if (event.isEnabled()) {
+                event.begin();
+            }
+            return event;
+        }
+
+        private void commit(CacheLookupEvent event, Object key, boolean hit) {
+            if (event.isEnabled()) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.cache = getName();
+                    event.key = String.valueOf(key);
+                    event.hit = hit;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.diagnostics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.StringUtils;
+
+/**
+ * Starts, stops and dumps a Flight Recorder recording through JMX, so a recording can be taken on a production
+ * instance without attaching a profiler. The recording is bounded in size and age: it behaves as a ring buffer that is
+ * only written to disk by {@link #dump()}. The Petclinic events (HTTP requests, repository calls, cache lookups and
+ * connection waits) are enabled on top of the JDK settings.
+ */
+@ManagedResource("petclinic:type=FlightRecorder")
+public class FlightRecorderControl implements InitializingBean, DisposableBean {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "petclinic-jfr");
+
+    private String settings = "default";
+
+    private long maxSizeBytes = 100 * 1024 * 1024;
+
+    private long maxAgeSeconds = 30 * 60;
+
+    private boolean startOnStartup;
+
+    private Recording recording;
+
+    /**
+     * @param directory where recordings are dumped; defaults to <code>petclinic-jfr</code> in the temporary directory
+     *                  when empty
+     */
+    public void setDirectory(String directory) {
+        if (StringUtils.hasText(directory)) {
+            this.directory = Paths.get(directory);
+        }
+    }
+
+    @ManagedAttribute
+    public String getDirectory() {
+        return this.directory.toAbsolutePath().toString();
+    }
+
+    /**
+     * @param settings name of a JDK configuration: <code>default</code> (low overhead) or <code>profile</code>
+     */
+    @ManagedAttribute
+    public void setSettings(String settings) {
+        this.settings = settings;
+    }
+
+    @ManagedAttribute
+    public String getSettings() {
+        return this.settings;
+    }
+
+    @ManagedAttribute
+    public void setMaxSizeBytes(long maxSizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    @ManagedAttribute
+    public long getMaxSizeBytes() {
+        return this.maxSizeBytes;
+    }
+
+    @ManagedAttribute
+    public void setMaxAgeSeconds(long maxAgeSeconds) {
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    @ManagedAttribute
+    public long getMaxAgeSeconds() {
+        return this.maxAgeSeconds;
+    }
+
+    /**
+     * @param startOnStartup whether to keep a recording running from startup on (always-on diagnostics)
+     */
+    public void setStartOnStartup(boolean startOnStartup) {
+        this.startOnStartup = startOnStartup;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException, ParseException {
+        if (this.startOnStartup) {
+            start();
+        }
+    }
+
+    @ManagedAttribute
+    public synchronized boolean isRecording() {
+        return this.recording != null && this.recording.getState() == RecordingState.RUNNING;
+    }
+
+    /**
+     * Start a new recording, unless one is already running.
+     */
+    @ManagedOperation
+    public synchronized String start() throws IOException, ParseException {
+        if (!FlightRecorder.isAvailable()) {
+            return "Flight Recorder is not available in this JVM";
+        }
+        if (isRecording()) {
+            return "Already recording since " + this.recording.getStartTime();
+        }
+        closeRecording();
+        Recording newRecording = new Recording(Configuration.getConfiguration(this.settings));
+        newRecording.setName("petclinic");
+        newRecording.setToDisk(true);
+        newRecording.setMaxSize(this.maxSizeBytes);
+        newRecording.setMaxAge(Duration.ofSeconds(this.maxAgeSeconds));
+        newRecording.enable(HttpRequestEvent.class).withThreshold(Duration.ZERO);
+        newRecording.enable(RepositoryCallEvent.class).withThreshold(Duration.ZERO);
+        newRecording.enable(CacheLookupEvent.class).withThreshold(Duration.ZERO);
+        newRecording.enable(ConnectionWaitEvent.class).withThreshold(Duration.ZERO);
+        newRecording.start();
+        this.recording = newRecording;
+        return "Recording started";
+    }
+
+    /**
+     * Write the content of the running recording to a new file of the dump directory.
+     *
+     * @return path of the written file
+     */
+    @ManagedOperation
+    public synchronized String dump() throws IOException {
+        if (this.recording == null) {
+            throw new IllegalStateException("No recording, start one first");
+        }
+        Files.createDirectories(this.directory);
+        Path file = this.directory.resolve("petclinic-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".jfr");
+        this.recording.dump(file);
+        return file.toAbsolutePath().toString();
+    }
+
+    /**
+     * Stop the running recording, dump it and discard it.
+     *
+     * @return path of the written file
+     */
+    @ManagedOperation
+    public synchronized String stop() throws IOException {
+        if (!isRecording()) {
+            throw new IllegalStateException("Not recording");
+        }
+        this.recording.stop();
+        String file = dump();
+        closeRecording();
+        return file;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        closeRecording();
+    }
+
+    private void closeRecording() {
+        if (this.recording != null) {
+            this.recording.close();
+            this.recording = null;
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.diagnostics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Emits a {@link ConnectionWaitEvent} per connection checked out of the target data source.
+ */
+public class FlightRecorderDataSource extends DelegatingDataSource {
+
+    private final String name;
+
+    public FlightRecorderDataSource(DataSource targetDataSource, String name) {
+        super(targetDataSource);
+        this.name = name;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        ConnectionWaitEvent event = new ConnectionWaitEvent();
+        if (!event.isEnabled()) {
+            return super.getConnection();
+        }
+        event.begin();
+        boolean failed = true;
+        try {
+            Connection connection = super.getConnection();
+            failed = false;
+            return connection;
+        } finally {
+            commit(event, failed);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        ConnectionWaitEvent event = new ConnectionWaitEvent();
+        if (!event.isEnabled()) {
+            return super.getConnection(username, password);
+        }
+        event.begin();
+        boolean failed = true;
+        try {
+            Connection connection = super.getConnection(username, password);
+            failed = false;
+            return connection;
+        } finally {
+            commit(event, failed);
+        }
+    }
+
+    private void commit(ConnectionWaitEvent event, boolean failed) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.dataSource = this.name;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+}
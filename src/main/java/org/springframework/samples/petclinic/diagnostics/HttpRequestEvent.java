@@ -0,0 +1,48 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event spanning the handling of one HTTP request by the DispatcherServlet, view rendering included.
+ */
+@Name("petclinic.HttpRequest")
+@Label("HTTP Request")
+@Category({"Petclinic", "Web"})
+@Description("Request handled by the DispatcherServlet")
+@StackTrace(false)
+class HttpRequestEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Route")
+    @Description("Matched handler pattern, e.g. /owners/{ownerId}")
+    String route;
+
+    @Label("Path")
+    String path;
+
+    @Label("Status")
+    int status;
+
+}
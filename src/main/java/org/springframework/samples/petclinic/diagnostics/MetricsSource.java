@@ -0,0 +1,33 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.diagnostics;
+
+import java.util.Map;
+
+/**
+ * Component publishing a section of the <code>/metrics</code> endpoint. Implementations are picked up from the
+ * application context; values must be serializable to JSON (numbers, strings, maps and lists).
+ */
+public interface MetricsSource {
+
+    /**
+     * @return name of the section, unique in the application
+     */
+    String getMetricsName();
+
+    Map<String, Object> getMetrics();
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.diagnostics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Measures the bytes allocated and the CPU time consumed by the request thread, from the filter chain entry to the
+ * end of view rendering, and aggregates them per route template (<code>GET /owners/{ownerId}</code>) into
+ * {@link Histogram histograms}. Tells which endpoint drives the allocation rate, hence the GC pressure.
+ * <p/>
+ * Only a random sample of the requests is measured (10% by default): reading the thread counters costs about a
+ * microsecond. Every request is still counted, so the allocation share of a route is estimated as its mean allocation
+ * times its request count. Published on JMX (petclinic:type=ResourceAccounting) and in the <code>/metrics</code>
+ * endpoint. Work done by other threads on behalf of the request is not accounted.
+ */
+@ManagedResource("petclinic:type=ResourceAccounting")
+public class ResourceAccountingFilter extends OncePerRequestFilter implements MetricsSource {
+
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    private final ConcurrentMap<String, RouteUsage> routes = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled = true;
+
+    private volatile double sampleRate = 0.1;
+
+    public ResourceAccountingFilter() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+            && bean.isCurrentThreadCpuTimeSupported()) {
+            this.threadBean = (com.sun.management.ThreadMXBean) bean;
+            this.threadBean.setThreadAllocatedMemoryEnabled(true);
+            this.threadBean.setThreadCpuTimeEnabled(true);
+        } else {
+            this.threadBean = null;
+            this.enabled = false;
+        }
+    }
+
+    @ManagedAttribute
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @ManagedAttribute
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled && this.threadBean != null;
+    }
+
+    @ManagedAttribute
+    public double getSampleRate() {
+        return this.sampleRate;
+    }
+
+    /**
+     * @param sampleRate fraction of the requests to measure, from 0 (none) to 1 (all)
+     */
+    @ManagedAttribute
+    public void setSampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1");
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    @ManagedOperation
+    public void reset() {
+        this.routes.clear();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        if (!this.enabled) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        boolean sampled = ThreadLocalRandom.current().nextDouble() < this.sampleRate;
+        if (!sampled) {
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                RouteUsage usage = usage(request);
+                if (usage != null) {
+                    usage.requests.increment();
+                }
+            }
+            return;
+        }
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = this.threadBean.getThreadAllocatedBytes(threadId);
+        long cpuBefore = this.threadBean.getCurrentThreadCpuTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            long cpu = this.threadBean.getCurrentThreadCpuTime() - cpuBefore;
+            long allocated = this.threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            RouteUsage usage = usage(request);
+            if (usage != null) {
+                usage.requests.increment();
+                usage.allocatedBytes.record(allocated);
+                usage.cpuNanos.record(cpu);
+            }
+        }
+    }
+
+    private RouteUsage usage(HttpServletRequest request) {
+        Object template = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        // resource handlers and the default servlet are mapped to /** patterns
+        if (template == null || template.toString().endsWith("/**")) {
+            return null;
+        }
+        String route = request.getMethod() + " " + template;
+        RouteUsage usage = this.routes.get(route);
+        return usage != null ? usage : this.routes.computeIfAbsent(route, r -> new RouteUsage());
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "routeResources";
+    }
+
+    /**
+     * @return per route, ordered by estimated total allocation: request count, estimated allocated megabytes, and the
+     * allocated kilobytes and CPU microseconds per request
+     */
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (Map.Entry<String, RouteUsage> entry : sortedRoutes()) {
+            RouteUsage usage = entry.getValue();
+            Map<String, Object> route = new LinkedHashMap<>();
+            route.put("requests", usage.requests.sum());
+            route.put("estimatedAllocatedMegabytes", Math.round(usage.estimatedAllocatedBytes() / (1024 * 1024)));
+            route.put("allocatedKilobytes", usage.allocatedBytes.summary(1024));
+            route.put("cpuMicros", usage.cpuNanos.summary(1000));
+            metrics.put(entry.getKey(), route);
+        }
+        return metrics;
+    }
+
+    @ManagedOperation(description = "Allocation and CPU time per route, heaviest allocators first")
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format("%-40s %10s %10s %10s %10s %10s %10s%n",
+            "route", "requests", "alloc MB", "KB/req", "KB p99", "CPU us", "CPU p99"));
+        for (Map.Entry<String, RouteUsage> entry : sortedRoutes()) {
+            RouteUsage usage = entry.getValue();
+            report.append(String.format("%-40s %10d %10d %10d %10d %10d %10d%n", entry.getKey(),
+                usage.requests.sum(), Math.round(usage.estimatedAllocatedBytes() / (1024 * 1024)),
+                Math.round(usage.allocatedBytes.getMean() / 1024), usage.allocatedBytes.getPercentile(99) / 1024,
+                Math.round(usage.cpuNanos.getMean() / 1000), usage.cpuNanos.getPercentile(99) / 1000));
+        }
+        return report.toString();
+    }
+
+    private List<Map.Entry<String, RouteUsage>> sortedRoutes() {
+        List<Map.Entry<String, RouteUsage>> sorted = new ArrayList<>(this.routes.entrySet());
+        sorted.sort(Comparator.comparingDouble(
+            (Map.Entry<String, RouteUsage> entry) -> entry.getValue().estimatedAllocatedBytes()).reversed());
+        return sorted;
+    }
+
+    private static class RouteUsage {
+
+        final LongAdder requests = new LongAdder();
+
+        final Histogram allocatedBytes = new Histogram();
+
+        final Histogram cpuNanos = new Histogram();
+
+        double estimatedAllocatedBytes() {
+            return this.allocatedBytes.getMean() * this.requests.sum();
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.health;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.cache.CacheManager;
+import org.springframework.samples.petclinic.cache.CacheInvalidationPoller;
+
+/**
+ * Checks that every cache is available, and that the changes made by the other nodes are still being applied: a
+ * node that stopped polling the cache change log serves stale entries. A late poller is reported as degraded rather
+ * than down, as the node still answers correctly within the expiry of the caches.
+ */
+public class CacheProbe implements HealthProbe {
+
+    private final CacheManager cacheManager;
+
+    private final CacheInvalidationPoller invalidationPoller;
+
+    private long maxLagMillis = 30_000;
+
+    public CacheProbe(CacheManager cacheManager, CacheInvalidationPoller invalidationPoller) {
+        this.cacheManager = cacheManager;
+        this.invalidationPoller = invalidationPoller;
+    }
+
+    /**
+     * @param maxLagMillis time since the last successful poll of the change log from which the caches are degraded
+     */
+    public void setMaxLagMillis(long maxLagMillis) {
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    @Override
+    public String getName() {
+        return "caches";
+    }
+
+    @Override
+    public ProbeResult probe() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String name : this.cacheManager.getCacheNames()) {
+            if (this.cacheManager.getCache(name) == null) {
+                missing.add(name);
+            }
+        }
+        details.put("caches", this.cacheManager.getCacheNames().size());
+        if (!missing.isEmpty()) {
+            return ProbeResult.down("Caches not available: " + String.join(", ", missing), details);
+        }
+        if (this.invalidationPoller.isPolling()) {
+            long lastPoll = this.invalidationPoller.getLastPollMillis();
+            long lag = lastPoll == 0 ? -1 : System.currentTimeMillis() - lastPoll;
+            details.put("invalidationLagMillis", lag);
+            if (lag < 0 || lag > this.maxLagMillis) {
+                return ProbeResult.degraded("Cache change log not polled for " + (lag < 0 ? "ever" : lag + " ms"),
+                    details);
+            }
+        }
+        return ProbeResult.up(details);
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.health;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.tomcat.jdbc.pool.ConnectionPool;
+import org.apache.tomcat.jdbc.pool.DataSourceProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.samples.petclinic.concurrency.CircuitBreakerDataSource;
+import org.springframework.samples.petclinic.concurrency.ConcurrencyLimitedDataSource;
+import org.springframework.samples.petclinic.concurrency.DeadlineDataSource;
+
+/**
+ * Borrows a connection from the pool and validates it with a round trip to the database. Publishes the pool
+ * statistics, taken before the borrow, when the data source is a Tomcat JDBC pool (possibly wrapped); it is degraded
+ * when threads are waiting for a connection. The connection is subject neither to the concurrency limit nor to the
+ * circuit breaker, if any: a saturated database is still reachable, and its recovery is seen at once.
+ */
+public class DataSourceProbe implements HealthProbe {
+
+    private final DataSource dataSource;
+
+    private final DataSourceProxy pool;
+
+    private int timeoutSeconds = 2;
+
+    public DataSourceProbe(DataSource dataSource) {
+        DataSource unguarded = dataSource;
+        while (unguarded instanceof ConcurrencyLimitedDataSource || unguarded instanceof CircuitBreakerDataSource
+            || unguarded instanceof DeadlineDataSource) {
+            unguarded = ((DelegatingDataSource) unguarded).getTargetDataSource();
+        }
+        this.dataSource = unguarded;
+        DataSource target = unguarded;
+        while (target instanceof DelegatingDataSource) {
+            target = ((DelegatingDataSource) target).getTargetDataSource();
+        }
+        this.pool = target instanceof DataSourceProxy ? (DataSourceProxy) target : null;
+    }
+
+    /**
+     * @param timeoutSeconds time given to the database to answer the validation
+     */
+    public void setTimeoutSeconds(int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    @Override
+    public String getName() {
+        return "database";
+    }
+
+    @Override
+    public ProbeResult probe() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        int waiting = 0;
+        // created on first use; null when it cannot be, e.g. database unreachable on startup
+        ConnectionPool connectionPool = this.pool != null ? this.pool.getPool() : null;
+        if (connectionPool != null) {
+            int active = connectionPool.getActive();
+            int maxActive = connectionPool.getPoolProperties().getMaxActive();
+            waiting = connectionPool.getWaitCount();
+            details.put("active", active);
+            details.put("idle", connectionPool.getIdle());
+            details.put("maxActive", maxActive);
+            details.put("waiting", waiting);
+            details.put("utilization", maxActive > 0 ? (double) active / maxActive : 0.0);
+        }
+        try (Connection connection = this.dataSource.getConnection()) {
+            if (!connection.isValid(this.timeoutSeconds)) {
+                return ProbeResult.down("Connection not valid after " + this.timeoutSeconds + " s", details);
+            }
+        } catch (SQLException | RuntimeException ex) {
+            // the pool reports the failure of its creation as a runtime exception
+            return ProbeResult.down(ex.toString(), details);
+        }
+        if (waiting > 0) {
+            return ProbeResult.degraded(waiting + " threads waiting for a connection", details);
+        }
+        return ProbeResult.up(details);
+    }
+
+}
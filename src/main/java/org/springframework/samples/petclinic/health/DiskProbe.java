@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.health;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Checks that the directories of the files written by the application (cache snapshot, access sketch, traffic
+ * capture, flight recordings) are writable and have space left. These files are optional for serving requests: a
+ * full or read-only disk is reported as degraded, not down.
+ */
+public class DiskProbe implements HealthProbe {
+
+    private final Set<Path> paths = new LinkedHashSet<>();
+
+    private long minFreeBytes = 64L * 1024 * 1024;
+
+    /**
+     * @param paths comma separated files or directories; a file that does not exist yet is checked through its
+     *              closest existing parent
+     */
+    public void setPaths(String paths) {
+        this.paths.clear();
+        for (String path : StringUtils.commaDelimitedListToSet(paths)) {
+            if (StringUtils.hasText(path)) {
+                this.paths.add(Paths.get(path.trim()).toAbsolutePath());
+            }
+        }
+    }
+
+    public void setMinFreeBytes(long minFreeBytes) {
+        this.minFreeBytes = minFreeBytes;
+    }
+
+    @Override
+    public String getName() {
+        return "disk";
+    }
+
+    @Override
+    public ProbeResult probe() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        List<String> problems = new ArrayList<>();
+        for (Path directory : directories()) {
+            Map<String, Object> directoryDetails = new LinkedHashMap<>();
+            boolean writable = Files.isWritable(directory);
+            directoryDetails.put("writable", writable);
+            if (!writable) {
+                problems.add(directory + " is not writable");
+            }
+            try {
+                long free = Files.getFileStore(directory).getUsableSpace();
+                directoryDetails.put("freeBytes", free);
+                if (free < this.minFreeBytes) {
+                    problems.add(directory + " has " + free + " bytes left");
+                }
+            } catch (IOException ex) {
+                problems.add(directory + ": " + ex);
+            }
+            details.put(directory.toString(), directoryDetails);
+        }
+        if (!problems.isEmpty()) {
+            return ProbeResult.degraded(String.join("; ", problems), details);
+        }
+        return ProbeResult.up(details);
+    }
+
+    /**
+     * @return the closest existing directory of every path, without duplicates
+     */
+    private Set<Path> directories() {
+        Set<Path> directories = new LinkedHashSet<>();
+        for (Path path : this.paths) {
+            Path directory = Files.isDirectory(path) ? path : path.getParent();
+            while (directory != null && !Files.isDirectory(directory)) {
+                directory = directory.getParent();
+            }
+            if (directory != null) {
+                directories.add(directory);
+            }
+        }
+        return directories;
+    }
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.health;
+
+/**
+ * Check of a dependency of the application, run periodically by the {@link HealthProber}.
+ */
+public interface HealthProbe {
+
+    /**
+     * @return name of the probe, unique in the application
+     */
+    String getName();
+
+    /**
+     * Check the dependency. An exception counts as {@link ProbeResult.Status#DOWN}.
+     */
+    ProbeResult probe();
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.health;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+
+/**
+ * Runs the {@link HealthProbe probes} on a background thread at a fixed interval and keeps their last results, so
+ * that health checks are answered from memory, however often load balancers ask and whatever the state of the
+ * database. A probe that is down, or whose last result is older than the staleness limit (e.g. stuck waiting for a
+ * connection), makes the node not ready.
+ * <p/>
+ * Results are published on JMX, in the /metrics endpoint and by <code>/health/probes</code>.
+ */
+@ManagedResource("petclinic:type=HealthProber")
+public class HealthProber implements MetricsSource, InitializingBean, DisposableBean {
+
+    private static final Log logger = LogFactory.getLog(HealthProber.class);
+
+    private final List<HealthProbe> probes;
+
+    private long intervalMillis = 5000;
+
+    private long staleAfterMillis = 30_000;
+
+    private volatile Map<String, ProbeResult> results = Collections.emptyMap();
+
+    private ScheduledExecutorService scheduler;
+
+    public HealthProber(List<HealthProbe> probes) {
+        this.probes = probes;
+    }
+
+    /**
+     * @param intervalMillis delay between two rounds of probes, or 0 to probe only on startup and through JMX
+     */
+    public void setIntervalMillis(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * @param staleAfterMillis age from which the result of a probe counts as down, when probing periodically
+     */
+    public void setStaleAfterMillis(long staleAfterMillis) {
+        this.staleAfterMillis = staleAfterMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        // a first round before the node can be asked whether it is ready
+        probeAll();
+        if (this.intervalMillis <= 0) {
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "health-prober");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::probeAll, this.intervalMillis, this.intervalMillis,
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run every probe in turn, publishing each result as soon as it is known.
+     */
+    @ManagedOperation
+    public synchronized void probeAll() {
+        for (HealthProbe probe : this.probes) {
+            long start = System.nanoTime();
+            ProbeResult result;
+            try {
+                result = probe.probe();
+            } catch (RuntimeException ex) {
+                result = ProbeResult.down(ex.toString(), Collections.emptyMap());
+            }
+            result = result.timed((System.nanoTime() - start) / 1000, System.currentTimeMillis());
+            ProbeResult previous = this.results.get(probe.getName());
+            if (previous != null && previous.getStatus() != result.getStatus()) {
+                logger.warn("Health probe " + probe.getName() + " is now " + result.getStatus()
+                    + (result.getMessage() != null ? ": " + result.getMessage() : ""));
+            }
+            Map<String, ProbeResult> updated = new LinkedHashMap<>(this.results);
+            updated.put(probe.getName(), result);
+            this.results = Collections.unmodifiableMap(updated);
+        }
+    }
+
+    /**
+     * @return the last result of every probe, by name
+     */
+    public Map<String, ProbeResult> getResults() {
+        return this.results;
+    }
+
+    /**
+     * @return the names of the probes that are down, stale or not run yet
+     */
+    public List<String> getFailingProbes() {
+        long now = System.currentTimeMillis();
+        Map<String, ProbeResult> current = this.results;
+        List<String> failing = new ArrayList<>();
+        for (HealthProbe probe : this.probes) {
+            ProbeResult result = current.get(probe.getName());
+            if (result == null || result.getStatus() == ProbeResult.Status.DOWN
+                || (this.scheduler != null && now - result.getCheckedAtMillis() > this.staleAfterMillis)) {
+                failing.add(probe.getName());
+            }
+        }
+        return failing;
+    }
+
+    @ManagedAttribute
+    public boolean isHealthy() {
+        return getFailingProbes().isEmpty();
+    }
+
+    @ManagedAttribute
+    public long getIntervalMillis() {
+        return this.intervalMillis;
+    }
+
+    @ManagedAttribute
+    public String getFailingProbeNames() {
+        return String.join(", ", getFailingProbes());
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "health";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("healthy", isHealthy());
+        this.results.forEach((name, result) -> metrics.put(name, result.toMap(now)));
+        return metrics;
+    }
+
+    @Override
+    public void destroy() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.health;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of a {@link HealthProbe}: a status, an optional message, and details such as pool statistics. Immutable;
+ * the latency and time of the probe are filled in by the {@link HealthProber}.
+ */
+public final class ProbeResult {
+
+    public enum Status {
+
+        /**
+         * Working as expected.
+         */
+        UP,
+
+        /**
+         * Working, but something needs attention (e.g. little disk space left); the node keeps receiving traffic.
+         */
+        DEGRADED,
+
+        /**
+         * Not working: the node is reported as not ready.
+         */
+        DOWN
+    }
+
+    private final Status status;
+
+    private final String message;
+
+    private final Map<String, Object> details;
+
+    private final long latencyMicros;
+
+    private final long checkedAtMillis;
+
+    private ProbeResult(Status status, String message, Map<String, Object> details, long latencyMicros,
+                        long checkedAtMillis) {
+        this.status = status;
+        this.message = message;
+        this.details = Collections.unmodifiableMap(new LinkedHashMap<>(details));
+        this.latencyMicros = latencyMicros;
+        this.checkedAtMillis = checkedAtMillis;
+    }
+
+    public static ProbeResult up(Map<String, Object> details) {
+        return new ProbeResult(Status.UP, null, details, 0, 0);
+    }
+
+    public static ProbeResult degraded(String message, Map<String, Object> details) {
+        return new ProbeResult(Status.DEGRADED, message, details, 0, 0);
+    }
+
+    public static ProbeResult down(String message, Map<String, Object> details) {
+        return new ProbeResult(Status.DOWN, message, details, 0, 0);
+    }
+
+    ProbeResult timed(long latencyMicros, long checkedAtMillis) {
+        return new ProbeResult(this.status, this.message, this.details, latencyMicros, checkedAtMillis);
+    }
+
+    public Status getStatus() {
+        return this.status;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+
+    public Map<String, Object> getDetails() {
+        return this.details;
+    }
+
+    public long getLatencyMicros() {
+        return this.latencyMicros;
+    }
+
+    public long getCheckedAtMillis() {
+        return this.checkedAtMillis;
+    }
+
+    /**
+     * @param now current time, in milliseconds since the epoch
+     */
+    Map<String, Object> toMap(long now) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("status", this.status.name());
+        if (this.message != null) {
+            map.put("message", this.message);
+        }
+        map.put("latencyMicros", this.latencyMicros);
+        map.put("ageMillis", now - this.checkedAtMillis);
+        map.putAll(this.details);
+        return map;
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.health;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Whether the node should receive traffic: startup tasks (e.g. cache pre-warming) hold a named gate until they are
+ * done, and the node is ready once every gate is released. Published by <code>/health/ready</code>, next to the
+ * liveness check.
+ */
+public class Readiness {
+
+    private final Set<String> pendingGates = ConcurrentHashMap.newKeySet();
+
+    public void hold(String gate) {
+        this.pendingGates.add(gate);
+    }
+
+    public void release(String gate) {
+        this.pendingGates.remove(gate);
+    }
+
+    public boolean isReady() {
+        return this.pendingGates.isEmpty();
+    }
+
+    /**
+     * @return the gates still held, sorted by name
+     */
+    public Set<String> getPendingGates() {
+        return new TreeSet<>(this.pendingGates);
+    }
+
+}
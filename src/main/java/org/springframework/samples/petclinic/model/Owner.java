@@ -24,6 +24,9 @@ import java.util.Set;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.validation.constraints.Digits;
@@ -43,7 +46,16 @@ import org.springframework.core.style.ToStringCreator;
  */
 @Entity
 @Table(name = "owners")
+@NamedEntityGraph(name = Owner.DETAILS,
+    attributeNodes = @NamedAttributeNode(value = "pets", subgraph = "pets"),
+    subgraphs = @NamedSubgraph(name = "pets", attributeNodes = {@NamedAttributeNode("visits"), @NamedAttributeNode("type")}))
 public class Owner extends Person {
+
+    /**
+     * Entity graph of the owner details: the owner with its pets, their visits and types. Owners found by id are cached
+     * and copied outside of any persistence context, so the whole graph is loaded with them.
+     */
+    public static final String DETAILS = "Owner.details";
     @Column(name = "address")
     @NotEmpty
     private String address;
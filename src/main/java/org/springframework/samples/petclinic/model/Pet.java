@@ -15,6 +15,7 @@
  */
 package org.springframework.samples.petclinic.model;
 
+import org.hibernate.annotations.BatchSize;
 import org.springframework.beans.support.MutableSortDefinition;
 import org.springframework.beans.support.PropertyComparator;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -22,9 +23,10 @@ import org.springframework.format.annotation.DateTimeFormat;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
-import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
@@ -44,8 +46,15 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "pets")
+@NamedEntityGraph(name = Pet.WITH_VISITS,
+    attributeNodes = {@NamedAttributeNode("visits"), @NamedAttributeNode("type"), @NamedAttributeNode("owner")})
 public class Pet extends NamedEntity {
 
+    /**
+     * Entity graph of the visit form: the pet with its visits, type and owner.
+     */
+    public static final String WITH_VISITS = "Pet.withVisits";
+
     @Column(name = "birth_date")
     @DateTimeFormat(pattern = "yyyy/MM/dd")
     private LocalDate birthDate;
@@ -58,7 +67,9 @@ public class Pet extends NamedEntity {
     @JoinColumn(name = "owner_id")
     private Owner owner;
 
-    @OneToMany(cascade = CascadeType.ALL, mappedBy = "pet", fetch = FetchType.EAGER)
+    // loaded when first read, along with the visits of the other pets of the persistence context (owner search pages)
+    @OneToMany(cascade = CascadeType.ALL, mappedBy = "pet")
+    @BatchSize(size = 50)
     private Set<Visit> visits;
 
 
@@ -49,10 +49,18 @@ public interface OwnerRepository {
      *
      * @param id the id to search for
      * @return the <code>Owner</code> if found
-     * @throws org.springframework.dao.DataRetrievalFailureException if not found
+     * @throws org.springframework.orm.ObjectRetrievalFailureException if not found
      */
     Owner findById(int id);
 
+    /**
+     * Retrieve the last name of an <code>Owner</code> as stored, ignoring the changes not yet written to the data
+     * store, without loading the owner.
+     *
+     * @param id the id to search for
+     * @return the stored last name, or <code>null</code> if not found
+     */
+    String findLastNameById(int id);
 
     /**
      * Save an <code>Owner</code> to the data store, either inserting or updating it.
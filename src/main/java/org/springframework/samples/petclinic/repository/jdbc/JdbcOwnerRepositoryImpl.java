@@ -62,7 +62,6 @@ public class JdbcOwnerRepositoryImpl implements OwnerRepository {
     public JdbcOwnerRepositoryImpl(DataSource dataSource) {
         this.dataSource = dataSource;
         refreshJdbcComponents();
-        JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
     }
 
 
@@ -73,7 +72,6 @@ public class JdbcOwnerRepositoryImpl implements OwnerRepository {
      */
     @Override
     public Collection<Owner> findByLastName(String lastName) {
-        JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
         Map<String, Object> params = new HashMap<>();
         params.put("lastName", lastName + "%");
         List<Owner> owners = this.namedParameterJdbcTemplate.query(
@@ -87,8 +85,6 @@ public class JdbcOwnerRepositoryImpl implements OwnerRepository {
 
     @Override
     public OwnerSearchResults findByLastName(String lastName, int page, int pageSize) {
-        JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
-
         int sanitizedPageSize = Math.max(pageSize, 1);
         int sanitizedPage = Math.max(page, 1);
 
@@ -135,7 +131,6 @@ public class JdbcOwnerRepositoryImpl implements OwnerRepository {
     public Owner findById(int id) {
         Owner owner;
         try {
-            JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
             Map<String, Object> params = new HashMap<>();
             params.put("id", id);
             owner = this.namedParameterJdbcTemplate.queryForObject(
@@ -150,8 +145,14 @@ public class JdbcOwnerRepositoryImpl implements OwnerRepository {
         return owner;
     }
 
+    @Override
+    public String findLastNameById(int id) {
+        List<String> lastNames = this.namedParameterJdbcTemplate.queryForList(
+            "SELECT last_name FROM owners WHERE id= :id", Collections.singletonMap("id", id), String.class);
+        return lastNames.isEmpty() ? null : lastNames.get(0);
+    }
+
     public void loadPetsAndVisits(final Owner owner) {
-        JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
         Map<String, Object> params = new HashMap<>();
         params.put("id", owner.getId());
         final List<JdbcPet> pets = this.namedParameterJdbcTemplate.query(
@@ -168,7 +169,6 @@ public class JdbcOwnerRepositoryImpl implements OwnerRepository {
 
     @Override
     public void save(Owner owner) {
-        JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
         BeanPropertySqlParameterSource parameterSource = new BeanPropertySqlParameterSource(owner);
         if (owner.isNew()) {
             Number newKey = this.insertOwner.executeAndReturnKey(parameterSource);
@@ -182,7 +182,6 @@ public class JdbcOwnerRepositoryImpl implements OwnerRepository {
     }
 
     public Collection<PetType> getPetTypes() {
-        JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
         return this.namedParameterJdbcTemplate.query(
             "SELECT id, name FROM types ORDER BY name", new HashMap<String, Object>(),
             BeanPropertyRowMapper.newInstance(PetType.class));
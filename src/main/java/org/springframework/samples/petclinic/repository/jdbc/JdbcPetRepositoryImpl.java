@@ -58,13 +58,11 @@ public class JdbcPetRepositoryImpl implements PetRepository {
     public JdbcPetRepositoryImpl(DataSource dataSource, OwnerRepository ownerRepository) {
         this.dataSource = dataSource;
         refreshJdbcComponents();
-        JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
         this.ownerRepository = ownerRepository;
     }
 
     @Override
     public List<PetType> findPetTypes() {
-        JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
         Map<String, Object> params = new HashMap<>();
         return this.namedParameterJdbcTemplate.query(
             "SELECT id, name FROM types ORDER BY name",
@@ -74,7 +72,6 @@ public class JdbcPetRepositoryImpl implements PetRepository {
 
     @Override
     public Pet findById(int id) {
-        JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
         Integer ownerId;
         try {
             Map<String, Object> params = new HashMap<>();
@@ -89,7 +86,6 @@ public class JdbcPetRepositoryImpl implements PetRepository {
 
     @Override
     public void save(Pet pet) {
-        JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
         if (pet.isNew()) {
             Number newKey = this.insertPet.executeAndReturnKey(
                 createPetParameterSource(pet));
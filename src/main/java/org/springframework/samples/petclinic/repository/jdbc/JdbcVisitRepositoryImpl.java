@@ -52,13 +52,11 @@ public class JdbcVisitRepositoryImpl implements VisitRepository {
     public JdbcVisitRepositoryImpl(DataSource dataSource) {
         this.dataSource = dataSource;
         refreshJdbcComponents();
-        JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
     }
 
 
     @Override
     public void save(Visit visit) {
-        JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
         if (visit.isNew()) {
             Number newKey = this.insertVisit.executeAndReturnKey(
                 createVisitParameterSource(visit));
@@ -82,7 +80,6 @@ public class JdbcVisitRepositoryImpl implements VisitRepository {
 
     @Override
     public List<Visit> findByPetId(Integer petId) {
-        JdbcConnectionValidator.ensureConnection(this.dataSource, this::refreshJdbcComponents);
         Map<String, Object> params = new HashMap<>();
         params.put("id", petId);
         JdbcPet pet = this.jdbcTemplate.queryForObject(
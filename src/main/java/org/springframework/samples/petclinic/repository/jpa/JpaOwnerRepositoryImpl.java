@@ -20,10 +20,13 @@ import java.util.Collections;
 import java.util.List;
 
 import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 
+import org.hibernate.jpa.QueryHints;
+import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.orm.hibernate5.support.OpenSessionInViewFilter;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.model.OwnerSearchResults;
@@ -42,6 +45,13 @@ import org.springframework.stereotype.Repository;
 @Repository
 public class JpaOwnerRepositoryImpl implements OwnerRepository {
 
+    /**
+     * Rows fetched per round trip by the search queries, which read every owner matching the prefix (the page is
+     * applied in memory because of the fetched pets). Entities are read-only within readOnly transactions only (see
+     * business-config.xml): a read-only query hint would leave them unflushable in the rest of a read-write one.
+     */
+    private static final int SEARCH_FETCH_SIZE = 100;
+
     @PersistenceContext
     private EntityManager em;
 
@@ -59,6 +69,7 @@ public class JpaOwnerRepositoryImpl implements OwnerRepository {
         // using 'left join fetch' because it might happen that an owner does not have pets yet
         Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner left join fetch owner.pets WHERE owner.lastName LIKE :lastName");
         query.setParameter("lastName", lastName + "%");
+        query.setHint(QueryHints.HINT_FETCH_SIZE, SEARCH_FETCH_SIZE);
         return query.getResultList();
     }
 
@@ -90,6 +101,7 @@ public class JpaOwnerRepositoryImpl implements OwnerRepository {
         query.setParameter("lastName", lastName + "%");
         query.setFirstResult((sanitizedPage - 1) * sanitizedPageSize);
         query.setMaxResults(sanitizedPageSize);
+        query.setHint(QueryHints.HINT_FETCH_SIZE, SEARCH_FETCH_SIZE);
 
         List<Owner> owners = query.getResultList();
 
@@ -98,11 +110,25 @@ public class JpaOwnerRepositoryImpl implements OwnerRepository {
 
     @Override
     public Owner findById(int id) {
-        // using 'join fetch' because a single query should load both owners and pets
-        // using 'left join fetch' because it might happen that an owner does not have pets yet
-        Query query = this.em.createQuery("SELECT owner FROM Owner owner left join fetch owner.pets WHERE owner.id =:id");
+        // a single query loads the owner, its pets and their visits (see Owner.DETAILS)
+        Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner WHERE owner.id =:id");
         query.setParameter("id", id);
-        return (Owner) query.getSingleResult();
+        query.setHint(QueryHints.HINT_LOADGRAPH, this.em.getEntityGraph(Owner.DETAILS));
+        List<?> owners = query.getResultList();
+        if (owners.isEmpty()) {
+            throw new ObjectRetrievalFailureException(Owner.class, id);
+        }
+        return (Owner) owners.get(0);
+    }
+
+    @Override
+    public String findLastNameById(int id) {
+        List<String> lastNames = this.em.createQuery("SELECT owner.lastName FROM Owner owner WHERE owner.id =:id", String.class)
+            .setParameter("id", id)
+            // the stored name, even if the owner was renamed within the persistence context
+            .setFlushMode(FlushModeType.COMMIT)
+            .getResultList();
+        return lastNames.isEmpty() ? null : lastNames.get(0);
     }
 
 
@@ -15,11 +15,14 @@
  */
 package org.springframework.samples.petclinic.repository.jpa;
 
+import java.util.Collections;
 import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
+import org.hibernate.jpa.QueryHints;
+import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.repository.PetRepository;
@@ -48,7 +51,13 @@ public class JpaPetRepositoryImpl implements PetRepository {
 
     @Override
     public Pet findById(int id) {
-        return this.em.find(Pet.class, id);
+        // the visit form lists the visits of the pet
+        Pet pet = this.em.find(Pet.class, id,
+            Collections.singletonMap(QueryHints.HINT_LOADGRAPH, this.em.getEntityGraph(Pet.WITH_VISITS)));
+        if (pet == null) {
+            throw new ObjectRetrievalFailureException(Pet.class, id);
+        }
+        return pet;
     }
 
     @Override
@@ -15,6 +15,7 @@
  */
 package org.springframework.samples.petclinic.repository.jpa;
 
+import org.hibernate.jpa.QueryHints;
 import org.springframework.samples.petclinic.model.Vet;
 import org.springframework.samples.petclinic.repository.VetRepository;
 import org.springframework.stereotype.Repository;
@@ -42,7 +43,9 @@ public class JpaVetRepositoryImpl implements VetRepository {
     @Override
     @SuppressWarnings("unchecked")
     public Collection<Vet> findAll() {
-        return this.em.createQuery("SELECT distinct vet FROM Vet vet left join fetch vet.specialties ORDER BY vet.lastName, vet.firstName").getResultList();
+        return this.em.createQuery("SELECT distinct vet FROM Vet vet left join fetch vet.specialties ORDER BY vet.lastName, vet.firstName")
+            .setHint(QueryHints.HINT_FETCH_SIZE, 100)
+            .getResultList();
     }
 
 }
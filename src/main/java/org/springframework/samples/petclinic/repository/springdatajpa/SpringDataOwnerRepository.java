@@ -15,17 +15,26 @@
  */
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_FLUSH_MODE;
+
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Optional;
+
+import javax.persistence.QueryHint;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.model.OwnerSearchResults;
 import org.springframework.samples.petclinic.repository.OwnerRepository;
@@ -40,9 +49,11 @@ public interface SpringDataOwnerRepository extends OwnerRepository, Repository<O
 
     @Override
     @Query("SELECT DISTINCT owner FROM Owner owner left join fetch owner.pets WHERE owner.lastName LIKE :lastName%")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "100"))
     public Collection<Owner> findByLastName(@Param("lastName") String lastName);
 
     @EntityGraph(attributePaths = {"pets"})
+    @QueryHints(value = @QueryHint(name = HINT_FETCH_SIZE, value = "100"), forCounting = false)
     @Query(value = "SELECT DISTINCT owner FROM Owner owner WHERE owner.lastName LIKE :lastName%",
         countQuery = "SELECT COUNT(DISTINCT owner.id) FROM Owner owner WHERE owner.lastName LIKE :lastName%")
     Page<Owner> findOwnersPageByLastName(@Param("lastName") String lastName, Pageable pageable);
@@ -74,7 +85,18 @@ public interface SpringDataOwnerRepository extends OwnerRepository, Repository<O
         return new OwnerSearchResults(ownerPage.getContent(), (int) totalElements, sanitizedPage, sanitizedPageSize, lastName);
     }
 
+    @EntityGraph(value = Owner.DETAILS, type = EntityGraphType.LOAD)
+    @Query("SELECT DISTINCT owner FROM Owner owner WHERE owner.id =:id")
+    Optional<Owner> findDetailsById(@Param("id") int id);
+
+    @Override
+    default Owner findById(int id) {
+        return findDetailsById(id).orElseThrow(() -> new ObjectRetrievalFailureException(Owner.class, id));
+    }
+
     @Override
-    @Query("SELECT owner FROM Owner owner left join fetch owner.pets WHERE owner.id =:id")
-    public Owner findById(@Param("id") int id);
+    @Query("SELECT owner.lastName FROM Owner owner WHERE owner.id =:id")
+    // the stored name, even if the owner was renamed within the persistence context
+    @QueryHints(@QueryHint(name = HINT_FLUSH_MODE, value = "COMMIT"))
+    String findLastNameById(@Param("id") int id);
 }
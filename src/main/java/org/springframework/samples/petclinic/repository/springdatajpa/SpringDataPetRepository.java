@@ -16,9 +16,13 @@
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
+import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.repository.PetRepository;
@@ -34,4 +38,13 @@ public interface SpringDataPetRepository extends PetRepository, Repository<Pet,
     @Override
     @Query("SELECT ptype FROM PetType ptype ORDER BY ptype.name")
     List<PetType> findPetTypes();
+
+    // the visit form lists the visits of the pet
+    @EntityGraph(value = Pet.WITH_VISITS, type = EntityGraphType.LOAD)
+    Optional<Pet> findWithVisitsById(int id);
+
+    @Override
+    default Pet findById(int id) {
+        return findWithVisitsById(id).orElseThrow(() -> new ObjectRetrievalFailureException(Pet.class, id));
+    }
 }
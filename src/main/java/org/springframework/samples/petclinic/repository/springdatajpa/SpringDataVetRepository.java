@@ -15,6 +15,14 @@
  */
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import java.util.Collection;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.Repository;
 import org.springframework.samples.petclinic.model.Vet;
 import org.springframework.samples.petclinic.repository.VetRepository;
@@ -26,4 +34,9 @@ import org.springframework.samples.petclinic.repository.VetRepository;
  * @since 15.1.2013
  */
 public interface SpringDataVetRepository extends VetRepository, Repository<Vet, Integer> {
+
+    @Override
+    @EntityGraph(attributePaths = "specialties")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "100"))
+    Collection<Vet> findAll();
 }
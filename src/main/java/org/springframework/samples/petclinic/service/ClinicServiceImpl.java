@@ -18,7 +18,10 @@ package org.springframework.samples.petclinic.service;
 import java.util.Collection;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.samples.petclinic.cache.CacheChangeLog;
+import org.springframework.samples.petclinic.cache.OwnerSearchCache;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.model.OwnerSearchResults;
 import org.springframework.samples.petclinic.model.Pet;
@@ -45,23 +48,31 @@ public class ClinicServiceImpl implements ClinicService {
     private VetRepository vetRepository;
     private OwnerRepository ownerRepository;
     private VisitRepository visitRepository;
+    private OwnerSearchCache ownerSearchCache;
+    private CacheChangeLog cacheChangeLog;
 
     @Autowired
-    public ClinicServiceImpl(PetRepository petRepository, VetRepository vetRepository, OwnerRepository ownerRepository, VisitRepository visitRepository) {
+    public ClinicServiceImpl(PetRepository petRepository, VetRepository vetRepository, OwnerRepository ownerRepository, VisitRepository visitRepository,
+                             OwnerSearchCache ownerSearchCache, CacheChangeLog cacheChangeLog) {
         this.petRepository = petRepository;
         this.vetRepository = vetRepository;
         this.ownerRepository = ownerRepository;
         this.visitRepository = visitRepository;
+        this.ownerSearchCache = ownerSearchCache;
+        this.cacheChangeLog = cacheChangeLog;
     }
 
     @Override
     @Transactional(readOnly = true)
+    @Cacheable(value = "petTypes", sync = true)
     public Collection<PetType> findPetTypes() {
         return petRepository.findPetTypes();
     }
 
     @Override
     @Transactional(readOnly = true)
+    // not for a missing owner, which may be inserted outside of the application before the entry expires
+    @Cacheable(value = "owners", key = "#id", unless = "#result == null")
     public Owner findOwnerById(int id) {
         return ownerRepository.findById(id);
     }
@@ -77,20 +88,44 @@ public class ClinicServiceImpl implements ClinicService {
     public OwnerSearchResults findOwnerByLastName(String lastName, int page, int pageSize) {
         String searchTerm = lastName == null ? "" : lastName;
         int requestedPageSize = Math.max(pageSize, 1);
-        return ownerRepository.findByLastName(searchTerm, page, requestedPageSize);
+        return ownerSearchCache.get(searchTerm, page, requestedPageSize,
+            () -> ownerRepository.findByLastName(searchTerm, page, requestedPageSize));
     }
 
     @Override
     @Transactional
+    @CacheEvict(value = "owners", key = "#owner.id")
     public void saveOwner(Owner owner) {
+        if (!owner.isNew() && (cacheChangeLog.isEnabled() || !ownerSearchCache.isEmpty())) {
+            // a renamed owner leaves the search results of its former name
+            String storedLastName = ownerRepository.findLastNameById(owner.getId());
+            if (storedLastName != null && !storedLastName.equals(owner.getLastName())) {
+                invalidateOwnerSearch(storedLastName);
+            }
+        }
         ownerRepository.save(owner);
+        // inserts as well: other nodes may have found the id missing
+        cacheChangeLog.append("owners", owner.getId());
+        invalidateOwnerSearch(owner.getLastName());
+    }
+
+    /**
+     * Evict the search results of the given last name on this node, and record it for the other nodes.
+     */
+    private void invalidateOwnerSearch(String lastName) {
+        ownerSearchCache.invalidate(lastName);
+        cacheChangeLog.append(OwnerSearchCache.NAME, lastName);
     }
 
 
     @Override
     @Transactional
+    @CacheEvict(value = "owners", key = "#visit.pet?.owner?.id", condition = "#visit.pet?.owner != null")
     public void saveVisit(Visit visit) {
         visitRepository.save(visit);
+        if (visit.getPet() != null && visit.getPet().getOwner() != null) {
+            cacheChangeLog.append("owners", visit.getPet().getOwner().getId());
+        }
     }
 
 
@@ -102,18 +137,27 @@ public class ClinicServiceImpl implements ClinicService {
 
     @Override
     @Transactional
+    @CacheEvict(value = "owners", key = "#pet.owner?.id", condition = "#pet.owner != null")
     public void savePet(Pet pet) {
         petRepository.save(pet);
+        // the id is assigned by the save of a new pet, which other nodes may have found missing
+        cacheChangeLog.append("pets", pet.getId());
+        if (pet.getOwner() != null) {
+            cacheChangeLog.append("owners", pet.getOwner().getId());
+            // search results list the pets of each owner
+            invalidateOwnerSearch(pet.getOwner().getLastName());
+        }
     }
 
     @Override
     @Transactional(readOnly = true)
-    @Cacheable(value = "vets")
+    @Cacheable(value = "vets", sync = true)
     public Collection<Vet> findVets() {
         return vetRepository.findAll();
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Collection<Visit> findVisitsByPetId(int petId) {
         return visitRepository.findByPetId(petId);
     }
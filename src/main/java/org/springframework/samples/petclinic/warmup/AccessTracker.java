@@ -0,0 +1,249 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.Ordered;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.samples.petclinic.codec.BinaryReader;
+import org.springframework.samples.petclinic.codec.BinaryWriter;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+import org.springframework.util.StringUtils;
+
+/**
+ * Records the most frequently accessed owners, owner search pages and pets, one {@link HeavyHitters} sketch each,
+ * for the {@link CachePreWarmer} of the next start. The sketches are saved to a local file on shutdown and read back
+ * on startup, their counts halved so that the accesses of the last runs weigh the most.
+ * <p/>
+ * Accesses are recorded on the calls to the {@link org.springframework.samples.petclinic.service.ClinicService},
+ * ahead of its caches so that cache hits count too, except for the calls of the pre-warmer itself.
+ */
+@Aspect
+@ManagedResource("petclinic:type=AccessTracker")
+public class AccessTracker implements MetricsSource, Ordered, InitializingBean, DisposableBean {
+
+    public static final String OWNERS = "owners";
+
+    /**
+     * Keys are the page, the page size and the last name prefix, comma separated.
+     */
+    public static final String OWNER_SEARCHES = "ownerSearches";
+
+    public static final String PETS = "pets";
+
+    private static final Log logger = LogFactory.getLog(AccessTracker.class);
+
+    private static final int MAGIC = 0x50434848;
+
+    private static final int VERSION = 1;
+
+    private static final ThreadLocal<Boolean> untracked = new ThreadLocal<>();
+
+    private final Map<String, HeavyHitters> sketches = new LinkedHashMap<>();
+
+    private volatile boolean enabled = true;
+
+    private int capacity = 1000;
+
+    private Path file = Paths.get(System.getProperty("java.io.tmpdir"), "petclinic-access.sketch");
+
+    @ManagedAttribute
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @ManagedAttribute
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param capacity number of keys tracked per kind
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param file where the sketches are saved; defaults to <code>petclinic-access.sketch</code> in the temporary
+     *             directory when empty
+     */
+    public void setFile(String file) {
+        if (StringUtils.hasText(file)) {
+            this.file = Paths.get(file);
+        }
+    }
+
+    @ManagedAttribute
+    public String getFile() {
+        return this.file.toAbsolutePath().toString();
+    }
+
+    @Override
+    public int getOrder() {
+        // outside of the other aspects of the service but the RequestIdentityMap (-1), and of the caching and
+        // transaction interceptors (lowest precedence); after the interceptor exposing the invocation to AspectJ
+        // advices (highest precedence)
+        return 0;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        for (String kind : new String[] {OWNERS, OWNER_SEARCHES, PETS}) {
+            this.sketches.put(kind, new HeavyHitters(this.capacity));
+        }
+        try {
+            load();
+        } catch (NoSuchFileException ex) {
+            // first start
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Cannot read the access sketches " + this.file + ", starting from scratch", ex);
+            for (Map.Entry<String, HeavyHitters> sketch : this.sketches.entrySet()) {
+                sketch.setValue(new HeavyHitters(this.capacity));
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        BinaryReader in = new BinaryReader(ByteBuffer.wrap(Files.readAllBytes(this.file)));
+        if (in.readVarInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Not an access sketch file: " + this.file);
+        }
+        while (in.hasRemaining()) {
+            String kind = in.readString();
+            HeavyHitters sketch = this.sketches.computeIfAbsent(kind, name -> new HeavyHitters(this.capacity));
+            sketch.readFrom(in);
+            sketch.decay();
+        }
+    }
+
+    /**
+     * Save the sketches now; they are saved on shutdown anyway.
+     */
+    @ManagedOperation
+    public synchronized void save() throws IOException {
+        BinaryWriter out = new BinaryWriter();
+        out.writeVarInt(MAGIC);
+        out.writeByte(VERSION);
+        for (Map.Entry<String, HeavyHitters> sketch : this.sketches.entrySet()) {
+            out.writeString(sketch.getKey());
+            sketch.getValue().writeTo(out);
+        }
+        Path directory = this.file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, this.file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, out.toByteArray());
+            Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        try {
+            save();
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Cannot save the access sketches to " + this.file, ex);
+        }
+    }
+
+    @AfterReturning("execution(* org.springframework.samples.petclinic.service.ClinicService.findOwnerById(int)) && args(id)")
+    public void ownerFound(int id) {
+        record(OWNERS, String.valueOf(id));
+    }
+
+    @AfterReturning("execution(* org.springframework.samples.petclinic.service.ClinicService.findOwnerByLastName(String, int, int))"
+        + " && args(lastName, page, size)")
+    public void ownersSearched(String lastName, int page, int size) {
+        record(OWNER_SEARCHES, page + "," + size + "," + (lastName == null ? "" : lastName));
+    }
+
+    @AfterReturning("execution(* org.springframework.samples.petclinic.service.ClinicService.findPetById(int)) && args(id)")
+    public void petFound(int id) {
+        record(PETS, String.valueOf(id));
+    }
+
+    private void record(String kind, String key) {
+        if (this.enabled && untracked.get() == null) {
+            this.sketches.get(kind).offer(key);
+        }
+    }
+
+    /**
+     * Run the task without recording the accesses it makes.
+     */
+    public void runUntracked(Runnable task) {
+        untracked.set(Boolean.TRUE);
+        try {
+            task.run();
+        } finally {
+            untracked.remove();
+        }
+    }
+
+    /**
+     * @return at most <code>limit</code> of the most accessed keys of the kind, most accessed first
+     */
+    public List<HeavyHitters.Item> getTop(String kind, int limit) {
+        return this.sketches.get(kind).top(limit);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "accessTracker";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", isEnabled());
+        for (Map.Entry<String, HeavyHitters> sketch : this.sketches.entrySet()) {
+            Map<String, Object> statistics = new LinkedHashMap<>();
+            statistics.put("accesses", sketch.getValue().getTotal());
+            statistics.put("tracked", sketch.getValue().size());
+            // the keys themselves (last names) are not published
+            long top = 0;
+            for (HeavyHitters.Item item : sketch.getValue().top(100)) {
+                top += item.getCount();
+            }
+            long total = sketch.getValue().getTotal();
+            statistics.put("top100Share", total == 0 ? 0 : Math.min((double) top / total, 1));
+            metrics.put(sketch.getKey(), statistics);
+        }
+        return metrics;
+    }
+
+}
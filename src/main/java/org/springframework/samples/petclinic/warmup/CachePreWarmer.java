@@ -0,0 +1,293 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+import org.springframework.samples.petclinic.health.Readiness;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.service.ClinicService;
+
+/**
+ * Loads the most accessed owner search pages, owners and pets of the previous runs, as recorded by the
+ * {@link AccessTracker}, into the caches once the application context is started, through the
+ * {@link ClinicService} as requests would. The node is reported ready only once done, or once the time budget is
+ * spent: what is left then is loaded on demand.
+ * <p/>
+ * Loads run on a small pool of threads, so as not to exhaust the connection pool. Progress is published on JMX and
+ * in the /metrics endpoint.
+ */
+@ManagedResource("petclinic:type=CachePreWarmer")
+public class CachePreWarmer implements MetricsSource, InitializingBean, DisposableBean, ApplicationContextAware,
+    ApplicationListener<ContextRefreshedEvent> {
+
+    /**
+     * Name of the {@link Readiness} gate held while pre-warming.
+     */
+    public static final String GATE = "cachePreWarm";
+
+    private static final Log logger = LogFactory.getLog(CachePreWarmer.class);
+
+    private final ClinicService clinicService;
+
+    private final AccessTracker accessTracker;
+
+    private final Readiness readiness;
+
+    private ApplicationContext applicationContext;
+
+    private boolean enabled = true;
+
+    private int threads = 4;
+
+    private long budgetMillis = 30_000;
+
+    private int maxOwners = 2000;
+
+    private int maxSearches = 200;
+
+    private int maxPets = 500;
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    private volatile ExecutorService executor;
+
+    private volatile String status = "pending";
+
+    private volatile int scheduled;
+
+    private final LongAdder loaded = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder skipped = new LongAdder();
+
+    private volatile long durationMillis;
+
+    public CachePreWarmer(ClinicService clinicService, AccessTracker accessTracker, Readiness readiness) {
+        this.clinicService = clinicService;
+        this.accessTracker = accessTracker;
+        this.readiness = readiness;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param threads number of concurrent loads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param budgetMillis time after which the node is reported ready, pre-warming done or not
+     */
+    public void setBudgetMillis(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+    }
+
+    public void setMaxOwners(int maxOwners) {
+        this.maxOwners = maxOwners;
+    }
+
+    public void setMaxSearches(int maxSearches) {
+        this.maxSearches = maxSearches;
+    }
+
+    public void setMaxPets(int maxPets) {
+        this.maxPets = maxPets;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (this.enabled) {
+            this.readiness.hold(GATE);
+        } else {
+            this.status = "disabled";
+        }
+    }
+
+    @Override
+    public synchronized void onApplicationEvent(ContextRefreshedEvent event) {
+        // the caches intercept calls once the context is refreshed; ignore the refreshes of child contexts
+        if (!this.enabled || event.getApplicationContext() != this.applicationContext || this.executor != null) {
+            return;
+        }
+        this.executor = Executors.newFixedThreadPool(Math.max(this.threads, 1), runnable -> {
+            Thread thread = new Thread(runnable, "cache-prewarm-" + this.threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread coordinator = new Thread(this::preWarm, "cache-prewarm");
+        coordinator.setDaemon(true);
+        coordinator.start();
+    }
+
+    /**
+     * Run the loads and wait for them within the budget, then release the readiness gate.
+     */
+    void preWarm() {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(this.budgetMillis);
+        this.status = "running";
+        try {
+            List<Runnable> loads = loads();
+            this.scheduled = loads.size();
+            for (Runnable load : loads) {
+                this.executor.execute(() -> {
+                    if (System.nanoTime() - deadline > 0) {
+                        this.skipped.increment();
+                        return;
+                    }
+                    try {
+                        this.accessTracker.runUntracked(load);
+                        this.loaded.increment();
+                    } catch (RuntimeException ex) {
+                        // e.g. deleted since
+                        this.failed.increment();
+                    }
+                });
+            }
+            this.executor.shutdown();
+            boolean completed = this.executor.awaitTermination(Math.max(deadline - System.nanoTime(), 0),
+                TimeUnit.NANOSECONDS);
+            this.status = completed ? "completed" : "budget exhausted";
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            this.status = "interrupted";
+        } catch (RuntimeException ex) {
+            logger.warn("Cache pre-warming failed", ex);
+            this.status = "failed: " + ex;
+        } finally {
+            this.skipped.add(this.executor.shutdownNow().size());
+            this.durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            this.readiness.release(GATE);
+            logger.info("Cache pre-warming " + this.status + " in " + this.durationMillis + " ms: " + this.loaded.sum()
+                + " entries loaded, " + this.failed.sum() + " failed, " + this.skipped.sum() + " skipped");
+        }
+    }
+
+    /**
+     * @return the loads to run, search pages first as each of them loads a page of owners
+     */
+    private List<Runnable> loads() {
+        List<Runnable> loads = new ArrayList<>();
+        for (HeavyHitters.Item search : this.accessTracker.getTop(AccessTracker.OWNER_SEARCHES, this.maxSearches)) {
+            String[] parts = search.getKey().split(",", 3);
+            int page = Integer.parseInt(parts[0]);
+            int size = Integer.parseInt(parts[1]);
+            loads.add(() -> this.clinicService.findOwnerByLastName(parts[2], page, size));
+        }
+        for (HeavyHitters.Item owner : this.accessTracker.getTop(AccessTracker.OWNERS, this.maxOwners)) {
+            int id = Integer.parseInt(owner.getKey());
+            loads.add(() -> this.clinicService.findOwnerById(id));
+        }
+        for (HeavyHitters.Item pet : this.accessTracker.getTop(AccessTracker.PETS, this.maxPets)) {
+            int id = Integer.parseInt(pet.getKey());
+            loads.add(() -> {
+                // pets are not cached, their owners are: the pet forms show both
+                Pet loaded = this.clinicService.findPetById(id);
+                if (loaded != null && loaded.getOwner() != null) {
+                    this.clinicService.findOwnerById(loaded.getOwner().getId());
+                }
+            });
+        }
+        return loads;
+    }
+
+    @Override
+    public void destroy() {
+        ExecutorService current = this.executor;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    @ManagedAttribute
+    public String getStatus() {
+        return this.status;
+    }
+
+    @ManagedAttribute
+    public long getBudgetMillis() {
+        return this.budgetMillis;
+    }
+
+    @ManagedAttribute
+    public long getDurationMillis() {
+        return this.durationMillis;
+    }
+
+    @ManagedAttribute
+    public long getLoadedCount() {
+        return this.loaded.sum();
+    }
+
+    @ManagedAttribute
+    public long getFailedCount() {
+        return this.failed.sum();
+    }
+
+    @ManagedAttribute
+    public long getSkippedCount() {
+        return this.skipped.sum();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "cachePreWarm";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("status", getStatus());
+        metrics.put("budgetMillis", getBudgetMillis());
+        metrics.put("durationMillis", getDurationMillis());
+        metrics.put("scheduled", this.scheduled);
+        metrics.put("loaded", getLoadedCount());
+        metrics.put("failed", getFailedCount());
+        metrics.put("skipped", getSkippedCount());
+        return metrics;
+    }
+
+}
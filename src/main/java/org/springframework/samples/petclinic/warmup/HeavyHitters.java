@@ -0,0 +1,227 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.samples.petclinic.codec.BinaryReader;
+import org.springframework.samples.petclinic.codec.BinaryWriter;
+
+/**
+ * Approximate most frequent keys of a stream, in a fixed number of counters (Space-Saving algorithm). A key not
+ * tracked yet replaces the least counted one and inherits its count, recorded as the maximum overestimation of its
+ * own: every key more frequent than <code>total / capacity</code> is guaranteed to be tracked.
+ * <p/>
+ * The counters are kept in a min-heap, so that recording a key costs O(log capacity). Thread-safe.
+ */
+public class HeavyHitters {
+
+    private final int capacity;
+
+    private final Map<String, Counter> counters = new HashMap<>();
+
+    /**
+     * Min-heap of the counters, by count.
+     */
+    private final Counter[] heap;
+
+    private int size;
+
+    private long total;
+
+    public HeavyHitters(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        this.heap = new Counter[this.capacity];
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public synchronized void offer(String key) {
+        offer(key, 1, 0);
+    }
+
+    private void offer(String key, long count, long error) {
+        this.total += count;
+        Counter counter = this.counters.get(key);
+        if (counter != null) {
+            counter.count += count;
+            siftDown(counter.index);
+            return;
+        }
+        if (this.size < this.capacity) {
+            counter = new Counter(key, count, error);
+            counter.index = this.size;
+            this.heap[this.size++] = counter;
+            this.counters.put(key, counter);
+            siftUp(counter.index);
+            return;
+        }
+        counter = this.heap[0];
+        this.counters.remove(counter.key);
+        counter.key = key;
+        counter.error = counter.count + error;
+        counter.count += count;
+        this.counters.put(key, counter);
+        siftDown(0);
+    }
+
+    /**
+     * @return at most <code>limit</code> keys, most counted first
+     */
+    public synchronized List<Item> top(int limit) {
+        Counter[] sorted = Arrays.copyOf(this.heap, this.size);
+        Arrays.sort(sorted, Comparator.comparingLong((Counter counter) -> counter.count).reversed());
+        List<Item> items = new ArrayList<>(Math.min(limit, sorted.length));
+        for (int i = 0; i < sorted.length && i < limit; i++) {
+            items.add(new Item(sorted[i].key, sorted[i].count, sorted[i].error));
+        }
+        return items;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * @return number of recorded accesses
+     */
+    public synchronized long getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Halve every count, so that the keys of the recent past weigh more than older ones.
+     */
+    public synchronized void decay() {
+        // halving keeps the order of the counts, hence the heap
+        for (int i = 0; i < this.size; i++) {
+            this.heap[i].count /= 2;
+            this.heap[i].error /= 2;
+        }
+        this.total /= 2;
+    }
+
+    public synchronized void writeTo(BinaryWriter out) {
+        out.writeVarInt(this.size);
+        for (int i = 0; i < this.size; i++) {
+            out.writeString(this.heap[i].key);
+            out.writeVarLong(this.heap[i].count);
+            out.writeVarLong(this.heap[i].error);
+        }
+    }
+
+    /**
+     * Add the counts written by {@link #writeTo(BinaryWriter)}.
+     */
+    public synchronized void readFrom(BinaryReader in) {
+        int count = in.readVarInt();
+        for (int i = 0; i < count; i++) {
+            offer(in.readString(), in.readVarLong(), in.readVarLong());
+        }
+    }
+
+    private void siftUp(int index) {
+        Counter counter = this.heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (this.heap[parent].count <= counter.count) {
+                break;
+            }
+            place(this.heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = this.heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= this.size) {
+                break;
+            }
+            if (child + 1 < this.size && this.heap[child + 1].count < this.heap[child].count) {
+                child++;
+            }
+            if (counter.count <= this.heap[child].count) {
+                break;
+            }
+            place(this.heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter counter, int index) {
+        this.heap[index] = counter;
+        counter.index = index;
+    }
+
+    /**
+     * A tracked key, with its estimated count and the maximum overestimation of that count.
+     */
+    public static final class Item {
+
+        private final String key;
+
+        private final long count;
+
+        private final long error;
+
+        Item(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return this.key;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getError() {
+            return this.error;
+        }
+    }
+
+    private static final class Counter {
+
+        String key;
+
+        long count;
+
+        long error;
+
+        int index;
+
+        Counter(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+}
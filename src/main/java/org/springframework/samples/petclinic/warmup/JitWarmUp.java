@@ -0,0 +1,416 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.samples.petclinic.diagnostics.MetricsSource;
+import org.springframework.samples.petclinic.health.Readiness;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.samples.petclinic.web.OwnerController;
+import org.springframework.samples.petclinic.web.PetController;
+import org.springframework.samples.petclinic.web.VetController;
+import org.springframework.samples.petclinic.web.VisitController;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.support.WebBindingInitializer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+/**
+ * Runs the hot paths of the web tier for a number of iterations once the DispatcherServlet context is started, so
+ * that they are compiled by the JIT before the node receives traffic: the owner search, the owner details, the vets
+ * JSON and XML representations, and the pet and visit form bindings (with the {@link
+ * org.springframework.samples.petclinic.web.PetTypeFormatter} and the validators). The node is reported ready only
+ * once done, or once the time budget is spent.
+ * <p/>
+ * The controllers, the binders and the message converters are called directly, with the same configuration as
+ * requests: JSP rendering needs the servlet container and is not part of the warm-up. The calls are not counted by
+ * the {@link AccessTracker}. Skipped when no {@link Readiness} is defined, e.g. in web tests. Progress is published in
+ * the /metrics endpoint.
+ */
+public class JitWarmUp implements MetricsSource, InitializingBean, DisposableBean, ApplicationContextAware,
+    ApplicationListener<ContextRefreshedEvent> {
+
+    /**
+     * Name of the {@link Readiness} gate held while warming up.
+     */
+    public static final String GATE = "jitWarmUp";
+
+    private static final Log logger = LogFactory.getLog(JitWarmUp.class);
+
+    /**
+     * Number of the last iterations of a path averaged in its metrics.
+     */
+    private static final int RECENT = 100;
+
+    private ApplicationContext applicationContext;
+
+    private Readiness readiness;
+
+    private boolean enabled = true;
+
+    private int iterations = 2000;
+
+    private long budgetMillis = 60_000;
+
+    private final Map<String, PathStatistics> statistics = new LinkedHashMap<>();
+
+    private Thread thread;
+
+    private volatile boolean stopped;
+
+    private volatile String status = "pending";
+
+    private volatile int completedIterations;
+
+    private volatile long durationMillis;
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param iterations number of times each path is run
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * @param budgetMillis time after which the node is reported ready, warm-up done or not
+     */
+    public void setBudgetMillis(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.readiness = this.applicationContext.getBeanProvider(Readiness.class).getIfAvailable();
+        if (!this.enabled || this.readiness == null) {
+            this.status = "disabled";
+            return;
+        }
+        this.readiness.hold(GATE);
+    }
+
+    @Override
+    public synchronized void onApplicationEvent(ContextRefreshedEvent event) {
+        if (this.readiness == null || !this.enabled || event.getApplicationContext() != this.applicationContext
+            || this.thread != null) {
+            return;
+        }
+        this.thread = new Thread(this::warmUp, "jit-warmup");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Run every path in turn until the iterations or the budget are exhausted, then release the readiness gate.
+     */
+    void warmUp() {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(this.budgetMillis);
+        this.status = "running";
+        try {
+            AccessTracker accessTracker = this.applicationContext.getBeanProvider(AccessTracker.class).getIfAvailable();
+            Runnable iterations = () -> {
+                Map<String, Runnable> paths = paths();
+                int i = 0;
+                while (i < this.iterations && System.nanoTime() - deadline < 0 && !this.stopped) {
+                    paths.forEach(this::run);
+                    this.completedIterations = ++i;
+                }
+            };
+            if (accessTracker != null) {
+                accessTracker.runUntracked(iterations);
+            } else {
+                iterations.run();
+            }
+            this.status = this.stopped ? "stopped"
+                : this.completedIterations < this.iterations ? "budget exhausted" : "completed";
+        } catch (RuntimeException ex) {
+            logger.warn("JIT warm-up failed", ex);
+            this.status = "failed: " + ex;
+        } finally {
+            this.durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            this.readiness.release(GATE);
+            logger.info("JIT warm-up " + this.status + " in " + this.durationMillis + " ms: "
+                + this.completedIterations + " iterations, " + getFailureCount() + " failures");
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // the controllers and their classes go away with the context: let the current iteration complete first
+        this.stopped = true;
+        Thread current;
+        synchronized (this) {
+            current = this.thread;
+        }
+        if (current != null) {
+            current.join(10_000);
+        }
+    }
+
+    private void run(String name, Runnable path) {
+        PathStatistics pathStatistics;
+        synchronized (this.statistics) {
+            pathStatistics = this.statistics.computeIfAbsent(name, key -> new PathStatistics());
+        }
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            path.run();
+        } catch (RuntimeException ex) {
+            // e.g. an owner deleted since it was looked up; one failure must not stop the warm-up
+            failed = true;
+        }
+        pathStatistics.record((System.nanoTime() - start) / 1000, failed);
+    }
+
+    /**
+     * @return the paths to warm up, with sample data taken from the database (through the caches)
+     */
+    private Map<String, Runnable> paths() {
+        ClinicService clinicService = this.applicationContext.getBean(ClinicService.class);
+        OwnerController ownerController = this.applicationContext.getBean(OwnerController.class);
+        VetController vetController = this.applicationContext.getBean(VetController.class);
+        PetController petController = this.applicationContext.getBean(PetController.class);
+        VisitController visitController = this.applicationContext.getBean(VisitController.class);
+        RequestMappingHandlerAdapter handlerAdapter = this.applicationContext.getBean(RequestMappingHandlerAdapter.class);
+        List<HttpMessageConverter<?>> converters = handlerAdapter.getMessageConverters();
+        WebBindingInitializer bindingInitializer = handlerAdapter.getWebBindingInitializer();
+
+        List<Integer> ownerIds = new ArrayList<>();
+        Set<String> prefixes = new LinkedHashSet<>();
+        prefixes.add("");
+        for (Owner owner : clinicService.findOwnerByLastName("", 1, 20).getOwners()) {
+            ownerIds.add(owner.getId());
+            String lastName = owner.getLastName();
+            if (lastName != null && !lastName.isEmpty()) {
+                prefixes.add(lastName.substring(0, 1));
+            }
+        }
+        List<String> searches = new ArrayList<>(prefixes);
+        String petType = null;
+        for (PetType type : clinicService.findPetTypes()) {
+            petType = type.getName();
+            break;
+        }
+        String petTypeName = petType;
+        int[] counter = new int[1];
+
+        Map<String, Runnable> paths = new LinkedHashMap<>();
+        paths.put("ownerSearch", () -> {
+            Owner owner = new Owner();
+            owner.setLastName(searches.get(counter[0]++ % searches.size()));
+            ownerController.processFindForm(owner, new BeanPropertyBindingResult(owner, "owner"), new HashMap<>(), 1,
+                10);
+        });
+        if (!ownerIds.isEmpty()) {
+            paths.put("ownerDetails", () -> ownerController.showOwner(ownerIds.get(counter[0] % ownerIds.size())));
+        }
+        paths.put("vetsJson", () -> write(converters, vetController.showJsonVetList(), MediaType.APPLICATION_JSON));
+        paths.put("vetsXml", () -> write(converters, vetController.showXmlVetList(), MediaType.APPLICATION_XML));
+        if (petTypeName != null) {
+            paths.put("petForm", () -> {
+                WebDataBinder binder = new WebDataBinder(new Pet(), "pet");
+                bindingInitializer.initBinder(binder);
+                petController.initPetBinder(binder);
+                MutablePropertyValues values = new MutablePropertyValues();
+                values.add("name", "Leo");
+                values.add("birthDate", "2010/09/07");
+                values.add("type", petTypeName);
+                binder.bind(values);
+                binder.validate();
+            });
+        }
+        paths.put("visitForm", () -> {
+            WebDataBinder binder = new WebDataBinder(new Visit(), "visit");
+            bindingInitializer.initBinder(binder);
+            visitController.setAllowedFields(binder);
+            MutablePropertyValues values = new MutablePropertyValues();
+            values.add("date", "2013/01/01");
+            values.add("description", "rabies shot");
+            binder.bind(values);
+            binder.validate();
+        });
+        return paths;
+    }
+
+    /**
+     * Write the value with the message converter that would be chosen for the media type.
+     */
+    @SuppressWarnings("unchecked")
+    private static void write(List<HttpMessageConverter<?>> converters, Object value, MediaType mediaType) {
+        for (HttpMessageConverter<?> converter : converters) {
+            if (converter.canWrite(value.getClass(), mediaType)) {
+                try {
+                    ((HttpMessageConverter<Object>) converter).write(value, mediaType, new BufferedOutputMessage());
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                return;
+            }
+        }
+        throw new IllegalStateException("No converter for " + value.getClass().getName() + " as " + mediaType);
+    }
+
+    public String getStatus() {
+        return this.status;
+    }
+
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    public long getBudgetMillis() {
+        return this.budgetMillis;
+    }
+
+    public int getCompletedIterations() {
+        return this.completedIterations;
+    }
+
+    public long getDurationMillis() {
+        return this.durationMillis;
+    }
+
+    public long getFailureCount() {
+        long failures = 0;
+        synchronized (this.statistics) {
+            for (PathStatistics pathStatistics : this.statistics.values()) {
+                failures += pathStatistics.failures;
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "jitWarmUp";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("status", getStatus());
+        metrics.put("iterations", getIterations());
+        metrics.put("budgetMillis", getBudgetMillis());
+        metrics.put("completedIterations", getCompletedIterations());
+        metrics.put("durationMillis", getDurationMillis());
+        Map<String, Object> paths = new LinkedHashMap<>();
+        synchronized (this.statistics) {
+            this.statistics.forEach((name, pathStatistics) -> paths.put(name, pathStatistics.toMap()));
+        }
+        metrics.put("paths", paths);
+        return metrics;
+    }
+
+    /**
+     * Duration of the first run of a path, against the average of its last runs: how much the warm-up gained.
+     */
+    private static final class PathStatistics {
+
+        private final long[] recentMicros = new long[RECENT];
+
+        private long count;
+
+        private long failures;
+
+        private long firstMicros;
+
+        synchronized void record(long micros, boolean failed) {
+            if (this.count == 0) {
+                this.firstMicros = micros;
+            }
+            this.recentMicros[(int) (this.count++ % RECENT)] = micros;
+            if (failed) {
+                this.failures++;
+            }
+        }
+
+        synchronized Map<String, Object> toMap() {
+            int recent = (int) Math.min(this.count, RECENT);
+            long sum = 0;
+            for (int i = 0; i < recent; i++) {
+                sum += this.recentMicros[i];
+            }
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("runs", this.count);
+            map.put("failures", this.failures);
+            map.put("firstMicros", this.firstMicros);
+            map.put("recentAverageMicros", recent == 0 ? 0 : sum / recent);
+            return map;
+        }
+
+    }
+
+    /**
+     * Response body written to memory, and discarded.
+     */
+    private static final class BufferedOutputMessage implements HttpOutputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(4096);
+
+        @Override
+        public OutputStream getBody() {
+            return this.body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return this.headers;
+        }
+
+    }
+
+}
@@ -15,20 +15,91 @@
  */
 package org.springframework.samples.petclinic.web;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.health.HealthProber;
+import org.springframework.samples.petclinic.health.Readiness;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
- * Lightweight health check endpoint for load balancer probes.
+ * Lightweight health check endpoints for load balancer probes, answered from memory:
+ * <ul>
+ * <li><code>/health/live</code> (or <code>/health</code>) tells that the application is up; it does not depend on
+ * the database, so that an outage does not get every node restarted</li>
+ * <li><code>/health/ready</code> that it has completed its startup tasks (see {@link Readiness}) and that the last
+ * results of the {@link HealthProber} are fresh and not down: it can take traffic</li>
+ * <li><code>/health/probes</code> details these results, with the pool utilization and the probe latencies</li>
+ * </ul>
  */
 @RestController
 @RequestMapping("/health")
 public class HealthCheckController {
 
+    private final ObjectProvider<Readiness> readiness;
+
+    private final ObjectProvider<HealthProber> healthProber;
+
+    public HealthCheckController(ObjectProvider<Readiness> readiness, ObjectProvider<HealthProber> healthProber) {
+        this.readiness = readiness;
+        this.healthProber = healthProber;
+    }
+
     @GetMapping(produces = MediaType.TEXT_PLAIN_VALUE)
     public String health() {
         return "OK";
     }
+
+    @GetMapping(value = "/live", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String live() {
+        return "OK";
+    }
+
+    @GetMapping(value = "/ready", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> ready() {
+        List<String> reasons = notReadyReasons();
+        if (reasons.isEmpty()) {
+            return ResponseEntity.ok("READY");
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .body("NOT READY: " + String.join(", ", reasons));
+    }
+
+    @GetMapping(value = "/probes", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> probes() {
+        List<String> reasons = notReadyReasons();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("ready", reasons.isEmpty());
+        body.put("notReadyReasons", reasons);
+        HealthProber prober = this.healthProber.getIfAvailable();
+        if (prober != null) {
+            body.put("probes", prober.getMetrics());
+        }
+        return ResponseEntity.status(reasons.isEmpty() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(body);
+    }
+
+    /**
+     * @return the startup tasks still running, then the failing probes
+     */
+    private List<String> notReadyReasons() {
+        List<String> reasons = new ArrayList<>();
+        Readiness currentReadiness = this.readiness.getIfAvailable();
+        if (currentReadiness != null) {
+            reasons.addAll(currentReadiness.getPendingGates());
+        }
+        HealthProber prober = this.healthProber.getIfAvailable();
+        if (prober != null) {
+            reasons.addAll(prober.getFailingProbes());
+        }
+        return reasons;
+    }
+
 }
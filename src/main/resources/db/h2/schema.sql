@@ -5,6 +5,8 @@ DROP TABLE visits IF EXISTS;
 DROP TABLE pets IF EXISTS;
 DROP TABLE types IF EXISTS;
 DROP TABLE owners IF EXISTS;
+DROP TABLE cache_changes IF EXISTS;
+DROP TABLE cache_epoch IF EXISTS;
 
 
 CREATE TABLE vets (
@@ -62,3 +64,17 @@ CREATE TABLE visits (
 );
 ALTER TABLE visits ADD CONSTRAINT fk_visits_pets FOREIGN KEY (pet_id) REFERENCES pets (id);
 CREATE INDEX visits_pet_id ON visits (pet_id);
+
+CREATE TABLE cache_changes (
+  id         INTEGER IDENTITY PRIMARY KEY,
+  node       VARCHAR(36),
+  cache_name VARCHAR(30),
+  cache_key  VARCHAR(255),
+  created    TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX cache_changes_created ON cache_changes (created);
+
+CREATE TABLE cache_epoch (
+  id    INTEGER PRIMARY KEY,
+  epoch VARCHAR(36) NOT NULL
+);
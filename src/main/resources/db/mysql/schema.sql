@@ -59,3 +59,17 @@ CREATE TABLE IF NOT EXISTS visits (
   description VARCHAR(255),
   FOREIGN KEY (pet_id) REFERENCES pets(id)
 ) engine=InnoDB;
+
+CREATE TABLE IF NOT EXISTS cache_changes (
+  id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  node VARCHAR(36),
+  cache_name VARCHAR(30),
+  cache_key VARCHAR(255),
+  created TIMESTAMP NULL DEFAULT CURRENT_TIMESTAMP,
+  INDEX(created)
+) engine=InnoDB;
+
+CREATE TABLE IF NOT EXISTS cache_epoch (
+  id INT(4) UNSIGNED NOT NULL PRIMARY KEY,
+  epoch VARCHAR(36) NOT NULL
+) engine=InnoDB;
@@ -82,3 +82,20 @@ CREATE TABLE IF NOT EXISTS visits (
 );
 
 ALTER SEQUENCE visits_id_seq RESTART WITH 100;
+
+CREATE TABLE IF NOT EXISTS cache_changes (
+  id BIGSERIAL,
+  node VARCHAR(36),
+  cache_name VARCHAR(30),
+  cache_key VARCHAR(255),
+  created TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT pk_cache_changes PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_cache_changes_created ON cache_changes (created);
+
+CREATE TABLE IF NOT EXISTS cache_epoch (
+  id INTEGER,
+  epoch VARCHAR(36) NOT NULL,
+  CONSTRAINT pk_cache_epoch PRIMARY KEY (id)
+);
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.samples.petclinic.model.OwnerSearchResults;
+
+/**
+ * Test class for {@link CacheChangeLog} and {@link CacheInvalidationPoller}: two nodes with their own caches share one
+ * database.
+ */
+class CacheInvalidationTests {
+
+    private EmbeddedDatabase database;
+
+    private Node first;
+
+    private Node second;
+
+    @BeforeEach
+    void setUp() {
+        this.database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+            .setName(UUID.randomUUID().toString()).addScript("db/h2/schema.sql").build();
+        this.first = new Node();
+        this.second = new Node();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.database.shutdown();
+    }
+
+    @Test
+    void shouldEvictTheKeysChangedByAnotherNode() {
+        this.second.owners.put(1, "George Franklin");
+        this.second.owners.put(2, "Betty Davis");
+        this.second.searchCache.get("Da", 1, 10, () -> results("Da"));
+        this.second.searchCache.get("Fr", 1, 10, () -> results("Fr"));
+
+        this.first.changeLog.append("owners", 2);
+        this.first.changeLog.append(OwnerSearchCache.NAME, "Davis");
+
+        assertThat(this.second.poller.poll()).isEqualTo(2);
+        assertThat(this.second.owners.get(1)).isNotNull();
+        assertThat(this.second.owners.get(2)).isNull();
+        assertThat(this.second.searchCache.getSize()).isEqualTo(1);
+        assertThat(this.second.poller.poll()).isZero();
+    }
+
+    @Test
+    void shouldSkipItsOwnChanges() {
+        this.first.owners.put(1, "George Franklin");
+
+        this.first.changeLog.append("owners", 1);
+
+        assertThat(this.first.poller.poll()).isZero();
+        assertThat(this.first.owners.get(1)).isNotNull();
+        assertThat(this.second.poller.poll()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldClearACacheForTheWildcardKey() {
+        this.second.owners.put(1, "George Franklin");
+        this.second.owners.put(2, "Betty Davis");
+
+        new JdbcTemplate(this.database).update("INSERT INTO cache_changes (cache_name, cache_key) VALUES ('owners', '*')");
+
+        assertThat(this.second.poller.poll()).isEqualTo(1);
+        assertThat(this.second.owners.get(1)).isNull();
+        assertThat(this.second.owners.get(2)).isNull();
+    }
+
+    @Test
+    void shouldReadInBatches() {
+        this.second.poller.setBatchSize(2);
+        for (int id = 1; id <= 5; id++) {
+            this.second.owners.put(id, "Owner " + id);
+            this.first.changeLog.append("owners", id);
+        }
+
+        assertThat(this.second.poller.poll()).isEqualTo(5);
+        assertThat(this.second.poller.getLastId()).isEqualTo(this.first.changeLog.getLastId());
+    }
+
+    @Test
+    void shouldApplyAChangeCommittedAfterAHigherId() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(this.database);
+        this.second.owners.put(1, "George Franklin");
+        this.first.changeLog.append("owners", 1);
+        long late = this.first.changeLog.getLastId();
+        this.first.changeLog.append("owners", 3);
+        // simulate the first change being committed after the second one was polled
+        jdbcTemplate.update("DELETE FROM cache_changes WHERE id = ?", late);
+
+        assertThat(this.second.poller.poll()).isEqualTo(1);
+        assertThat(this.second.poller.getPendingGapCount()).isEqualTo(1);
+        assertThat(this.second.owners.get(1)).isNotNull();
+
+        jdbcTemplate.update("INSERT INTO cache_changes (id, node, cache_name, cache_key) VALUES (?, ?, 'owners', '1')",
+            late, this.first.changeLog.getNodeId());
+
+        assertThat(this.second.poller.poll()).isEqualTo(1);
+        assertThat(this.second.poller.getPendingGapCount()).isZero();
+        assertThat(this.second.owners.get(1)).isNull();
+    }
+
+    private static OwnerSearchResults results(String lastName) {
+        return new OwnerSearchResults(Collections.emptyList(), 0, 1, 10, lastName);
+    }
+
+    private final class Node {
+
+        final CacheChangeLog changeLog = new CacheChangeLog(CacheInvalidationTests.this.database);
+
+        final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("owners");
+
+        final Cache owners = this.cacheManager.getCache("owners");
+
+        final OwnerSearchCache searchCache = new OwnerSearchCache();
+
+        final CacheInvalidationPoller poller = new CacheInvalidationPoller(this.changeLog, this.cacheManager,
+            Arrays.asList(this.searchCache));
+
+        Node() {
+            this.poller.setKeyTypes(Collections.singletonMap("owners", Integer.class));
+            this.poller.setPollIntervalMillis(0);
+            // reads the id to start from, as on startup
+            this.poller.poll();
+        }
+    }
+
+}
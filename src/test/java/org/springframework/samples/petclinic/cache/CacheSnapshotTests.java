@@ -0,0 +1,247 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Specialty;
+import org.springframework.samples.petclinic.model.Vet;
+
+/**
+ * Test class for {@link CacheSnapshot}: a node saves its caches and another one, sharing the database, restores them.
+ */
+class CacheSnapshotTests {
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedDatabase database;
+
+    @BeforeEach
+    void setUp() {
+        this.database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+            .setName(UUID.randomUUID().toString()).addScript("db/h2/schema.sql").build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.database.shutdown();
+    }
+
+    @Test
+    void shouldRestoreTheSavedEntries() throws IOException {
+        Node before = new Node(true);
+        before.cacheManager.getCache("vets").put(SimpleKey.EMPTY, Collections.singletonList(vet()));
+        before.cacheManager.getCache("owners").put(1, owner(1, "Franklin"));
+        before.cacheManager.getCache("owners").put(2, owner(2, "Davis"));
+        assertThat(before.snapshot.save()).isEqualTo(3);
+
+        Node after = new Node(true);
+
+        assertThat(after.snapshot.getRestoreStatus()).isEqualTo("restored");
+        assertThat(after.snapshot.getRestoredCount()).isEqualTo(3);
+        Owner owner = after.cacheManager.getCache("owners").get(2, Owner.class);
+        assertThat(owner.getLastName()).isEqualTo("Davis");
+        assertThat(owner.getPets()).extracting(Pet::getName).containsExactly("Leo");
+        Collection<?> vets = after.cacheManager.getCache("vets").get(SimpleKey.EMPTY, Collection.class);
+        assertThat(vets).hasSize(1);
+        assertThat(((Vet) vets.iterator().next()).getSpecialties()).extracting(Specialty::getName)
+            .containsExactly("radiology");
+    }
+
+    @Test
+    void shouldEvictTheEntriesChangedSinceTheSnapshot() throws IOException {
+        Node before = new Node(true);
+        before.cacheManager.getCache("owners").put(1, owner(1, "Franklin"));
+        before.cacheManager.getCache("owners").put(2, owner(2, "Davis"));
+        before.snapshot.save();
+        // written by this node itself before its restart, or by another node
+        before.changeLog.append("owners", 2);
+
+        Node after = new Node(true);
+
+        assertThat(after.snapshot.getReplayedCount()).isEqualTo(1);
+        assertThat(after.cacheManager.getCache("owners").get(1)).isNotNull();
+        assertThat(after.cacheManager.getCache("owners").get(2)).isNull();
+    }
+
+    @Test
+    void shouldIgnoreTheSnapshotOfARecreatedDatabase() throws IOException {
+        Node before = new Node(true);
+        before.cacheManager.getCache("owners").put(1, owner(1, "Franklin"));
+        before.snapshot.destroy();
+        this.database.shutdown();
+        setUp();
+
+        Node after = new Node(true);
+
+        assertThat(after.snapshot.getRestoreStatus()).isEqualTo("ignored: written for another database");
+        assertThat(after.cacheManager.getCache("owners").get(1)).isNull();
+    }
+
+    @Test
+    void shouldIgnoreASnapshotAheadOfTheChangeLog() throws IOException {
+        Node before = new Node(true);
+        before.changeLog.append("owners", 2);
+        before.cacheManager.getCache("owners").put(1, owner(1, "Franklin"));
+        before.snapshot.save();
+        // the database restored from a backup taken before the change
+        new JdbcTemplate(this.database).update("DELETE FROM cache_changes");
+
+        Node after = new Node(true);
+
+        assertThat(after.snapshot.getRestoreStatus())
+            .isEqualTo("ignored: ahead of the change log, the database has been restored");
+        assertThat(after.cacheManager.getCache("owners").get(1)).isNull();
+    }
+
+    @Test
+    void shouldCreateTheSnapshotReadableByItsOwnerOnly() throws IOException {
+        assumeTrue(this.directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Node node = new Node(true);
+        node.cacheManager.getCache("owners").put(1, owner(1, "Franklin"));
+        node.snapshot.save();
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(node.file))).isEqualTo("rw-------");
+    }
+
+    @Test
+    void shouldRefuseToStartWithoutFile() {
+        CacheSnapshot snapshot = new CacheSnapshot(new TinyLfuCacheManager(), null, null);
+        snapshot.setEnabled(true);
+
+        assertThatIllegalStateException().isThrownBy(snapshot::afterPropertiesSet);
+    }
+
+    @Test
+    void shouldIgnoreACorruptedSnapshot() throws IOException {
+        Node before = new Node(true);
+        before.cacheManager.getCache("owners").put(1, owner(1, "Franklin"));
+        before.snapshot.save();
+        byte[] content = Files.readAllBytes(before.file);
+        content[content.length - 1] ^= 1;
+        Files.write(before.file, content);
+
+        Node after = new Node(true);
+
+        assertThat(after.snapshot.getRestoreStatus()).isEqualTo("ignored: corrupted");
+        assertThat(after.cacheManager.getCache("owners").get(1)).isNull();
+    }
+
+    @Test
+    void shouldOnlyTrustSnapshotsWrittenOnShutdownWithoutChangeLog() throws IOException {
+        Node before = new Node(false);
+        before.cacheManager.getCache("owners").put(1, owner(1, "Franklin"));
+        before.snapshot.save();
+
+        assertThat(new Node(false).snapshot.getRestoredCount()).isZero();
+
+        before.snapshot.destroy();
+
+        assertThat(new Node(false).cacheManager.getCache("owners").get(1)).isNotNull();
+    }
+
+    private static Owner owner(int id, String lastName) {
+        Owner owner = new Owner();
+        owner.setId(id);
+        owner.setFirstName("George");
+        owner.setLastName(lastName);
+        PetType cat = new PetType();
+        cat.setId(1);
+        cat.setName("cat");
+        Pet pet = new Pet();
+        pet.setId(id);
+        pet.setName("Leo");
+        pet.setBirthDate(LocalDate.of(2010, 9, 7));
+        pet.setType(cat);
+        owner.addPet(pet);
+        return owner;
+    }
+
+    private static Vet vet() {
+        Specialty radiology = new Specialty();
+        radiology.setId(1);
+        radiology.setName("radiology");
+        Vet vet = new Vet();
+        vet.setId(1);
+        vet.setFirstName("James");
+        vet.setLastName("Carter");
+        vet.addSpecialty(radiology);
+        return vet;
+    }
+
+    private final class Node {
+
+        final Path file = CacheSnapshotTests.this.directory.resolve("petclinic-cache.snapshot");
+
+        final CacheChangeLog changeLog = new CacheChangeLog(CacheSnapshotTests.this.database);
+
+        final TinyLfuCacheManager cacheManager = new TinyLfuCacheManager();
+
+        final CacheInvalidationPoller poller;
+
+        final CacheSnapshot snapshot;
+
+        Node(boolean changeLogEnabled) {
+            this.changeLog.setEnabled(changeLogEnabled);
+            this.cacheManager.setRegions(Arrays.asList(region("vets"), region("owners")));
+            this.cacheManager.afterPropertiesSet();
+            this.poller = new CacheInvalidationPoller(this.changeLog, this.cacheManager,
+                Collections.<InvalidatableCache>emptyList());
+            this.poller.setKeyTypes(Collections.singletonMap("owners", Integer.class));
+            this.poller.setPollIntervalMillis(0);
+            this.poller.afterPropertiesSet();
+            this.snapshot = new CacheSnapshot(this.cacheManager, this.poller, this.changeLog);
+            this.snapshot.setEnabled(true);
+            this.snapshot.setFile(this.file.toString());
+            this.snapshot.setCacheNames("vets,owners");
+            this.snapshot.setIntervalSeconds(0);
+            this.snapshot.afterPropertiesSet();
+        }
+
+        private CacheRegion region(String name) {
+            CacheRegion region = new CacheRegion();
+            region.setName(name);
+            region.setMaximumSize(100);
+            return region;
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.OwnerSearchResults;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.service.ClinicService;
+
+/**
+ * Test class for {@link NegativeLookupCache}
+ */
+class NegativeLookupCacheTests {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private ClinicService target;
+
+    private NegativeLookupCache cache;
+
+    private ClinicService clinicService;
+
+    @BeforeEach
+    void setup() {
+        this.target = mock(ClinicService.class);
+        this.cache = new NegativeLookupCache(this.now::get);
+        this.cache.setTimeToLiveSeconds(30);
+        AspectJProxyFactory factory = new AspectJProxyFactory(this.target);
+        factory.addAspect(this.cache);
+        this.clinicService = factory.getProxy();
+    }
+
+    @Test
+    void shouldNotLookUpAMissingOwnerAgainUntilItExpiresOrIsSaved() {
+        given(this.target.findOwnerById(42)).willThrow(new ObjectRetrievalFailureException(Owner.class, 42));
+
+        assertThatThrownBy(() -> this.clinicService.findOwnerById(42)).isInstanceOf(ObjectRetrievalFailureException.class);
+        assertThatThrownBy(() -> this.clinicService.findOwnerById(42)).isInstanceOf(ObjectRetrievalFailureException.class);
+        verify(this.target, times(1)).findOwnerById(42);
+        assertThat(this.cache.getHitCount()).isEqualTo(1);
+
+        this.now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        assertThatThrownBy(() -> this.clinicService.findOwnerById(42)).isInstanceOf(ObjectRetrievalFailureException.class);
+        verify(this.target, times(2)).findOwnerById(42);
+
+        Owner owner = owner(42, "Davis");
+        this.clinicService.saveOwner(owner);
+        willReturn(owner).given(this.target).findOwnerById(42);
+        assertThat(this.clinicService.findOwnerById(42)).isSameAs(owner);
+    }
+
+    @Test
+    void shouldAnswerTheSearchesRefiningAPrefixWithoutOwners() {
+        given(this.target.findOwnerByLastName("Xy", 1, 10))
+            .willReturn(new OwnerSearchResults(Collections.emptyList(), 0, 1, 10, "Xy"));
+
+        assertThat(this.clinicService.findOwnerByLastName("Xy", 1, 10).getTotalCount()).isZero();
+        OwnerSearchResults refined = this.clinicService.findOwnerByLastName("Xyz", 2, 5);
+        assertThat(refined.getTotalCount()).isZero();
+        assertThat(refined.getLastName()).isEqualTo("Xyz");
+        verify(this.target, times(0)).findOwnerByLastName("Xyz", 2, 5);
+
+        // a new owner named after the prefix, whatever the case
+        this.clinicService.saveOwner(owner(11, "xylander"));
+        this.clinicService.findOwnerByLastName("Xyz", 2, 5);
+        verify(this.target, times(1)).findOwnerByLastName("Xyz", 2, 5);
+        assertThat(this.cache.getSize()).isZero();
+    }
+
+    @Test
+    void shouldForgetTheMissesOfTheChangesOfOtherNodes() {
+        given(this.target.findOwnerById(42)).willThrow(new ObjectRetrievalFailureException(Owner.class, 42));
+        given(this.target.findPetById(7)).willThrow(new ObjectRetrievalFailureException(Pet.class, 7));
+        given(this.target.findOwnerByLastName("Xy", 1, 10))
+            .willReturn(new OwnerSearchResults(Collections.emptyList(), 0, 1, 10, "Xy"));
+        assertThatThrownBy(() -> this.clinicService.findOwnerById(42)).isInstanceOf(ObjectRetrievalFailureException.class);
+        assertThatThrownBy(() -> this.clinicService.findPetById(7)).isInstanceOf(ObjectRetrievalFailureException.class);
+        this.clinicService.findOwnerByLastName("Xy", 1, 10);
+        assertThat(this.cache.getSize()).isEqualTo(3);
+
+        this.cache.invalidate("owners", "42");
+        this.cache.invalidate("pets", "7");
+        this.cache.invalidate(OwnerSearchCache.NAME, "XYLANDER");
+        assertThat(this.cache.getSize()).isZero();
+    }
+
+    private static Owner owner(int id, String lastName) {
+        Owner owner = new Owner();
+        owner.setId(id);
+        owner.setLastName(lastName);
+        return owner;
+    }
+
+}
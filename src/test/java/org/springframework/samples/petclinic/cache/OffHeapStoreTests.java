@@ -0,0 +1,108 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link OffHeapStore}
+ */
+class OffHeapStoreTests {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final OffHeapStore store = new OffHeapStore(1000, 100, 60, this.clock::get);
+
+    @Test
+    void shouldReadBackStoredValues() {
+        this.store.put(1, bytes(40, 1));
+        this.store.put(2, bytes(70, 2));
+
+        assertThat(read(1)).isEqualTo(bytes(40, 1));
+        assertThat(read(2)).isEqualTo(bytes(70, 2));
+        assertThat(this.store.get(3)).isNull();
+        assertThat(this.store.getLiveBytes()).isEqualTo(110);
+        assertThat(this.store.getAllocatedBytes()).isEqualTo(200);
+        assertThat(this.store.getOccupancy()).isEqualTo(0.11);
+        assertThat(this.store.getHitCount()).isEqualTo(2);
+        assertThat(this.store.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReportOverwrittenValuesAsFragmentation() {
+        this.store.put(1, bytes(50, 1));
+        this.store.put(1, bytes(50, 2));
+        this.store.remove(2);
+
+        assertThat(read(1)).isEqualTo(bytes(50, 2));
+        assertThat(this.store.getSize()).isEqualTo(1);
+        assertThat(this.store.getFragmentation()).isEqualTo(0.5);
+    }
+
+    @Test
+    void shouldEvictTheOldestSegmentWhenFull() {
+        for (int key = 0; key < 24; key++) {
+            this.store.put(key, bytes(50, key));
+        }
+
+        // 10 segments of 2 values: the first 4 values were in the 2 recycled segments
+        assertThat(this.store.getSize()).isEqualTo(20);
+        assertThat(this.store.getEvictionCount()).isEqualTo(4);
+        assertThat(this.store.get(3)).isNull();
+        assertThat(read(4)).isEqualTo(bytes(50, 4));
+        assertThat(read(23)).isEqualTo(bytes(50, 23));
+        assertThat(this.store.getAllocatedBytes()).isEqualTo(1000);
+    }
+
+    @Test
+    void shouldRejectValuesLargerThanASegment() {
+        this.store.put(1, bytes(10, 1));
+
+        assertThat(this.store.put(1, bytes(101, 1))).isFalse();
+        assertThat(this.store.get(1)).isNull();
+        assertThat(this.store.getRejectionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldExpireValues() {
+        this.store.put(1, bytes(10, 1));
+        this.clock.set(60);
+
+        assertThat(this.store.get(1)).isNull();
+        assertThat(this.store.getExpirationCount()).isEqualTo(1);
+        assertThat(this.store.getLiveBytes()).isZero();
+    }
+
+    private byte[] read(Object key) {
+        ByteBuffer buffer = this.store.get(key).getBuffer();
+        byte[] value = new byte[buffer.remaining()];
+        buffer.get(value);
+        return value;
+    }
+
+    private static byte[] bytes(int length, int fill) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) fill);
+        return bytes;
+    }
+
+}
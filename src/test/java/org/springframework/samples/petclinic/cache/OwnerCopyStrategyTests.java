@@ -0,0 +1,112 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Visit;
+
+/**
+ * Test class for {@link OwnerCopyStrategy}, through an "owners" cache region
+ */
+class OwnerCopyStrategyTests {
+
+    private final Cache owners = new TinyLfuCache(ownersRegion(), Runnable::run);
+
+    @Test
+    void shouldNotLetCallersModifyCachedOwners() {
+        Owner owner = owner();
+        this.owners.put(1, owner);
+        owner.setCity("Monona");
+
+        Owner cached = this.owners.get(1, Owner.class);
+        assertThat(cached).isNotSameAs(owner);
+        assertThat(cached.getCity()).isEqualTo("Madison");
+        cached.addPet(new Pet());
+        cached.getPets().get(0).addVisit(new Visit());
+
+        Owner again = this.owners.get(1, Owner.class);
+        assertThat(again).isNotSameAs(cached);
+        assertThat(again.getPets()).hasSize(1);
+        assertThat(again.getPets().get(0).getVisits()).hasSize(1);
+    }
+
+    @Test
+    void shouldCopyTheWholeOwnerGraph() {
+        Owner copy = OwnerCopyStrategy.copy(owner());
+
+        assertThat(copy.getId()).isEqualTo(1);
+        assertThat(copy.getTelephone()).isEqualTo("6085551023");
+        Pet pet = copy.getPets().get(0);
+        assertThat(pet.getOwner()).isSameAs(copy);
+        assertThat(pet.getType().getName()).isEqualTo("cat");
+        assertThat(pet.getBirthDate()).isEqualTo(LocalDate.of(2010, 9, 7));
+        Visit visit = pet.getVisits().get(0);
+        assertThat(visit.getPet()).isSameAs(pet);
+        assertThat(visit.getDescription()).isEqualTo("rabies shot");
+    }
+
+    @Test
+    void shouldCopyPetsAlongWithTheirOwner() {
+        Pet pet = owner().getPets().get(0);
+        Pet copy = (Pet) new OwnerCopyStrategy().copy(pet);
+
+        assertThat(copy).isNotSameAs(pet);
+        assertThat(copy.getVisits()).extracting(Visit::getDescription).containsExactly("rabies shot");
+        assertThat(copy.getOwner()).isNotSameAs(pet.getOwner());
+        assertThat(copy.getOwner().getLastName()).isEqualTo("Franklin");
+        assertThat(copy.getOwner().getPets()).containsExactly(copy);
+    }
+
+    private static CacheRegion ownersRegion() {
+        CacheRegion region = new CacheRegion();
+        region.setName("owners");
+        region.setCopier(new OwnerCopyStrategy());
+        return region;
+    }
+
+    private static Owner owner() {
+        Owner owner = new Owner();
+        owner.setId(1);
+        owner.setFirstName("George");
+        owner.setLastName("Franklin");
+        owner.setAddress("110 W. Liberty St.");
+        owner.setCity("Madison");
+        owner.setTelephone("6085551023");
+        PetType cat = new PetType();
+        cat.setId(1);
+        cat.setName("cat");
+        Pet pet = new Pet();
+        pet.setId(1);
+        pet.setName("Leo");
+        pet.setBirthDate(LocalDate.of(2010, 9, 7));
+        pet.setType(cat);
+        owner.addPet(pet);
+        Visit visit = new Visit();
+        visit.setId(1);
+        visit.setDescription("rabies shot");
+        pet.addVisit(visit);
+        return owner;
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.OwnerSearchResults;
+
+/**
+ * Test class for {@link OwnerSearchCache}
+ */
+class OwnerSearchCacheTests {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final OwnerSearchCache cache = new OwnerSearchCache(this.clock::get);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void shouldServeRepeatedSearchesFromTheCache() {
+        this.cache.get("Da", 1, 10, loader("Da"));
+        this.cache.get("Da", 1, 10, loader("Da"));
+        this.cache.get("Da", 2, 10, loader("Da"));
+        this.cache.get("Da", 1, 20, loader("Da"));
+
+        assertThat(this.loads).hasValue(3);
+        assertThat(this.cache.getHitRate()).isEqualTo(0.25);
+        assertThat(this.cache.get("Da", 1, 10, loader("Da")).getOwners().get(0).getLastName()).isEqualTo("Davis");
+    }
+
+    @Test
+    void shouldReturnCopiesOfTheCachedOwners() {
+        this.cache.get("Da", 1, 10, loader("Da"));
+        this.cache.get("Da", 1, 10, loader("Da")).getOwners().get(0).setLastName("Changed");
+
+        assertThat(this.cache.get("Da", 1, 10, loader("Da")).getOwners().get(0).getLastName()).isEqualTo("Davis");
+    }
+
+    @Test
+    void shouldEvictOnlyThePrefixesOfTheSavedName() {
+        this.cache.get("", 1, 10, loader(""));
+        this.cache.get("da", 1, 10, loader("da"));
+        this.cache.get("Dav", 3, 5, loader("Dav"));
+        this.cache.get("Davo", 1, 10, loader("Davo"));
+        this.cache.get("Fr", 1, 10, loader("Fr"));
+
+        this.cache.evictMatching("Davis");
+
+        assertThat(this.cache.getSize()).isEqualTo(2);
+        assertThat(this.cache.getEvictionCount()).isEqualTo(3);
+        this.cache.get("Davo", 1, 10, loader("Davo"));
+        this.cache.get("Fr", 1, 10, loader("Fr"));
+        assertThat(this.loads).hasValue(5);
+    }
+
+    @Test
+    void shouldNotCacheAPageLoadedWhileInvalidating() {
+        this.cache.get("Da", 1, 10, () -> {
+            this.cache.evictMatching("Davis");
+            return loader("Da").get();
+        });
+
+        assertThat(this.cache.isEmpty()).isTrue();
+    }
+
+    @Test
+    void shouldBoundEntryCountAndAge() {
+        this.cache.setMaxEntries(2);
+        this.cache.setTimeToLiveSeconds(60);
+        this.cache.get("A", 1, 10, loader("A"));
+        this.cache.get("B", 1, 10, loader("B"));
+        this.cache.get("A", 1, 10, loader("A"));
+        this.cache.get("C", 1, 10, loader("C"));
+        assertThat(this.cache.getSize()).isEqualTo(2);
+
+        // B was the least recently used
+        this.cache.get("A", 1, 10, loader("A"));
+        this.cache.get("B", 1, 10, loader("B"));
+        assertThat(this.loads).hasValue(4);
+
+        this.clock.set(60_000_000_000L);
+        this.cache.get("B", 1, 10, loader("B"));
+        assertThat(this.loads).hasValue(5);
+    }
+
+    private Supplier<OwnerSearchResults> loader(String lastName) {
+        return () -> {
+            this.loads.incrementAndGet();
+            Owner owner = new Owner();
+            owner.setId(2);
+            owner.setLastName("Davis");
+            return new OwnerSearchResults(Collections.singletonList(owner), 1, 1, 10, lastName);
+        };
+    }
+
+}
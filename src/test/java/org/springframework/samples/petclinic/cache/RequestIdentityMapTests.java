@@ -0,0 +1,111 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Test class for {@link RequestIdentityMap}
+ */
+class RequestIdentityMapTests {
+
+    private ClinicService target;
+
+    private ClinicService clinicService;
+
+    @BeforeEach
+    void setup() {
+        this.target = mock(ClinicService.class);
+        given(this.target.findPetById(7)).willAnswer(invocation -> new Pet());
+        given(this.target.findOwnerById(7)).willAnswer(invocation -> new Owner());
+        AspectJProxyFactory factory = new AspectJProxyFactory(this.target);
+        factory.addAspect(new RequestIdentityMap(new OwnerCopyStrategy()));
+        this.clinicService = factory.getProxy();
+    }
+
+    @AfterEach
+    void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void shouldLoadEachEntityOncePerRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        Pet pet = this.clinicService.findPetById(7);
+        this.clinicService.findOwnerById(7);
+
+        this.clinicService.findPetById(7);
+        this.clinicService.findOwnerById(7);
+        verify(this.target, times(1)).findPetById(7);
+        verify(this.target, times(1)).findOwnerById(7);
+
+        this.clinicService.savePet(pet);
+        this.clinicService.findPetById(7);
+        verify(this.target, times(2)).findPetById(7);
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        this.clinicService.findOwnerById(7);
+        verify(this.target, times(2)).findOwnerById(7);
+    }
+
+    @Test
+    void shouldForgetTheEntitiesOfTheRequestWhenASaveFails() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        Owner owner = this.clinicService.findOwnerById(7);
+        willThrow(new DataIntegrityViolationException("telephone too long")).given(this.target).saveOwner(owner);
+
+        assertThatThrownBy(() -> this.clinicService.saveOwner(owner)).isInstanceOf(DataIntegrityViolationException.class);
+        this.clinicService.findOwnerById(7);
+        verify(this.target, times(2)).findOwnerById(7);
+    }
+
+    @Test
+    void shouldKeepTheChangesOfACallerOutOfTheOtherLookups() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        // as the visit form does
+        this.clinicService.findPetById(7).addVisit(new Visit());
+
+        Pet pet = this.clinicService.findPetById(7);
+        assertThat(pet.getVisits()).isEmpty();
+        verify(this.target, times(1)).findPetById(7);
+    }
+
+    @Test
+    void shouldNotKeepEntitiesOutsideOfARequest() {
+        assertThat(this.clinicService.findPetById(7)).isNotSameAs(this.clinicService.findPetById(7));
+        verify(this.target, times(2)).findPetById(7);
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Visit;
+
+/**
+ * Test class for {@link TieredCache}
+ */
+class TieredCacheTests {
+
+    private final ModelValueCodec codec = new ModelValueCodec();
+
+    @Test
+    void shouldPromoteOffHeapEntriesToTheHeap() {
+        CacheRegion region = new CacheRegion();
+        region.setName("owners");
+        region.setMaximumSize(10);
+        region.setCopier(new OwnerCopyStrategy());
+        TinyLfuCache heap = new TinyLfuCache(region, Runnable::run);
+        OffHeapStore offHeap = new OffHeapStore(64 * 1024, 4096, Long.MAX_VALUE);
+        TieredCache cache = new TieredCache(heap, offHeap, this.codec);
+
+        for (int id = 1; id <= 100; id++) {
+            cache.put(id, owner(id));
+        }
+        assertThat(heap.getSize()).isEqualTo(10);
+        assertThat(offHeap.getSize()).isEqualTo(100);
+
+        Owner owner = cache.get(42, Owner.class);
+        assertThat(owner.getId()).isEqualTo(42);
+        assertThat(owner.getPets()).hasSize(1);
+        assertThat(offHeap.getHitCount()).isEqualTo(1);
+        assertThat(cache.get(42, Owner.class).getId()).isEqualTo(42);
+        // promoted: served by the heap tier
+        assertThat(offHeap.getHitCount()).isEqualTo(1);
+
+        cache.evict(42);
+        assertThat(cache.get(42)).isNull();
+    }
+
+    @Test
+    void shouldWriteNeitherTierAfterAnEvictionOfTheMissedKey() {
+        CacheRegion region = new CacheRegion();
+        region.setName("owners");
+        region.setMaximumSize(10);
+        TinyLfuCache heap = new TinyLfuCache(region, Runnable::run);
+        OffHeapStore offHeap = new OffHeapStore(64 * 1024, 4096, Long.MAX_VALUE);
+        TieredCache cache = new TieredCache(heap, offHeap, this.codec);
+
+        assertThat(cache.get(1)).isNull();
+        cache.evict(1);
+        cache.put(1, owner(1));
+
+        assertThat(heap.getSize()).isZero();
+        assertThat(offHeap.getSize()).isZero();
+    }
+
+    private static Owner owner(int id) {
+        Owner owner = new Owner();
+        owner.setId(id);
+        owner.setFirstName("George");
+        owner.setLastName("Franklin");
+        owner.setCity("Madison");
+        owner.setTelephone("6085551023");
+        PetType cat = new PetType();
+        cat.setId(1);
+        cat.setName("cat");
+        Pet pet = new Pet();
+        pet.setId(id);
+        pet.setName("Leo");
+        pet.setBirthDate(LocalDate.of(2010, 9, 7));
+        pet.setType(cat);
+        owner.addPet(pet);
+        Visit visit = new Visit();
+        visit.setId(id);
+        visit.setDate(LocalDate.of(2013, 1, 1));
+        visit.setDescription("rabies shot");
+        pet.addVisit(visit);
+        return owner;
+    }
+
+}
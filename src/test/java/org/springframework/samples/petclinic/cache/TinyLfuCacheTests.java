@@ -0,0 +1,302 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.interceptor.SimpleKey;
+
+/**
+ * Test class for {@link TinyLfuCache}
+ */
+class TinyLfuCacheTests {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final List<Runnable> refreshes = new ArrayList<>();
+
+    @Test
+    void shouldKeepFrequentEntriesDuringScans() {
+        TinyLfuCache cache = cache(region(100, 0, 0));
+        AtomicInteger popularLoads = new AtomicInteger();
+        int oneOff = 1000;
+        for (int round = 0; round < 50; round++) {
+            for (int key = 0; key < 50; key++) {
+                cache.get(key, popularLoads::incrementAndGet);
+            }
+            // an LRU cache of 100 entries would lose every popular entry to these
+            for (int i = 0; i < 200; i++) {
+                cache.get(oneOff++, () -> "one-off");
+            }
+        }
+
+        assertThat(popularLoads.get()).isLessThan(50 * 3);
+        assertThat(cache.getSize()).isEqualTo(100);
+    }
+
+    @Test
+    void shouldPromoteEntriesHitOnProbation() {
+        TinyLfuCache cache = cache(region(10, 0, 0));
+        for (int key = 0; key < 10; key++) {
+            cache.put(key, key);
+        }
+        // 0 is on probation: a hit protects it from the admission of newer entries
+        cache.get(0);
+        for (int key = 10; key < 20; key++) {
+            cache.get(key);
+            cache.put(key, key);
+        }
+
+        assertThat(cache.get(0)).isNotNull();
+        assertThat(cache.getSize()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldSplitLargeCachesIntoStripes() {
+        TinyLfuCache cache = cache(region(10_000, 0, 0));
+        for (int key = 0; key < 20_000; key++) {
+            cache.put(key, key);
+        }
+
+        assertThat((Object[]) cache.getNativeCache()).hasSize(16);
+        assertThat(cache.getSize()).isEqualTo(10_000);
+        assertThat(cache.entries(100)).hasSize(100);
+    }
+
+    @Test
+    void shouldNotBlockTheLookupsOfOtherStripes() throws Exception {
+        TinyLfuCache cache = cache(region(10_000, 0, 0));
+        cache.put(1, "one");
+        Object[] stripes = (Object[]) cache.getNativeCache();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            // the stripe of the keys 0, 16, 32...
+            synchronized (stripes[0]) {
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        holder.start();
+        try {
+            locked.await();
+            assertThat(CompletableFuture.supplyAsync(() -> cache.get(1).get()).get(5, TimeUnit.SECONDS))
+                .isEqualTo("one");
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    void shouldExpireEntriesAfterTheirTimeToLive() {
+        TinyLfuCache cache = cache(region(10, 60, 0));
+        cache.put("owner", "George");
+
+        this.clock.set(TimeUnit.SECONDS.toNanos(59));
+        assertThat(cache.get("owner").get()).isEqualTo("George");
+        this.clock.set(TimeUnit.SECONDS.toNanos(60));
+        assertThat(cache.get("owner")).isNull();
+        assertThat(cache.getExpirationCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldDropTheValueReadBeforeAnEvictionOfItsKey() {
+        TinyLfuCache cache = cache(region(10, 0, 0));
+        assertThat(cache.get("owner")).isNull();
+        // saved meanwhile, by this node or another one
+        cache.evict("owner");
+        cache.put("owner", "George");
+
+        assertThat(cache.get("owner")).isNull();
+        assertThat(cache.getStalePutCount()).isEqualTo(1);
+
+        cache.put("owner", "Betty");
+        assertThat(cache.get("owner").get()).isEqualTo("Betty");
+    }
+
+    @Test
+    void shouldDropTheValueLoadedDuringAnEvictionOfItsKey() {
+        TinyLfuCache cache = cache(region(10, 0, 0));
+        assertThat(cache.get("owner", () -> {
+            cache.clear();
+            return "George";
+        })).isEqualTo("George");
+
+        assertThat(cache.get("owner")).isNull();
+        assertThat(cache.getStalePutCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldServeTheStaleValueWhileRefreshingOnce() {
+        AtomicInteger loads = new AtomicInteger();
+        CacheRegion region = region(1, 0, 60);
+        region.setRefreshLoader(key -> loads.incrementAndGet());
+        TinyLfuCache cache = cache(region);
+        assertThat(cache.get("all", loads::incrementAndGet)).isEqualTo(1);
+
+        this.clock.set(TimeUnit.SECONDS.toNanos(59));
+        assertThat(cache.get("all", loads::incrementAndGet)).isEqualTo(1);
+        assertThat(this.refreshes).isEmpty();
+
+        this.clock.set(TimeUnit.SECONDS.toNanos(60));
+        assertThat(cache.get("all", loads::incrementAndGet)).isEqualTo(1);
+        assertThat(cache.get("all", loads::incrementAndGet)).isEqualTo(1);
+        assertThat(this.refreshes).hasSize(1);
+
+        this.refreshes.remove(0).run();
+        assertThat(cache.get("all", loads::incrementAndGet)).isEqualTo(2);
+        assertThat(cache.get("all").get()).isEqualTo(2);
+        assertThat(this.refreshes).isEmpty();
+        assertThat(cache.getStatistics()).containsEntry("refreshes", 1L).containsEntry("misses", 1L)
+            .containsEntry("loads", 1L);
+    }
+
+    @Test
+    void shouldKeepTheStaleValueWhenRefreshFails() {
+        CacheRegion region = region(1, 0, 60);
+        region.setRefreshLoader(key -> {
+            throw new IllegalStateException("database down");
+        });
+        TinyLfuCache cache = cache(region);
+        cache.get("all", () -> "vets");
+
+        this.clock.set(TimeUnit.SECONDS.toNanos(100));
+        cache.get("all", () -> "unused, served from the cache");
+        this.refreshes.remove(0).run();
+
+        assertThat(cache.get("all").get()).isEqualTo("vets");
+        assertThat(cache.getRefreshFailureCount()).isEqualTo(1);
+        // retried on the next lookup
+        assertThat(this.refreshes).hasSize(1);
+    }
+
+    @Test
+    void shouldRefreshThroughTheCachedMethodOfTheBean() {
+        ServiceMethodCacheLoader loader = new ServiceMethodCacheLoader();
+        CacheRegion region = region(1, 0, 60);
+        region.setRefreshLoader(loader);
+        VetService service = new VetService(cache(region));
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("vetService", service);
+        loader.setBeanFactory(beanFactory);
+        loader.setTargetBeanName("vetService");
+        loader.setMethodName("findVets");
+        assertThat(service.findVets()).isEqualTo(1);
+
+        this.clock.set(TimeUnit.SECONDS.toNanos(60));
+        assertThat(service.findVets()).isEqualTo(1);
+        this.refreshes.remove(0).run();
+
+        // the refresh reached the method, instead of getting the stale value from the cache
+        assertThat(service.findVets()).isEqualTo(2);
+        assertThat(service.calls).hasValue(2);
+    }
+
+    @Test
+    void shouldLoadAnAbsentEntryOnceForConcurrentMisses() throws Exception {
+        TinyLfuCache cache = cache(region(1, 0, 60));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get("all", () -> {
+                    loads.incrementAndGet();
+                    release.await();
+                    return "vets";
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<Object> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("vets");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void shouldEstimateFrequenciesAndAgeThem() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 10; i++) {
+            sketch.increment("popular");
+        }
+        sketch.increment("rare");
+
+        assertThat(sketch.frequency("popular")).isGreaterThanOrEqualTo(10);
+        assertThat(sketch.frequency("rare")).isBetween(1, 3);
+        assertThat(sketch.frequency("unknown")).isLessThan(3);
+
+        // the sample size is 10 times the capacity: counters are halved once it is reached
+        for (int i = 0; i < 150; i++) {
+            sketch.increment(i);
+        }
+        assertThat(sketch.frequency("popular")).isLessThan(10);
+    }
+
+    /**
+     * Stands for the proxy of a <code>@Cacheable(sync = true)</code> method.
+     */
+    private static final class VetService {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        private final TinyLfuCache cache;
+
+        VetService(TinyLfuCache cache) {
+            this.cache = cache;
+        }
+
+        public Object findVets() {
+            return this.cache.get(SimpleKey.EMPTY, this.calls::incrementAndGet);
+        }
+    }
+
+    private TinyLfuCache cache(CacheRegion region) {
+        return new TinyLfuCache(region, this.refreshes::add, this.clock::get);
+    }
+
+    private static CacheRegion region(int maximumSize, long expireAfterWriteSeconds, long refreshAfterSeconds) {
+        CacheRegion region = new CacheRegion();
+        region.setName("test");
+        region.setMaximumSize(maximumSize);
+        region.setExpireAfterWriteSeconds(expireAfterWriteSeconds);
+        region.setRefreshAfterSeconds(refreshAfterSeconds);
+        return region;
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.capture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for {@link CaptureLogWriter} and {@link CaptureLogReader}
+ */
+class CaptureLogTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReadBackWrittenRequests() throws IOException {
+        try (CaptureLogWriter writer = new CaptureLogWriter(this.directory, 1024 * 1024, 4, 100)) {
+            writer.offer(new CapturedRequest(1_000_000, "GET", "/owners", "/owners",
+                Collections.singletonMap("lastName", "Da"), 200, 1500));
+            // logged in completion order: a request may have started before the previous one
+            writer.offer(new CapturedRequest(999_000, "GET", "/owners/{ownerId}", "/owners/7",
+                Collections.emptyMap(), 200, 800));
+            writer.offer(new CapturedRequest(1_002_000, "POST", "/owners/{ownerId}/edit", "/owners/7/edit",
+                Collections.emptyMap(), 302, 2500));
+        }
+
+        List<CapturedRequest> requests = readAll();
+        assertThat(requests).hasSize(3);
+        assertThat(requests.get(0).getTimestampMicros()).isEqualTo(1_000_000);
+        assertThat(requests.get(0).getParameters()).containsEntry("lastName", "Da");
+        assertThat(requests.get(1).getTimestampMicros()).isEqualTo(999_000);
+        assertThat(requests.get(1).getRouteTemplate()).isEqualTo("/owners/{ownerId}");
+        assertThat(requests.get(1).getPath()).isEqualTo("/owners/7");
+        assertThat(requests.get(2).getMethod()).isEqualTo("POST");
+        assertThat(requests.get(2).getStatus()).isEqualTo(302);
+        assertThat(requests.get(2).getDurationMicros()).isEqualTo(2500);
+    }
+
+    @Test
+    void shouldRotateFilesAndKeepTheMostRecentOnes() throws IOException {
+        try (CaptureLogWriter writer = new CaptureLogWriter(this.directory, 200, 3, 10_000)) {
+            for (int i = 0; i < 500; i++) {
+                writer.offer(new CapturedRequest(1_000_000L * i, "GET", "/owners/{ownerId}", "/owners/" + i,
+                    Collections.emptyMap(), 200, 100));
+            }
+        }
+
+        assertThat(CaptureLogReader.listFiles(this.directory)).hasSize(3);
+        List<CapturedRequest> requests = readAll();
+        assertThat(requests).isNotEmpty();
+        assertThat(requests.get(requests.size() - 1).getPath()).isEqualTo("/owners/499");
+    }
+
+    @Test
+    void shouldStopAtTheLastCompleteRequestOfATruncatedFile() throws IOException {
+        try (CaptureLogWriter writer = new CaptureLogWriter(this.directory, 1024 * 1024, 4, 100)) {
+            for (int i = 0; i < 10; i++) {
+                writer.offer(new CapturedRequest(i, "GET", "/vets", "/vets", Collections.emptyMap(), 200, 100));
+            }
+        }
+        Path file = CaptureLogReader.listFiles(this.directory).get(0);
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 2));
+
+        assertThat(readAll()).hasSize(9);
+    }
+
+    private List<CapturedRequest> readAll() throws IOException {
+        List<CapturedRequest> requests = new ArrayList<>();
+        try (CaptureLogReader reader = new CaptureLogReader(this.directory)) {
+            CapturedRequest request;
+            while ((request = reader.read()) != null) {
+                requests.add(request);
+            }
+        }
+        return requests;
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.capture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Test class for {@link TrafficCaptureFilter}
+ */
+class TrafficCaptureFilterTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldCaptureRouteAndAllowedQueryParametersOnly() throws Exception {
+        TrafficCaptureFilter filter = new TrafficCaptureFilter();
+        filter.setDirectory(this.directory.toString());
+        filter.setEnabled(true);
+
+        MockHttpServletRequest search = new MockHttpServletRequest("GET", "/petclinic/owners");
+        search.setContextPath("/petclinic");
+        search.setQueryString("lastName=Da+Vinci&page=2&secret=x");
+        filter.doFilter(search, new MockHttpServletResponse(), handledBy("/owners"));
+
+        MockHttpServletRequest edit = new MockHttpServletRequest("POST", "/petclinic/owners/7/edit");
+        edit.setContextPath("/petclinic");
+        edit.addParameter("telephone", "6085551023");
+        filter.doFilter(edit, new MockHttpServletResponse(), handledBy("/owners/{ownerId}/edit"));
+
+        MockHttpServletRequest resource = new MockHttpServletRequest("GET", "/petclinic/resources/css/petclinic.css");
+        resource.setContextPath("/petclinic");
+        filter.doFilter(resource, new MockHttpServletResponse(), handledBy("/resources/**"));
+        filter.destroy();
+
+        try (CaptureLogReader reader = new CaptureLogReader(this.directory)) {
+            CapturedRequest first = reader.read();
+            assertThat(first.getRouteTemplate()).isEqualTo("/owners");
+            assertThat(first.getPath()).isEqualTo("/owners");
+            assertThat(first.getParameters()).containsOnlyKeys("lastName", "page");
+            assertThat(first.getParameters()).containsEntry("lastName", "Da Vinci");
+
+            CapturedRequest second = reader.read();
+            assertThat(second.getMethod()).isEqualTo("POST");
+            assertThat(second.getPath()).isEqualTo("/owners/7/edit");
+            assertThat(second.getParameters()).isEmpty();
+
+            assertThat(reader.read()).isNull();
+        }
+    }
+
+    @Test
+    void shouldNotWriteAnythingWhenDisabled() throws Exception {
+        TrafficCaptureFilter filter = new TrafficCaptureFilter();
+        filter.setDirectory(this.directory.toString());
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/vets"), new MockHttpServletResponse(), handledBy("/vets"));
+        filter.destroy();
+
+        assertThat(filter.getCapturedCount()).isZero();
+        assertThat(CaptureLogReader.listFiles(this.directory)).isEmpty();
+    }
+
+    /**
+     * Simulate the DispatcherServlet, which exposes the matched pattern as a request attribute.
+     */
+    private static MockFilterChain handledBy(String pattern) {
+        return new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException {
+                request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Visit;
+
+/**
+ * Compares the size and the encoding and decoding times of an owner (2 pets, 5 visits each) in the {@link ModelCodec}
+ * format, in JSON (Jackson, as for the REST endpoints) and with Java serialization. The entities are not
+ * <code>Serializable</code>: Java serialization is measured on the same data as nested maps and lists, which it
+ * handles with less overhead than it would full entity classes.
+ * <p/>
+ * Each measure is the median of 10 rounds of one second, after 5 rounds of warm-up. Command line usage (from the
+ * project directory):
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.springframework.samples.petclinic.codec.CodecBenchmark
+ * </pre>
+ */
+public class CodecBenchmark {
+
+    private static final long ROUND_NANOS = 1_000_000_000L;
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        Owner owner = owner();
+        // jackson-datatype-jsr310 is not on the classpath: dates are written as ISO strings, as it would
+        SimpleModule dates = new SimpleModule()
+            .addSerializer(LocalDate.class, ToStringSerializer.instance)
+            .addDeserializer(LocalDate.class, new StdDeserializer<LocalDate>(LocalDate.class) {
+                @Override
+                public LocalDate deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+                    return LocalDate.parse(parser.getValueAsString());
+                }
+            });
+        ObjectMapper json = new ObjectMapper().registerModule(dates)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .addMixIn(Pet.class, PetMixin.class).addMixIn(Visit.class, VisitMixin.class);
+
+        byte[] model = ModelCodec.encode(owner);
+        byte[] jsonBytes = json.writeValueAsBytes(owner);
+        byte[] serialized = serialize(toMaps(owner));
+
+        System.out.printf("%-20s %8s %14s %14s%n", "format", "bytes", "encode ns/op", "decode ns/op");
+        report("model codec", model.length,
+            measure(owner, ModelCodec::encode),
+            measure(model, bytes -> ModelCodec.decode(ByteBuffer.wrap(bytes))));
+        report("JSON (Jackson)", jsonBytes.length,
+            measure(owner, value -> writeJson(json, value)),
+            measure(jsonBytes, bytes -> readJson(json, bytes)));
+        report("Java serialization", serialized.length,
+            measure(owner, value -> serialize(toMaps(value))),
+            measure(serialized, CodecBenchmark::deserialize));
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static void report(String format, int bytes, double encodeNanos, double decodeNanos) {
+        System.out.printf("%-20s %8d %14.0f %14.0f%n", format, bytes, encodeNanos, decodeNanos);
+    }
+
+    /**
+     * @return median time per operation over the measured rounds, in nanoseconds
+     */
+    private static <T> double measure(T input, Function<T, Object> operation) {
+        double[] rounds = new double[10];
+        for (int round = -5; round < rounds.length; round++) {
+            long operations = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                for (int i = 0; i < 100; i++) {
+                    sink += operation.apply(input).hashCode();
+                }
+                operations += 100;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < ROUND_NANOS);
+            if (round >= 0) {
+                rounds[round] = (double) elapsed / operations;
+            }
+        }
+        Arrays.sort(rounds);
+        return (rounds[4] + rounds[5]) / 2;
+    }
+
+    private static byte[] writeJson(ObjectMapper json, Object value) {
+        try {
+            return json.writeValueAsBytes(value);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Object readJson(ObjectMapper json, byte[] bytes) {
+        try {
+            return json.readValue(bytes, Owner.class);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static byte[] serialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Map<String, Object> toMaps(Owner owner) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", owner.getId());
+        map.put("firstName", owner.getFirstName());
+        map.put("lastName", owner.getLastName());
+        map.put("address", owner.getAddress());
+        map.put("city", owner.getCity());
+        map.put("telephone", owner.getTelephone());
+        List<Object> pets = new ArrayList<>();
+        for (Pet pet : owner.getPets()) {
+            Map<String, Object> petMap = new LinkedHashMap<>();
+            petMap.put("id", pet.getId());
+            petMap.put("name", pet.getName());
+            petMap.put("birthDate", pet.getBirthDate());
+            petMap.put("typeId", pet.getType().getId());
+            petMap.put("typeName", pet.getType().getName());
+            List<Object> visits = new ArrayList<>();
+            for (Visit visit : pet.getVisits()) {
+                Map<String, Object> visitMap = new LinkedHashMap<>();
+                visitMap.put("id", visit.getId());
+                visitMap.put("date", visit.getDate());
+                visitMap.put("description", visit.getDescription());
+                visits.add(visitMap);
+            }
+            petMap.put("visits", visits);
+            pets.add(petMap);
+        }
+        map.put("pets", pets);
+        return map;
+    }
+
+    private static Owner owner() {
+        Owner owner = new Owner();
+        owner.setId(1);
+        owner.setFirstName("George");
+        owner.setLastName("Franklin");
+        owner.setAddress("110 W. Liberty St.");
+        owner.setCity("Madison");
+        owner.setTelephone("6085551023");
+        for (int p = 1; p <= 2; p++) {
+            PetType type = new PetType();
+            type.setId(p);
+            type.setName(p == 1 ? "cat" : "dog");
+            Pet pet = new Pet();
+            pet.setId(p);
+            pet.setName(p == 1 ? "Leo" : "Basil");
+            pet.setBirthDate(LocalDate.of(2010, 9, 7).plusYears(p));
+            pet.setType(type);
+            owner.addPet(pet);
+            for (int v = 1; v <= 5; v++) {
+                Visit visit = new Visit();
+                visit.setId(p * 10 + v);
+                visit.setDate(LocalDate.of(2013, 1, 1).plusMonths(v));
+                visit.setDescription(v % 2 == 0 ? "rabies shot" : "neutered");
+                pet.addVisit(visit);
+            }
+        }
+        return owner;
+    }
+
+    abstract static class PetMixin {
+
+        @JsonIgnore
+        abstract Owner getOwner();
+    }
+
+    abstract static class VisitMixin {
+
+        @JsonIgnore
+        abstract Pet getPet();
+    }
+
+}
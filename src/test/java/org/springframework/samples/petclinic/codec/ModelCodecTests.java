@@ -0,0 +1,188 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.codec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Specialty;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.model.Visit;
+
+/**
+ * Test class for {@link ModelCodec}, {@link ModelEncoder} and {@link ModelDecoder}
+ */
+class ModelCodecTests {
+
+    @Test
+    void shouldEncodeAndDecodeTheWholeOwnerGraph() {
+        byte[] encoded = ModelCodec.encode(owner());
+
+        Owner decoded = (Owner) ModelCodec.decode(ByteBuffer.wrap(encoded));
+        assertThat(decoded.getId()).isEqualTo(6);
+        assertThat(decoded.getLastName()).isEqualTo("Franklin");
+        assertThat(decoded.getAddress()).isNull();
+        assertThat(decoded.getTelephone()).isEqualTo("6085551023");
+        Pet pet = decoded.getPet("Leo");
+        assertThat(pet.getOwner()).isSameAs(decoded);
+        assertThat(pet.getBirthDate()).isEqualTo(LocalDate.of(1965, 9, 7));
+        assertThat(pet.getType().getId()).isEqualTo(1);
+        assertThat(pet.getType().getName()).isEqualTo("cat");
+        Visit visit = pet.getVisits().get(0);
+        assertThat(visit.getPet()).isSameAs(pet);
+        assertThat(visit.getDate()).isEqualTo(LocalDate.of(2013, 1, 1));
+        assertThat(visit.getDescription()).isEqualTo("rabies shot");
+        // the second cat is a reference to the first one: distinct but equal instances
+        PetType secondType = decoded.getPet("Basil").getType();
+        assertThat(secondType).isNotSameAs(pet.getType());
+        assertThat(secondType.getName()).isEqualTo("cat");
+        assertThat(encoded.length).isLessThan(100);
+    }
+
+    @Test
+    void shouldDecodeFromADirectBuffer() {
+        byte[] encoded = ModelCodec.encode(owner());
+        ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length + 3);
+        direct.position(3);
+        direct.put(encoded);
+        direct.position(3);
+
+        Owner decoded = (Owner) ModelCodec.decode(direct);
+        assertThat(decoded.getFirstName()).isEqualTo("George");
+        assertThat(decoded.getPets()).hasSize(2);
+        assertThat(direct.hasRemaining()).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldShareTheSpecialtyDictionaryOfAVetList() {
+        Specialty radiology = specialty(1, "radiology");
+        Vet linda = vet(2, "Linda", "Douglas", radiology, specialty(2, "surgery"));
+        Vet rafael = vet(3, "Rafael", "Ortega", specialty(1, "radiology"));
+
+        byte[] encoded = ModelCodec.encode(Arrays.asList(linda, rafael));
+        List<Vet> vets = (List<Vet>) ModelCodec.decode(ByteBuffer.wrap(encoded));
+
+        assertThat(vets).hasSize(2);
+        assertThat(vets.get(0).getSpecialties()).extracting(Specialty::getName).containsExactly("radiology", "surgery");
+        assertThat(vets.get(1).getLastName()).isEqualTo("Ortega");
+        assertThat(vets.get(1).getSpecialties()).extracting(Specialty::getId).containsExactly(1);
+        // version, kind and count, then each vet: id, names, count and specialties; radiology is defined once (12
+        // bytes), then referenced (1 byte)
+        assertThat(encoded.length).isEqualTo(3 + (1 + 6 + 8 + 1 + 12 + 10) + (1 + 7 + 7 + 1 + 1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldEncodePetTypeLists() {
+        PetType cat = new PetType();
+        cat.setId(1);
+        cat.setName("cat");
+
+        List<PetType> types = (List<PetType>) ModelCodec.decode(ByteBuffer.wrap(ModelCodec.encode(Arrays.asList(cat))));
+
+        assertThat(types).extracting(PetType::getName).containsExactly("cat");
+        assertThat(types.get(0).getId()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectOtherVersionsAndUnsupportedValues() {
+        byte[] encoded = ModelCodec.encode(owner());
+        encoded[0] = (byte) (ModelCodec.VERSION + 1);
+
+        assertThatIllegalArgumentException().isThrownBy(() -> ModelCodec.decode(ByteBuffer.wrap(encoded)));
+        assertThat(ModelCodec.encode("not a model object")).isNull();
+        assertThat(ModelCodec.encode(Arrays.asList(owner()))).isNull();
+    }
+
+    @Test
+    void shouldEncodeDatesBeforeTheEpochAndLargeNumbers() {
+        BinaryWriter out = new BinaryWriter(16);
+        out.writeDate(LocalDate.of(1, 1, 1));
+        out.writeDate(null);
+        out.writeVarInt(-1);
+        out.writeVarLong(Long.MAX_VALUE);
+        out.writeId(null);
+        out.writeString("Évora");
+
+        BinaryReader in = new BinaryReader(ByteBuffer.wrap(out.toByteArray()));
+        assertThat(in.readDate()).isEqualTo(LocalDate.of(1, 1, 1));
+        assertThat(in.readDate()).isNull();
+        assertThat(in.readVarInt()).isEqualTo(-1);
+        assertThat(in.readVarLong()).isEqualTo(Long.MAX_VALUE);
+        assertThat(in.readId()).isNull();
+        assertThat(in.readString()).isEqualTo("Évora");
+        assertThat(in.hasRemaining()).isFalse();
+    }
+
+    private static Owner owner() {
+        Owner owner = new Owner();
+        owner.setId(6);
+        owner.setFirstName("George");
+        owner.setLastName("Franklin");
+        owner.setCity("Madison");
+        owner.setTelephone("6085551023");
+        Pet leo = pet(1, "Leo", LocalDate.of(1965, 9, 7));
+        owner.addPet(leo);
+        Visit visit = new Visit();
+        visit.setId(1);
+        visit.setDate(LocalDate.of(2013, 1, 1));
+        visit.setDescription("rabies shot");
+        leo.addVisit(visit);
+        owner.addPet(pet(2, "Basil", LocalDate.of(2012, 8, 6)));
+        return owner;
+    }
+
+    private static Pet pet(int id, String name, LocalDate birthDate) {
+        PetType cat = new PetType();
+        cat.setId(1);
+        cat.setName("cat");
+        Pet pet = new Pet();
+        pet.setId(id);
+        pet.setName(name);
+        pet.setBirthDate(birthDate);
+        pet.setType(cat);
+        return pet;
+    }
+
+    private static Vet vet(int id, String firstName, String lastName, Specialty... specialties) {
+        Vet vet = new Vet();
+        vet.setId(id);
+        vet.setFirstName(firstName);
+        vet.setLastName(lastName);
+        for (Specialty specialty : specialties) {
+            vet.addSpecialty(specialty);
+        }
+        return vet;
+    }
+
+    private static Specialty specialty(int id, String name) {
+        Specialty specialty = new Specialty();
+        specialty.setId(id);
+        specialty.setName(name);
+        return specialty;
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.samples.petclinic.web.OverloadExceptionResolver;
+
+/**
+ * Test class for {@link AdaptiveConcurrencyLimiter}, the data source it guards and the resolution of its rejections
+ */
+class AdaptiveConcurrencyLimiterTests {
+
+    private final AtomicLong clock = new AtomicLong(1);
+
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setup() {
+        this.limiter = new AdaptiveConcurrencyLimiter();
+        this.limiter.setClock(this.clock::get);
+        this.limiter.setInitialLimit(10);
+        this.limiter.setMinLimit(1);
+        this.limiter.setMaxQueueTimeMillis(0);
+    }
+
+    @Test
+    void shouldRejectOverTheLimitButAdmitNestedAcquisitions() throws Exception {
+        this.limiter.setInitialLimit(1);
+        AdaptiveConcurrencyLimiter.Permit permit = this.limiter.acquire();
+        AdaptiveConcurrencyLimiter.Permit nested = this.limiter.acquire();
+        assertThat(this.limiter.getInFlight()).isEqualTo(2);
+
+        assertThatThrownBy(this::acquireElsewhere).isInstanceOf(ConcurrencyLimitExceededException.class);
+        assertThat(this.limiter.getRejectedCount()).isEqualTo(1);
+
+        nested.release(false);
+        permit.release(false);
+        permit.release(false);
+        assertThat(this.limiter.getInFlight()).isZero();
+        acquireElsewhere().release(false);
+        assertThat(this.limiter.getAdmittedCount()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldRaiseTheLimitWhileRoundTripsStayFlat() throws Exception {
+        rounds(10, 1);
+        assertThat(this.limiter.getLimit()).isGreaterThan(10);
+        assertThat(this.limiter.getNoLoadRttMicros()).isEqualTo(1000);
+    }
+
+    @Test
+    void shouldLowerTheLimitWhenRoundTripsGrow() throws Exception {
+        rounds(4, 1);
+        int limit = this.limiter.getLimit();
+        rounds(10, 20);
+        assertThat(this.limiter.getLimit()).isLessThan(limit);
+        assertThat(this.limiter.getLastRttMicros()).isEqualTo(20_000);
+    }
+
+    @Test
+    void shouldLowerTheLimitWhenConnectionsFail() throws Exception {
+        acquireElsewhere().release(true);
+        this.clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        acquireElsewhere().release(true);
+        assertThat(this.limiter.getLimit()).isEqualTo(9);
+        assertThat(this.limiter.getFailedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldReleaseThePermitWhenTheConnectionIsClosed() throws Exception {
+        DataSource target = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        given(target.getConnection()).willReturn(connection).willThrow(new SQLException("refused"));
+        ConcurrencyLimitedDataSource dataSource = new ConcurrencyLimitedDataSource(target, this.limiter);
+
+        Connection limited = dataSource.getConnection();
+        assertThat(this.limiter.getInFlight()).isEqualTo(1);
+        limited.close();
+        limited.close();
+        verify(connection, times(2)).close();
+        assertThat(this.limiter.getInFlight()).isZero();
+
+        assertThatThrownBy(dataSource::getConnection).hasMessage("refused");
+        assertThat(this.limiter.getInFlight()).isZero();
+        assertThat(this.limiter.getFailedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldAnswerRejectionsWithServiceUnavailable() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Exception ex = new DataAccessResourceFailureException("Could not open connection",
+            new ConcurrencyLimitExceededException("No slot", 2));
+
+        OverloadExceptionResolver resolver = new OverloadExceptionResolver();
+        assertThat(resolver.resolveException(new MockHttpServletRequest(), response, null, ex)).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(503);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("2");
+        assertThat(resolver.resolveException(new MockHttpServletRequest(), new MockHttpServletResponse(), null,
+            new IllegalStateException())).isNull();
+    }
+
+    /**
+     * Each round holds 6 connections, obtained by as many threads, for the given round trip, then moves the clock past
+     * the window.
+     */
+    private void rounds(int count, long rttMillis) throws Exception {
+        for (int round = 0; round < count; round++) {
+            List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                permits.add(acquireElsewhere());
+            }
+            this.clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(rttMillis));
+            permits.forEach(permit -> permit.release(false));
+            this.clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+
+    private AdaptiveConcurrencyLimiter.Permit acquireElsewhere() throws Exception {
+        AtomicReference<Object> result = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.set(this.limiter.acquire());
+            } catch (ConcurrencyLimitExceededException ex) {
+                result.set(ex);
+            }
+        });
+        thread.start();
+        thread.join();
+        if (result.get() instanceof ConcurrencyLimitExceededException) {
+            throw (ConcurrencyLimitExceededException) result.get();
+        }
+        return (AdaptiveConcurrencyLimiter.Permit) result.get();
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Test class for {@link BulkheadFilter}
+ */
+class BulkheadFilterTests {
+
+    private BulkheadFilter filter;
+
+    @BeforeEach
+    void setup() {
+        this.filter = new BulkheadFilter(Arrays.asList(
+            bulkhead("health", "/health,/health/**", "", 0),
+            bulkhead("writes", "/**", "POST", 1),
+            bulkhead("cachedReads", "/vets,/owners/{ownerId:\\d+}", "GET", 1),
+            bulkhead("databaseReads", "/owners,/owners/**", "GET", 1)));
+    }
+
+    @Test
+    void shouldClassifyByMethodAndPath() {
+        assertThat(classify("GET", "/health/ready")).isEqualTo("health");
+        assertThat(classify("POST", "/owners/1/edit")).isEqualTo("writes");
+        assertThat(classify("GET", "/owners/1")).isEqualTo("cachedReads");
+        assertThat(classify("GET", "/owners/1/edit")).isEqualTo("databaseReads");
+        assertThat(classify("GET", "/owners")).isEqualTo("databaseReads");
+        assertThat(classify("GET", "/oups")).isNull();
+    }
+
+    @Test
+    void shouldRejectOverTheBoundOfTheClassOnly() throws Exception {
+        MockHttpServletResponse[] nested = new MockHttpServletResponse[3];
+        FilterChain searching = (request, response) -> {
+            // while this search holds the only slot of its class
+            nested[0] = perform("GET", "/owners", new MockFilterChain());
+            nested[1] = perform("GET", "/vets", new MockFilterChain());
+            nested[2] = perform("GET", "/health/ready", new MockFilterChain());
+        };
+        MockHttpServletResponse response = perform("GET", "/owners", searching);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(nested[0].getStatus()).isEqualTo(503);
+        assertThat(nested[0].getHeader("Retry-After")).isEqualTo("1");
+        assertThat(nested[1].getStatus()).isEqualTo(200);
+        assertThat(nested[2].getStatus()).isEqualTo(200);
+        assertThat(this.filter.getRejectedCount()).isEqualTo(1);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> databaseReads = (Map<String, Object>) this.filter.getMetrics().get("databaseReads");
+        assertThat(databaseReads).containsEntry("active", 0).containsEntry("admitted", 1L)
+            .containsEntry("rejected", 1L);
+    }
+
+    private String classify(String method, String path) {
+        Bulkhead bulkhead = this.filter.classify(new MockHttpServletRequest(method, path));
+        return bulkhead != null ? bulkhead.getName() : null;
+    }
+
+    private MockHttpServletResponse perform(String method, String path, FilterChain chain) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            this.filter.doFilter(new MockHttpServletRequest(method, path), response, chain);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+        return response;
+    }
+
+    private static Bulkhead bulkhead(String name, String patterns, String methods, int maxConcurrent) {
+        Bulkhead bulkhead = new Bulkhead();
+        bulkhead.setName(name);
+        bulkhead.setPatterns(patterns);
+        bulkhead.setMethods(methods);
+        bulkhead.setMaxConcurrent(maxConcurrent);
+        bulkhead.setMaxQueueTimeMillis(10);
+        return bulkhead;
+    }
+
+}
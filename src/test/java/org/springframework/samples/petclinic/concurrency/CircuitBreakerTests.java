@@ -0,0 +1,132 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.samples.petclinic.cache.OwnerCopyStrategy;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+/**
+ * Test class for {@link CircuitBreaker}, the data source it guards and the reads served while it is open
+ */
+class CircuitBreakerTests {
+
+    private final AtomicLong clock = new AtomicLong(1);
+
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void setup() {
+        this.breaker = new CircuitBreaker();
+        this.breaker.setClock(this.clock::get);
+        this.breaker.setMinimumCalls(4);
+        this.breaker.setOpenMillis(1000);
+        this.breaker.setHalfOpenCalls(2);
+        this.breaker.setSlowCallMillis(100);
+    }
+
+    @Test
+    void shouldOpenOnFailuresThenCloseAfterSuccessfulTrials() throws Exception {
+        DataSource target = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        given(target.getConnection()).willReturn(connection).willThrow(new SQLException("refused"));
+        CircuitBreakerDataSource dataSource = new CircuitBreakerDataSource(target, this.breaker);
+
+        dataSource.getConnection().close();
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(dataSource::getConnection).hasMessage("refused");
+        }
+        assertThat(this.breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(CircuitBreakerOpenException.class)
+            .satisfies(ex -> assertThat(((CircuitBreakerOpenException) ex).getRetryAfterSeconds()).isEqualTo(1));
+        assertThat(this.breaker.getRefusedCount()).isEqualTo(1);
+
+        this.clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        willReturn(connection).given(target).getConnection();
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        // trial calls only, until they complete
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(CircuitBreakerOpenException.class);
+        first.close();
+        second.close();
+        assertThat(this.breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        dataSource.getConnection().close();
+    }
+
+    @Test
+    void shouldOpenOnSlowCallsAndAgainOnAFailedTrial() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            long start = this.breaker.acquire();
+            this.clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(i < 2 ? 200 : 10));
+            this.breaker.onSuccess(start);
+        }
+        assertThat(this.breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        this.clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        this.breaker.onFailure(this.breaker.acquire());
+        assertThat(this.breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(this.breaker.getOpenedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldServeTheLastGoodReadsWhileConnectionsAreRefused() {
+        ClinicService clinicService = mock(ClinicService.class);
+        Owner owner = new Owner();
+        owner.setId(1);
+        owner.setLastName("Franklin");
+        Collection<Vet> vets = Collections.singletonList(new Vet());
+        CannotCreateTransactionException refused = new CannotCreateTransactionException("Could not open connection",
+            new CircuitBreakerOpenException("open", 5));
+        given(clinicService.findOwnerById(1)).willReturn(owner).willThrow(refused);
+        given(clinicService.findOwnerById(2)).willThrow(refused);
+        given(clinicService.findVets()).willReturn(vets).willThrow(refused);
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(clinicService);
+        proxyFactory.addAspect(new LastGoodReadsAspect(this.breaker, new OwnerCopyStrategy()));
+        ClinicService guarded = proxyFactory.getProxy();
+
+        assertThat(guarded.findOwnerById(1)).isSameAs(owner);
+        owner.setLastName("Modified");
+        assertThat(guarded.findVets()).isSameAs(vets);
+
+        Owner fallback = guarded.findOwnerById(1);
+        assertThat(fallback).isNotSameAs(owner);
+        assertThat(fallback.getLastName()).isEqualTo("Franklin");
+        assertThat(guarded.findVets()).isSameAs(vets);
+        assertThatThrownBy(() -> guarded.findOwnerById(2)).isSameAs(refused);
+        assertThat(this.breaker.getFallbackCount()).isEqualTo(2);
+    }
+
+}
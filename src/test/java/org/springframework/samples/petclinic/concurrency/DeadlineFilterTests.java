@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Connection;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Test class for {@link DeadlineFilter} and the {@link DeadlineDataSource} applying its deadlines
+ */
+class DeadlineFilterTests {
+
+    private DeadlineFilter filter;
+
+    private DeadlineDataSource dataSource;
+
+    @BeforeEach
+    void setup() {
+        this.filter = new DeadlineFilter();
+        Map<String, Long> timeouts = new LinkedHashMap<>();
+        timeouts.put("/health/**", 0L);
+        timeouts.put("GET /owners", 1000L);
+        timeouts.put("/owners", 50L);
+        this.filter.setTimeouts(timeouts);
+        this.filter.setDefaultTimeoutMillis(5000);
+        this.dataSource = new DeadlineDataSource(
+            new DriverManagerDataSource("jdbc:h2:mem:deadline;DB_CLOSE_DELAY=-1", "sa", ""));
+    }
+
+    @Test
+    void shouldTakeTheTimeoutOfTheFirstMatchingRoute() {
+        assertThat(this.filter.timeoutMillis(new MockHttpServletRequest("GET", "/health/ready"))).isZero();
+        assertThat(this.filter.timeoutMillis(new MockHttpServletRequest("GET", "/owners"))).isEqualTo(1000);
+        assertThat(this.filter.timeoutMillis(new MockHttpServletRequest("POST", "/owners"))).isEqualTo(50);
+        assertThat(this.filter.timeoutMillis(new MockHttpServletRequest("GET", "/vets"))).isEqualTo(5000);
+    }
+
+    @Test
+    void shouldCancelTheStatementsRunningPastTheDeadline() throws Exception {
+        this.filter.doFilter(new MockHttpServletRequest("GET", "/owners"), new MockHttpServletResponse(),
+            (request, response) -> {
+                try (Connection connection = this.dataSource.getConnection();
+                     Statement statement = connection.createStatement()) {
+                    assertThat(statement.getQueryTimeout()).isEqualTo(1);
+                    assertThatThrownBy(() -> statement.executeQuery(
+                        "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 100000) a, SYSTEM_RANGE(1, 100000) b"))
+                        .isInstanceOf(SQLTimeoutException.class);
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+
+        assertThat(this.filter.getQueryTimeoutCount()).isEqualTo(1);
+        assertThat(this.filter.getExpiredCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRefuseConnectionsOnceTheDeadlineHasPassed() throws Exception {
+        this.filter.doFilter(new MockHttpServletRequest("POST", "/owners"), new MockHttpServletResponse(),
+            (request, response) -> {
+                try {
+                    Thread.sleep(60);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                assertThatThrownBy(this.dataSource::getConnection).isInstanceOf(DeadlineExceededException.class);
+            });
+
+        assertThat(this.filter.getRefusedCount()).isEqualTo(1);
+        assertThat(Deadline.current()).isNull();
+        try (Connection connection = this.dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            assertThat(statement.getQueryTimeout()).isZero();
+        }
+    }
+
+}
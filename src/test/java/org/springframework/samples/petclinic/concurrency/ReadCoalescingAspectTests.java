@@ -0,0 +1,133 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.concurrency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.samples.petclinic.cache.OwnerCopyStrategy;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+/**
+ * Test class for {@link ReadCoalescingAspect}
+ */
+class ReadCoalescingAspectTests {
+
+    private final CountDownLatch reading = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private ClinicService target;
+
+    private ReadCoalescingAspect aspect;
+
+    private ClinicService clinicService;
+
+    @BeforeEach
+    void setup() {
+        this.target = mock(ClinicService.class);
+        given(this.target.findOwnerById(1)).willAnswer(invocation -> {
+            this.reading.countDown();
+            this.release.await(5, TimeUnit.SECONDS);
+            return owner();
+        });
+        this.aspect = new ReadCoalescingAspect(new OwnerCopyStrategy());
+        AspectJProxyFactory factory = new AspectJProxyFactory(this.target);
+        factory.addAspect(this.aspect);
+        this.clinicService = factory.getProxy();
+    }
+
+    @Test
+    void shouldShareTheReadInFlightAndCopyItsResult() throws Exception {
+        CompletableFuture<Owner> first = CompletableFuture.supplyAsync(() -> this.clinicService.findOwnerById(1));
+        assertThat(this.reading.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Owner> second = CompletableFuture.supplyAsync(() -> this.clinicService.findOwnerById(1));
+        awaitCoalesced(1);
+        this.release.countDown();
+
+        Owner owner = first.get(5, TimeUnit.SECONDS);
+        Owner shared = second.get(5, TimeUnit.SECONDS);
+        assertThat(shared).isNotSameAs(owner);
+        assertThat(shared.getLastName()).isEqualTo("Franklin");
+        verify(this.target, times(1)).findOwnerById(1);
+        assertThat(this.aspect.getInFlightCount()).isZero();
+
+        // nothing is kept once the read completes
+        this.clinicService.findOwnerById(1);
+        verify(this.target, times(2)).findOwnerById(1);
+    }
+
+    @Test
+    void shouldNotShareAReadStartedBeforeASave() throws Exception {
+        CompletableFuture<Owner> first = CompletableFuture.supplyAsync(() -> this.clinicService.findOwnerById(1));
+        assertThat(this.reading.await(5, TimeUnit.SECONDS)).isTrue();
+        this.clinicService.saveOwner(owner());
+        this.release.countDown();
+
+        this.clinicService.findOwnerById(1);
+        first.get(5, TimeUnit.SECONDS);
+        verify(this.target, times(2)).findOwnerById(1);
+        assertThat(this.aspect.getCoalescedCount()).isZero();
+    }
+
+    @Test
+    void shouldGiveTheFailureOfTheReadInFlightToEveryCaller() throws Exception {
+        given(this.target.findOwnerById(2)).willAnswer(invocation -> {
+            this.reading.countDown();
+            this.release.await(5, TimeUnit.SECONDS);
+            throw new CannotCreateTransactionException("refused", new CircuitBreakerOpenException("open", 3));
+        });
+        CompletableFuture<Owner> first = CompletableFuture.supplyAsync(() -> this.clinicService.findOwnerById(2));
+        assertThat(this.reading.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Owner> second = CompletableFuture.supplyAsync(() -> this.clinicService.findOwnerById(2));
+        awaitCoalesced(1);
+        this.release.countDown();
+
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).hasRootCauseInstanceOf(CircuitBreakerOpenException.class);
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasRootCauseInstanceOf(CircuitBreakerOpenException.class);
+        verify(this.target, times(1)).findOwnerById(2);
+    }
+
+    private void awaitCoalesced(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (this.aspect.getCoalescedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(this.aspect.getCoalescedCount()).isEqualTo(count);
+    }
+
+    private static Owner owner() {
+        Owner owner = new Owner();
+        owner.setId(1);
+        owner.setFirstName("George");
+        owner.setLastName("Franklin");
+        return owner;
+    }
+
+}
@@ -0,0 +1,488 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.datagen;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Deterministic generator of realistic Petclinic datasets, from a few thousand owners up to tens of millions.
+ * <p/>
+ * Owners are generated in fixed-size chunks. Every chunk draws from its own random streams derived from the seed and
+ * the chunk index, so the output only depends on the seed, the owner count and the chunk size, never on the number of
+ * threads. A cheap first pass only draws the number of pets and visits of each chunk so that ids can be assigned up
+ * front; the second pass generates and writes the chunks in parallel.
+ * <p/>
+ * The reference data (vets, specialties and pet types) is the one of the bundled <code>data.sql</code> scripts so the
+ * generated dataset replaces them. Generated ids start at 1 and identity columns are restarted after the last id.
+ * <p/>
+ * Command line usage (from the project directory, with the Maven profile of the target database):
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.springframework.samples.petclinic.datagen.ClinicDataGenerator \
+ *     -Dexec.args="--size=medium --seed=42 --format=sql --dialect=h2 --output=target/data-100k.sql"
+ * </pre>
+ * Options: <code>--owners=N</code> or <code>--size=small|medium|large</code> (1k, 100k, 10M owners),
+ * <code>--seed</code>, <code>--threads</code>, <code>--format=jdbc|sql|csv</code>,
+ * <code>--dialect=h2|hsqldb|mysql|postgresql</code>, <code>--output</code> (file for sql, directory for csv), and for
+ * jdbc <code>--url</code>, <code>--username</code>, <code>--password</code> and <code>--create-schema</code>.
+ */
+public class ClinicDataGenerator {
+
+    /**
+     * Dataset sizes used by the benchmarks and load tests.
+     */
+    public enum DatasetSize {
+        SMALL(1_000), MEDIUM(100_000), LARGE(10_000_000);
+
+        private final int owners;
+
+        DatasetSize(int owners) {
+            this.owners = owners;
+        }
+
+        public int getOwners() {
+            return this.owners;
+        }
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 10_000;
+
+    /**
+     * Fixed "today" of the generated data, so that dates do not depend on when the generator runs.
+     */
+    static final LocalDate REFERENCE_DATE = LocalDate.of(2024, 12, 31);
+
+    private static final int MAX_PET_AGE_DAYS = 20 * 365;
+
+    /**
+     * Cumulative probabilities of an owner having 0, 1, 2... pets.
+     */
+    private static final double[] PETS_PER_OWNER = {0.08, 0.50, 0.76, 0.89, 0.95, 0.98, 0.995, 1.0};
+
+    private static final double VISIT_PROBABILITY = 0.3;
+
+    private static final int MAX_VISITS_PER_PET = 40;
+
+    /**
+     * Cumulative probabilities of the pet type ids 1 to 6 (cat, dog, lizard, snake, bird, hamster).
+     */
+    private static final double[] PET_TYPES = {0.35, 0.75, 0.79, 0.82, 0.92, 1.0};
+
+    private static final int COUNTS_STREAM = 0;
+
+    private static final int VALUES_STREAM = 1;
+
+    private static final String[] FIRST_NAMES = {
+        "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "William", "Elizabeth",
+        "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+        "Christopher", "Nancy", "Daniel", "Lisa", "Matthew", "Betty", "Anthony", "Margaret", "Mark", "Sandra",
+        "George", "Eduardo", "Harold", "Peter", "Jean", "Jeff", "Maria", "Carlos", "Wei", "Aiko",
+        "Fatima", "Olga", "Pierre", "Ingrid", "Raj", "Mei", "Sven", "Lucia", "Kwame", "Noor"
+    };
+
+    private static final String[] STREETS = {
+        "Liberty", "Cardinal", "Commerce", "Friendly", "Fair", "Lake", "Oak", "Maple", "Blackhawk", "Independence",
+        "Main", "Park", "Washington", "Lincoln", "Cedar", "Elm", "Pine", "Walnut", "Sunset", "River"
+    };
+
+    private static final String[] STREET_TYPES = {"St.", "Ave.", "Blvd.", "Way", "Trail", "La.", "Rd.", "Ct."};
+
+    private static final String[] CITIES = {
+        "Madison", "Sun Prairie", "McFarland", "Windsor", "Monona", "Waunakee", "Middleton", "Verona", "Fitchburg",
+        "Stoughton", "Oregon", "DeForest", "Cottage Grove", "Mount Horeb", "Cross Plains", "Milwaukee", "Green Bay",
+        "Kenosha", "Racine", "Appleton"
+    };
+
+    private static final String[] PET_NAMES = {
+        "Leo", "Basil", "Rosy", "Jewel", "Iggy", "George", "Samantha", "Max", "Lucky", "Mulligan", "Freddy", "Sly",
+        "Bella", "Luna", "Charlie", "Lucy", "Cooper", "Daisy", "Milo", "Bailey", "Rocky", "Coco", "Oliver", "Molly",
+        "Buddy", "Stella", "Tucker", "Zoe", "Bear", "Lola", "Duke", "Sadie", "Teddy", "Chloe", "Oscar", "Pepper",
+        "Simba", "Nala", "Ziggy", "Kiwi", "Mango", "Peanut", "Biscuit", "Shadow", "Smokey", "Ginger", "Pumpkin"
+    };
+
+    private static final String[] VISIT_DESCRIPTIONS = {
+        "rabies shot", "neutered", "spayed", "annual checkup", "dental cleaning", "vaccination booster",
+        "skin allergy", "ear infection", "limping", "weight check", "microchip", "nail trim", "x-ray",
+        "stomach upset", "eye drops", "post-surgery follow-up"
+    };
+
+    private final long seed;
+
+    private final int ownerCount;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private LastNameDistribution lastNames = new LastNameDistribution(1.0, 0.2);
+
+    public ClinicDataGenerator(long seed, int ownerCount) {
+        if (ownerCount < 0) {
+            throw new IllegalArgumentException("ownerCount must not be negative: " + ownerCount);
+        }
+        this.seed = seed;
+        this.ownerCount = ownerCount;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = Math.max(threads, 1);
+    }
+
+    /**
+     * Changing the chunk size changes the generated data; keep the default to compare runs.
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(chunkSize, 1);
+    }
+
+    public void setLastNames(LastNameDistribution lastNames) {
+        this.lastNames = lastNames;
+    }
+
+    /**
+     * Generate the whole dataset into the given sink, then {@link ClinicDataSink#finish finish} it. The sink is not
+     * closed.
+     */
+    public <P> Summary generate(ClinicDataSink<P> sink) throws IOException {
+        long start = System.nanoTime();
+        int chunkCount = (this.ownerCount + this.chunkSize - 1) / this.chunkSize;
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads, new GeneratorThreadFactory());
+        try {
+            int[][] counts = planChunks(executor, chunkCount);
+            int[] firstPetIds = new int[chunkCount];
+            int[] firstVisitIds = new int[chunkCount];
+            int nextPetId = 1;
+            int nextVisitId = 1;
+            for (int i = 0; i < chunkCount; i++) {
+                firstPetIds[i] = nextPetId;
+                firstVisitIds[i] = nextVisitId;
+                nextPetId += counts[i][0];
+                nextVisitId += counts[i][1];
+            }
+
+            sink.write(sink.prepare(referenceData()));
+
+            Deque<Future<P>> window = new ArrayDeque<>();
+            for (int i = 0; i < chunkCount; i++) {
+                final int index = i;
+                window.add(executor.submit(() -> sink.prepare(generateChunk(index, firstPetIds[index], firstVisitIds[index]))));
+                if (window.size() >= this.threads * 2) {
+                    sink.write(await(window.poll()));
+                }
+            }
+            while (!window.isEmpty()) {
+                sink.write(await(window.poll()));
+            }
+
+            Map<ClinicTable, Integer> nextIds = new EnumMap<>(ClinicTable.class);
+            GeneratedChunk reference = referenceData();
+            for (ClinicTable table : new ClinicTable[]{ClinicTable.VETS, ClinicTable.SPECIALTIES, ClinicTable.TYPES}) {
+                nextIds.put(table, reference.getRowCount(table) + 1);
+            }
+            nextIds.put(ClinicTable.OWNERS, this.ownerCount + 1);
+            nextIds.put(ClinicTable.PETS, nextPetId);
+            nextIds.put(ClinicTable.VISITS, nextVisitId);
+            sink.finish(nextIds);
+
+            return new Summary(this.ownerCount, nextPetId - 1, nextVisitId - 1, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int[][] planChunks(ExecutorService executor, int chunkCount) throws IOException {
+        List<Future<int[]>> futures = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            final int index = i;
+            futures.add(executor.submit(() -> {
+                SplittableRandom counts = random(index, COUNTS_STREAM);
+                int pets = 0;
+                int visits = 0;
+                for (int o = 0; o < ownersInChunk(index); o++) {
+                    int petsOfOwner = nextPetCount(counts);
+                    pets += petsOfOwner;
+                    for (int p = 0; p < petsOfOwner; p++) {
+                        visits += nextVisitCount(counts);
+                    }
+                }
+                return new int[]{pets, visits};
+            }));
+        }
+        int[][] counts = new int[chunkCount][];
+        for (int i = 0; i < chunkCount; i++) {
+            counts[i] = await(futures.get(i));
+        }
+        return counts;
+    }
+
+    /**
+     * Generate the owners of one chunk with their pets and visits. The random draws for the pet and visit counts must
+     * happen in the same order as in {@link #planChunks} so that the planned ids match.
+     */
+    GeneratedChunk generateChunk(int index, int firstPetId, int firstVisitId) {
+        SplittableRandom counts = random(index, COUNTS_STREAM);
+        SplittableRandom values = random(index, VALUES_STREAM);
+        GeneratedChunk chunk = new GeneratedChunk(index);
+        int petId = firstPetId;
+        int visitId = firstVisitId;
+        int firstOwnerId = index * this.chunkSize + 1;
+        for (int o = 0; o < ownersInChunk(index); o++) {
+            int ownerId = firstOwnerId + o;
+            chunk.addRow(ClinicTable.OWNERS, ownerId,
+                pick(values, FIRST_NAMES),
+                this.lastNames.next(values),
+                (1 + values.nextInt(9999)) + " " + pick(values, STREETS) + " " + pick(values, STREET_TYPES),
+                pick(values, CITIES),
+                String.format(Locale.ROOT, "608%07d", values.nextInt(10_000_000)));
+
+            int petsOfOwner = nextPetCount(counts);
+            for (int p = 0; p < petsOfOwner; p++) {
+                LocalDate birthDate = REFERENCE_DATE.minusDays(values.nextInt(MAX_PET_AGE_DAYS));
+                chunk.addRow(ClinicTable.PETS, petId,
+                    pick(values, PET_NAMES),
+                    birthDate,
+                    1 + weighted(values, PET_TYPES),
+                    ownerId);
+
+                int visitsOfPet = nextVisitCount(counts);
+                long lifetimeDays = REFERENCE_DATE.toEpochDay() - birthDate.toEpochDay();
+                for (int v = 0; v < visitsOfPet; v++) {
+                    chunk.addRow(ClinicTable.VISITS, visitId++,
+                        petId,
+                        birthDate.plusDays(values.nextLong(lifetimeDays + 1)),
+                        pick(values, VISIT_DESCRIPTIONS));
+                }
+                petId++;
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * The vets, specialties and pet types of the bundled <code>data.sql</code> scripts.
+     */
+    static GeneratedChunk referenceData() {
+        GeneratedChunk chunk = new GeneratedChunk(GeneratedChunk.REFERENCE_DATA_INDEX);
+        chunk.addRow(ClinicTable.VETS, 1, "James", "Carter");
+        chunk.addRow(ClinicTable.VETS, 2, "Helen", "Leary");
+        chunk.addRow(ClinicTable.VETS, 3, "Linda", "Douglas");
+        chunk.addRow(ClinicTable.VETS, 4, "Rafael", "Ortega");
+        chunk.addRow(ClinicTable.VETS, 5, "Henry", "Stevens");
+        chunk.addRow(ClinicTable.VETS, 6, "Sharon", "Jenkins");
+        chunk.addRow(ClinicTable.SPECIALTIES, 1, "radiology");
+        chunk.addRow(ClinicTable.SPECIALTIES, 2, "surgery");
+        chunk.addRow(ClinicTable.SPECIALTIES, 3, "dentistry");
+        chunk.addRow(ClinicTable.VET_SPECIALTIES, 2, 1);
+        chunk.addRow(ClinicTable.VET_SPECIALTIES, 3, 2);
+        chunk.addRow(ClinicTable.VET_SPECIALTIES, 3, 3);
+        chunk.addRow(ClinicTable.VET_SPECIALTIES, 4, 2);
+        chunk.addRow(ClinicTable.VET_SPECIALTIES, 5, 1);
+        chunk.addRow(ClinicTable.TYPES, 1, "cat");
+        chunk.addRow(ClinicTable.TYPES, 2, "dog");
+        chunk.addRow(ClinicTable.TYPES, 3, "lizard");
+        chunk.addRow(ClinicTable.TYPES, 4, "snake");
+        chunk.addRow(ClinicTable.TYPES, 5, "bird");
+        chunk.addRow(ClinicTable.TYPES, 6, "hamster");
+        return chunk;
+    }
+
+    private int ownersInChunk(int index) {
+        return Math.min(this.chunkSize, this.ownerCount - index * this.chunkSize);
+    }
+
+    private SplittableRandom random(int chunkIndex, int stream) {
+        return new SplittableRandom(mix(this.seed ^ mix(chunkIndex * 2L + stream)));
+    }
+
+    /**
+     * SplitMix64 finalizer: consecutive chunk indexes must not give overlapping random sequences.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int nextPetCount(SplittableRandom random) {
+        return weighted(random, PETS_PER_OWNER);
+    }
+
+    /**
+     * Geometric distribution: most pets have a couple of visits, a few old pets have dozens.
+     */
+    private static int nextVisitCount(SplittableRandom random) {
+        double u = 1.0 - random.nextDouble();
+        int visits = (int) (Math.log(u) / Math.log(1.0 - VISIT_PROBABILITY));
+        return Math.min(visits, MAX_VISITS_PER_PET);
+    }
+
+    private static int weighted(SplittableRandom random, double[] cumulative) {
+        double u = random.nextDouble();
+        for (int i = 0; i < cumulative.length - 1; i++) {
+            if (u < cumulative[i]) {
+                return i;
+            }
+        }
+        return cumulative.length - 1;
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating data", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Data generation failed", ex.getCause());
+        }
+    }
+
+    /**
+     * Row counts of a generated dataset.
+     */
+    public static class Summary {
+
+        private final int owners;
+        private final int pets;
+        private final int visits;
+        private final long elapsedMillis;
+
+        Summary(int owners, int pets, int visits, long elapsedMillis) {
+            this.owners = owners;
+            this.pets = pets;
+            this.visits = visits;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getOwners() {
+            return this.owners;
+        }
+
+        public int getPets() {
+            return this.pets;
+        }
+
+        public int getVisits() {
+            return this.visits;
+        }
+
+        public long getElapsedMillis() {
+            return this.elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return this.owners + " owners, " + this.pets + " pets, " + this.visits + " visits generated in "
+                + this.elapsedMillis + " ms";
+        }
+    }
+
+    private static class GeneratorThreadFactory implements java.util.concurrent.ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "clinic-data-generator-" + this.counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            options.put(equals < 0 ? arg.substring(2) : arg.substring(2, equals), equals < 0 ? "true" : arg.substring(equals + 1));
+        }
+
+        int owners = options.containsKey("owners")
+            ? Integer.parseInt(options.get("owners"))
+            : DatasetSize.valueOf(options.getOrDefault("size", "small").toUpperCase(Locale.ROOT)).getOwners();
+        ClinicDataGenerator generator = new ClinicDataGenerator(Long.parseLong(options.getOrDefault("seed", "42")), owners);
+        if (options.containsKey("threads")) {
+            generator.setThreads(Integer.parseInt(options.get("threads")));
+        }
+        SqlDialect dialect = SqlDialect.fromName(options.getOrDefault("dialect", "h2"));
+        String format = options.getOrDefault("format", "sql");
+        if ("csv".equals(format)) {
+            // rather than after hours of generation
+            dialect.checkCsvLoad();
+        }
+
+        Summary summary;
+        if ("jdbc".equals(format)) {
+            DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                required(options, "url"), options.getOrDefault("username", "sa"), options.getOrDefault("password", ""));
+            JdbcBatchSink sink = new JdbcBatchSink(dataSource, dialect);
+            if (options.containsKey("create-schema")) {
+                sink.createSchema();
+            }
+            summary = generator.generate(sink);
+        } else if ("sql".equals(format)) {
+            Path output = Paths.get(options.getOrDefault("output", "target/data-" + owners + "-" + dialect.name().toLowerCase(Locale.ROOT) + ".sql"));
+            try (SqlScriptSink sink = new SqlScriptSink(dialect, output)) {
+                summary = generator.generate(sink);
+            }
+        } else if ("csv".equals(format)) {
+            Path output = Paths.get(options.getOrDefault("output", "target/data-" + owners + "-csv"));
+            try (CsvSink sink = new CsvSink(dialect, output)) {
+                summary = generator.generate(sink);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown format (expected jdbc, sql or csv): " + format);
+        }
+        System.out.println(summary);
+    }
+
+    private static String required(Map<String, String> options, String name) {
+        String value = options.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing required option --" + name);
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.datagen;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Test class for {@link ClinicDataGenerator}
+ */
+class ClinicDataGeneratorTests {
+
+    @Test
+    void shouldGenerateTheSameScriptWhateverTheNumberOfThreads() throws IOException {
+        String singleThreaded = generateScript(42, 1);
+        String multiThreaded = generateScript(42, 4);
+
+        assertThat(multiThreaded).isEqualTo(singleThreaded);
+        assertThat(generateScript(43, 4)).isNotEqualTo(singleThreaded);
+    }
+
+    @Test
+    void shouldLoadThroughJdbcAndRestartIdentities() throws IOException {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("classpath:db/h2/schema.sql")
+            .build();
+        try {
+            ClinicDataGenerator generator = new ClinicDataGenerator(7, 2_500);
+            generator.setChunkSize(500);
+            generator.setThreads(4);
+            ClinicDataGenerator.Summary summary = generator.generate(new JdbcBatchSink(database, SqlDialect.H2));
+
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM owners", Integer.class)).isEqualTo(2_500);
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pets", Integer.class)).isEqualTo(summary.getPets());
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM visits", Integer.class)).isEqualTo(summary.getVisits());
+            assertThat(jdbcTemplate.queryForObject("SELECT MAX(id) FROM visits", Integer.class)).isEqualTo(summary.getVisits());
+            assertThat(summary.getPets()).isGreaterThan(2_500);
+
+            jdbcTemplate.update("INSERT INTO owners (first_name, last_name, address, city, telephone) "
+                + "VALUES ('Sam', 'Schultz', '4, Evans Street', 'Wollongong', '4444444444')");
+            assertThat(jdbcTemplate.queryForObject("SELECT id FROM owners WHERE first_name = 'Sam' AND address = '4, Evans Street'",
+                Integer.class)).isEqualTo(2_501);
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    @Test
+    void shouldSkewLastNamesTowardsCommonSurnames() {
+        LastNameDistribution distribution = new LastNameDistribution(1.0, 0.2);
+        SplittableRandom random = new SplittableRandom(1);
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            occurrences.merge(distribution.next(random), 1, Integer::sum);
+        }
+
+        assertThat(occurrences.get("Smith")).isGreaterThan(occurrences.get("Johnson"));
+        assertThat(occurrences.get("Smith")).isGreaterThan(1_000);
+        assertThat(occurrences.size()).isGreaterThan(1_000);
+    }
+
+    @Test
+    void shouldRejectCsvForHsqldbBeforeGenerating() {
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> ClinicDataGenerator.main(new String[]{"--owners=10", "--format=csv", "--dialect=hsqldb",
+                "--output=target/data-rejected-csv"}))
+            .withMessageContaining("use the SQL format instead");
+    }
+
+    private static String generateScript(long seed, int threads) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ClinicDataGenerator generator = new ClinicDataGenerator(seed, 1_000);
+        generator.setChunkSize(100);
+        generator.setThreads(threads);
+        try (SqlScriptSink sink = new SqlScriptSink(SqlDialect.H2, out)) {
+            generator.generate(sink);
+        }
+        return out.toString("UTF-8");
+    }
+
+}
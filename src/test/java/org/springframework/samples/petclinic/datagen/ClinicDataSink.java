@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.datagen;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Destination of the rows produced by {@link ClinicDataGenerator}.
+ * <p/>
+ * Writing happens in two steps so that the expensive part can use every core while the output stays deterministic:
+ * {@link #prepare} is called concurrently from the generator threads, then {@link #write} is called from a single
+ * thread in chunk order. The reference data chunk is always prepared and written first.
+ *
+ * @param <P> the prepared form of a chunk
+ */
+public interface ClinicDataSink<P> extends Closeable {
+
+    /**
+     * Transform (or directly store) a chunk. Must be thread-safe.
+     */
+    P prepare(GeneratedChunk chunk) throws IOException;
+
+    /**
+     * Append a prepared chunk to the output. Called in chunk order, never concurrently.
+     */
+    void write(P prepared) throws IOException;
+
+    /**
+     * Called once all chunks have been written.
+     *
+     * @param nextIds for each table with a generated key, the first id that is still free
+     */
+    void finish(Map<ClinicTable, Integer> nextIds) throws IOException;
+
+}
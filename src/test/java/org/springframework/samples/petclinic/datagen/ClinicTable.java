@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.datagen;
+
+/**
+ * Tables of the Petclinic schema, in foreign key order, together with the column order used by the generated rows.
+ * The column order is the one of the <code>db/*&#47;schema.sql</code> scripts so rows can be inserted without a
+ * column list.
+ */
+public enum ClinicTable {
+
+    VETS("vets", true, "id", "first_name", "last_name"),
+    SPECIALTIES("specialties", true, "id", "name"),
+    VET_SPECIALTIES("vet_specialties", false, "vet_id", "specialty_id"),
+    TYPES("types", true, "id", "name"),
+    OWNERS("owners", true, "id", "first_name", "last_name", "address", "city", "telephone"),
+    PETS("pets", true, "id", "name", "birth_date", "type_id", "owner_id"),
+    VISITS("visits", true, "id", "pet_id", "visit_date", "description");
+
+    private final String tableName;
+    private final boolean identity;
+    private final String[] columns;
+
+    ClinicTable(String tableName, boolean identity, String... columns) {
+        this.tableName = tableName;
+        this.identity = identity;
+        this.columns = columns;
+    }
+
+    public String getTableName() {
+        return this.tableName;
+    }
+
+    /**
+     * @return whether the first column is a generated key whose sequence must be advanced after an explicit-id load
+     */
+    public boolean hasIdentity() {
+        return this.identity;
+    }
+
+    public String[] getColumns() {
+        return this.columns.clone();
+    }
+
+    public int getColumnCount() {
+        return this.columns.length;
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.datagen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rows generated for one contiguous range of owners (or for the reference data), grouped by table. Values are
+ * {@link Integer}, {@link String} or {@link java.time.LocalDate} instances in {@link ClinicTable} column order.
+ */
+public class GeneratedChunk {
+
+    /**
+     * Index used for the chunk holding vets, specialties and pet types.
+     */
+    public static final int REFERENCE_DATA_INDEX = -1;
+
+    private final int index;
+
+    private final Map<ClinicTable, List<Object[]>> rows = new EnumMap<>(ClinicTable.class);
+
+    public GeneratedChunk(int index) {
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    public void addRow(ClinicTable table, Object... values) {
+        if (values.length != table.getColumnCount()) {
+            throw new IllegalArgumentException("Expected " + table.getColumnCount() + " values for table "
+                + table.getTableName() + " but got " + values.length);
+        }
+        this.rows.computeIfAbsent(table, t -> new ArrayList<>()).add(values);
+    }
+
+    /**
+     * @return the rows of the given table, in insertion order (never <code>null</code>)
+     */
+    public List<Object[]> getRows(ClinicTable table) {
+        List<Object[]> tableRows = this.rows.get(table);
+        return tableRows == null ? Collections.<Object[]>emptyList() : Collections.unmodifiableList(tableRows);
+    }
+
+    public int getRowCount(ClinicTable table) {
+        return getRows(table).size();
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.datagen;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+/**
+ * Inserts the generated rows through batched JDBC prepared statements. Each chunk is inserted and committed in its own
+ * connection from the {@link #prepare} callback, so chunks are loaded concurrently by the generator threads; the
+ * {@link DataSource} should therefore allow at least as many connections as generator threads.
+ * <p/>
+ * With MySQL, add <code>rewriteBatchedStatements=true</code> to the JDBC URL to get multi-row inserts.
+ */
+public class JdbcBatchSink implements ClinicDataSink<Integer> {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final DataSource dataSource;
+
+    private final SqlDialect dialect;
+
+    public JdbcBatchSink(DataSource dataSource, SqlDialect dialect) {
+        this.dataSource = dataSource;
+        this.dialect = dialect;
+    }
+
+    /**
+     * Run the dialect's schema script (which drops or keeps existing tables depending on the database).
+     */
+    public void createSchema() throws SQLException {
+        try (Connection connection = this.dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource(this.dialect.getSchemaLocation()));
+        }
+    }
+
+    @Override
+    public Integer prepare(GeneratedChunk chunk) throws IOException {
+        int inserted = 0;
+        try (Connection connection = this.dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (ClinicTable table : ClinicTable.values()) {
+                    inserted += insert(connection, table, chunk.getRows(table));
+                }
+                connection.commit();
+            } catch (SQLException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException ex) {
+            throw new IOException("Failed to insert chunk " + chunk.getIndex(), ex);
+        }
+        return inserted;
+    }
+
+    private static int insert(Connection connection, ClinicTable table, List<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        char[] placeholders = new char[table.getColumnCount() * 2 - 1];
+        Arrays.fill(placeholders, ',');
+        for (int i = 0; i < placeholders.length; i += 2) {
+            placeholders[i] = '?';
+        }
+        String sql = "INSERT INTO " + table.getTableName() + " (" + String.join(", ", table.getColumns())
+            + ") VALUES (" + new String(placeholders) + ")";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int pending = 0;
+            for (Object[] row : rows) {
+                for (int c = 0; c < row.length; c++) {
+                    Object value = row[c];
+                    ps.setObject(c + 1, value instanceof LocalDate ? Date.valueOf((LocalDate) value) : value);
+                }
+                ps.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    ps.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                ps.executeBatch();
+            }
+        }
+        return rows.size();
+    }
+
+    @Override
+    public void write(Integer prepared) {
+        // rows have already been committed by prepare()
+    }
+
+    @Override
+    public void finish(Map<ClinicTable, Integer> nextIds) throws IOException {
+        try (Connection connection = this.dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (Map.Entry<ClinicTable, Integer> entry : nextIds.entrySet()) {
+                statement.execute(this.dialect.restartIdentity(entry.getKey(), entry.getValue()));
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } catch (SQLException ex) {
+            throw new IOException("Failed to restart identity columns", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        // the DataSource is owned by the caller
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.datagen;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Samples last names with the skew of real populations: a Zipf distribution over the most common US surnames (ordered
+ * by census frequency) plus a long tail of synthetic, mostly unique names. This reproduces what matters for the owner
+ * search: a handful of prefixes ("S", "Sm", "J", ...) match a large share of the owners while most prefixes match only a
+ * few rows.
+ */
+public class LastNameDistribution {
+
+    private static final String[] COMMON_SURNAMES = {
+        "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+        "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin",
+        "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Ramirez", "Lewis", "Robinson",
+        "Walker", "Young", "Allen", "King", "Wright", "Scott", "Torres", "Nguyen", "Hill", "Flores",
+        "Green", "Adams", "Nelson", "Baker", "Hall", "Rivera", "Campbell", "Mitchell", "Carter", "Roberts",
+        "Gomez", "Phillips", "Evans", "Turner", "Diaz", "Parker", "Cruz", "Edwards", "Collins", "Reyes",
+        "Stewart", "Morris", "Morales", "Murphy", "Cook", "Rogers", "Gutierrez", "Ortiz", "Morgan", "Cooper",
+        "Peterson", "Bailey", "Reed", "Kelly", "Howard", "Ramos", "Kim", "Cox", "Ward", "Richardson",
+        "Watson", "Brooks", "Chavez", "Wood", "James", "Bennett", "Gray", "Mendoza", "Ruiz", "Hughes",
+        "Price", "Alvarez", "Castillo", "Sanders", "Patel", "Myers", "Long", "Ross", "Foster", "Jimenez",
+        "Franklin", "Rodriquez", "McTavish", "Coleman", "Black", "Escobito", "Schroeder", "Estaban", "Schultz", "Douglas"
+    };
+
+    private static final String[] SYLLABLES = {
+        "al", "ber", "cam", "dor", "el", "fen", "gar", "hol", "is", "jor", "kel", "lan", "mar", "nor", "ost",
+        "pel", "quin", "ros", "sten", "tor", "ul", "val", "wick", "yar", "zel", "bright", "field", "ham", "ley", "son"
+    };
+
+    private static final int MAX_LENGTH = 30;
+
+    private final double[] cumulative;
+
+    private final double syntheticShare;
+
+    /**
+     * @param exponent       Zipf exponent; 1.0 is close to the observed surname distribution
+     * @param syntheticShare share of names drawn from the synthetic long tail, between 0 and 1
+     */
+    public LastNameDistribution(double exponent, double syntheticShare) {
+        if (syntheticShare < 0 || syntheticShare > 1) {
+            throw new IllegalArgumentException("syntheticShare must be between 0 and 1: " + syntheticShare);
+        }
+        this.syntheticShare = syntheticShare;
+        this.cumulative = new double[COMMON_SURNAMES.length];
+        double total = 0;
+        for (int rank = 0; rank < COMMON_SURNAMES.length; rank++) {
+            total += 1.0 / Math.pow(rank + 1, exponent);
+            this.cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < this.cumulative.length; rank++) {
+            this.cumulative[rank] /= total;
+        }
+    }
+
+    public String next(SplittableRandom random) {
+        if (random.nextDouble() < this.syntheticShare) {
+            return synthetic(random);
+        }
+        int rank = Arrays.binarySearch(this.cumulative, random.nextDouble());
+        return COMMON_SURNAMES[Math.min(rank < 0 ? -rank - 1 : rank, COMMON_SURNAMES.length - 1)];
+    }
+
+    private static String synthetic(SplittableRandom random) {
+        StringBuilder name = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.length() > MAX_LENGTH ? name.substring(0, MAX_LENGTH) : name.toString();
+    }
+
+}
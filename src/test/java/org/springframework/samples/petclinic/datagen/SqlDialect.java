@@ -0,0 +1,136 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.datagen;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * The four databases supported by the Petclinic Maven profiles. Each dialect knows where its schema script lives, how to
+ * advance identity columns after rows have been inserted with explicit ids, and how to bulk load a CSV file.
+ */
+public enum SqlDialect {
+
+    H2("h2") {
+        @Override
+        public String restartIdentity(ClinicTable table, int nextId) {
+            return "ALTER TABLE " + table.getTableName() + " ALTER COLUMN id RESTART WITH " + nextId;
+        }
+
+        @Override
+        public String csvLoad(ClinicTable table, String fileName) {
+            return "INSERT INTO " + table.getTableName() + " SELECT * FROM CSVREAD('" + fileName + "')";
+        }
+    },
+
+    HSQLDB("hsqldb", "HSQLDB can only read CSV files through file-based TEXT tables; use the SQL format instead") {
+        @Override
+        public String restartIdentity(ClinicTable table, int nextId) {
+            return "ALTER TABLE " + table.getTableName() + " ALTER COLUMN id RESTART WITH " + nextId;
+        }
+    },
+
+    MYSQL("mysql") {
+        @Override
+        public String restartIdentity(ClinicTable table, int nextId) {
+            return "ALTER TABLE " + table.getTableName() + " AUTO_INCREMENT = " + nextId;
+        }
+
+        @Override
+        public String csvLoad(ClinicTable table, String fileName) {
+            return "LOAD DATA LOCAL INFILE '" + fileName + "' INTO TABLE " + table.getTableName()
+                + " CHARACTER SET utf8 FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' IGNORE 1 LINES";
+        }
+    },
+
+    POSTGRESQL("postgresql") {
+        @Override
+        public String restartIdentity(ClinicTable table, int nextId) {
+            return "ALTER SEQUENCE " + table.getTableName() + "_id_seq RESTART WITH " + nextId;
+        }
+
+        @Override
+        public String csvLoad(ClinicTable table, String fileName) {
+            // psql meta-command: the file is read client-side so no superuser privilege is needed
+            return "\\copy " + table.getTableName() + " FROM '" + fileName + "' WITH (FORMAT csv, HEADER true)";
+        }
+    };
+
+    private final String scriptDirectory;
+
+    private final String csvUnsupportedReason;
+
+    SqlDialect(String scriptDirectory) {
+        this(scriptDirectory, null);
+    }
+
+    SqlDialect(String scriptDirectory, String csvUnsupportedReason) {
+        this.scriptDirectory = scriptDirectory;
+        this.csvUnsupportedReason = csvUnsupportedReason;
+    }
+
+    /**
+     * @return the classpath location of the schema script, as used by <code>jdbc.initLocation</code>
+     */
+    public String getSchemaLocation() {
+        return "db/" + this.scriptDirectory + "/schema.sql";
+    }
+
+    /**
+     * @return a statement making the next generated key of the given table equal to <code>nextId</code>
+     */
+    public abstract String restartIdentity(ClinicTable table, int nextId);
+
+    /**
+     * @throws IllegalArgumentException if this database cannot bulk load CSV files
+     */
+    public void checkCsvLoad() {
+        if (this.csvUnsupportedReason != null) {
+            throw new IllegalArgumentException(this.csvUnsupportedReason);
+        }
+    }
+
+    /**
+     * @return a statement loading the given CSV file (with a header line) into the given table
+     * @see #checkCsvLoad()
+     */
+    public String csvLoad(ClinicTable table, String fileName) {
+        // only reached by the dialects rejected by checkCsvLoad()
+        throw new IllegalStateException(this.csvUnsupportedReason);
+    }
+
+    /**
+     * Renders a value as a SQL literal. Dates use the plain <code>'yyyy-MM-dd'</code> form of the bundled
+     * <code>data.sql</code> scripts, which all four databases accept for DATE columns.
+     */
+    public String literal(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        if (value instanceof Number) {
+            return value.toString();
+        }
+        if (value instanceof LocalDate) {
+            return "'" + value + "'";
+        }
+        return "'" + value.toString().replace("'", "''") + "'";
+    }
+
+    public static SqlDialect fromName(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+}
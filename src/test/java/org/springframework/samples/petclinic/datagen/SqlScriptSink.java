@@ -0,0 +1,93 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.datagen;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a <code>data.sql</code> style script for one {@link SqlDialect}, using multi-row <code>INSERT</code>
+ * statements. The resulting file can be used as <code>jdbc.dataLocation</code> after the matching schema script.
+ */
+public class SqlScriptSink implements ClinicDataSink<byte[]> {
+
+    private static final int ROWS_PER_STATEMENT = 500;
+
+    private final SqlDialect dialect;
+
+    private final OutputStream out;
+
+    public SqlScriptSink(SqlDialect dialect, Path file) throws IOException {
+        this(dialect, new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    }
+
+    public SqlScriptSink(SqlDialect dialect, OutputStream out) {
+        this.dialect = dialect;
+        this.out = out;
+    }
+
+    @Override
+    public byte[] prepare(GeneratedChunk chunk) {
+        StringBuilder sql = new StringBuilder(256 * chunk.getRowCount(ClinicTable.VISITS) + 1024);
+        for (ClinicTable table : ClinicTable.values()) {
+            appendInserts(sql, table, chunk.getRows(table));
+        }
+        return sql.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void appendInserts(StringBuilder sql, ClinicTable table, List<Object[]> rows) {
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i % ROWS_PER_STATEMENT == 0 ? "INSERT INTO " + table.getTableName() + " VALUES\n  (" : ",\n  (");
+            Object[] row = rows.get(i);
+            for (int c = 0; c < row.length; c++) {
+                if (c > 0) {
+                    sql.append(", ");
+                }
+                sql.append(this.dialect.literal(row[c]));
+            }
+            sql.append(')');
+            if (i % ROWS_PER_STATEMENT == ROWS_PER_STATEMENT - 1 || i == rows.size() - 1) {
+                sql.append(";\n");
+            }
+        }
+    }
+
+    @Override
+    public void write(byte[] prepared) throws IOException {
+        this.out.write(prepared);
+    }
+
+    @Override
+    public void finish(Map<ClinicTable, Integer> nextIds) throws IOException {
+        StringBuilder sql = new StringBuilder();
+        for (Map.Entry<ClinicTable, Integer> entry : nextIds.entrySet()) {
+            sql.append(this.dialect.restartIdentity(entry.getKey(), entry.getValue())).append(";\n");
+        }
+        this.out.write(sql.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.diagnostics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.stereotype.Repository;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Test class for the Flight Recorder events and {@link FlightRecorderControl}
+ */
+class FlightRecorderTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldRecordPetclinicEventsIntoTheDumpedFile() throws Exception {
+        FlightRecorderControl control = new FlightRecorderControl();
+        control.setDirectory(this.directory.toString());
+        control.start();
+        assertThat(control.isRecording()).isTrue();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/owners/7");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/owners/{ownerId}");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FlightRecorderInterceptor interceptor = new FlightRecorderInterceptor();
+        interceptor.preHandle(request, response, null);
+        interceptor.afterCompletion(request, response, null, null);
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new SampleRepository());
+        proxyFactory.addAspect(new FlightRecorderAspect());
+        SampleRepository repository = proxyFactory.getProxy();
+        repository.findAll();
+
+        Cache cache = new FlightRecorderCacheManager(new ConcurrentMapCacheManager("vets")).getCache("vets");
+        cache.get("all");
+        cache.put("all", "vets");
+        cache.get("all");
+
+        new FlightRecorderDataSource(new SimpleDriverDataSource(new org.h2.Driver(), "jdbc:h2:mem:jfr"), "dataSource")
+            .getConnection().close();
+
+        Path file = Paths.get(control.stop());
+        assertThat(file.getParent()).isEqualTo(this.directory);
+        assertThat(control.isRecording()).isFalse();
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+            .filter(event -> event.getEventType().getName().startsWith("petclinic."))
+            .collect(Collectors.toList());
+        assertThat(events).extracting(event -> event.getEventType().getName()).containsExactly(
+            "petclinic.HttpRequest", "petclinic.RepositoryCall", "petclinic.CacheLookup", "petclinic.CacheLookup",
+            "petclinic.ConnectionWait");
+        assertThat(events.get(0).getString("route")).isEqualTo("/owners/{ownerId}");
+        assertThat(events.get(1).getString("method")).isEqualTo("findAll");
+        assertThat(events.get(2).getBoolean("hit")).isFalse();
+        assertThat(events.get(3).getBoolean("hit")).isTrue();
+        assertThat(events.get(4).getString("dataSource")).isEqualTo("dataSource");
+    }
+
+    @Repository
+    public static class SampleRepository {
+
+        public String findAll() {
+            return "all";
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.diagnostics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Test class for {@link ResourceAccountingFilter}
+ */
+class ResourceAccountingFilterTests {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldAccountAllocationsPerRoute() throws Exception {
+        ResourceAccountingFilter filter = new ResourceAccountingFilter();
+        filter.setSampleRate(1);
+
+        for (int i = 0; i < 3; i++) {
+            filter.doFilter(new MockHttpServletRequest("GET", "/owners/" + i), new MockHttpServletResponse(),
+                handledBy("/owners/{ownerId}", 1024 * 1024));
+        }
+        filter.doFilter(new MockHttpServletRequest("GET", "/vets"), new MockHttpServletResponse(),
+            handledBy("/vets", 0));
+        filter.doFilter(new MockHttpServletRequest("GET", "/resources/css/petclinic.css"),
+            new MockHttpServletResponse(), handledBy("/resources/**", 0));
+
+        Map<String, Object> metrics = filter.getMetrics();
+        assertThat(metrics).containsOnlyKeys("GET /owners/{ownerId}", "GET /vets");
+        // heaviest allocator first
+        assertThat(metrics.keySet().iterator().next()).isEqualTo("GET /owners/{ownerId}");
+        Map<String, Object> owner = (Map<String, Object>) metrics.get("GET /owners/{ownerId}");
+        assertThat(owner).containsEntry("requests", 3L);
+        Map<String, Object> allocated = (Map<String, Object>) owner.get("allocatedKilobytes");
+        assertThat(allocated).containsEntry("count", 3L);
+        assertThat((Long) allocated.get("p50")).isGreaterThanOrEqualTo(1024);
+        assertThat(filter.report()).contains("GET /owners/{ownerId}", "GET /vets");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldCountUnsampledRequests() throws Exception {
+        ResourceAccountingFilter filter = new ResourceAccountingFilter();
+        filter.setSampleRate(0);
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/vets"), new MockHttpServletResponse(),
+            handledBy("/vets", 0));
+
+        Map<String, Object> vets = (Map<String, Object>) filter.getMetrics().get("GET /vets");
+        assertThat(vets).containsEntry("requests", 1L);
+        assertThat((Map<String, Object>) vets.get("cpuMicros")).containsEntry("count", 0L);
+    }
+
+    /**
+     * Simulate the DispatcherServlet, which exposes the matched pattern as a request attribute.
+     */
+    private static MockFilterChain handledBy(String pattern, int allocatedBytes) {
+        return new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException {
+                request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+                response.getOutputStream().write(new byte[allocatedBytes]);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.health;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for {@link HealthProber} and its probes
+ */
+class HealthProberTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReportDownAndFailingProbesOnly() {
+        HealthProber prober = new HealthProber(Arrays.asList(
+            probe("database", () -> ProbeResult.up(Collections.singletonMap("active", 1))),
+            probe("disk", () -> ProbeResult.degraded("full", Collections.emptyMap())),
+            probe("caches", () -> {
+                throw new IllegalStateException("broken");
+            })));
+        prober.setIntervalMillis(0);
+        prober.afterPropertiesSet();
+
+        assertThat(prober.getFailingProbes()).containsExactly("caches");
+        assertThat(prober.isHealthy()).isFalse();
+        Map<String, ProbeResult> results = prober.getResults();
+        assertThat(results.get("disk").getStatus()).isEqualTo(ProbeResult.Status.DEGRADED);
+        assertThat(results.get("caches").getMessage()).contains("broken");
+        assertThat(results.get("database").getCheckedAtMillis()).isPositive();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> database = (Map<String, Object>) prober.getMetrics().get("database");
+        assertThat(database).containsEntry("status", "UP").containsEntry("active", 1).containsKey("latencyMicros");
+    }
+
+    @Test
+    void shouldReportStaleResultsAsFailing() {
+        HealthProber prober = new HealthProber(Collections.singletonList(
+            probe("database", () -> ProbeResult.up(Collections.emptyMap()))));
+        prober.setIntervalMillis(60_000);
+        prober.setStaleAfterMillis(-1);
+        prober.afterPropertiesSet();
+        try {
+            assertThat(prober.getFailingProbes()).containsExactly("database");
+        } finally {
+            prober.destroy();
+        }
+    }
+
+    @Test
+    void shouldPublishPoolStatisticsOfAReachableDatabase() {
+        DataSource dataSource = new DataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:healthprobe");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSource.setMaxActive(4);
+        try {
+            ProbeResult result = new DataSourceProbe(dataSource).probe();
+
+            assertThat(result.getStatus()).isEqualTo(ProbeResult.Status.UP);
+            assertThat(result.getDetails()).containsEntry("maxActive", 4).containsEntry("waiting", 0)
+                .containsKey("utilization");
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    void shouldReportAnUnreachableDatabaseAsDown() {
+        DataSource dataSource = new DataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:file:" + this.directory.resolve("missing") + ";IFEXISTS=TRUE");
+        try {
+            assertThat(new DataSourceProbe(dataSource).probe().getStatus()).isEqualTo(ProbeResult.Status.DOWN);
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    void shouldCheckTheClosestExistingDirectoryOfEachPath() {
+        DiskProbe probe = new DiskProbe();
+        probe.setPaths(this.directory.resolve("not/yet/created.snapshot") + "," + this.directory);
+
+        ProbeResult result = probe.probe();
+        assertThat(result.getStatus()).isEqualTo(ProbeResult.Status.UP);
+        assertThat(result.getDetails()).containsOnlyKeys(this.directory.toAbsolutePath().toString());
+
+        probe.setMinFreeBytes(Long.MAX_VALUE);
+        assertThat(probe.probe().getStatus()).isEqualTo(ProbeResult.Status.DEGRADED);
+    }
+
+    private static HealthProbe probe(String name, Supplier<ProbeResult> result) {
+        return new HealthProbe() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public ProbeResult probe() {
+                return result.get();
+            }
+        };
+    }
+
+}
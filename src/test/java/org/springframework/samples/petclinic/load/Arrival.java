@@ -0,0 +1,154 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.load;
+
+/**
+ * One scheduled execution of a {@link LoadScenario}, with all its targets and submitted values resolved.
+ */
+public class Arrival {
+
+    private final LoadScenario scenario;
+    private final long scheduledNanos;
+    private final boolean measured;
+    private int ownerId;
+    private int petId;
+    private int petOwnerId;
+    private String searchPrefix = "";
+    private String firstName;
+    private String lastName;
+    private String address;
+    private String city;
+    private String telephone;
+    private String visitDate;
+    private String visitDescription;
+
+    /**
+     * @param scheduledNanos {@link System#nanoTime()} at which the scenario should start
+     * @param measured       false during the warm-up
+     */
+    public Arrival(LoadScenario scenario, long scheduledNanos, boolean measured) {
+        this.scenario = scenario;
+        this.scheduledNanos = scheduledNanos;
+        this.measured = measured;
+    }
+
+    public LoadScenario getScenario() {
+        return this.scenario;
+    }
+
+    public long getScheduledNanos() {
+        return this.scheduledNanos;
+    }
+
+    public boolean isMeasured() {
+        return this.measured;
+    }
+
+    public int getOwnerId() {
+        return this.ownerId;
+    }
+
+    public void setOwnerId(int ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    public int getPetId() {
+        return this.petId;
+    }
+
+    public void setPetId(int petId) {
+        this.petId = petId;
+    }
+
+    public int getPetOwnerId() {
+        return this.petOwnerId;
+    }
+
+    public void setPetOwnerId(int petOwnerId) {
+        this.petOwnerId = petOwnerId;
+    }
+
+    /**
+     * @return last name prefix to search for, empty to list every owner
+     */
+    public String getSearchPrefix() {
+        return this.searchPrefix;
+    }
+
+    public void setSearchPrefix(String searchPrefix) {
+        this.searchPrefix = searchPrefix;
+    }
+
+    public String getFirstName() {
+        return this.firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return this.lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getAddress() {
+        return this.address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public String getCity() {
+        return this.city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public String getTelephone() {
+        return this.telephone;
+    }
+
+    public void setTelephone(String telephone) {
+        this.telephone = telephone;
+    }
+
+    /**
+     * @return visit date in the <code>yyyy/MM/dd</code> format expected by the visit form
+     */
+    public String getVisitDate() {
+        return this.visitDate;
+    }
+
+    public void setVisitDate(String visitDate) {
+        this.visitDate = visitDate;
+    }
+
+    public String getVisitDescription() {
+        return this.visitDescription;
+    }
+
+    public void setVisitDescription(String visitDescription) {
+        this.visitDescription = visitDescription;
+    }
+
+}
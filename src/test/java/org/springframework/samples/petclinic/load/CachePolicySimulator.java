@@ -0,0 +1,218 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.load;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.samples.petclinic.cache.CacheRegion;
+import org.springframework.samples.petclinic.cache.TinyLfuCache;
+import org.springframework.samples.petclinic.capture.CaptureLogReader;
+import org.springframework.samples.petclinic.capture.CapturedRequest;
+
+/**
+ * Replays the cache lookups implied by the requests of a traffic capture against a W-TinyLFU cache
+ * ({@link TinyLfuCache}) and a plain LRU cache of the same size, and compares their hit ratios per cache region:
+ * "owners" for the requests under /owners/{ownerId}, "ownerSearch" for the searches and "vets" for the vet lists.
+ * Only the keys matter: nothing is loaded, and writes are replayed as lookups too.
+ * <p/>
+ * Command line usage (from the project directory):
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.springframework.samples.petclinic.load.CachePolicySimulator \
+ *     -Dexec.args="--capture=/tmp/petclinic-capture --sizes=100,1000,10000"
+ * </pre>
+ */
+public class CachePolicySimulator {
+
+    private static final Pattern OWNER_PATH = Pattern.compile("^/owners/(\\d+)(/.*)?$");
+
+    private final int[] sizes;
+
+    /**
+     * @param sizes cache sizes to simulate, in entries
+     */
+    public CachePolicySimulator(int... sizes) {
+        this.sizes = sizes;
+    }
+
+    /**
+     * @return the results of each simulated size, by region
+     */
+    public Map<String, List<Result>> run(Path capture) throws IOException {
+        Map<String, List<Object>> traces = new LinkedHashMap<>();
+        try (CaptureLogReader reader = new CaptureLogReader(capture)) {
+            CapturedRequest request;
+            while ((request = reader.read()) != null) {
+                String region = regionOf(request);
+                if (region != null) {
+                    traces.computeIfAbsent(region, name -> new ArrayList<>()).add(keyOf(region, request));
+                }
+            }
+        }
+        Map<String, List<Result>> results = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Object>> trace : traces.entrySet()) {
+            List<Result> regionResults = new ArrayList<>();
+            for (int size : this.sizes) {
+                regionResults.add(new Result(size, trace.getValue().size(), simulateLru(trace.getValue(), size),
+                    simulateTinyLfu(trace.getValue(), size)));
+            }
+            results.put(trace.getKey(), regionResults);
+        }
+        return results;
+    }
+
+    static String regionOf(CapturedRequest request) {
+        String path = request.getPath();
+        if (OWNER_PATH.matcher(path).matches()) {
+            return "owners";
+        } else if (path.equals("/owners") && "GET".equals(request.getMethod())) {
+            return "ownerSearch";
+        } else if (path.startsWith("/vets")) {
+            return "vets";
+        }
+        return null;
+    }
+
+    private static Object keyOf(String region, CapturedRequest request) {
+        if (region.equals("owners")) {
+            Matcher matcher = OWNER_PATH.matcher(request.getPath());
+            matcher.matches();
+            return Integer.valueOf(matcher.group(1));
+        } else if (region.equals("ownerSearch")) {
+            Map<String, String> parameters = request.getParameters();
+            return parameters.getOrDefault("lastName", "") + "|" + parameters.getOrDefault("page", "1") + "|"
+                + parameters.getOrDefault("size", "");
+        }
+        return "all";
+    }
+
+    /**
+     * @return hit count of an access ordered LRU cache, the eviction policy of the caches before W-TinyLFU
+     */
+    static long simulateLru(List<Object> trace, int size) {
+        Map<Object, Boolean> cache = new LinkedHashMap<Object, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Boolean> eldest) {
+                return size() > size;
+            }
+        };
+        long hits = 0;
+        for (Object key : trace) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, Boolean.TRUE);
+            }
+        }
+        return hits;
+    }
+
+    static long simulateTinyLfu(List<Object> trace, int size) {
+        CacheRegion region = new CacheRegion();
+        region.setName("simulation");
+        region.setMaximumSize(size);
+        TinyLfuCache cache = new TinyLfuCache(region, Runnable::run);
+        for (Object key : trace) {
+            // as for @Cacheable methods: lookup, then put on a miss
+            if (cache.get(key) == null) {
+                cache.put(key, Boolean.TRUE);
+            }
+        }
+        return cache.getHitCount();
+    }
+
+    public static String format(Map<String, List<Result>> results) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-12s %8s %10s %8s %10s %8s%n", "region", "size", "accesses", "LRU", "W-TinyLFU",
+            "gain"));
+        for (Map.Entry<String, List<Result>> region : results.entrySet()) {
+            for (Result result : region.getValue()) {
+                report.append(String.format("%-12s %8d %10d %7.1f%% %9.1f%% %+7.1f%n", region.getKey(),
+                    result.getSize(), result.getAccesses(), result.getLruHitRatio() * 100,
+                    result.getTinyLfuHitRatio() * 100, (result.getTinyLfuHitRatio() - result.getLruHitRatio()) * 100));
+            }
+        }
+        return report.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            options.put(equals < 0 ? arg.substring(2) : arg.substring(2, equals), equals < 0 ? "true" : arg.substring(equals + 1));
+        }
+        String capture = options.get("capture");
+        if (capture == null) {
+            throw new IllegalArgumentException("Missing required option --capture");
+        }
+        String[] sizeOptions = options.getOrDefault("sizes", "100,1000,10000").split(",");
+        int[] sizes = new int[sizeOptions.length];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = Integer.parseInt(sizeOptions[i].trim());
+        }
+        System.out.print(format(new CachePolicySimulator(sizes).run(Paths.get(capture))));
+    }
+
+    /**
+     * Hit counts of both policies for one cache size.
+     */
+    public static final class Result {
+
+        private final int size;
+
+        private final long accesses;
+
+        private final long lruHits;
+
+        private final long tinyLfuHits;
+
+        Result(int size, long accesses, long lruHits, long tinyLfuHits) {
+            this.size = size;
+            this.accesses = accesses;
+            this.lruHits = lruHits;
+            this.tinyLfuHits = tinyLfuHits;
+        }
+
+        public int getSize() {
+            return this.size;
+        }
+
+        public long getAccesses() {
+            return this.accesses;
+        }
+
+        public double getLruHitRatio() {
+            return this.accesses == 0 ? 0 : (double) this.lruHits / this.accesses;
+        }
+
+        public double getTinyLfuHitRatio() {
+            return this.accesses == 0 ? 0 : (double) this.tinyLfuHits / this.accesses;
+        }
+    }
+
+}
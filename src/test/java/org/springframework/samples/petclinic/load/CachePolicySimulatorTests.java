@@ -0,0 +1,71 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.samples.petclinic.capture.CaptureLogWriter;
+import org.springframework.samples.petclinic.capture.CapturedRequest;
+
+/**
+ * Test class for {@link CachePolicySimulator}
+ */
+class CachePolicySimulatorTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldBeatLruOnATracePollutedByScans() throws IOException {
+        try (CaptureLogWriter writer = new CaptureLogWriter(this.directory, 1024 * 1024, 4, 20_000)) {
+            long timestamp = 0;
+            int scanned = 1000;
+            for (int round = 0; round < 20; round++) {
+                // a few regulars, then a one-off walk through other owners
+                for (int owner = 1; owner <= 40; owner++) {
+                    writer.offer(get(timestamp++, "/owners/{ownerId}", "/owners/" + owner));
+                }
+                for (int i = 0; i < 150; i++) {
+                    writer.offer(get(timestamp++, "/owners/{ownerId}/edit", "/owners/" + scanned++ + "/edit"));
+                }
+                writer.offer(get(timestamp++, "/vets", "/vets"));
+            }
+        }
+
+        Map<String, List<CachePolicySimulator.Result>> results = new CachePolicySimulator(100).run(this.directory);
+
+        assertThat(results).containsOnlyKeys("owners", "vets");
+        CachePolicySimulator.Result owners = results.get("owners").get(0);
+        assertThat(owners.getAccesses()).isEqualTo(20 * 190);
+        assertThat(owners.getLruHitRatio()).isZero();
+        assertThat(owners.getTinyLfuHitRatio()).isGreaterThan(0.15);
+        assertThat(results.get("vets").get(0).getTinyLfuHitRatio()).isEqualTo(19 / 20.0);
+        assertThat(CachePolicySimulator.format(results)).contains("owners", "W-TinyLFU");
+    }
+
+    private static CapturedRequest get(long timestamp, String route, String path) {
+        return new CapturedRequest(timestamp, "GET", route, path, Collections.emptyMap(), 200, 100);
+    }
+
+}
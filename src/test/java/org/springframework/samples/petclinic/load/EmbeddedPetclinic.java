@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.apache.catalina.webresources.StandardRoot;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.samples.petclinic.datagen.ClinicDataGenerator;
+import org.springframework.samples.petclinic.datagen.JdbcBatchSink;
+import org.springframework.samples.petclinic.datagen.SqlDialect;
+
+/**
+ * Runs the Petclinic web application in an embedded Tomcat on a random port, on top of an in-memory H2 database
+ * filled by the {@link ClinicDataGenerator}.
+ * <p/>
+ * The connection settings are filtered into the Spring configuration by Maven, so the dataset is loaded into the
+ * in-memory database of the default (H2) build profile before the application starts. <code>jdbc.initLocation</code>
+ * and <code>jdbc.dataLocation</code> are then pointed to an empty script through system properties, so the
+ * application does not recreate the schema. Only one instance can run per JVM; the previous values of the system
+ * properties are restored on {@link #close()}.
+ */
+public class EmbeddedPetclinic implements AutoCloseable {
+
+    private static final String CONTEXT_PATH = "/petclinic";
+
+    private final Tomcat tomcat;
+
+    private final DataSource dataSource;
+
+    private final ClinicDataGenerator.Summary dataset;
+
+    private final Path baseDir;
+
+    private final Map<String, String> previousProperties;
+
+    private EmbeddedPetclinic(Tomcat tomcat, DataSource dataSource, ClinicDataGenerator.Summary dataset, Path baseDir,
+                              Map<String, String> previousProperties) {
+        this.tomcat = tomcat;
+        this.dataSource = dataSource;
+        this.dataset = dataset;
+        this.baseDir = baseDir;
+        this.previousProperties = previousProperties;
+    }
+
+    /**
+     * @param owners  number of generated owners
+     * @param seed    seed of the generated dataset
+     * @param profile persistence profile (jpa, jdbc or spring-data-jpa)
+     */
+    public static EmbeddedPetclinic start(int owners, long seed, String profile)
+        throws IOException, SQLException, LifecycleException {
+        Properties dataAccess = PropertiesLoaderUtils.loadProperties(new ClassPathResource("spring/data-access.properties"));
+        String configuredUrl = dataAccess.getProperty("jdbc.url");
+        if (!configuredUrl.startsWith("jdbc:h2:mem:")) {
+            throw new IllegalStateException("The load harness needs the default H2 build profile, but jdbc.url is " + configuredUrl);
+        }
+        // keep the in-memory database alive between the load and the first connection of the application
+        String jdbcUrl = configuredUrl + ";DB_CLOSE_DELAY=-1";
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(jdbcUrl, dataAccess.getProperty("jdbc.username"),
+            dataAccess.getProperty("jdbc.password"));
+        JdbcBatchSink sink = new JdbcBatchSink(dataSource, SqlDialect.H2);
+        sink.createSchema();
+        ClinicDataGenerator.Summary dataset = new ClinicDataGenerator(seed, owners).generate(sink);
+
+        Path baseDir = Files.createTempDirectory("petclinic-load");
+        Path noop = baseDir.resolve("noop.sql");
+        Files.write(noop, "-- dataset loaded by EmbeddedPetclinic\nSELECT 1;\n".getBytes(StandardCharsets.UTF_8));
+        Map<String, String> previousProperties = new HashMap<>();
+        setProperty(previousProperties, "jdbc.initLocation", noop.toUri().toString());
+        setProperty(previousProperties, "jdbc.dataLocation", noop.toUri().toString());
+        setProperty(previousProperties, "jpa.showSql", "false");
+        setProperty(previousProperties, "spring.profiles.active", profile);
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+        tomcat.setPort(0);
+        tomcat.getConnector();
+        Context context = tomcat.addWebapp(CONTEXT_PATH, new File("src/main/webapp").getAbsolutePath());
+        // WEB-INF/lib is empty: libraries come from the test classpath, which is not the system class path under exec:java
+        context.setParentClassLoader(EmbeddedPetclinic.class.getClassLoader());
+        WebResourceRoot resources = new StandardRoot(context);
+        // compiled classes are not under src/main/webapp; mount them so PetclinicInitializer is discovered
+        resources.addPreResources(new DirResourceSet(resources, "/WEB-INF/classes",
+            new File("target/classes").getAbsolutePath(), "/"));
+        context.setResources(resources);
+        tomcat.start();
+        if (context.getState() != LifecycleState.STARTED) {
+            tomcat.stop();
+            tomcat.destroy();
+            throw new IllegalStateException("Petclinic failed to start, see the container log");
+        }
+        return new EmbeddedPetclinic(tomcat, dataSource, dataset, baseDir, previousProperties);
+    }
+
+    private static void setProperty(Map<String, String> previousProperties, String name, String value) {
+        previousProperties.put(name, System.setProperty(name, value));
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + this.tomcat.getConnector().getLocalPort() + CONTEXT_PATH;
+    }
+
+    /**
+     * @return a data source on the database of the application, e.g. to pick request targets
+     */
+    public DataSource getDataSource() {
+        return this.dataSource;
+    }
+
+    public ClinicDataGenerator.Summary getDataset() {
+        return this.dataset;
+    }
+
+    @Override
+    public void close() throws LifecycleException {
+        this.tomcat.stop();
+        this.tomcat.destroy();
+        for (Map.Entry<String, String> property : this.previousProperties.entrySet()) {
+            if (property.getValue() == null) {
+                System.clearProperty(property.getKey());
+            } else {
+                System.setProperty(property.getKey(), property.getValue());
+            }
+        }
+        this.baseDir.toFile().deleteOnExit();
+    }
+
+}
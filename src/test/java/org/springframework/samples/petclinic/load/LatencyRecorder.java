@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.load;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe recorder of request latencies and errors, grouped by request label. Latencies are kept exactly (in
+ * microseconds) so percentiles do not depend on a histogram resolution; a one hour run at a few hundred requests per
+ * second only needs a few megabytes.
+ */
+public class LatencyRecorder {
+
+    private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<>();
+
+    public void recordSuccess(String label, long latencyMicros) {
+        seriesFor(label).add(latencyMicros, null);
+    }
+
+    /**
+     * @param cause HTTP status code or exception class name
+     */
+    public void recordError(String label, long latencyMicros, String cause) {
+        seriesFor(label).add(latencyMicros, cause);
+    }
+
+    public void reset() {
+        this.series.clear();
+    }
+
+    /**
+     * @param durationSeconds length of the measurement window, used to compute the throughput
+     * @return statistics per label, sorted by label
+     */
+    public Map<String, LoadReport.RequestStats> snapshot(double durationSeconds) {
+        Map<String, LoadReport.RequestStats> stats = new TreeMap<>();
+        for (Map.Entry<String, Series> entry : this.series.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().toStats(durationSeconds));
+        }
+        return stats;
+    }
+
+    private Series seriesFor(String label) {
+        return this.series.computeIfAbsent(label, l -> new Series());
+    }
+
+    /**
+     * Nearest-rank percentile of an ascending array.
+     */
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.min(Math.max(rank, 1), sorted.length) - 1];
+    }
+
+    private static class Series {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private final Map<String, Integer> errors = new TreeMap<>();
+        private int errorCount;
+
+        synchronized void add(long latencyMicros, String error) {
+            if (this.count == this.latencies.length) {
+                this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+            }
+            this.latencies[this.count++] = latencyMicros;
+            if (error != null) {
+                this.errorCount++;
+                this.errors.merge(error, 1, Integer::sum);
+            }
+        }
+
+        synchronized LoadReport.RequestStats toStats(double durationSeconds) {
+            long[] sorted = Arrays.copyOf(this.latencies, this.count);
+            Arrays.sort(sorted);
+            LoadReport.RequestStats stats = new LoadReport.RequestStats();
+            stats.setCount(this.count);
+            stats.setErrors(this.errorCount);
+            stats.setErrorsByCause(new TreeMap<>(this.errors));
+            stats.setThroughput(durationSeconds > 0 ? this.count / durationSeconds : 0);
+            stats.setP50Ms(percentile(sorted, 50) / 1000.0);
+            stats.setP90Ms(percentile(sorted, 90) / 1000.0);
+            stats.setP99Ms(percentile(sorted, 99) / 1000.0);
+            stats.setMaxMs(sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000.0);
+            return stats;
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.load;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Minimal blocking HTTP client recording the latency and outcome of every request in a {@link LatencyRecorder}.
+ * Redirects are not followed: a successful form submission is a 302, a 200 means the form was re-rendered with
+ * validation errors. Unexpected exceptions are rendered by <code>exception.jsp</code> with a 200 status, so the page
+ * body is checked for its title as well.
+ */
+public class LoadClient {
+
+    private static final byte[] EXCEPTION_PAGE_MARKER = "<h2>Something happened...</h2>".getBytes(StandardCharsets.UTF_8);
+
+    private final String baseUrl;
+
+    private final LatencyRecorder recorder;
+
+    private final int timeoutMillis;
+
+    public LoadClient(String baseUrl, LatencyRecorder recorder, int timeoutMillis) {
+        this.baseUrl = baseUrl;
+        this.recorder = recorder;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return whether the response status was 200
+     */
+    public boolean get(String label, String path, boolean measured) {
+        return get(label, path, 200, measured);
+    }
+
+    /**
+     * @return whether the response status was the expected one
+     */
+    public boolean get(String label, String path, int expectedStatus, boolean measured) {
+        return execute(label, "GET", path, null, expectedStatus, measured);
+    }
+
+    /**
+     * @return whether the response status was a redirect
+     */
+    public boolean post(String label, String path, Map<String, String> form, boolean measured) {
+        StringBuilder body = new StringBuilder();
+        for (Map.Entry<String, String> field : form.entrySet()) {
+            if (body.length() > 0) {
+                body.append('&');
+            }
+            body.append(encode(field.getKey())).append('=').append(encode(field.getValue()));
+        }
+        return execute(label, "POST", path, body.toString().getBytes(StandardCharsets.UTF_8), 302, measured);
+    }
+
+    private boolean execute(String label, String method, String path, byte[] body, int expectedStatus, boolean measured) {
+        long start = System.nanoTime();
+        String error;
+        try {
+            HttpURLConnection connection = open(method, path);
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+            }
+            int status = connection.getResponseCode();
+            boolean exceptionPage = drain(connection, status);
+            error = status != expectedStatus ? String.valueOf(status) : exceptionPage ? "exception-page" : null;
+        } catch (IOException ex) {
+            error = ex.getClass().getSimpleName();
+        }
+        if (measured) {
+            long latencyMicros = (System.nanoTime() - start) / 1000;
+            if (error == null) {
+                this.recorder.recordSuccess(label, latencyMicros);
+            } else {
+                this.recorder.recordError(label, latencyMicros, error);
+            }
+        }
+        return error == null;
+    }
+
+    private HttpURLConnection open(String method, String pathAndQuery) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(this.baseUrl + pathAndQuery).openConnection();
+        connection.setRequestMethod(method);
+        connection.setInstanceFollowRedirects(false);
+        connection.setConnectTimeout(this.timeoutMillis);
+        connection.setReadTimeout(this.timeoutMillis);
+        return connection;
+    }
+
+    /**
+     * Read the whole body so the connection goes back to the keep-alive pool, and the server-side rendering time is
+     * part of the measured latency.
+     *
+     * @return whether the body is the exception page
+     */
+    private static boolean drain(HttpURLConnection connection, int status) throws IOException {
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (in == null) {
+            return false;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) >= 0) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return indexOf(body.toByteArray(), EXCEPTION_PAGE_MARKER) >= 0;
+    }
+
+    static int indexOf(byte[] data, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
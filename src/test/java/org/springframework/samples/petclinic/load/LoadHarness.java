@@ -0,0 +1,293 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.load;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sql.DataSource;
+
+import org.springframework.samples.petclinic.datagen.ClinicDataGenerator;
+import org.springframework.samples.petclinic.datagen.LastNameDistribution;
+
+/**
+ * Open-model load generator for the Petclinic web application.
+ * <p/>
+ * Scenarios arrive following a Poisson process at a fixed rate, independently of how fast the application answers:
+ * when the application falls behind, arrivals queue up and the queueing time is part of the scenario latency (measured
+ * from the scheduled start), instead of silently lowering the offered load as a closed thread group does. Scenarios and
+ * their targets are drawn from a single seeded random sequence, so two runs with the same settings send the same
+ * requests in the same order.
+ * <p/>
+ * Command line usage (from the project directory), which starts the application in an embedded Tomcat on a generated
+ * dataset and writes a JSON report to <code>target/load-reports</code>:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.springframework.samples.petclinic.load.LoadHarness \
+ *     -Dexec.args="--owners=10000 --rate=100 --duration=60 --warmup=15 --label=after --baseline=target/load-reports/before.json"
+ * </pre>
+ * Other options: <code>--seed</code>, <code>--profile</code> (jpa, jdbc or spring-data-jpa), <code>--threads</code>,
+ * <code>--mix</code> (see {@link ScenarioMix}) and <code>--report</code>.
+ */
+public class LoadHarness {
+
+    private static final String[] FIRST_NAMES = {"George", "Betty", "Eduardo", "Harold", "Peter", "Jean", "Jeff", "Maria"};
+
+    private static final String[] CITIES = {"Madison", "Sun Prairie", "McFarland", "Windsor", "Monona", "Waunakee"};
+
+    private static final LocalDate FIRST_VISIT_DATE = LocalDate.of(2025, 1, 1);
+
+    private static final DateTimeFormatter VISIT_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+
+    private final String baseUrl;
+
+    private final int owners;
+
+    private final int[] petIds;
+
+    private final int[] petOwnerIds;
+
+    private final long seed;
+
+    private double rate = 50;
+
+    private int durationSeconds = 60;
+
+    private int warmupSeconds = 15;
+
+    private int threads = 64;
+
+    private int timeoutMillis = 30_000;
+
+    private ScenarioMix mix = ScenarioMix.parse(ScenarioMix.DEFAULT);
+
+    private LastNameDistribution lastNames = new LastNameDistribution(1.0, 0.2);
+
+    /**
+     * @param baseUrl     URL of the application, including its context path
+     * @param owners      number of owners, whose ids are expected to range from 1 to <code>owners</code>
+     * @param petIds      ids of the pets used by the visit scenario
+     * @param petOwnerIds owner id of each pet of <code>petIds</code>
+     * @param seed        seed of the arrival times and targets
+     */
+    public LoadHarness(String baseUrl, int owners, int[] petIds, int[] petOwnerIds, long seed) {
+        if (petIds.length != petOwnerIds.length || petIds.length == 0) {
+            throw new IllegalArgumentException("Expected one owner per pet, and at least one pet");
+        }
+        this.baseUrl = baseUrl;
+        this.owners = owners;
+        this.petIds = petIds;
+        this.petOwnerIds = petOwnerIds;
+        this.seed = seed;
+    }
+
+    /**
+     * @param rate scenario arrivals per second
+     */
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    public void setDurationSeconds(int durationSeconds) {
+        this.durationSeconds = durationSeconds;
+    }
+
+    /**
+     * @param warmupSeconds time during which the load is applied but not measured, so JIT compilation, connection pool
+     *                      growth and cache population do not skew the results
+     */
+    public void setWarmupSeconds(int warmupSeconds) {
+        this.warmupSeconds = warmupSeconds;
+    }
+
+    /**
+     * @param threads maximum number of concurrent scenarios; arrivals beyond that are queued
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public void setMix(ScenarioMix mix) {
+        this.mix = mix;
+    }
+
+    public void setLastNames(LastNameDistribution lastNames) {
+        this.lastNames = lastNames;
+    }
+
+    public LoadReport run() throws InterruptedException {
+        LatencyRecorder requests = new LatencyRecorder();
+        LatencyRecorder scenarios = new LatencyRecorder();
+        LoadClient client = new LoadClient(this.baseUrl, requests, this.timeoutMillis);
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        SplittableRandom random = new SplittableRandom(this.seed);
+
+        String startedAt = Instant.now().toString();
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(this.warmupSeconds);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(this.durationSeconds);
+        long next = start;
+        try {
+            while (true) {
+                next += (long) (-Math.log(1.0 - random.nextDouble()) / this.rate * TimeUnit.SECONDS.toNanos(1));
+                if (next >= end) {
+                    break;
+                }
+                Arrival arrival = nextArrival(random, next, next >= measureStart);
+                long delay;
+                while ((delay = next - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                executor.execute(() -> {
+                    boolean success = arrival.getScenario().run(client, arrival);
+                    if (arrival.isMeasured()) {
+                        long latencyMicros = (System.nanoTime() - arrival.getScheduledNanos()) / 1000;
+                        if (success) {
+                            scenarios.recordSuccess(arrival.getScenario().getLabel(), latencyMicros);
+                        } else {
+                            scenarios.recordError(arrival.getScenario().getLabel(), latencyMicros, "failed");
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        if (!executor.awaitTermination(this.timeoutMillis * 2L, TimeUnit.MILLISECONDS)) {
+            executor.shutdownNow();
+        }
+
+        LoadReport report = new LoadReport();
+        report.setStartedAt(startedAt);
+        report.getSettings().put("rate", this.rate);
+        report.getSettings().put("durationSeconds", this.durationSeconds);
+        report.getSettings().put("warmupSeconds", this.warmupSeconds);
+        report.getSettings().put("threads", this.threads);
+        report.getSettings().put("mix", this.mix.toString());
+        report.getSettings().put("seed", this.seed);
+        report.setRequests(requests.snapshot(this.durationSeconds));
+        report.setScenarios(scenarios.snapshot(this.durationSeconds));
+        return report;
+    }
+
+    Arrival nextArrival(SplittableRandom random, long scheduledNanos, boolean measured) {
+        Arrival arrival = new Arrival(this.mix.pick(random), scheduledNanos, measured);
+        arrival.setOwnerId(1 + random.nextInt(this.owners));
+        int pet = random.nextInt(this.petIds.length);
+        arrival.setPetId(this.petIds[pet]);
+        arrival.setPetOwnerId(this.petOwnerIds[pet]);
+        String lastName = this.lastNames.next(random);
+        // one search out of five lists every owner, the others look up a prefix of a realistic last name
+        arrival.setSearchPrefix(random.nextInt(5) == 0 ? "" : lastName.substring(0, 1 + random.nextInt(lastName.length())));
+        arrival.setFirstName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]);
+        arrival.setLastName(lastName);
+        arrival.setAddress((1 + random.nextInt(9999)) + " Load St.");
+        arrival.setCity(CITIES[random.nextInt(CITIES.length)]);
+        arrival.setTelephone(String.valueOf(6_000_000_000L + random.nextLong(1_000_000_000L)));
+        arrival.setVisitDate(FIRST_VISIT_DATE.plusDays(random.nextInt(365)).format(VISIT_DATE_FORMAT));
+        arrival.setVisitDescription("load test visit");
+        return arrival;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            options.put(equals < 0 ? arg.substring(2) : arg.substring(2, equals), equals < 0 ? "true" : arg.substring(equals + 1));
+        }
+        int owners = Integer.parseInt(options.getOrDefault("owners", "10000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        String profile = options.getOrDefault("profile", "jpa");
+        String label = options.getOrDefault("label", profile);
+        int threads = Integer.parseInt(options.getOrDefault("threads", "64"));
+        // HttpURLConnection keeps at most 5 idle connections per destination by default
+        System.setProperty("http.maxConnections", String.valueOf(threads));
+
+        try (EmbeddedPetclinic petclinic = EmbeddedPetclinic.start(owners, seed, profile)) {
+            int[][] pets = loadPets(petclinic.getDataSource());
+            LoadHarness harness = new LoadHarness(petclinic.getBaseUrl(), owners, pets[0], pets[1], seed);
+            harness.setRate(Double.parseDouble(options.getOrDefault("rate", "50")));
+            harness.setDurationSeconds(Integer.parseInt(options.getOrDefault("duration", "60")));
+            harness.setWarmupSeconds(Integer.parseInt(options.getOrDefault("warmup", "15")));
+            harness.setThreads(threads);
+            harness.setMix(ScenarioMix.parse(options.getOrDefault("mix", ScenarioMix.DEFAULT)));
+
+            LoadReport report = harness.run();
+            report.setLabel(label);
+            report.getSettings().put("owners", owners);
+            report.getSettings().put("pets", petclinic.getDataset().getPets());
+            report.getSettings().put("visits", petclinic.getDataset().getVisits());
+            report.getSettings().put("profile", profile);
+            report.getSettings().put("javaVersion", System.getProperty("java.version"));
+            report.getSettings().put("availableProcessors", Runtime.getRuntime().availableProcessors());
+            Path output = Paths.get(options.getOrDefault("report", "target/load-reports/" + label + ".json"));
+            report.write(output);
+
+            System.out.print(report.format());
+            System.out.println("Report written to " + output);
+            if (options.containsKey("baseline")) {
+                System.out.println();
+                System.out.print(LoadReport.compare(LoadReport.read(Paths.get(options.get("baseline"))), report));
+            }
+        }
+    }
+
+    /**
+     * @return pet ids and their owner ids
+     */
+    private static int[][] loadPets(DataSource dataSource) throws SQLException {
+        int[] ids = new int[1024];
+        int[] ownerIds = new int[1024];
+        int count = 0;
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, owner_id FROM pets ORDER BY id")) {
+            while (rs.next()) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                    ownerIds = Arrays.copyOf(ownerIds, count * 2);
+                }
+                ids[count] = rs.getInt(1);
+                ownerIds[count] = rs.getInt(2);
+                count++;
+            }
+        }
+        return new int[][]{Arrays.copyOf(ids, count), Arrays.copyOf(ownerIds, count)};
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link LoadHarness}, {@link ScenarioMix} and {@link LatencyRecorder}
+ */
+class LoadHarnessTests {
+
+    private final LoadHarness harness = new LoadHarness("http://localhost", 100, new int[]{1, 2, 3}, new int[]{1, 1, 2}, 42);
+
+    @Test
+    void shouldDrawTheSameArrivalsForTheSameSeed() {
+        SplittableRandom first = new SplittableRandom(7);
+        SplittableRandom second = new SplittableRandom(7);
+        for (int i = 0; i < 100; i++) {
+            Arrival a = this.harness.nextArrival(first, i, true);
+            Arrival b = this.harness.nextArrival(second, i, true);
+            assertThat(b.getScenario()).isEqualTo(a.getScenario());
+            assertThat(b.getOwnerId()).isEqualTo(a.getOwnerId()).isBetween(1, 100);
+            assertThat(b.getPetId()).isEqualTo(a.getPetId());
+            assertThat(b.getSearchPrefix()).isEqualTo(a.getSearchPrefix());
+            assertThat(a.getTelephone()).hasSize(10);
+            assertThat(a.getVisitDate()).matches("\\d{4}/\\d{2}/\\d{2}");
+        }
+    }
+
+    @Test
+    void shouldOnlyPickWeightedScenarios() {
+        ScenarioMix mix = ScenarioMix.parse("vets=3,new-visit=1,home=0");
+        SplittableRandom random = new SplittableRandom(1);
+        Map<LoadScenario, Integer> picks = new EnumMap<>(LoadScenario.class);
+        for (int i = 0; i < 4_000; i++) {
+            picks.merge(mix.pick(random), 1, Integer::sum);
+        }
+
+        assertThat(picks).containsOnlyKeys(LoadScenario.VETS, LoadScenario.NEW_VISIT);
+        assertThat(picks.get(LoadScenario.VETS)).isBetween(2_800, 3_200);
+        assertThat(mix.toString()).isEqualTo("vets=3,new-visit=1");
+    }
+
+    @Test
+    void shouldComputeNearestRankPercentiles() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 1; i <= 100; i++) {
+            recorder.recordSuccess("vets", i * 1000L);
+        }
+        recorder.recordError("vets", 500_000, "500");
+
+        LoadReport.RequestStats stats = recorder.snapshot(10).get("vets");
+        assertThat(stats.getCount()).isEqualTo(101);
+        assertThat(stats.getErrors()).isEqualTo(1);
+        assertThat(stats.getErrorsByCause()).containsEntry("500", 1);
+        assertThat(stats.getP50Ms()).isEqualTo(51.0);
+        assertThat(stats.getP99Ms()).isEqualTo(100.0);
+        assertThat(stats.getMaxMs()).isEqualTo(500.0);
+        assertThat(stats.getThroughput()).isEqualTo(10.1);
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.load;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Machine-readable result of a load run, serialized as JSON. Together with the run settings it records everything
+ * needed to compare two runs, typically the same settings on two commits.
+ */
+public class LoadReport {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private String label;
+    private String startedAt;
+    private Map<String, Object> settings = new LinkedHashMap<>();
+    private Map<String, RequestStats> requests = new TreeMap<>();
+    private Map<String, RequestStats> scenarios = new TreeMap<>();
+
+    public String getLabel() {
+        return this.label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public String getStartedAt() {
+        return this.startedAt;
+    }
+
+    public void setStartedAt(String startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    /**
+     * @return dataset, persistence profile, arrival rate, durations, scenario mix... of the run
+     */
+    public Map<String, Object> getSettings() {
+        return this.settings;
+    }
+
+    public void setSettings(Map<String, Object> settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * @return statistics per individual HTTP request (e.g. "edit-owner-submit")
+     */
+    public Map<String, RequestStats> getRequests() {
+        return this.requests;
+    }
+
+    public void setRequests(Map<String, RequestStats> requests) {
+        this.requests = requests;
+    }
+
+    /**
+     * @return statistics per scenario, measured from the scheduled arrival to the end of its last request
+     */
+    public Map<String, RequestStats> getScenarios() {
+        return this.scenarios;
+    }
+
+    public void setScenarios(Map<String, RequestStats> scenarios) {
+        this.scenarios = scenarios;
+    }
+
+    public void write(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        MAPPER.writeValue(file.toFile(), this);
+    }
+
+    public static LoadReport read(Path file) throws IOException {
+        return MAPPER.readValue(file.toFile(), LoadReport.class);
+    }
+
+    /**
+     * Render the scenario and request statistics as a human-readable table.
+     */
+    public String format() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.ROOT, "%-28s %8s %7s %8s %9s %9s %9s %9s%n",
+            "scenario / request", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        format(table, this.scenarios);
+        format(table, this.requests);
+        return table.toString();
+    }
+
+    private static void format(StringBuilder table, Map<String, RequestStats> stats) {
+        for (Map.Entry<String, RequestStats> entry : stats.entrySet()) {
+            RequestStats s = entry.getValue();
+            table.append(String.format(Locale.ROOT, "%-28s %8d %7d %8.1f %9.2f %9.2f %9.2f %9.2f%n",
+                entry.getKey(), s.getCount(), s.getErrors(), s.getThroughput(),
+                s.getP50Ms(), s.getP90Ms(), s.getP99Ms(), s.getMaxMs()));
+        }
+    }
+
+    /**
+     * Render a side by side comparison of the request latencies of two reports. Positive deltas mean the candidate is
+     * slower.
+     */
+    public static String compare(LoadReport baseline, LoadReport candidate) {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.ROOT, "%-28s %10s %10s %8s %10s %10s %8s %8s%n",
+            "request", "p50 base", "p50 cand", "delta", "p99 base", "p99 cand", "delta", "errors"));
+        TreeSet<String> labels = new TreeSet<>(baseline.getRequests().keySet());
+        labels.addAll(candidate.getRequests().keySet());
+        for (String label : labels) {
+            RequestStats base = baseline.getRequests().getOrDefault(label, new RequestStats());
+            RequestStats cand = candidate.getRequests().getOrDefault(label, new RequestStats());
+            table.append(String.format(Locale.ROOT, "%-28s %10.2f %10.2f %7.1f%% %10.2f %10.2f %7.1f%% %3d/%-4d%n",
+                label, base.getP50Ms(), cand.getP50Ms(), delta(base.getP50Ms(), cand.getP50Ms()),
+                base.getP99Ms(), cand.getP99Ms(), delta(base.getP99Ms(), cand.getP99Ms()),
+                base.getErrors(), cand.getErrors()));
+        }
+        return table.toString();
+    }
+
+    private static double delta(double base, double candidate) {
+        return base == 0 ? 0 : (candidate - base) * 100.0 / base;
+    }
+
+    /**
+     * Latency and error statistics of one request label or scenario.
+     */
+    public static class RequestStats {
+
+        private int count;
+        private int errors;
+        private Map<String, Integer> errorsByCause = new TreeMap<>();
+        private double throughput;
+        private double p50Ms;
+        private double p90Ms;
+        private double p99Ms;
+        private double maxMs;
+
+        public int getCount() {
+            return this.count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public int getErrors() {
+            return this.errors;
+        }
+
+        public void setErrors(int errors) {
+            this.errors = errors;
+        }
+
+        /**
+         * @return error counts keyed by HTTP status code or exception class name
+         */
+        public Map<String, Integer> getErrorsByCause() {
+            return this.errorsByCause;
+        }
+
+        public void setErrorsByCause(Map<String, Integer> errorsByCause) {
+            this.errorsByCause = errorsByCause;
+        }
+
+        /**
+         * @return completed requests per second over the measurement window
+         */
+        public double getThroughput() {
+            return this.throughput;
+        }
+
+        public void setThroughput(double throughput) {
+            this.throughput = throughput;
+        }
+
+        public double getP50Ms() {
+            return this.p50Ms;
+        }
+
+        public void setP50Ms(double p50Ms) {
+            this.p50Ms = p50Ms;
+        }
+
+        public double getP90Ms() {
+            return this.p90Ms;
+        }
+
+        public void setP90Ms(double p90Ms) {
+            this.p90Ms = p90Ms;
+        }
+
+        public double getP99Ms() {
+            return this.p99Ms;
+        }
+
+        public void setP99Ms(double p99Ms) {
+            this.p99Ms = p99Ms;
+        }
+
+        public double getMaxMs() {
+            return this.maxMs;
+        }
+
+        public void setMaxMs(double maxMs) {
+            this.maxMs = maxMs;
+        }
+    }
+
+}
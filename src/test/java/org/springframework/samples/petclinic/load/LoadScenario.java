@@ -0,0 +1,118 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.load;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The user journeys of the former JMeter test plan. Each scenario issues one or more requests; the targets (owner,
+ * pet, search prefix and submitted values) are chosen up front by the harness so that the sequence of requests only
+ * depends on the seed.
+ */
+public enum LoadScenario {
+
+    HOME("home") {
+        @Override
+        boolean run(LoadClient client, Arrival arrival) {
+            return client.get("home", "/", arrival.isMeasured());
+        }
+    },
+
+    VETS("vets") {
+        @Override
+        boolean run(LoadClient client, Arrival arrival) {
+            return client.get("vets", "/vets", arrival.isMeasured());
+        }
+    },
+
+    FIND_OWNER("find-owner") {
+        @Override
+        boolean run(LoadClient client, Arrival arrival) {
+            return client.get("find-owner-form", "/owners/find", arrival.isMeasured())
+                && client.get("find-owner-results", "/owners?lastName=" + encode(arrival.getSearchPrefix()), arrival.isMeasured());
+        }
+    },
+
+    OWNER_DETAILS("owner-details") {
+        @Override
+        boolean run(LoadClient client, Arrival arrival) {
+            return client.get("owner-details", "/owners/" + arrival.getOwnerId(), arrival.isMeasured());
+        }
+    },
+
+    EDIT_OWNER("edit-owner") {
+        @Override
+        boolean run(LoadClient client, Arrival arrival) {
+            String path = "/owners/" + arrival.getOwnerId() + "/edit";
+            Map<String, String> form = new LinkedHashMap<>();
+            form.put("firstName", arrival.getFirstName());
+            form.put("lastName", arrival.getLastName());
+            form.put("address", arrival.getAddress());
+            form.put("city", arrival.getCity());
+            form.put("telephone", arrival.getTelephone());
+            return client.get("edit-owner-form", path, arrival.isMeasured())
+                && client.post("edit-owner-submit", path, form, arrival.isMeasured());
+        }
+    },
+
+    NEW_VISIT("new-visit") {
+        @Override
+        boolean run(LoadClient client, Arrival arrival) {
+            String path = "/owners/" + arrival.getPetOwnerId() + "/pets/" + arrival.getPetId() + "/visits/new";
+            Map<String, String> form = new LinkedHashMap<>();
+            form.put("date", arrival.getVisitDate());
+            form.put("description", arrival.getVisitDescription());
+            return client.get("new-visit-form", path, arrival.isMeasured())
+                && client.post("new-visit-submit", path, form, arrival.isMeasured());
+        }
+    };
+
+    private final String label;
+
+    LoadScenario(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return this.label;
+    }
+
+    /**
+     * @return whether every request of the scenario succeeded
+     */
+    abstract boolean run(LoadClient client, Arrival arrival);
+
+    public static LoadScenario fromLabel(String label) {
+        for (LoadScenario scenario : values()) {
+            if (scenario.label.equals(label)) {
+                return scenario;
+            }
+        }
+        throw new IllegalArgumentException("Unknown scenario: " + label);
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
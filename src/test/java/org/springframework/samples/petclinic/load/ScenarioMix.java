@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Relative weights of the {@link LoadScenario scenarios}, e.g. <code>home=10,vets=10,find-owner=25</code>. Scenarios
+ * which are not listed are not executed.
+ */
+public class ScenarioMix {
+
+    /**
+     * Default mix: mostly reads, with roughly one write for three reads.
+     */
+    public static final String DEFAULT =
+        "home=10,vets=10,find-owner=25,owner-details=25,edit-owner=15,new-visit=15";
+
+    private final Map<LoadScenario, Integer> weights;
+
+    private final LoadScenario[] scenarios;
+
+    private final int[] cumulativeWeights;
+
+    private ScenarioMix(Map<LoadScenario, Integer> weights) {
+        this.weights = weights;
+        this.scenarios = weights.keySet().toArray(new LoadScenario[0]);
+        this.cumulativeWeights = new int[this.scenarios.length];
+        int total = 0;
+        for (int i = 0; i < this.scenarios.length; i++) {
+            total += weights.get(this.scenarios[i]);
+            this.cumulativeWeights[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one scenario must have a positive weight");
+        }
+    }
+
+    public static ScenarioMix parse(String mix) {
+        Map<LoadScenario, Integer> weights = new EnumMap<>(LoadScenario.class);
+        for (String entry : mix.split(",")) {
+            int equals = entry.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Expected scenario=weight but got: " + entry);
+            }
+            int weight = Integer.parseInt(entry.substring(equals + 1).trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight: " + entry);
+            }
+            if (weight > 0) {
+                weights.put(LoadScenario.fromLabel(entry.substring(0, equals).trim()), weight);
+            }
+        }
+        return new ScenarioMix(weights);
+    }
+
+    public LoadScenario pick(SplittableRandom random) {
+        int value = random.nextInt(this.cumulativeWeights[this.cumulativeWeights.length - 1]);
+        for (int i = 0; i < this.cumulativeWeights.length; i++) {
+            if (value < this.cumulativeWeights[i]) {
+                return this.scenarios[i];
+            }
+        }
+        throw new IllegalStateException("Unreachable");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder mix = new StringBuilder();
+        for (Map.Entry<LoadScenario, Integer> entry : this.weights.entrySet()) {
+            if (mix.length() > 0) {
+                mix.append(',');
+            }
+            mix.append(entry.getKey().getLabel()).append('=').append(entry.getValue());
+        }
+        return mix.toString();
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.load;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.samples.petclinic.capture.CaptureLogReader;
+import org.springframework.samples.petclinic.capture.CapturedRequest;
+
+/**
+ * Re-issues requests recorded by the traffic capture filter against a running instance, keeping their original
+ * spacing (optionally scaled), and reports latencies per route template in a {@link LoadReport}.
+ * <p/>
+ * Only GET requests are replayed: form bodies are not captured, and replaying writes against a copy of production data
+ * is rarely what is wanted. A replayed request is in error when its status differs from the captured one.
+ * <p/>
+ * Command line usage (from the project directory), against an instance started with the same data:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.springframework.samples.petclinic.load.TrafficReplayer \
+ *     -Dexec.args="--capture=/tmp/petclinic-capture --url=http://localhost:8080/petclinic --speed=2 --label=after --baseline=target/load-reports/before.json"
+ * </pre>
+ * Other options: <code>--threads</code> and <code>--report</code>.
+ */
+public class TrafficReplayer {
+
+    private final String baseUrl;
+
+    private final Path capture;
+
+    private double speed = 1.0;
+
+    private int threads = 64;
+
+    private int timeoutMillis = 30_000;
+
+    /**
+     * @param baseUrl URL of the application, including its context path
+     * @param capture capture file or directory
+     */
+    public TrafficReplayer(String baseUrl, Path capture) {
+        this.baseUrl = baseUrl;
+        this.capture = capture;
+    }
+
+    /**
+     * @param speed time scale factor: 2 replays twice as fast as captured, 0.5 twice as slow
+     */
+    public void setSpeed(double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Speed must be positive");
+        }
+        this.speed = speed;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public LoadReport run() throws IOException, InterruptedException {
+        LatencyRecorder requests = new LatencyRecorder();
+        LoadClient client = new LoadClient(this.baseUrl, requests, this.timeoutMillis);
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        int replayed = 0;
+        int skipped = 0;
+
+        String startedAt = Instant.now().toString();
+        long start = System.nanoTime();
+        long firstTimestamp = -1;
+        try (CaptureLogReader reader = new CaptureLogReader(this.capture)) {
+            CapturedRequest request;
+            while ((request = reader.read()) != null) {
+                if (!"GET".equals(request.getMethod())) {
+                    skipped++;
+                    continue;
+                }
+                if (firstTimestamp < 0) {
+                    firstTimestamp = request.getTimestampMicros();
+                }
+                long scheduled = start + (long) ((request.getTimestampMicros() - firstTimestamp) * 1000 / this.speed);
+                long delay;
+                while ((delay = scheduled - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                String label = request.getMethod() + " " + request.getRouteTemplate();
+                String path = pathAndQuery(request);
+                int expectedStatus = request.getStatus();
+                executor.execute(() -> client.get(label, path, expectedStatus, true));
+                replayed++;
+            }
+        } finally {
+            executor.shutdown();
+        }
+        if (!executor.awaitTermination(this.timeoutMillis * 2L, TimeUnit.MILLISECONDS)) {
+            executor.shutdownNow();
+        }
+        double durationSeconds = (System.nanoTime() - start) / 1e9;
+
+        LoadReport report = new LoadReport();
+        report.setStartedAt(startedAt);
+        report.getSettings().put("capture", this.capture.toAbsolutePath().toString());
+        report.getSettings().put("speed", this.speed);
+        report.getSettings().put("threads", this.threads);
+        report.getSettings().put("replayed", replayed);
+        report.getSettings().put("skippedWrites", skipped);
+        report.getSettings().put("durationSeconds", durationSeconds);
+        report.setRequests(requests.snapshot(durationSeconds));
+        return report;
+    }
+
+    static String pathAndQuery(CapturedRequest request) {
+        StringBuilder url = new StringBuilder(request.getPath());
+        char separator = '?';
+        for (Map.Entry<String, String> parameter : request.getParameters().entrySet()) {
+            url.append(separator).append(encode(parameter.getKey())).append('=').append(encode(parameter.getValue()));
+            separator = '&';
+        }
+        return url.toString();
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            options.put(equals < 0 ? arg.substring(2) : arg.substring(2, equals), equals < 0 ? "true" : arg.substring(equals + 1));
+        }
+        String capture = options.get("capture");
+        if (capture == null) {
+            throw new IllegalArgumentException("Missing required option --capture");
+        }
+        int threads = Integer.parseInt(options.getOrDefault("threads", "64"));
+        // HttpURLConnection keeps at most 5 idle connections per destination by default
+        System.setProperty("http.maxConnections", String.valueOf(threads));
+        String label = options.getOrDefault("label", "replay");
+
+        TrafficReplayer replayer = new TrafficReplayer(options.getOrDefault("url", "http://localhost:8080/petclinic"),
+            Paths.get(capture));
+        replayer.setSpeed(Double.parseDouble(options.getOrDefault("speed", "1")));
+        replayer.setThreads(threads);
+        LoadReport report = replayer.run();
+        report.setLabel(label);
+        Path output = Paths.get(options.getOrDefault("report", "target/load-reports/" + label + ".json"));
+        report.write(output);
+
+        System.out.print(report.format());
+        System.out.println("Report written to " + output);
+        if (options.containsKey("baseline")) {
+            System.out.println();
+            System.out.print(LoadReport.compare(LoadReport.read(Paths.get(options.get("baseline"))), report));
+        }
+    }
+
+}
@@ -16,13 +16,16 @@
 package org.springframework.samples.petclinic.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.time.LocalDate;
 import java.util.Collection;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.OwnerSearchResults;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.model.Vet;
@@ -107,6 +110,28 @@ abstract class AbstractClinicServiceTests {
         assertThat(owner.getLastName()).isEqualTo(newLastName);
     }
 
+    @Test
+    @Transactional
+    void shouldNotFindRenamedOwnerUnderItsFormerName() {
+        OwnerSearchResults results = this.clinicService.findOwnerByLastName("Frank", 1, 10);
+        assertThat(results.getTotalCount()).isEqualTo(1);
+
+        Owner owner = this.clinicService.findOwnerById(1);
+        owner.setLastName("Zfranklin");
+        this.clinicService.saveOwner(owner);
+
+        assertThat(this.clinicService.findOwnerByLastName("Frank", 1, 10).getTotalCount()).isZero();
+        assertThat(this.clinicService.findOwnerByLastName("Zfrank", 1, 10).getOwners())
+            .extracting(Owner::getId).containsExactly(1);
+    }
+
+    @Test
+    @Transactional
+    void shouldReportMissingOwnersAndPetsAlike() {
+        assertThatThrownBy(() -> this.clinicService.findOwnerById(1000)).isInstanceOf(ObjectRetrievalFailureException.class);
+        assertThatThrownBy(() -> this.clinicService.findPetById(1000)).isInstanceOf(ObjectRetrievalFailureException.class);
+    }
+
     @Test
     void shouldFindPetWithCorrectId() {
         Pet pet7 = this.clinicService.findPetById(7);
@@ -1,7 +1,17 @@
 package org.springframework.samples.petclinic.service;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * <p> Integration test using the 'Spring Data' profile.
@@ -14,4 +24,17 @@ import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
 @ActiveProfiles("spring-data-jpa")
 class ClinicServiceSpringDataJpaTests extends AbstractClinicServiceTests {
 
+    @PersistenceContext
+    private EntityManager em;
+
+    @Test
+    @Transactional(readOnly = true)
+    void shouldLoadEntitiesReadOnlyWithinReadOnlyTransactions() {
+        Session session = this.em.unwrap(Session.class);
+        assertThat(session.getHibernateFlushMode()).isEqualTo(FlushMode.MANUAL);
+
+        Owner owner = this.clinicService.findOwnerByLastName("Davis").iterator().next();
+        assertThat(session.isReadOnly(owner)).isTrue();
+    }
+
 }
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.aop.MethodBeforeAdvice;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.support.GenericXmlApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.cache.CacheChangeLog;
+import org.springframework.samples.petclinic.cache.CacheInvalidationPoller;
+import org.springframework.samples.petclinic.cache.OwnerSearchCache;
+import org.springframework.samples.petclinic.cache.TinyLfuCache;
+import org.springframework.samples.petclinic.cache.TinyLfuCacheManager;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.repository.VetRepository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Integration test of the {@link ClinicService} as assembled for the application: business-config.xml with
+ * tools-config.xml, so that calls go through the aspects of the service (request identity map, access tracker,
+ * negative lookups, last good reads, read coalescing) and the caching and transaction interceptors, in each persistence
+ * profile. Every test starts its own context on its own in-memory database, as it commits its changes.
+ */
+class ClinicServiceStackTests {
+
+    private static final Map<String, String> previousProperties = new HashMap<>();
+
+    @TempDir
+    static Path directory;
+
+    @BeforeAll
+    static void configure() throws Exception {
+        Properties dataAccess = PropertiesLoaderUtils.loadProperties(new ClassPathResource("spring/data-access.properties"));
+        String url = dataAccess.getProperty("jdbc.url");
+        Assumptions.assumeTrue(url.startsWith("jdbc:h2:mem:"), "needs the in-memory H2 database of the default build profile");
+        setProperty("jpa.showSql", "false");
+        // started and stopped by the tests themselves
+        setProperty("cache.invalidation.pollMillis", "0");
+        setProperty("cache.snapshot.enabled", "false");
+        setProperty("warmup.tracking.enabled", "false");
+        // saved on shutdown whatever the tracking
+        setProperty("warmup.tracking.file", directory.resolve("access.sketch").toString());
+        setProperty("warmup.cache.enabled", "false");
+        setProperty("cache.vets.refreshAfterSeconds", "1");
+    }
+
+    @AfterAll
+    static void restore() {
+        for (Map.Entry<String, String> property : previousProperties.entrySet()) {
+            if (property.getValue() == null) {
+                System.clearProperty(property.getKey());
+            } else {
+                System.setProperty(property.getKey(), property.getValue());
+            }
+        }
+        previousProperties.clear();
+    }
+
+    private static void setProperty(String name, String value) {
+        previousProperties.putIfAbsent(name, System.getProperty(name));
+        System.setProperty(name, value);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc", "jpa", "spring-data-jpa"})
+    void shouldFindOwnersAndPetsInsertedByAnotherNodeAfterAMiss(String profile) {
+        try (GenericXmlApplicationContext context = start(profile)) {
+            ClinicService clinicService = context.getBean(ClinicService.class);
+            Cache owners = context.getBean("cacheManager", CacheManager.class).getCache("owners");
+            DataSource dataSource = context.getBean("dataSource", DataSource.class);
+
+            assertThatThrownBy(() -> clinicService.findOwnerById(1000)).isInstanceOf(ObjectRetrievalFailureException.class);
+            assertThatThrownBy(() -> clinicService.findPetById(1000)).isInstanceOf(ObjectRetrievalFailureException.class);
+            assertThat(clinicService.findOwnerByLastName("Zzyzx", 1, 10).getTotalCount()).isZero();
+            assertThat(owners.get(1000)).isNull();
+
+            // inserted by another node sharing the database
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.update("INSERT INTO owners VALUES (1000, 'Ann', 'Zzyzx', '1 Main St.', 'Madison', '6085550000')");
+            jdbcTemplate.update("INSERT INTO pets VALUES (1000, 'Rex', '2020-01-01', 2, 1000)");
+            CacheChangeLog otherNode = new CacheChangeLog(dataSource);
+            otherNode.append("owners", 1000);
+            otherNode.append("pets", 1000);
+            otherNode.append(OwnerSearchCache.NAME, "Zzyzx");
+            context.getBean(CacheInvalidationPoller.class).poll();
+
+            assertThat(clinicService.findOwnerById(1000).getPets()).extracting(Pet::getName).containsExactly("Rex");
+            assertThat(clinicService.findPetById(1000).getOwner().getLastName()).isEqualTo("Zzyzx");
+            assertThat(clinicService.findOwnerByLastName("Zzyzx", 1, 10).getOwners())
+                .extracting(Owner::getId).containsExactly(1000);
+            assertThat(owners.get(1000)).isNotNull();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc", "jpa", "spring-data-jpa"})
+    void shouldReadBackWhatWasSavedWithinAndAfterTheRequest(String profile) {
+        try (GenericXmlApplicationContext context = start(profile)) {
+            ClinicService clinicService = context.getBean(ClinicService.class);
+
+            inRequest(() -> {
+                Owner owner = clinicService.findOwnerById(1);
+                owner.setLastName("Franklyn");
+                clinicService.saveOwner(owner);
+
+                Owner reread = clinicService.findOwnerById(1);
+                assertThat(reread).isNotSameAs(owner);
+                assertThat(reread.getLastName()).isEqualTo("Franklyn");
+
+                Pet pet = clinicService.findPetById(1);
+                pet.setName("Leonidas");
+                clinicService.savePet(pet);
+                Visit visit = new Visit();
+                visit.setPet(clinicService.findPetById(1));
+                visit.setDate(LocalDate.now());
+                visit.setDescription("checkup");
+                clinicService.saveVisit(visit);
+
+                assertThat(clinicService.findPetById(1).getVisits()).extracting(Visit::getDescription).contains("checkup");
+            });
+
+            inRequest(() -> {
+                Owner owner = clinicService.findOwnerById(1);
+                assertThat(owner.getLastName()).isEqualTo("Franklyn");
+                assertThat(owner.getPet("Leonidas").getVisits()).extracting(Visit::getDescription).contains("checkup");
+                assertThat(clinicService.findOwnerByLastName("Franklin", 1, 10).getTotalCount()).isZero();
+                assertThat(clinicService.findOwnerByLastName("Franklyn", 1, 10).getOwners())
+                    .extracting(Owner::getId).containsExactly(1);
+
+                // longer than the column
+                owner.setTelephone("608555102360855510236085551023");
+                assertThatThrownBy(() -> clinicService.saveOwner(owner)).isInstanceOf(RuntimeException.class);
+                assertThat(clinicService.findOwnerById(1).getTelephone()).isEqualTo("6085551023");
+            });
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc", "jpa", "spring-data-jpa"})
+    void shouldRefreshTheVetListThroughTheService(String profile) throws InterruptedException {
+        try (GenericXmlApplicationContext context = start(profile)) {
+            ClinicService clinicService = context.getBean(ClinicService.class);
+            TinyLfuCache vets = context.getBean(TinyLfuCacheManager.class).getRegionCache("vets");
+            VetReads reads = context.getBean(VetReads.class);
+            assertThat(clinicService.findVets()).hasSize(6);
+
+            new JdbcTemplate(context.getBean("dataSource", DataSource.class))
+                .update("INSERT INTO vets VALUES (100, 'Ann', 'Smith')");
+            Thread.sleep(1100);
+            // served stale, and reloaded in the background
+            assertThat(clinicService.findVets()).hasSize(6);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (vets.getRefreshCount() + vets.getRefreshFailureCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertThat(vets.getRefreshFailureCount()).isZero();
+            assertThat(clinicService.findVets()).hasSize(7);
+            assertThat(reads.inTransaction).containsExactly(true, true);
+        }
+    }
+
+    private static GenericXmlApplicationContext start(String profile) {
+        setProperty("jdbc.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        GenericXmlApplicationContext context = new GenericXmlApplicationContext();
+        // several nodes sharing a database
+        context.getEnvironment().setActiveProfiles(profile, "clustered");
+        context.load("classpath:spring/business-config.xml", "classpath:spring/tools-config.xml");
+        context.registerBean(VetReads.class);
+        context.refresh();
+        // reads the id from which to apply the changes of the other nodes, as on startup
+        context.getBean(CacheInvalidationPoller.class).poll();
+        return context;
+    }
+
+    /**
+     * Records whether the vets are read within a transaction.
+     */
+    static class VetReads implements BeanPostProcessor {
+
+        final List<Boolean> inTransaction = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof VetRepository)) {
+                return bean;
+            }
+            ProxyFactory proxyFactory = new ProxyFactory(bean);
+            proxyFactory.addAdvice((MethodBeforeAdvice) (method, args, target) ->
+                this.inTransaction.add(TransactionSynchronizationManager.isActualTransactionActive()));
+            return proxyFactory.getProxy();
+        }
+    }
+
+    private static void inRequest(Runnable runnable) {
+        ServletRequestAttributes attributes = new ServletRequestAttributes(new MockHttpServletRequest());
+        RequestContextHolder.setRequestAttributes(attributes);
+        try {
+            runnable.run();
+        } finally {
+            attributes.requestCompleted();
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+}
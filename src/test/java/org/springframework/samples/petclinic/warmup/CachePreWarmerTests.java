@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.warmup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.health.Readiness;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.service.ClinicService;
+
+/**
+ * Test class for {@link AccessTracker} and {@link CachePreWarmer}
+ */
+class CachePreWarmerTests {
+
+    @TempDir
+    Path directory;
+
+    private final ClinicService clinicService = mock(ClinicService.class);
+
+    @Test
+    void shouldLoadTheEntriesMostAccessedByThePreviousRun() throws Exception {
+        AccessTracker previousRun = tracker();
+        for (int i = 0; i < 3; i++) {
+            previousRun.ownerFound(6);
+        }
+        previousRun.ownerFound(1);
+        previousRun.ownersSearched("Da", 2, 10);
+        previousRun.petFound(8);
+        previousRun.petFound(404);
+        previousRun.destroy();
+
+        Owner owner = new Owner();
+        owner.setId(6);
+        Pet pet = new Pet();
+        owner.addPet(pet);
+        given(this.clinicService.findPetById(8)).willReturn(pet);
+        given(this.clinicService.findPetById(404)).willThrow(new ObjectRetrievalFailureException(Pet.class, 404));
+        AccessTracker tracker = tracker();
+        Readiness readiness = new Readiness();
+        CachePreWarmer preWarmer = new CachePreWarmer(this.clinicService, tracker, readiness);
+        preWarmer.setMaxOwners(1);
+        preWarmer.afterPropertiesSet();
+        assertThat(readiness.getPendingGates()).containsExactly(CachePreWarmer.GATE);
+
+        StaticApplicationContext context = new StaticApplicationContext();
+        preWarmer.setApplicationContext(context);
+        preWarmer.onApplicationEvent(new ContextRefreshedEvent(context));
+        for (int i = 0; i < 500 && !readiness.isReady(); i++) {
+            Thread.sleep(10);
+        }
+
+        assertThat(readiness.isReady()).isTrue();
+        assertThat(preWarmer.getStatus()).isEqualTo("completed");
+        verify(this.clinicService).findOwnerByLastName("Da", 2, 10);
+        // the most accessed owner, and the owner of the pet
+        verify(this.clinicService, times(2)).findOwnerById(6);
+        verify(this.clinicService, never()).findOwnerById(1);
+        assertThat(preWarmer.getLoadedCount()).isEqualTo(3);
+        assertThat(preWarmer.getFailedCount()).isEqualTo(1);
+        // counts are halved on each start
+        assertThat(tracker.getTop(AccessTracker.OWNERS, 10)).extracting(HeavyHitters.Item::getCount)
+            .containsExactly(1L, 0L);
+    }
+
+    private AccessTracker tracker() {
+        AccessTracker tracker = new AccessTracker();
+        tracker.setFile(this.directory.resolve("access.sketch").toString());
+        tracker.afterPropertiesSet();
+        return tracker;
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.warmup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.codec.BinaryReader;
+import org.springframework.samples.petclinic.codec.BinaryWriter;
+
+/**
+ * Test class for {@link HeavyHitters}
+ */
+class HeavyHittersTests {
+
+    @Test
+    void shouldFindTheFrequentKeysOfALongTail() {
+        HeavyHitters sketch = new HeavyHitters(50);
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // 3 keys get 30% of the accesses, the rest is spread over 100 000 keys
+            sketch.offer(random.nextInt(10) < 3 ? "hot" + random.nextInt(3) : "cold" + random.nextInt(100_000));
+        }
+
+        assertThat(sketch.top(3)).extracting(HeavyHitters.Item::getKey)
+            .containsExactlyInAnyOrder("hot0", "hot1", "hot2");
+        HeavyHitters.Item hottest = sketch.top(1).get(0);
+        // Space-Saving bounds: count - error <= true count <= count, error <= total / capacity
+        assertThat(hottest.getCount() - hottest.getError()).isLessThanOrEqualTo(10_500);
+        assertThat(hottest.getCount()).isGreaterThanOrEqualTo(9_500);
+        assertThat(hottest.getError()).isLessThanOrEqualTo(100_000 / 50);
+        assertThat(sketch.size()).isEqualTo(50);
+    }
+
+    @Test
+    void shouldReadBackDecayedCounts() {
+        HeavyHitters sketch = new HeavyHitters(10);
+        for (int i = 0; i < 8; i++) {
+            sketch.offer("7");
+        }
+        sketch.offer("12");
+        sketch.offer("12");
+        BinaryWriter out = new BinaryWriter();
+        sketch.writeTo(out);
+
+        HeavyHitters restored = new HeavyHitters(10);
+        restored.readFrom(new BinaryReader(ByteBuffer.wrap(out.toByteArray())));
+        restored.decay();
+        restored.offer("12");
+
+        assertThat(restored.top(10)).extracting(HeavyHitters.Item::getKey).containsExactly("7", "12");
+        assertThat(restored.top(10)).extracting(HeavyHitters.Item::getCount).containsExactly(4L, 2L);
+        assertThat(restored.getTotal()).isEqualTo(6);
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.warmup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.reset;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.samples.petclinic.health.Readiness;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.OwnerSearchResults;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * Test class for {@link JitWarmUp}
+ */
+@SpringJUnitWebConfig(locations = {"classpath:spring/mvc-core-config.xml", "classpath:spring/mvc-test-config.xml"})
+class JitWarmUpTests {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private ClinicService clinicService;
+
+    @AfterEach
+    void resetClinicService() {
+        // the mock is shared with the controller tests through the context cache
+        reset(this.clinicService);
+    }
+
+    @Test
+    void shouldRunEveryPathThenReleaseTheReadinessGate() {
+        Owner owner = new Owner();
+        owner.setId(1);
+        owner.setLastName("Franklin");
+        given(this.clinicService.findOwnerByLastName(anyString(), anyInt(), anyInt()))
+            .willReturn(new OwnerSearchResults(Collections.singletonList(owner), 1, 1, 10, ""));
+        given(this.clinicService.findOwnerById(1)).willReturn(owner);
+        Vet vet = new Vet();
+        vet.setId(1);
+        vet.setLastName("Carter");
+        given(this.clinicService.findVets()).willReturn(Collections.singletonList(vet));
+        PetType cat = new PetType();
+        cat.setId(1);
+        cat.setName("cat");
+        given(this.clinicService.findPetTypes()).willReturn(Collections.singletonList(cat));
+
+        Readiness readiness = new Readiness();
+        GenericApplicationContext context = new GenericApplicationContext(this.webApplicationContext);
+        context.registerBean(Readiness.class, () -> readiness);
+        context.refresh();
+        JitWarmUp warmUp = new JitWarmUp();
+        warmUp.setIterations(50);
+        warmUp.setApplicationContext(context);
+        warmUp.afterPropertiesSet();
+        assertThat(readiness.getPendingGates()).containsExactly(JitWarmUp.GATE);
+
+        warmUp.warmUp();
+
+        assertThat(readiness.isReady()).isTrue();
+        assertThat(warmUp.getStatus()).isEqualTo("completed");
+        assertThat(warmUp.getCompletedIterations()).isEqualTo(50);
+        assertThat(warmUp.getFailureCount()).isZero();
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> paths = (Map<String, Map<String, Object>>) warmUp.getMetrics().get("paths");
+        assertThat(paths).containsOnlyKeys("ownerSearch", "ownerDetails", "vetsJson", "vetsXml", "petForm", "visitForm");
+        assertThat(paths.get("petForm")).containsEntry("runs", 50L);
+        context.close();
+    }
+
+    @Test
+    void shouldBeSkippedWithoutReadiness() {
+        JitWarmUp warmUp = new JitWarmUp();
+        warmUp.setApplicationContext(this.webApplicationContext);
+        warmUp.afterPropertiesSet();
+
+        assertThat(warmUp.getStatus()).isEqualTo("disabled");
+    }
+
+}
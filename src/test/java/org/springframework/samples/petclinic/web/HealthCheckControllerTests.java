@@ -0,0 +1,119 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.web;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.samples.petclinic.health.HealthProbe;
+import org.springframework.samples.petclinic.health.HealthProber;
+import org.springframework.samples.petclinic.health.ProbeResult;
+import org.springframework.samples.petclinic.health.Readiness;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+/**
+ * Test class for the {@link HealthCheckController}
+ */
+class HealthCheckControllerTests {
+
+    private final Readiness readiness = new Readiness();
+
+    private volatile ProbeResult databaseResult = ProbeResult.up(Collections.singletonMap("active", 2));
+
+    private HealthProber healthProber;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setup() {
+        this.healthProber = new HealthProber(Collections.singletonList(new HealthProbe() {
+            @Override
+            public String getName() {
+                return "database";
+            }
+
+            @Override
+            public ProbeResult probe() {
+                return databaseResult;
+            }
+        }));
+        this.healthProber.setIntervalMillis(0);
+        this.healthProber.afterPropertiesSet();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("readiness", this.readiness);
+        beanFactory.addBean("healthProber", this.healthProber);
+        this.mockMvc = MockMvcBuilders
+            .standaloneSetup(new HealthCheckController(beanFactory.getBeanProvider(Readiness.class),
+                beanFactory.getBeanProvider(HealthProber.class)))
+            .build();
+    }
+
+    @Test
+    void testReportReadyOnceTheStartupTasksAreDone() throws Exception {
+        this.readiness.hold("cachePreWarm");
+
+        mockMvc.perform(get("/health"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("OK"));
+        mockMvc.perform(get("/health/ready"))
+            .andExpect(status().isServiceUnavailable())
+            .andExpect(content().string("NOT READY: cachePreWarm"));
+
+        this.readiness.release("cachePreWarm");
+
+        mockMvc.perform(get("/health/ready"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("READY"));
+    }
+
+    @Test
+    void testReportNotReadyButAliveWhileTheDatabaseIsDown() throws Exception {
+        this.databaseResult = ProbeResult.down("Connection refused", Collections.emptyMap());
+        this.healthProber.probeAll();
+
+        mockMvc.perform(get("/health/live"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("OK"));
+        mockMvc.perform(get("/health/ready"))
+            .andExpect(status().isServiceUnavailable())
+            .andExpect(content().string("NOT READY: database"));
+        mockMvc.perform(get("/health/probes"))
+            .andExpect(status().isServiceUnavailable())
+            .andExpect(jsonPath("$.ready").value(false))
+            .andExpect(jsonPath("$.probes.database.status").value("DOWN"))
+            .andExpect(jsonPath("$.probes.database.message").value("Connection refused"));
+    }
+
+    @Test
+    void testPublishTheLastProbeResults() throws Exception {
+        mockMvc.perform(get("/health/probes"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.ready").value(true))
+            .andExpect(jsonPath("$.probes.healthy").value(true))
+            .andExpect(jsonPath("$.probes.database.status").value("UP"))
+            .andExpect(jsonPath("$.probes.database.active").value(2))
+            .andExpect(jsonPath("$.probes.database.latencyMicros").isNumber());
+    }
+
+}
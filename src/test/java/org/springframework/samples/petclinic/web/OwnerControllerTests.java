@@ -6,6 +6,7 @@ import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.model.OwnerSearchResults;
 import org.springframework.samples.petclinic.service.ClinicService;
@@ -208,4 +209,15 @@ class OwnerControllerTests {
             .andExpect(view().name("owners/ownerDetails"));
     }
 
+    @Test
+    void testShowMissingOwner() throws Exception {
+        given(this.clinicService.findOwnerById(404)).willThrow(new ObjectRetrievalFailureException(Owner.class, 404));
+        MockMvc notFoundMvc = MockMvcBuilders.standaloneSetup(ownerController)
+            .setHandlerExceptionResolvers(new NotFoundExceptionResolver()).build();
+
+        notFoundMvc.perform(get("/owners/{ownerId}", 404))
+            .andExpect(status().isNotFound())
+            .andExpect(content().string("Not found"));
+    }
+
 }